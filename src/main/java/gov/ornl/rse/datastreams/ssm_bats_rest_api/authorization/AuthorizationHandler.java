@@ -1,13 +1,27 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.UniquelyIdentifiable;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 /**
  * Handler for managing authorization activities.
  *
@@ -16,6 +30,11 @@ import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.UniquelyIdentifiable;
  */
 public class AuthorizationHandler {
 
+    /**
+     * logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorizationHandler.class);
+
     /**
      * Fake object for relations to grant universal dataset administration
      * permissions.
@@ -40,6 +59,13 @@ public class AuthorizationHandler {
      */
     private static final String PUBLIC_COLLECTION = "PUBLIC_COLLECTION";
 
+    /**
+     * Every Role, highest rank first.
+     */
+    private static final List<Roles> ROLES_BY_RANK = Arrays.stream(Roles.values())
+            .sorted(Comparator.comparingInt(Roles::getRank).reversed())
+            .collect(Collectors.toList());
+
     /**
      * Handler for Zanzibar API calls.
      */
@@ -51,13 +77,25 @@ public class AuthorizationHandler {
     private HashMap<Roles, ArrayList<Permissions>> rolesToPermissions;
 
     /**
-     * The default constructor.
+     * Constructor keeping the Zanzibar metrics on a registry of their own.
      *
      * @param configuration Application level configuration information from
      *                      application.properties.
      */
     public AuthorizationHandler(final ApplicationConfig configuration) {
-        handler = new ZanzibarPermissionsHandler(configuration);
+        this(configuration, new SimpleMeterRegistry());
+    }
+
+    /**
+     * The default constructor.
+     *
+     * @param configuration Application level configuration information from
+     *                      application.properties.
+     * @param meterRegistry Registry to register the Zanzibar metrics on.
+     */
+    public AuthorizationHandler(final ApplicationConfig configuration,
+            final MeterRegistry meterRegistry) {
+        handler = new ZanzibarPermissionsHandler(configuration, meterRegistry);
 
         // Create a map from each Role to its associated Permissions
         rolesToPermissions = new HashMap<Roles, ArrayList<Permissions>>();
@@ -89,7 +127,7 @@ public class AuthorizationHandler {
         ownerPerms.add(Permissions.GRANT_READ);
         ownerPerms.add(Permissions.GRANT_UPDATE);
         ownerPerms.add(Permissions.GRANT_DELETE);
-        rolesToPermissions.put(Roles.OWNER, maintainerPerms);
+        rolesToPermissions.put(Roles.OWNER, ownerPerms);
 
     }
 
@@ -137,13 +175,29 @@ public class AuthorizationHandler {
             }
         }
 
+        handler.applyChanges(replaceRole(new TupleChanges(), username, role, objectUUID));
+    }
+
+    /**
+     * Add the changes that replace all of a user's roles on an object with a single
+     * role.
+     *
+     * @param changes    The batch to add the changes to.
+     * @param username   The user's username.
+     * @param role       The role.
+     * @param objectUUID The object or collection to grant the role on.
+     * @return The batch, for chaining.
+     */
+    private static TupleChanges replaceRole(final TupleChanges changes, final String username,
+            final Roles role, final String objectUUID) {
+
         // Delete any existing role.
         for (Roles currRole : Roles.values()) {
-            handler.deletePermission(username, currRole.toString(), objectUUID, null, null);
+            changes.delete(username, currRole.toString(), objectUUID, null, null);
         }
 
         // Add the new role.
-        handler.createPermission(username, role.toString(), objectUUID, null, null);
+        return changes.insert(username, role.toString(), objectUUID, null, null);
     }
 
     /**
@@ -175,16 +229,8 @@ public class AuthorizationHandler {
             }
         }
 
-        // Mirror all permissions from the group to the object.
-        for (Permissions permission : Permissions.values()) {
-            handler.createPermission(null, permission.toString(), objectUUID, groupUUID,
-                    permission.toString());
-        }
-
-        // Mirror all roles from the collection to the object
-        for (Roles role : Roles.values()) {
-            handler.createPermission(null, role.toString(), objectUUID, groupUUID, role.toString());
-        }
+        // Mirror all permissions and roles from the group to the object.
+        handler.applyChanges(membershipChanges(true, objectUUID, groupUUID));
     }
 
     /**
@@ -362,6 +408,34 @@ public class AuthorizationHandler {
         return handler.checkPermission(username, permission.toString(), uuid);
     }
 
+    /**
+     * Check whether the given user has the given permission on each of many
+     * objects. Repeated objects are checked once and checks are sent concurrently.
+     *
+     * @param username   Username to check permissions for.
+     * @param permission Permission to check if username has over each uuid.
+     * @param uuids      UUIDs for the objects to check permissions for.
+     * @return The UUIDs over which the user has the requested permission.
+     */
+    public Set<String> checkPermissions(final String username, final Permissions permission,
+            final Collection<String> uuids) {
+        return handler.checkPermissions(username, permission.toString(), uuids);
+    }
+
+    /**
+     * Get every object over which the given user has the given permission. Useful
+     * for restricting a listing to readable items before paginating it.
+     *
+     * @param username   Username to list objects for.
+     * @param permission Permission the user must have.
+     * @return The UUIDs over which the user has the requested permission.
+     * @throws IOException If Zanzibar could not be read.
+     */
+    public Set<String> listObjects(final String username, final Permissions permission)
+            throws IOException {
+        return handler.listObjects(username, permission.toString());
+    }
+
     /**
      * Check whether the given user has the given role on the given object.
      *
@@ -429,6 +503,22 @@ public class AuthorizationHandler {
      *                   object.
      */
     public void deleteObject(final String username, final String uuid) throws Exception {
+        deleteObject(username, uuid, count -> { });
+    }
+
+    /**
+     * Delete all permissions relating to the given object, reporting progress as
+     * batches of tuples are removed. Fails if the user does not have DELETE on the
+     * object.
+     *
+     * @param username The user requesting to perform the action. Optional.
+     * @param uuid     The object whose permissions are being deleted.
+     * @param progress Receives the running total of deleted tuples.
+     * @throws Exception If username is specified but user lacks DELETE on the
+     *                   object, or if Zanzibar could not delete the tuples.
+     */
+    public void deleteObject(final String username, final String uuid,
+            final LongConsumer progress) throws Exception {
 
         // If the user is specified, check for permission to delete the object.
         if (username != null
@@ -436,26 +526,57 @@ public class AuthorizationHandler {
             throw new Exception("User " + username + " lacks DELETE on " + uuid);
         }
 
-        // Get all relations involving the object
-        List<Relationship> tuples = handler.queryPermission(null, null, uuid, null, null);
-        tuples.addAll(handler.queryPermission(null, null, null, uuid, null));
-
-        // Delete each relationship
-        for (Relationship r : tuples) {
+        // Delete all relations on the object
+        long deleted = handler.deleteMatching(null, null, uuid, null, null, progress);
 
-            // Get the subject set fields, if any
-            String subjectSetSubject = null;
-            String subjectSetPermission = null;
+        // Then all relations inheriting from it. Zanzibar only filters on a complete
+        // subject set, so each relation of the object is removed in turn.
+        for (String relation : objectRelations()) {
+            long offset = deleted;
+            deleted += handler.deleteMatching(null, null, null, uuid, relation,
+                    count -> progress.accept(offset + count));
+        }
+    }
 
-            if (r.getSubjectSet() != null) {
-                subjectSetSubject = r.getSubjectSet().getSubjectId();
-                subjectSetPermission = r.getSubjectSet().getRelation();
+    /**
+     * Delete all permissions relating to the given objects at once, reporting
+     * progress as batches of tuples are removed. Fails before deleting anything
+     * if the user does not have DELETE on every object.
+     *
+     * @param username The user requesting to perform the action. Optional.
+     * @param uuids    The objects whose permissions are being deleted.
+     * @param progress Receives the running total of deleted tuples.
+     * @throws Exception If username is specified but user lacks DELETE on any
+     *                   object, or if Zanzibar could not delete the tuples.
+     */
+    public void deleteObjects(final String username, final Collection<String> uuids,
+            final LongConsumer progress) throws Exception {
+
+        // If the user is specified, check for permission to delete every object.
+        if (username != null) {
+            Set<String> allowed = checkPermissions(username, Permissions.DELETE, uuids);
+            if (allowed.size() < new HashSet<>(uuids).size()) {
+                throw new Exception("User " + username + " lacks DELETE on "
+                        + (uuids.size() - allowed.size()) + " objects");
             }
-
-            handler.deletePermission(r.getSubjectId(), r.getRelation(), r.getObject(),
-                    subjectSetSubject, subjectSetPermission);
         }
 
+        handler.deleteObjects(uuids, objectRelations(), progress);
+    }
+
+    /**
+     * @return Every relation an object can have, through which other tuples may
+     *         inherit from it
+     */
+    private static List<String> objectRelations() {
+        List<String> relations = new ArrayList<>();
+        for (Permissions permission : Permissions.values()) {
+            relations.add(permission.toString());
+        }
+        for (Roles role : Roles.values()) {
+            relations.add(role.toString());
+        }
+        return relations;
     }
 
     /**
@@ -464,24 +585,25 @@ public class AuthorizationHandler {
      * @param username The user to delete.
      */
     public void deleteUser(final String username) {
-
-        // Get all relationships for this user.
-        List<Relationship> relationships = handler.queryPermission(username, null, null, null,
-                null);
-
-        // Delete each one.
-        for (Relationship relationship : relationships) {
-            if (relationship.getSubjectSet() == null) {
-                handler.deletePermission(relationship.getSubjectId(), relationship.getRelation(),
-                        relationship.getObject(), null, null);
-            } else {
-                handler.deletePermission(relationship.getSubjectId(), relationship.getRelation(),
-                        relationship.getObject(), relationship.getSubjectSet().getObject(),
-                        relationship.getSubjectSet().getRelation());
-            }
+        try {
+            deleteUser(username, count -> { });
+        } catch (IOException e) {
+            LOG.error("Unable to delete Zanzibar user " + username, e);
         }
     }
 
+    /**
+     * Delete the given user, reporting progress as batches of tuples are removed.
+     *
+     * @param username The user to delete.
+     * @param progress Receives the running total of deleted tuples.
+     * @throws IOException If Zanzibar could not delete the tuples.
+     */
+    public void deleteUser(final String username, final LongConsumer progress)
+            throws IOException {
+        handler.deleteMatching(username, null, null, null, null, progress);
+    }
+
     /**
      * Create a new list of the given objects whose UUIDs are stored in Zanzibar and
      * for which the user has the given permission.
@@ -563,19 +685,39 @@ public class AuthorizationHandler {
      *         granted.
      */
     public Roles getRole(final String user, final String objectUUID) {
+        return RequestMemo.get("\u0001role\u0000" + user + "\u0000" + objectUUID,
+                () -> resolveRole(user, objectUUID));
+    }
 
-        // Check each role in descending order, returning the first one the user has.
-        if (handler.checkPermission(user, Roles.OWNER.toString(), objectUUID)) {
-            return Roles.OWNER;
-        } else if (handler.checkPermission(user, Roles.MAINTAINER.toString(), objectUUID)) {
-            return Roles.MAINTAINER;
-        } else if (handler.checkPermission(user, Roles.MEMBER.toString(), objectUUID)) {
-            return Roles.MEMBER;
-        } else if (handler.checkPermission(user, Roles.COLLABORATOR.toString(), objectUUID)) {
-            return Roles.COLLABORATOR;
-        } else {
-            return null;
+    /**
+     * Find the given user's highest Role on the given object. The Roles granted
+     * directly are read with one tuple query; only Roles ranked above the best of
+     * those, which could still be inherited from a collection, are then checked.
+     *
+     * @param user       The user to check the Role for
+     * @param objectUUID The object to check user's Role on
+     * @return The highest Role user has on objectUUID, or null if no Role is
+     *         granted.
+     */
+    private Roles resolveRole(final String user, final String objectUUID) {
+        Roles highest = null;
+        for (Relationship tuple : handler.queryPermission(user, null, objectUUID, null, null)) {
+            Roles role = EnumUtils.getEnum(Roles.class, tuple.getRelation());
+            if (role != null && (highest == null || role.getRank() > highest.getRank())) {
+                highest = role;
+            }
         }
+
+        // Check each higher role in descending order, returning the first one the user has.
+        for (Roles role : ROLES_BY_RANK) {
+            if (highest != null && role.getRank() <= highest.getRank()) {
+                break;
+            }
+            if (handler.checkPermission(user, role.toString(), objectUUID)) {
+                return role;
+            }
+        }
+        return highest;
     }
 
     /**
@@ -674,21 +816,21 @@ public class AuthorizationHandler {
      */
     public void initializeObject(final String uuid, final String owner) {
 
+        TupleChanges changes = new TupleChanges();
+
         // Add every role's permissions to the object
         for (Roles role : rolesToPermissions.keySet()) {
             for (Permissions permission : rolesToPermissions.get(role)) {
-                handler.createPermission(null, permission.toString(), uuid, uuid, role.toString());
+                changes.insert(null, permission.toString(), uuid, uuid, role.toString());
             }
         }
 
         // If specified, assign a user as the owner.
         if (owner != null) {
-            try {
-                addRole(null, owner, Roles.OWNER, uuid);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            replaceRole(changes, owner, Roles.OWNER, uuid);
         }
+
+        handler.applyChanges(changes);
     }
 
     /**
@@ -702,11 +844,11 @@ public class AuthorizationHandler {
      *         same role, or both are null, or if role2 is higher.
      */
     public boolean isSuperiorRole(final Roles role1, final Roles role2) {
-        if (role2 == null || role1 != null && role2.getRank() >= role1.getRank()) {
+        if (role1 == null) {
             return false;
         }
 
-        return true;
+        return role2 == null || role1.getRank() > role2.getRank();
     }
 
     /**
@@ -764,16 +906,40 @@ public class AuthorizationHandler {
             }
         }
 
-        // Remove each permission from the group to the object
+        // Remove each permission and role from the group to the object
+        handler.applyChanges(membershipChanges(false, objectUUID, groupUUID));
+    }
+
+    /**
+     * Build the tuples that mirror every permission and role from a collection
+     * onto one of its members.
+     *
+     * @param insert     True to add the object to the collection, false to remove
+     *                   it.
+     * @param objectUUID The UUID for the member object or collection.
+     * @param groupUUID  The UUID for the collection.
+     * @return The batch of changes.
+     */
+    private static TupleChanges membershipChanges(final boolean insert, final String objectUUID,
+            final String groupUUID) {
+        TupleChanges changes = new TupleChanges();
         for (Permissions permission : Permissions.values()) {
-            handler.deletePermission(null, permission.toString(), objectUUID, groupUUID,
-                    permission.toString());
+            if (insert) {
+                changes.insert(null, permission.toString(), objectUUID, groupUUID,
+                        permission.toString());
+            } else {
+                changes.delete(null, permission.toString(), objectUUID, groupUUID,
+                        permission.toString());
+            }
         }
-
-        // Remove each role from the group to the object
         for (Roles role : Roles.values()) {
-            handler.deletePermission(null, role.toString(), objectUUID, groupUUID, role.toString());
+            if (insert) {
+                changes.insert(null, role.toString(), objectUUID, groupUUID, role.toString());
+            } else {
+                changes.delete(null, role.toString(), objectUUID, groupUUID, role.toString());
+            }
         }
+        return changes;
     }
 
     /**
@@ -798,10 +964,10 @@ public class AuthorizationHandler {
             Roles editorRole = getRole(editorUsername, objectUUID);
 
             // The current Role held by the user whose Role is to be changed
-            Roles userRole = getRole(editorUsername, objectUUID);
+            Roles userRole = getRole(username, objectUUID);
 
             // Do not let anyone remove a user from a higher ranked role than their own.
-            if (isSuperiorRole(editorRole, userRole)) {
+            if (isSuperiorRole(userRole, editorRole)) {
                 throw new Exception("Users cannot demote users with higher roles.");
             }
         }
@@ -894,4 +1060,13 @@ public class AuthorizationHandler {
         handler.deletePermission(username, permission.toString(), uuid, null, null);
     }
 
+    /**
+     * Release the Zanzibar client, check pool and local replica. The handler
+     * must not be used afterwards.
+     *
+     * @throws IOException If the client could not be closed.
+     */
+    public void close() throws IOException {
+        handler.close();
+    }
 }
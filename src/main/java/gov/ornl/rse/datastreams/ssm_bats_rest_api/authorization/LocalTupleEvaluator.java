@@ -0,0 +1,530 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-process replica of the Zanzibar relation tuples for the ssm namespace.
+ *
+ * <p>
+ * Tuples are held in memory indexed by object and relation, by subject and by
+ * subject set object, so permission checks (including inheritance through
+ * subject sets) and tuple queries are answered without a network call. The
+ * replica is rebuilt from Zanzibar periodically and swapped in atomically;
+ * writes made through this instance are applied immediately.
+ * </p>
+ */
+final class LocalTupleEvaluator {
+
+    /**
+     * Source of every relation tuple in the namespace.
+     */
+    interface TupleSource {
+
+        /**
+         * Pass every relation tuple in the namespace to the consumer.
+         *
+         * @param consumer Consumer for each tuple.
+         * @throws IOException If the tuples could not be read completely.
+         */
+        void forEach(Consumer<Relationship> consumer) throws IOException;
+    }
+
+    /**
+     * logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(LocalTupleEvaluator.class);
+
+    /**
+     * Maximum subject set expansions followed for a check, matching Zanzibar's
+     * default read depth.
+     */
+    static final int MAX_DEPTH = 5;
+
+    /**
+     * Number of sync intervals after which a replica that failed to refresh is
+     * considered stale and checks go back to Zanzibar.
+     */
+    private static final int STALE_INTERVALS = 3;
+
+    /**
+     * An immutable relation tuple. Exactly one of subjectId or the subject set
+     * fields is set.
+     */
+    private static final class Tuple {
+        /**
+         * Object of the tuple.
+         */
+        private final String object;
+
+        /**
+         * Relation of the tuple.
+         */
+        private final String relation;
+
+        /**
+         * Subject of the tuple, or null for a subject set.
+         */
+        private final String subjectId;
+
+        /**
+         * Subject set object, or null for a subject.
+         */
+        private final String setObject;
+
+        /**
+         * Subject set relation, or null for a subject.
+         */
+        private final String setRelation;
+
+        /**
+         * Create a tuple.
+         *
+         * @param tupleObject      Object of the tuple.
+         * @param tupleRelation    Relation of the tuple.
+         * @param tupleSubjectId   Subject of the tuple. May be null or empty.
+         * @param tupleSetObject   Subject set object. May be null.
+         * @param tupleSetRelation Subject set relation. May be null.
+         */
+        Tuple(final String tupleObject, final String tupleRelation, final String tupleSubjectId,
+                final String tupleSetObject, final String tupleSetRelation) {
+            this.object = tupleObject;
+            this.relation = tupleRelation;
+            this.subjectId = emptyToNull(tupleSubjectId);
+            this.setObject = this.subjectId == null ? emptyToNull(tupleSetObject) : null;
+            this.setRelation = this.subjectId == null ? emptyToNull(tupleSetRelation) : null;
+        }
+
+        /**
+         * Create a tuple from a Zanzibar relationship.
+         *
+         * @param relationship The relationship.
+         * @return The tuple.
+         */
+        static Tuple of(final Relationship relationship) {
+            Relationship set = relationship.getSubjectSet();
+            return new Tuple(relationship.getObject(), relationship.getRelation(),
+                    relationship.getSubjectId(), set == null ? null : set.getObject(),
+                    set == null ? null : set.getRelation());
+        }
+
+        /**
+         * Check the tuple against a filter where null fields match anything.
+         *
+         * @param subject     Subject filter.
+         * @param rel         Relation filter.
+         * @param obj         Object filter.
+         * @param setObj      Subject set object filter.
+         * @param setRel      Subject set relation filter.
+         * @return True if every non-null filter field matches.
+         */
+        boolean matches(final String subject, final String rel, final String obj,
+                final String setObj, final String setRel) {
+            return (subject == null || subject.equals(subjectId))
+                    && (rel == null || rel.equals(relation))
+                    && (obj == null || obj.equals(object))
+                    && (setObj == null || setObj.equals(setObject))
+                    && (setRel == null || setRel.equals(setRelation));
+        }
+
+        /**
+         * @return The tuple as a Zanzibar relationship.
+         */
+        Relationship toRelationship() {
+            Relationship relationship = new Relationship();
+            relationship.setNamespace("ssm");
+            relationship.setObject(object);
+            relationship.setRelation(relation);
+            if (subjectId != null) {
+                relationship.setSubjectId(subjectId);
+            } else {
+                Relationship set = new Relationship();
+                set.setNamespace("ssm");
+                set.setObject(setObject);
+                set.setRelation(setRelation);
+                relationship.setSubjectSet(set);
+            }
+            return relationship;
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            if (!(other instanceof Tuple)) {
+                return false;
+            }
+            Tuple tuple = (Tuple) other;
+            return Objects.equals(object, tuple.object)
+                    && Objects.equals(relation, tuple.relation)
+                    && Objects.equals(subjectId, tuple.subjectId)
+                    && Objects.equals(setObject, tuple.setObject)
+                    && Objects.equals(setRelation, tuple.setRelation);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(object, relation, subjectId, setObject, setRelation);
+        }
+    }
+
+    /**
+     * Indexes over one replica of the tuples. Safe for concurrent reads and writes.
+     */
+    private static final class Index {
+        /**
+         * Tuples by object, then relation.
+         */
+        private final Map<String, Map<String, Set<Tuple>>> byObject = new ConcurrentHashMap<>();
+
+        /**
+         * Tuples by subject.
+         */
+        private final Map<String, Set<Tuple>> bySubject = new ConcurrentHashMap<>();
+
+        /**
+         * Subject set tuples by subject set object.
+         */
+        private final Map<String, Set<Tuple>> bySetObject = new ConcurrentHashMap<>();
+
+        /**
+         * Number of tuples held.
+         */
+        private final AtomicLong size = new AtomicLong();
+
+        /**
+         * Add a tuple to the indexes.
+         *
+         * @param tuple The tuple.
+         */
+        void add(final Tuple tuple) {
+            boolean added = byObject
+                    .computeIfAbsent(tuple.object, key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(tuple.relation, key -> ConcurrentHashMap.newKeySet())
+                    .add(tuple);
+            if (!added) {
+                return;
+            }
+            size.incrementAndGet();
+            if (tuple.subjectId != null) {
+                bySubject.computeIfAbsent(tuple.subjectId, key -> ConcurrentHashMap.newKeySet())
+                        .add(tuple);
+            } else {
+                bySetObject.computeIfAbsent(tuple.setObject, key -> ConcurrentHashMap.newKeySet())
+                        .add(tuple);
+            }
+        }
+
+        /**
+         * Remove a tuple from the indexes.
+         *
+         * @param tuple The tuple.
+         */
+        void remove(final Tuple tuple) {
+            Set<Tuple> tuples = byObject.getOrDefault(tuple.object, Collections.emptyMap())
+                    .get(tuple.relation);
+            if (tuples == null || !tuples.remove(tuple)) {
+                return;
+            }
+            size.decrementAndGet();
+            if (tuple.subjectId != null) {
+                bySubject.getOrDefault(tuple.subjectId, Collections.emptySet()).remove(tuple);
+            } else {
+                bySetObject.getOrDefault(tuple.setObject, Collections.emptySet()).remove(tuple);
+            }
+        }
+
+        /**
+         * Get the tuples with the given object and relation.
+         *
+         * @param object   The object.
+         * @param relation The relation.
+         * @return The matching tuples; empty if none.
+         */
+        Set<Tuple> get(final String object, final String relation) {
+            return byObject.getOrDefault(object, Collections.emptyMap())
+                    .getOrDefault(relation, Collections.emptySet());
+        }
+
+        /**
+         * Find tuples matching a filter where null fields match anything, using
+         * the most selective index available.
+         *
+         * @param subject Subject filter.
+         * @param rel     Relation filter.
+         * @param obj     Object filter.
+         * @param setObj  Subject set object filter.
+         * @param setRel  Subject set relation filter.
+         * @return The matching tuples.
+         */
+        List<Tuple> find(final String subject, final String rel, final String obj,
+                final String setObj, final String setRel) {
+            List<Set<Tuple>> candidates = new ArrayList<>();
+            if (obj != null) {
+                Map<String, Set<Tuple>> relations =
+                        byObject.getOrDefault(obj, Collections.emptyMap());
+                if (rel == null) {
+                    candidates.addAll(relations.values());
+                } else {
+                    candidates.add(relations.getOrDefault(rel, Collections.emptySet()));
+                }
+            } else if (subject != null) {
+                candidates.add(bySubject.getOrDefault(subject, Collections.emptySet()));
+            } else if (setObj != null) {
+                candidates.add(bySetObject.getOrDefault(setObj, Collections.emptySet()));
+            } else {
+                for (Map<String, Set<Tuple>> relations : byObject.values()) {
+                    candidates.addAll(relations.values());
+                }
+            }
+
+            List<Tuple> matches = new ArrayList<>();
+            for (Set<Tuple> tuples : candidates) {
+                for (Tuple tuple : tuples) {
+                    if (tuple.matches(subject, rel, obj, setObj, setRel)) {
+                        matches.add(tuple);
+                    }
+                }
+            }
+            return matches;
+        }
+    }
+
+    /**
+     * Source the replica is rebuilt from.
+     */
+    private final TupleSource source;
+
+    /**
+     * Milliseconds between rebuilds of the replica.
+     */
+    private final long syncIntervalMs;
+
+    /**
+     * The current replica; null until the first rebuild completes.
+     */
+    private final AtomicReference<Index> index = new AtomicReference<>();
+
+    /**
+     * Time in milliseconds of the last successful rebuild.
+     */
+    private final AtomicLong lastSync = new AtomicLong();
+
+    /**
+     * Ensures only one rebuild runs at a time.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * Guards local writes against a replica being swapped in.
+     */
+    private final Object writeLock = new Object();
+
+    /**
+     * Local writes made while a rebuild is running, replayed onto the new
+     * replica before it is swapped in. Null when no rebuild is running.
+     */
+    private List<Consumer<Index>> pendingWrites;
+
+    /**
+     * Runs the periodic rebuilds.
+     */
+    private final ScheduledExecutorService scheduler; //NOPMD
+
+    /**
+     * Create the evaluator and start replicating tuples in the background.
+     *
+     * @param tupleSource  Source of every relation tuple in the namespace.
+     * @param syncInterval Milliseconds between rebuilds of the replica.
+     */
+    LocalTupleEvaluator(final TupleSource tupleSource, final long syncInterval) {
+        this.source = tupleSource;
+        this.syncIntervalMs = syncInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "zanzibar-replica"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sync, 0, syncInterval, //NOPMD
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Convert an empty string to null.
+     *
+     * @param value The string.
+     * @return The string, or null if it was null or empty.
+     */
+    private static String emptyToNull(final String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Rebuild the replica from the source and swap it in. On failure the
+     * current replica is kept.
+     */
+    void sync() {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                pendingWrites = new ArrayList<>();
+            }
+
+            Index fresh = new Index();
+            try {
+                source.forEach(relationship -> fresh.add(Tuple.of(relationship)));
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Unable to replicate Zanzibar relation tuples; keeping current replica",
+                        e);
+                synchronized (writeLock) {
+                    pendingWrites = null; //NOPMD
+                }
+                return;
+            }
+
+            synchronized (writeLock) {
+                for (Consumer<Index> write : pendingWrites) {
+                    write.accept(fresh);
+                }
+                pendingWrites = null; //NOPMD
+                index.set(fresh);
+                lastSync.set(System.currentTimeMillis());
+            }
+            LOG.debug("Replicated " + fresh.size.get() + " Zanzibar relation tuples");
+        }
+    }
+
+    /**
+     * Apply a local write to the current replica and to any rebuild in progress.
+     *
+     * @param write The write.
+     */
+    private void apply(final Consumer<Index> write) {
+        synchronized (writeLock) {
+            Index current = index.get();
+            if (current != null) {
+                write.accept(current);
+            }
+            if (pendingWrites != null) {
+                pendingWrites.add(write);
+            }
+        }
+    }
+
+    /**
+     * @return True if a replica is loaded and was refreshed recently enough to answer locally.
+     */
+    boolean isReady() {
+        return index.get() != null
+                && System.currentTimeMillis() - lastSync.get() < STALE_INTERVALS * syncIntervalMs;
+    }
+
+    /**
+     * Stop the periodic rebuilds. The current replica can still be read.
+     */
+    void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Record a tuple written to Zanzibar.
+     *
+     * @param subject     Subject of the tuple. May be null.
+     * @param relation    Relation of the tuple.
+     * @param object      Object of the tuple.
+     * @param setObject   Subject set object. May be null.
+     * @param setRelation Subject set relation. May be null.
+     */
+    void add(final String subject, final String relation, final String object,
+            final String setObject, final String setRelation) {
+        Tuple tuple = new Tuple(object, relation, subject, setObject, setRelation);
+        apply(current -> current.add(tuple));
+    }
+
+    /**
+     * Record tuples deleted from Zanzibar. Null fields match anything, as they do
+     * for Zanzibar's delete.
+     *
+     * @param subject     Subject filter.
+     * @param relation    Relation filter.
+     * @param object      Object filter.
+     * @param setObject   Subject set object filter.
+     * @param setRelation Subject set relation filter.
+     */
+    void remove(final String subject, final String relation, final String object,
+            final String setObject, final String setRelation) {
+        apply(current -> {
+            for (Tuple tuple : current.find(emptyToNull(subject), relation, object,
+                    emptyToNull(setObject), emptyToNull(setRelation))) {
+                current.remove(tuple);
+            }
+        });
+    }
+
+    /**
+     * Check whether the subject has the relation on the object, directly or
+     * through subject sets.
+     *
+     * @param subject  The subject.
+     * @param relation The relation.
+     * @param object   The object.
+     * @return True if the relation holds.
+     */
+    boolean check(final String subject, final String relation, final String object) {
+        Index current = index.get();
+        Set<String> visited = new HashSet<>();
+        List<String[]> level = new ArrayList<>();
+        level.add(new String[] {object, relation});
+        visited.add(object + "#" + relation);
+
+        for (int depth = 0; depth < MAX_DEPTH && !level.isEmpty(); depth++) {
+            List<String[]> next = new ArrayList<>(); //NOPMD
+            for (String[] node : level) {
+                for (Tuple tuple : current.get(node[0], node[1])) {
+                    if (tuple.subjectId != null) {
+                        if (tuple.subjectId.equals(subject)) {
+                            return true;
+                        }
+                    } else if (visited.add(tuple.setObject + "#" + tuple.setRelation)) {
+                        next.add(new String[] {tuple.setObject, tuple.setRelation}); //NOPMD
+                    }
+                }
+            }
+            level = next;
+        }
+        return false;
+    }
+
+    /**
+     * Get all tuples matching a filter where null fields match anything.
+     *
+     * @param subject     Subject filter.
+     * @param relation    Relation filter.
+     * @param object      Object filter.
+     * @param setObject   Subject set object filter.
+     * @param setRelation Subject set relation filter.
+     * @return The matching tuples as Zanzibar relationships.
+     */
+    List<Relationship> query(final String subject, final String relation, final String object,
+            final String setObject, final String setRelation) {
+        List<Relationship> relationships = new ArrayList<>();
+        for (Tuple tuple : index.get().find(emptyToNull(subject), relation, object,
+                emptyToNull(setObject), emptyToNull(setRelation))) {
+            relationships.add(tuple.toRelationship());
+        }
+        return relationships;
+    }
+}
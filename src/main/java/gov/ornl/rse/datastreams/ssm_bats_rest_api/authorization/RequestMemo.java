@@ -0,0 +1,81 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Memo of authorization answers that lives for a single HTTP request, so a
+ * request asking the same question several times only asks Zanzibar once.
+ * Outside of a request, such as in background jobs, nothing is memoized.
+ */
+final class RequestMemo {
+
+    /**
+     * Name of the request attribute holding the memo.
+     */
+    private static final String ATTRIBUTE = RequestMemo.class.getName();
+
+    /**
+     * Static methods only.
+     */
+    private RequestMemo() {
+    }
+
+    /**
+     * Get the memoized value for a key, computing and remembering it for the rest
+     * of the current request if absent.
+     *
+     * @param <T>      Type of the value.
+     * @param key      The key identifying the question.
+     * @param supplier Computes the value when it is not memoized.
+     * @return The memoized or computed value. May be null.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T get(final String key, final Supplier<T> supplier) {
+        Map<String, Optional<Object>> memo = current();
+        if (memo == null) {
+            return supplier.get();
+        }
+        Optional<Object> value = memo.get(key);
+        if (value == null) {
+            value = Optional.ofNullable(supplier.get());
+            memo.put(key, value);
+        }
+        return (T) value.orElse(null);
+    }
+
+    /**
+     * Forget everything memoized for the current request, after a write that may
+     * have changed the answers.
+     */
+    static void clear() {
+        Map<String, Optional<Object>> memo = current();
+        if (memo != null) {
+            memo.clear();
+        }
+    }
+
+    /**
+     * Get the current request's memo, creating it on first use.
+     *
+     * @return The memo, or null when not handling a request.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Optional<Object>> current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Object memo = attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (memo == null) {
+            memo = new ConcurrentHashMap<String, Optional<Object>>();
+            attributes.setAttribute(ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+        }
+        return (Map<String, Optional<Object>>) memo;
+    }
+}
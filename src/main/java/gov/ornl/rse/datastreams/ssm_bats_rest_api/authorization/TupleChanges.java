@@ -0,0 +1,173 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A set of relation tuple inserts and deletes to send to Zanzibar as one request.
+ */
+public class TupleChanges {
+
+    /**
+     * A single insert or delete of a relation tuple. Exactly one of subject or
+     * the subject set fields is set.
+     */
+    public static final class Change {
+        /**
+         * True to insert the tuple, false to delete it.
+         */
+        private final boolean insert;
+
+        /**
+         * The user the permission is granted to. May be null.
+         */
+        private final String subject;
+
+        /**
+         * The Zanzibar relation representing the permission.
+         */
+        private final String permission;
+
+        /**
+         * The object the permission is granted over.
+         */
+        private final String object;
+
+        /**
+         * The object definition for the subject set. May be null.
+         */
+        private final String setObject;
+
+        /**
+         * The relation definition for the subject set. May be null.
+         */
+        private final String setPermission;
+
+        /**
+         * Create a change.
+         *
+         * @param isInsert         True to insert the tuple, false to delete it.
+         * @param newSubject       The user the permission is granted to. May be null.
+         * @param newPermission    The Zanzibar relation representing the permission.
+         * @param newObject        The object the permission is granted over.
+         * @param newSetObject     The object definition for the subject set. May be null.
+         * @param newSetPermission The relation definition for the subject set. May be null.
+         */
+        Change(final boolean isInsert, final String newSubject, final String newPermission,
+                final String newObject, final String newSetObject, final String newSetPermission) {
+            this.insert = isInsert;
+            this.subject = newSubject;
+            this.permission = newPermission;
+            this.object = newObject;
+            this.setObject = newSetObject;
+            this.setPermission = newSetPermission;
+        }
+
+        /**
+         * @return True to insert the tuple, false to delete it.
+         */
+        public boolean isInsert() {
+            return insert;
+        }
+
+        /**
+         * @return The user the permission is granted to. May be null.
+         */
+        public String getSubject() {
+            return subject;
+        }
+
+        /**
+         * @return The Zanzibar relation representing the permission.
+         */
+        public String getPermission() {
+            return permission;
+        }
+
+        /**
+         * @return The object the permission is granted over.
+         */
+        public String getObject() {
+            return object;
+        }
+
+        /**
+         * @return The object definition for the subject set. May be null.
+         */
+        public String getSetObject() {
+            return setObject;
+        }
+
+        /**
+         * @return The relation definition for the subject set. May be null.
+         */
+        public String getSetPermission() {
+            return setPermission;
+        }
+    }
+
+    /**
+     * Changes in the order they were added.
+     */
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * Add a tuple insert.
+     *
+     * @param subject       The user to grant the permission to. Null if only a
+     *                      subject set will be used.
+     * @param permission    The Zanzibar relation representing the permission to grant.
+     * @param object        The data to grant the permission over.
+     * @param setObject     The object definition for the subject set. Null if a
+     *                      subject set will not be used.
+     * @param setPermission The relation definition for the subject set. Null if a
+     *                      subject set will not be used.
+     * @return These changes, for chaining.
+     */
+    public TupleChanges insert(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission) {
+        changes.add(new Change(true, subject, permission, object, setObject, setPermission));
+        return this;
+    }
+
+    /**
+     * Add a tuple delete. The tuple must be given exactly.
+     *
+     * @param subject       The user the permission is granted to. Null if only a
+     *                      subject set is used.
+     * @param permission    The Zanzibar relation representing the permission granted.
+     * @param object        The data the permission is granted over.
+     * @param setObject     The object definition for the subject set. Null if a
+     *                      subject set is not used.
+     * @param setPermission The relation definition for the subject set. Null if a
+     *                      subject set is not used.
+     * @return These changes, for chaining.
+     */
+    public TupleChanges delete(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission) {
+        changes.add(new Change(false, subject, permission, object, setObject, setPermission));
+        return this;
+    }
+
+    /**
+     * @return The changes in the order they were added.
+     */
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @return True if there are no changes.
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return The number of changes.
+     */
+    public int size() {
+        return changes.size();
+    }
+}
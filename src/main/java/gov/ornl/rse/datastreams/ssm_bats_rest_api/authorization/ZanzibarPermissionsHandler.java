@@ -1,34 +1,65 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
 
-import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-
-import org.apache.http.ParseException;
-import org.apache.http.client.HttpClient;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPatch;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.SSMBatsRestApiApplication;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.UniquelyIdentifiable;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.ExpiringCache;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.HttpClientUtils;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 
 /**
  * Handler for all API calls to Zanzibar.
@@ -36,7 +67,7 @@ import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.UniquelyIdentifiable;
  * @author Robert Smith
  *
  */
-public class ZanzibarPermissionsHandler {
+public class ZanzibarPermissionsHandler implements Closeable {
 
     /**
      * Configuration information from application.properties.
@@ -50,12 +81,279 @@ public class ZanzibarPermissionsHandler {
         .getLogger(SSMBatsRestApiApplication.class);
 
     /**
-     * The default constructor.
+     * Shared JSON mapper for Zanzibar replies.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Name of the permission decision cache metrics.
+     */
+    private static final String METRIC_NAME = "ssm.zanzibar.decisions";
+
+    /**
+     * Separator between the subject, relation and object in decision cache keys.
+     */
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    /**
+     * Recent permission check results keyed by subject, relation and object.
+     */
+    private final ExpiringCache<String, Boolean> decisions;
+
+    /**
+     * Recent object lists keyed by subject and relation.
+     */
+    private final ExpiringCache<String, Set<String>> objectLists;
+
+    /**
+     * Pooled keep-alive client shared by all Zanzibar read and write calls.
+     */
+    private final CloseableHttpClient client;
+
+    /**
+     * In-process replica answering checks and queries; null unless enabled.
+     */
+    private final LocalTupleEvaluator localEvaluator;
+
+    /**
+     * Bounded pool running the permission checks of batch requests.
+     */
+    private final ExecutorService checkExecutor; //NOPMD
+
+    /**
+     * Registry the decision cache and request latency metrics are registered on.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Latency timers of Zanzibar calls, built once per endpoint and outcome.
+     */
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor keeping its metrics on a registry of its own.
      *
      * @param configuration Application-wide configuration object.
      */
     public ZanzibarPermissionsHandler(final ApplicationConfig configuration) {
+        this(configuration, new SimpleMeterRegistry());
+    }
+
+    /**
+     * The default constructor.
+     *
+     * @param configuration    Application-wide configuration object.
+     * @param newMeterRegistry Registry to register the handler's metrics on.
+     */
+    public ZanzibarPermissionsHandler(final ApplicationConfig configuration,
+            final MeterRegistry newMeterRegistry) {
         config = configuration;
+        meterRegistry = newMeterRegistry;
+        client = HttpClientUtils.createPooledClient(
+            config.getZanzibar().getMaxConnections(),
+            config.getZanzibar().getConnectTimeout(),
+            config.getZanzibar().getReadTimeout()
+        );
+        if (config.getZanzibar().isLocalEvaluation()) {
+            localEvaluator = new LocalTupleEvaluator(
+                consumer -> forEachTuple(null, null, null, null, null, consumer),
+                config.getZanzibar().getSyncInterval()
+            );
+        } else {
+            localEvaluator = null;
+        }
+        int parallelism = config.getZanzibar().getCheckParallelism();
+        checkExecutor = Executors.newFixedThreadPool(parallelism, runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "zanzibar-check"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+        decisions = new ExpiringCache<>(
+            config.getZanzibar().getCacheSize(),
+            config.getZanzibar().getAllowTtl()
+        );
+        objectLists = new ExpiringCache<>(
+            config.getZanzibar().getCacheSize(),
+            config.getZanzibar().getAllowTtl()
+        );
+
+        FunctionCounter.builder(METRIC_NAME + ".hits", decisions, ExpiringCache::getHits)
+            .description("Permission checks answered from the decision cache")
+            .register(meterRegistry);
+        FunctionCounter.builder(METRIC_NAME + ".misses", decisions, ExpiringCache::getMisses)
+            .description("Permission checks sent to Zanzibar")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".hit.ratio", decisions, cache -> {
+            double lookups = cache.getHits() + cache.getMisses();
+            return lookups == 0 ? 0 : cache.getHits() / lookups;
+        })
+            .description("Fraction of permission checks answered from the decision cache")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Stop the batch check pool and the local replica, then close the client.
+     *
+     * @throws IOException If the client could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        checkExecutor.shutdownNow();
+        if (localEvaluator != null) {
+            localEvaluator.close();
+        }
+        client.close();
+    }
+
+    /**
+     * @return True if checks and queries can be answered by the local replica.
+     */
+    private boolean useLocal() {
+        return localEvaluator != null && localEvaluator.isReady();
+    }
+
+    /**
+     * Create the decision cache key for a permission check.
+     *
+     * @param subject    The subject of the check.
+     * @param permission The relation of the check.
+     * @param object     The object of the check.
+     * @return Key for the decision cache.
+     */
+    private static String decisionKey(final String subject, final String permission,
+            final String object) {
+        return subject + KEY_SEPARATOR + permission + KEY_SEPARATOR + object;
+    }
+
+    /**
+     * Drop cached decisions that a relation tuple write may have changed. Writes
+     * for a subject only change that subject's decisions, but a subject set write
+     * can change anyone's, so those clear the whole cache.
+     *
+     * @param subject   The subject of the written tuple. May be null.
+     * @param setObject The subject set object of the written tuple. May be null.
+     */
+    private void invalidateDecisions(final String subject, final String setObject) {
+        RequestMemo.clear();
+        if (subject == null || subject.isEmpty() || setObject != null) {
+            decisions.clear();
+            objectLists.clear();
+            return;
+        }
+        String prefix = subject + KEY_SEPARATOR;
+        decisions.invalidateIf(key -> key.startsWith(prefix));
+        objectLists.invalidateIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Get every object over which the given subject has the given relation. The
+     * subject's own tuples are read first, then each subject set they reach is
+     * followed to the objects inheriting from it, one level at a time, with the
+     * reads of a level sent concurrently. Results are reused for the allow TTL.
+     *
+     * @param subject    The subject to list objects for.
+     * @param permission The relation the subject must have.
+     * @return The objects over which subject has the relation.
+     * @throws IOException If any tuples could not be read.
+     */
+    public Set<String> listObjects(final String subject, final String permission)
+            throws IOException {
+        String key = subject + KEY_SEPARATOR + permission;
+        Set<String> cached = objectLists.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Set<String> objects = new HashSet<>();
+        Set<String> visited = new HashSet<>();
+        List<Relationship> level = readTuples(subject, null, null, null);
+        for (int depth = 0; depth < LocalTupleEvaluator.MAX_DEPTH && !level.isEmpty(); depth++) {
+
+            // Record this level's matches and the subject sets it reaches.
+            List<CompletableFuture<List<Relationship>>> reads = new ArrayList<>(); //NOPMD
+            for (Relationship tuple : level) {
+                if (permission.equals(tuple.getRelation())) {
+                    objects.add(tuple.getObject());
+                }
+                if (visited.add(tuple.getObject() + KEY_SEPARATOR + tuple.getRelation())) {
+                    reads.add(readTuplesAsync(null, null, tuple.getObject(),
+                            tuple.getRelation()));
+                }
+            }
+
+            // Everything inheriting from those subject sets forms the next level.
+            level = joinReads(reads);
+        }
+
+        Set<String> result = Collections.unmodifiableSet(objects);
+        objectLists.put(key, result);
+        return result;
+    }
+
+    /**
+     * Read every tuple on an object, or granted to a subject or to a subject set,
+     * from the local replica when it is ready.
+     *
+     * @param subject       The subject the tuples are granted to. May be null.
+     * @param object        The object the tuples are granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @return The matching tuples.
+     * @throws IOException If the tuples could not be read.
+     */
+    private List<Relationship> readTuples(final String subject, final String object,
+            final String setObject, final String setPermission) throws IOException {
+        if (useLocal()) {
+            return localEvaluator.query(subject, null, object, setObject, setPermission);
+        }
+        List<Relationship> tuples = new ArrayList<>();
+        forEachTuple(subject, null, object, setObject, setPermission, tuples::add);
+        return tuples;
+    }
+
+    /**
+     * Read tuples as readTuples does, on the bounded check pool.
+     *
+     * @param subject       The subject the tuples are granted to. May be null.
+     * @param object        The object the tuples are granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @return The pending read, failing with UncheckedIOException.
+     */
+    private CompletableFuture<List<Relationship>> readTuplesAsync(final String subject,
+            final String object, final String setObject, final String setPermission) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return readTuples(subject, object, setObject, setPermission);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, checkExecutor);
+    }
+
+    /**
+     * Wait for concurrent tuple reads and combine their results.
+     *
+     * @param reads The pending reads.
+     * @return Every tuple read, in the order of the reads.
+     * @throws IOException If any read failed.
+     */
+    private static List<Relationship> joinReads(
+            final List<CompletableFuture<List<Relationship>>> reads) throws IOException {
+        List<Relationship> tuples = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<Relationship>> read : reads) {
+                tuples.addAll(read.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+        return tuples;
     }
 
     /**
@@ -68,89 +366,193 @@ public class ZanzibarPermissionsHandler {
      */
     public boolean checkPermission(final String subject, final String permission,
             final String object) {
+        String key = decisionKey(subject, permission, object);
+        return RequestMemo.get(key, () -> evaluatePermission(subject, permission, object, key));
+    }
 
-        // Prefix for every permissions check API call
-        String urlString = config.getZanzibarReadHost()
-                + "/relation-tuples/check?namespace=ssm&subject_id=" + subject + "&relation="
-                + permission + "&object=" + object;
-
-        ObjectMapper mapper = new ObjectMapper();
-
-        // Get the permissions check for this subject.
-        try {
-            URL url = new URL(urlString);
+    /**
+     * Answer a permission check from the local replica, the decision cache or
+     * Zanzibar, in that order.
+     *
+     * @param subject    The subject to check the permission for.
+     * @param permission The permission to check for.
+     * @param object     The object to check if subject has permission for.
+     * @param key        The decision cache key for the check.
+     * @return True if subject has the requested permission. False otherwise.
+     */
+    private boolean evaluatePermission(final String subject, final String permission,
+            final String object, final String key) {
 
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
+        if (useLocal()) {
+            return localEvaluator.check(subject, permission, object);
+        }
 
-            // The API call reply as a string.
-            StringBuilder reply = new StringBuilder("");
+        Boolean cached = decisions.get(key);
+        if (cached != null) {
+            return cached;
+        }
 
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream()))) {
+        return checkAndCache(subject, permission, object, key);
+    }
 
-                // Read the results into the string
-                String line = reader.readLine();
+    /**
+     * Check a permission with Zanzibar and cache the decision.
+     *
+     * @param subject    The subject to check the permission for.
+     * @param permission The permission to check for.
+     * @param object     The object to check if subject has permission for.
+     * @param key        Decision cache key for the check.
+     * @return True if subject has the requested permission. False otherwise.
+     */
+    private boolean checkAndCache(final String subject, final String permission,
+            final String object, final String key) {
+        try {
+            boolean allowed = requestPermissionCheck(subject, permission, object);
+            ApplicationConfig.Zanzibar settings = config.getZanzibar();
+            decisions.put(key, allowed, allowed ? settings.getAllowTtl() : settings.getDenyTtl());
+            return allowed;
+        } catch (IOException e) {
+            // Errors are not cached so the next check asks Zanzibar again
+            LOG.error("Unable to check permission " + permission + " on " + object, e);
+            return false;
+        }
+    }
 
-                while (line != null) {
-                    reply.append(line);
-                    line = reader.readLine();
+    /**
+     * Check the same permission for many objects at once. Repeated objects are
+     * checked once, cached decisions are reused, and the remaining checks are
+     * sent to Zanzibar concurrently with bounded parallelism.
+     *
+     * @param subject    The subject to check the permission for.
+     * @param permission The permission to check for.
+     * @param objects    The objects to check if subject has permission for.
+     * @return The objects for which subject has the requested permission.
+     */
+    public Set<String> checkPermissions(final String subject, final String permission,
+            final Collection<String> objects) {
+
+        Set<String> allowed = ConcurrentHashMap.newKeySet();
+        if (useLocal()) {
+            for (String object : objects) {
+                if (localEvaluator.check(subject, permission, object)) {
+                    allowed.add(object);
                 }
             }
+            return allowed;
+        }
 
-            // Parse the reply as json.
-            JsonNode root = mapper.readTree(reply.toString());
-
-            // Check if the reply confirmed the action is allowed and return
-            if (root.get("allowed").asBoolean()) {
-                return true;
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+
+        for (String object : new LinkedHashSet<>(objects)) {
+            String key = decisionKey(subject, permission, object);
+            Boolean cached = decisions.get(key);
+            if (cached == null) {
+                pending.add(CompletableFuture.runAsync(() -> {
+                    if (checkAndCache(subject, permission, object, key)) {
+                        allowed.add(object);
+                    }
+                }, checkExecutor));
+            } else if (cached) {
+                allowed.add(object);
             }
-
-        } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
         }
 
-        return false;
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        return allowed;
     }
 
     /**
-     * Download an object from the Fuseki API.
+     * Ask Zanzibar whether the given subject has the requested permission.
      *
-     * @param urlPrefix    The Fuseki server's url.
-     * @param identifiable The object to download.
-     * @return A string with the contents of identifiable as downloaded from Fuseki.
+     * @param subject    The subject to check the permission for.
+     * @param permission The permission to check for.
+     * @param object     The object to check if subject has permission for.
+     * @return True if subject has the requested permission. False otherwise.
+     * @throws IOException If Zanzibar could not be reached or replied with an error.
      */
-    private String downloadUUID(final String urlPrefix, final UniquelyIdentifiable identifiable) {
-
-        // Get the permissions check for this subject.
-        try {
-            URL url = new URL(urlPrefix + identifiable.getUUID());
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(conn.getInputStream()))) {
+    private boolean requestPermissionCheck(final String subject, final String permission,
+            final String object) throws IOException {
 
-                // The API call reply as a string.
-                StringBuilder reply = new StringBuilder("");
+        HttpGet request = new HttpGet(config.getZanzibarReadHost() + "/relation-tuples/check");
+        request.setURI(createRequestURI(request.getURI(), subject, permission, object, null,
+                null, null));
 
-                // Read the results into the string
-                String line = reader.readLine();
+        return execute("check", request, response -> {
+            int status = response.getStatusLine().getStatusCode();
 
-                while (line != null) {
-                    reply.append(line);
-                    line = reader.readLine();
-                }
+            // Zanzibar replies forbidden when the check is denied
+            if (status == HttpStatus.SC_FORBIDDEN) {
+                return false;
+            }
+            if (status != HttpStatus.SC_OK) {
+                throw new HttpResponseException(status, "Zanzibar permission check failed");
+            }
 
-                return reply.toString();
+            // Check if the reply confirmed the action is allowed
+            try (InputStream content = response.getEntity().getContent()) {
+                return MAPPER.readTree(content).path("allowed").asBoolean();
             }
+        });
+    }
+
+    /**
+     * Send a request to Zanzibar over the shared client, timing it per endpoint.
+     *
+     * @param <T>      Type of the handled response.
+     * @param endpoint Name of the Zanzibar endpoint for latency metrics.
+     * @param request  The request to send.
+     * @param handler  Handler reading the response; the connection is released after.
+     * @return The handled response.
+     * @throws IOException If Zanzibar could not be reached or the handler failed.
+     */
+    private <T> T execute(final String endpoint, final HttpUriRequest request,
+            final ResponseHandler<? extends T> handler) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return client.execute(request, handler);
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            outcome = "error";
+            throw e;
+        } finally {
+            sample.stop(requestTimer(endpoint, outcome));
         }
+    }
 
-        // In case of error, return an empty string.
-        return "";
+    /**
+     * Get the latency timer of a Zanzibar endpoint and outcome, building it on
+     * first use.
+     *
+     * @param endpoint Name of the Zanzibar endpoint.
+     * @param outcome  "success" or "error".
+     * @return The timer.
+     */
+    private Timer requestTimer(final String endpoint, final String outcome) {
+        return requestTimers.computeIfAbsent(endpoint + KEY_SEPARATOR + outcome,
+            key -> Timer.builder("ssm.zanzibar.requests")
+                .description("Latency of Zanzibar API calls")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    /**
+     * Send a relation tuple write to Zanzibar, raising on an unsuccessful status.
+     *
+     * @param endpoint Name of the Zanzibar endpoint for latency metrics.
+     * @param request  The write request to send.
+     * @throws IOException If Zanzibar could not be reached or rejected the write.
+     */
+    private void executeWrite(final String endpoint, final HttpUriRequest request)
+            throws IOException {
+        execute(endpoint, request, response -> {
+            int status = response.getStatusLine().getStatusCode();
+            EntityUtils.consume(response.getEntity());
+            if (status >= HttpStatus.SC_MULTIPLE_CHOICES) {
+                throw new HttpResponseException(status, "Zanzibar " + endpoint + " failed");
+            }
+            return null;
+        });
     }
 
     /**
@@ -202,9 +604,7 @@ public class ZanzibarPermissionsHandler {
         try {
             return builder.build();
         } catch (URISyntaxException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-            return null;
+            throw new IllegalArgumentException("Invalid Zanzibar request URI: " + uri, e);
         }
     }
 
@@ -248,15 +648,17 @@ public class ZanzibarPermissionsHandler {
         payload.append(" }");
 
         // Send it to the API.
-        HttpClient httpclient = HttpClients.createDefault();
         HttpPut request = new HttpPut(config.getZanzibarWriteHost() + "/admin/relation-tuples");
         try {
-            request.setEntity(new StringEntity(payload.toString()));
-            httpclient.execute(request);
+            request.setEntity(new StringEntity(payload.toString(), ContentType.APPLICATION_JSON));
+            executeWrite("create", request);
+            if (localEvaluator != null) {
+                localEvaluator.add(subject, permission, object, setObject, setPermission);
+            }
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            LOG.error("Unable to create Zanzibar permission: " + payload, e);
         }
+        invalidateDecisions(subject, setObject);
 
     }
 
@@ -275,7 +677,6 @@ public class ZanzibarPermissionsHandler {
             final String setObject, final String setPermission) {
 
         // Setup a request
-        HttpClient httpclient = HttpClients.createDefault();
         HttpDelete request = new HttpDelete(
                 config.getZanzibarWriteHost() + "/admin/relation-tuples");
         LOG.info(createRequestURI(request.getURI(), subject, permission, object, setObject,
@@ -285,12 +686,220 @@ public class ZanzibarPermissionsHandler {
 
         // Send the request
         try {
-            httpclient.execute(request);
+            executeWrite("delete", request);
+            if (localEvaluator != null) {
+                localEvaluator.remove(subject, permission, object, setObject, setPermission);
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to delete Zanzibar permission: " + request.getURI(), e);
+        }
+        invalidateDecisions(subject, setObject);
+
+    }
+
+    /**
+     * Apply a set of tuple inserts and deletes in a single Zanzibar request.
+     *
+     * @param changes The inserts and deletes to apply, in order.
+     * @return True if Zanzibar accepted the changes. False otherwise.
+     */
+    public boolean applyChanges(final TupleChanges changes) {
+        if (changes.isEmpty()) {
+            return true;
+        }
+
+        // Create the JSON representation of each action.
+        ArrayNode payload = MAPPER.createArrayNode();
+        for (TupleChanges.Change change : changes.getChanges()) {
+            ObjectNode tuple = payload.addObject()
+                    .put("action", change.isInsert() ? "insert" : "delete")
+                    .putObject("relation_tuple")
+                    .put("namespace", "ssm")
+                    .put("object", change.getObject())
+                    .put("relation", change.getPermission());
+            if (change.getSubject() != null) {
+                tuple.put("subject_id", change.getSubject());
+            } else {
+                tuple.putObject("subject_set")
+                        .put("namespace", "ssm")
+                        .put("object", change.getSetObject())
+                        .put("relation", change.getSetPermission());
+            }
+        }
+
+        // Send them to the API.
+        HttpPatch request = new HttpPatch(
+                config.getZanzibarWriteHost() + "/admin/relation-tuples");
+        boolean applied = false;
+        try {
+            request.setEntity(new StringEntity(MAPPER.writeValueAsString(payload),
+                    ContentType.APPLICATION_JSON));
+            executeWrite("patch", request);
+            applied = true;
+            if (localEvaluator != null) {
+                for (TupleChanges.Change change : changes.getChanges()) {
+                    applyLocally(change);
+                }
+            }
         } catch (IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+            LOG.error("Unable to apply " + payload.size() + " Zanzibar permission changes", e);
+        }
+        for (TupleChanges.Change change : changes.getChanges()) {
+            invalidateDecisions(change.getSubject(), change.getSetObject());
+        }
+        return applied;
+    }
+
+    /**
+     * Delete every permission matching the given criteria. Matching tuples are read
+     * lazily a few pages at a time and removed by concurrent batch writes, so only
+     * one round of batches is held in memory.
+     *
+     * @param subject       The user the permission is granted to. May be null.
+     * @param permission    The Zanzibar relation representing the permission
+     *                      granted. May be null.
+     * @param object        The object the permission is granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @param progress      Receives the running total of deleted tuples after each
+     *                      round.
+     * @return The number of tuples deleted
+     * @throws IOException If the tuples could not be read or a round of deletes
+     *                     made no progress.
+     */
+    public long deleteMatching(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission,
+            final LongConsumer progress) throws IOException {
+        long deleted = 0;
+
+        while (true) {
+
+            // Deleted tuples drop out of the next query, so always read from the start.
+            List<TupleChanges> batches;
+            try (Stream<Relationship> tuples = streamPermission(subject, permission, object,
+                    setObject, setPermission)) {
+                batches = nextDeleteBatches(tuples.iterator());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (batches.isEmpty()) {
+                return deleted;
+            }
+
+            long round = applyConcurrently(batches);
+            if (round == 0) {
+                throw new IOException("Unable to delete Zanzibar permissions after "
+                        + deleted + " tuples");
+            }
+            deleted += round;
+            progress.accept(deleted);
+        }
+    }
+
+    /**
+     * Delete every tuple on the given objects and every tuple inheriting from
+     * one of their relations. Tuples are read for many objects at once and
+     * deleted in concurrent batches, so whole collections of objects can be
+     * removed without a round trip per tuple.
+     *
+     * @param objects   The objects whose tuples are deleted.
+     * @param relations The relations of the objects that other tuples may
+     *                  inherit through a subject set.
+     * @param progress  Receives the running total of deleted tuples.
+     * @return The number of tuples deleted
+     * @throws IOException If any tuples could not be read or deleted.
+     */
+    public long deleteObjects(final Collection<String> objects,
+            final Collection<String> relations, final LongConsumer progress) throws IOException {
+        List<String> remaining = new ArrayList<>(objects);
+        int chunkSize = config.getZanzibar().getDeleteBatchSize();
+        long deleted = 0;
+
+        for (int start = 0; start < remaining.size(); start += chunkSize) {
+
+            // Read the tuples on, and inheriting from, a chunk of objects at once.
+            List<CompletableFuture<List<Relationship>>> reads = new ArrayList<>(); //NOPMD
+            for (String object : remaining.subList(start,
+                    Math.min(remaining.size(), start + chunkSize))) {
+                reads.add(readTuplesAsync(null, object, null, null));
+                for (String relation : relations) {
+                    reads.add(readTuplesAsync(null, null, object, relation));
+                }
+            }
+
+            // A tuple between two of the objects is read twice but deleted once.
+            Map<String, Relationship> tuples = new LinkedHashMap<>(); //NOPMD
+            for (Relationship tuple : joinReads(reads)) {
+                tuples.put(tupleKey(tuple), tuple);
+            }
+
+            Iterator<Relationship> pending = tuples.values().iterator();
+            while (pending.hasNext()) {
+                List<TupleChanges> batches = nextDeleteBatches(pending);
+                long round = applyConcurrently(batches);
+                deleted += round;
+                progress.accept(deleted);
+                if (round < batches.stream().mapToInt(TupleChanges::size).sum()) {
+                    throw new IOException("Unable to delete Zanzibar permissions after "
+                            + deleted + " tuples");
+                }
+            }
         }
+        return deleted;
+    }
 
+    /**
+     * Apply batches of changes concurrently on the bounded check pool and wait
+     * for all of them. The calling request's memo is cleared afterwards, since
+     * the pool threads applying the changes have no request to clear it for.
+     *
+     * @param batches The batches to apply.
+     * @return The number of changes in the batches that were applied
+     */
+    private long applyConcurrently(final List<TupleChanges> batches) {
+        List<CompletableFuture<Boolean>> writes = new ArrayList<>();
+        for (TupleChanges batch : batches) {
+            writes.add(CompletableFuture.supplyAsync(() -> applyChanges(batch), //NOPMD
+                    checkExecutor));
+        }
+        long applied = 0;
+        try {
+            for (int i = 0; i < batches.size(); i++) {
+                if (writes.get(i).join()) {
+                    applied += batches.get(i).size();
+                }
+            }
+        } finally {
+            RequestMemo.clear();
+        }
+        return applied;
+    }
+
+    /**
+     * @param tuple A relation tuple.
+     * @return A string uniquely identifying the tuple.
+     */
+    private static String tupleKey(final Relationship tuple) {
+        Relationship set = tuple.getSubjectSet();
+        String subject = set == null ? tuple.getSubjectId()
+                : set.getObject() + "#" + set.getRelation();
+        return tuple.getObject() + KEY_SEPARATOR + tuple.getRelation() + KEY_SEPARATOR + subject;
+    }
+
+    /**
+     * Mirror a single change written to Zanzibar into the local replica.
+     *
+     * @param change The insert or delete that was applied.
+     */
+    private void applyLocally(final TupleChanges.Change change) {
+        if (change.isInsert()) {
+            localEvaluator.add(change.getSubject(), change.getPermission(), change.getObject(),
+                    change.getSetObject(), change.getSetPermission());
+        } else {
+            localEvaluator.remove(change.getSubject(), change.getPermission(),
+                    change.getObject(), change.getSetObject(), change.getSetPermission());
+        }
     }
 
     /**
@@ -306,33 +915,19 @@ public class ZanzibarPermissionsHandler {
     public List<UniquelyIdentifiable> filter(final String subject, final String permission,
             final List<UniquelyIdentifiable> objects) {
 
-        // Prefix for every permissions check API call
-        String urlPrefix = config.getZanzibarReadHost()
-                + "/relation-tuples/check?namespace=ssm&subjec_id=" + subject + "&relation="
-                + permission + "&object=";
-
-        ObjectMapper mapper = new ObjectMapper();
+        // Check every object's permissions in one batch
+        List<String> uuids = new ArrayList<String>();
+        for (UniquelyIdentifiable object : objects) {
+            uuids.add(object.getUUID());
+        }
+        Set<String> allowed = checkPermissions(subject, permission, uuids);
 
-        // List of valid subjects to return.
+        // List of valid subjects to return, in their original order.
         ArrayList<UniquelyIdentifiable> valid = new ArrayList<UniquelyIdentifiable>();
-
-        // Check each subject's permissions.
         for (UniquelyIdentifiable object : objects) {
-
-            String reply = downloadUUID(urlPrefix, object);
-
-            try {
-            // Parse the reply as json.
-            JsonNode root = mapper.readTree(reply);
-
-            // Check if the reply confirmed the action is allowed and add to the list of
-            // valid subjects if so.
-            if (root.get("allowed").asBoolean()) {
+            if (allowed.contains(object.getUUID())) {
                 valid.add(object);
             }
-            } catch (JsonProcessingException e) {
-                e.printStackTrace();
-            }
         }
 
         return valid;
@@ -354,50 +949,168 @@ public class ZanzibarPermissionsHandler {
     public List<Relationship> queryPermission(final String subject, final String permission,
             final String object, final String setObject, final String setPermission) {
 
-        // Setup a request
-        HttpClient httpclient = HttpClients.createDefault();
-        HttpGet request = new HttpGet(config.getZanzibarReadHost() + "/relation-tuples");
-        request.setURI(createRequestURI(request.getURI(), subject, permission, object, setObject,
-                setPermission, null));
+        if (useLocal()) {
+            return localEvaluator.query(subject, permission, object, setObject, setPermission);
+        }
 
-        // Send the request
+        // List of returned relationships
+        ArrayList<Relationship> relationships = new ArrayList<Relationship>();
         try {
-            String result = EntityUtils.toString(httpclient.execute(request).getEntity(), "UTF-8");
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode root = mapper.readTree(result);
-
-            // List of returned relationships
-            ArrayList<Relationship> relationships = new ArrayList<Relationship>();
+            forEachTuple(subject, permission, object, setObject, setPermission,
+                    relationships::add);
+            return relationships;
+        } catch (IOException e) {
+            LOG.error("Unable to query Zanzibar permissions", e);
+            return new ArrayList<Relationship>();
+        }
+    }
 
-            // Convert each node into an object.
-            for (JsonNode node : root.get("relation_tuples")) {
-                relationships.add(mapper.convertValue(node, Relationship.class));
+    /**
+     * Group the next tuples into one round of delete batches, reading no more
+     * than the round needs.
+     *
+     * @param tuples The tuples to delete.
+     * @return Up to checkParallelism batches of up to deleteBatchSize deletes
+     */
+    private List<TupleChanges> nextDeleteBatches(final Iterator<Relationship> tuples) {
+        int batchSize = config.getZanzibar().getDeleteBatchSize();
+        int parallelism = config.getZanzibar().getCheckParallelism();
+        List<TupleChanges> batches = new ArrayList<>();
+        while (batches.size() < parallelism && tuples.hasNext()) {
+            TupleChanges batch = new TupleChanges(); //NOPMD
+            while (batch.size() < batchSize && tuples.hasNext()) {
+                Relationship tuple = tuples.next();
+                Relationship set = tuple.getSubjectSet();
+                if (set == null) {
+                    batch.delete(tuple.getSubjectId(), tuple.getRelation(), tuple.getObject(),
+                            null, null);
+                } else {
+                    batch.delete(null, tuple.getRelation(), tuple.getObject(), set.getObject(),
+                            set.getRelation());
+                }
             }
+            batches.add(batch);
+        }
+        return batches;
+    }
 
-            // Token for the next page of results
-            String token = root.get("next_page_token").asText();
+    /**
+     * Get a lazily paged stream of all permissions matching the given criteria.
+     * Pages are requested from Zanzibar only as the stream is consumed. Read errors
+     * are thrown as UncheckedIOException.
+     *
+     * @param subject       The user the permission is granted to. May be null.
+     * @param permission    The Zanzibar relation representing the permission
+     *                      granted. May be null.
+     * @param object        The object the permission is granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @return A stream of all Zanzibar relationships that meet the criteria.
+     */
+    public Stream<Relationship> streamPermission(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission) {
 
-            // Keep looping until no next token is given
-            while (!token.isEmpty()) {
-                request.setURI(createRequestURI(request.getURI(), subject, permission, object,
-                        setObject, setPermission, token));
-                result = EntityUtils.toString(httpclient.execute(request).getEntity(), "UTF-8");
-                root = mapper.readTree(result);
+        if (useLocal()) {
+            return localEvaluator.query(subject, permission, object, setObject, setPermission)
+                    .stream();
+        }
 
-                // Convert each node into an object.
-                for (JsonNode node : root.get("relation_tuples")) {
-                    relationships.add(mapper.convertValue(node, Relationship.class));
+        Spliterator<Relationship> pages = new Spliterators.AbstractSpliterator<Relationship>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            /**
+             * Remaining tuples of the current page.
+             */
+            private Iterator<JsonNode> page = Collections.emptyIterator();
+
+            /**
+             * Token for the next page, empty once the last page has been read.
+             */
+            private String token;
+
+            @Override
+            public boolean tryAdvance(final Consumer<? super Relationship> action) {
+                while (!page.hasNext()) {
+                    if (token != null && token.isEmpty()) {
+                        return false;
+                    }
+                    try {
+                        JsonNode root = readPage(subject, permission, object, setObject,
+                                setPermission, token);
+                        page = root.path("relation_tuples").elements();
+                        token = root.path("next_page_token").asText();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
                 }
+                action.accept(MAPPER.convertValue(page.next(), Relationship.class));
+                return true;
+            }
+        };
+        return StreamSupport.stream(pages, false);
+    }
 
-                token = root.get("next_page_token").asText();
+    /**
+     * Read every page of Zanzibar permissions matching the given criteria.
+     *
+     * @param subject       The user the permission is granted to. May be null.
+     * @param permission    The Zanzibar relation representing the permission
+     *                      granted. May be null.
+     * @param object        The object the permission is granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @param consumer      Consumer for each matching relationship.
+     * @throws IOException If any page could not be read.
+     */
+    private void forEachTuple(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission,
+            final Consumer<Relationship> consumer) throws IOException {
+
+        // Keep requesting pages until no next token is given
+        String token = null;
+        do {
+            JsonNode root = readPage(subject, permission, object, setObject, setPermission,
+                    token);
+
+            // Convert each node into an object.
+            for (JsonNode node : root.path("relation_tuples")) {
+                consumer.accept(MAPPER.convertValue(node, Relationship.class));
             }
 
-            return relationships;
-        } catch (ParseException | IOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-            return new ArrayList<Relationship>();
-        }
+            token = root.path("next_page_token").asText();
+        } while (!token.isEmpty());
+    }
 
+    /**
+     * Read one page of Zanzibar permissions matching the given criteria.
+     *
+     * @param subject       The user the permission is granted to. May be null.
+     * @param permission    The Zanzibar relation representing the permission
+     *                      granted. May be null.
+     * @param object        The object the permission is granted over. May be null.
+     * @param setObject     The object definition for the subject set. May be null.
+     * @param setPermission The relation definition for the subject set. May be
+     *                      null.
+     * @param token         The page token, or null for the first page.
+     * @return The page's JSON body
+     * @throws IOException If the page could not be read.
+     */
+    private JsonNode readPage(final String subject, final String permission,
+            final String object, final String setObject, final String setPermission,
+            final String token) throws IOException {
+        URI pageURI = createRequestURI(
+                URI.create(config.getZanzibarReadHost() + "/relation-tuples"), subject,
+                permission, object, setObject, setPermission, token);
+        return execute("query", new HttpGet(pageURI), response -> {
+            int status = response.getStatusLine().getStatusCode();
+            if (status != HttpStatus.SC_OK) {
+                throw new HttpResponseException(status, "Zanzibar query failed");
+            }
+            try (InputStream content = response.getEntity().getContent()) {
+                return MAPPER.readTree(content);
+            }
+        });
     }
 }
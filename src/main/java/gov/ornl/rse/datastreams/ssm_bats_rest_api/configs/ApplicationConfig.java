@@ -1,41 +1,1022 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.configs;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.commons.lang3.EnumUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * All configuration derived from application properties.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "app", ignoreUnknownFields = false)
+public class ApplicationConfig {
+
+    /**
+     * Configuration properties for File Converter service.
+     */
+    public static class FileConverter {
+        /**
+         * URI for the file converter service.
+         */
+        private String uri;
+
+        /**
+         * Milliseconds to wait to connect to the file converter service.
+         */
+        private int connectTimeout = 5000;
+
+        /**
+         * Milliseconds to wait for a response from the file converter service.
+         */
+        private int readTimeout = 60000;
+
+        /**
+         * Maximum pooled connections to the file converter service.
+         */
+        private int maxConnections = 20;
+
+        /**
+         * Consecutive failures before calls to the file converter fail fast.
+         */
+        private int failureThreshold = 5;
+
+        /**
+         * Milliseconds calls fail fast before the file converter is retried.
+         */
+        private long openDuration = 30000;
+
+        /**
+         * Version of the file converter; part of the conversion cache key so
+         * results are not reused across converter upgrades.
+         */
+        private String version = "1";
+
+        /**
+         * Maximum conversion results held in memory.
+         */
+        private int cacheSize = 1000;
+
+        /**
+         * Milliseconds a cached conversion result is reused.
+         */
+        private long cacheTtl = 86400000;
+
+        /**
+         * Document store collection shared by all instances for cached conversion
+         * results; empty to only cache in memory.
+         */
+        private String cacheCollection = "";
+
+        /**
+         * @return File converter server URI
+         */
+        public String getURI() {
+            return uri;
+        }
+
+        /**
+         * Set the file converter server uri.
+         *
+         * @param newUri
+         */
+        void setURI(final String newUri) {
+            this.uri = newUri;
+        }
+
+        /**
+         * @return Connect timeout in milliseconds
+         */
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        /**
+         * Set the connect timeout in milliseconds.
+         *
+         * @param newConnectTimeout
+         */
+        void setConnectTimeout(final int newConnectTimeout) {
+            this.connectTimeout = newConnectTimeout;
+        }
+
+        /**
+         * @return Read timeout in milliseconds
+         */
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        /**
+         * Set the read timeout in milliseconds.
+         *
+         * @param newReadTimeout
+         */
+        void setReadTimeout(final int newReadTimeout) {
+            this.readTimeout = newReadTimeout;
+        }
+
+        /**
+         * @return Maximum pooled connections
+         */
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * Set the maximum pooled connections.
+         *
+         * @param newMaxConnections
+         */
+        void setMaxConnections(final int newMaxConnections) {
+            this.maxConnections = newMaxConnections;
+        }
+
+        /**
+         * @return Consecutive failures before failing fast
+         */
+        public int getFailureThreshold() {
+            return failureThreshold;
+        }
+
+        /**
+         * Set the consecutive failures before failing fast.
+         *
+         * @param newFailureThreshold
+         */
+        void setFailureThreshold(final int newFailureThreshold) {
+            this.failureThreshold = newFailureThreshold;
+        }
+
+        /**
+         * @return Milliseconds to fail fast before retrying
+         */
+        public long getOpenDuration() {
+            return openDuration;
+        }
+
+        /**
+         * Set the milliseconds to fail fast before retrying.
+         *
+         * @param newOpenDuration
+         */
+        void setOpenDuration(final long newOpenDuration) {
+            this.openDuration = newOpenDuration;
+        }
+
+        /**
+         * @return File converter version
+         */
+        public String getVersion() {
+            return version;
+        }
+
+        /**
+         * Set the file converter version.
+         *
+         * @param newVersion
+         */
+        void setVersion(final String newVersion) {
+            this.version = newVersion;
+        }
+
+        /**
+         * @return Maximum conversion results held in memory
+         */
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        /**
+         * Set the maximum conversion results held in memory.
+         *
+         * @param newCacheSize
+         */
+        void setCacheSize(final int newCacheSize) {
+            this.cacheSize = newCacheSize;
+        }
+
+        /**
+         * @return Milliseconds a cached conversion result is reused
+         */
+        public long getCacheTtl() {
+            return cacheTtl;
+        }
+
+        /**
+         * Set the milliseconds a cached conversion result is reused.
+         *
+         * @param newCacheTtl
+         */
+        void setCacheTtl(final long newCacheTtl) {
+            this.cacheTtl = newCacheTtl;
+        }
+
+        /**
+         * @return Document store collection for cached conversions; empty if disabled
+         */
+        public String getCacheCollection() {
+            return cacheCollection;
+        }
+
+        /**
+         * Set the document store collection for cached conversions.
+         *
+         * @param newCacheCollection
+         */
+        void setCacheCollection(final String newCacheCollection) {
+            this.cacheCollection = newCacheCollection;
+        }
+    }
+
+    /**
+     * Configuration properties relating to Zanzibar (Keto) clients.
+     */
+    public static class Zanzibar {
+        /**
+         * Maximum permission decisions held in memory.
+         */
+        private int cacheSize = 10000;
+
+        /**
+         * Milliseconds an allowed permission decision is reused.
+         */
+        private long allowTtl = 30000;
+
+        /**
+         * Milliseconds a denied permission decision is reused.
+         */
+        private long denyTtl = 5000;
+
+        /**
+         * Maximum pooled connections to the Zanzibar read and write hosts.
+         */
+        private int maxConnections = 50;
+
+        /**
+         * Milliseconds to wait to connect to Zanzibar.
+         */
+        private int connectTimeout = 2000;
+
+        /**
+         * Milliseconds to wait for a response from Zanzibar.
+         */
+        private int readTimeout = 5000;
+
+        /**
+         * Maximum permission checks sent to Zanzibar concurrently for a batch.
+         */
+        private int checkParallelism = 16;
+
+        /**
+         * Whether to answer checks and queries from an in-process replica of the tuples.
+         */
+        private boolean localEvaluation;
+
+        /**
+         * Milliseconds between rebuilds of the in-process tuple replica.
+         */
+        private long syncInterval = 60000;
+
+        /**
+         * Maximum relation tuples removed by one batch write during cleanup.
+         */
+        private int deleteBatchSize = 100;
+
+        /**
+         * @return Maximum permission decisions held in memory
+         */
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        /**
+         * Set the maximum permission decisions held in memory.
+         *
+         * @param newCacheSize
+         */
+        void setCacheSize(final int newCacheSize) {
+            this.cacheSize = newCacheSize;
+        }
+
+        /**
+         * @return Milliseconds an allowed decision is reused
+         */
+        public long getAllowTtl() {
+            return allowTtl;
+        }
+
+        /**
+         * Set the milliseconds an allowed decision is reused; 0 to disable.
+         *
+         * @param newAllowTtl
+         */
+        void setAllowTtl(final long newAllowTtl) {
+            this.allowTtl = newAllowTtl;
+        }
+
+        /**
+         * @return Milliseconds a denied decision is reused
+         */
+        public long getDenyTtl() {
+            return denyTtl;
+        }
+
+        /**
+         * Set the milliseconds a denied decision is reused; 0 to disable.
+         *
+         * @param newDenyTtl
+         */
+        void setDenyTtl(final long newDenyTtl) {
+            this.denyTtl = newDenyTtl;
+        }
+
+        /**
+         * @return Maximum pooled connections
+         */
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * Set the maximum pooled connections.
+         *
+         * @param newMaxConnections
+         */
+        void setMaxConnections(final int newMaxConnections) {
+            this.maxConnections = newMaxConnections;
+        }
+
+        /**
+         * @return Connect timeout in milliseconds
+         */
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        /**
+         * Set the connect timeout in milliseconds.
+         *
+         * @param newConnectTimeout
+         */
+        void setConnectTimeout(final int newConnectTimeout) {
+            this.connectTimeout = newConnectTimeout;
+        }
+
+        /**
+         * @return Read timeout in milliseconds
+         */
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        /**
+         * Set the read timeout in milliseconds.
+         *
+         * @param newReadTimeout
+         */
+        void setReadTimeout(final int newReadTimeout) {
+            this.readTimeout = newReadTimeout;
+        }
+
+        /**
+         * @return Maximum concurrent permission checks for a batch
+         */
+        public int getCheckParallelism() {
+            return checkParallelism;
+        }
+
+        /**
+         * Set the maximum concurrent permission checks for a batch.
+         *
+         * @param newCheckParallelism
+         */
+        void setCheckParallelism(final int newCheckParallelism) {
+            this.checkParallelism = newCheckParallelism;
+        }
+
+        /**
+         * @return True if checks are answered from an in-process tuple replica
+         */
+        public boolean isLocalEvaluation() {
+            return localEvaluation;
+        }
+
+        /**
+         * Set whether checks are answered from an in-process tuple replica.
+         *
+         * @param newLocalEvaluation
+         */
+        void setLocalEvaluation(final boolean newLocalEvaluation) {
+            this.localEvaluation = newLocalEvaluation;
+        }
+
+        /**
+         * @return Milliseconds between rebuilds of the tuple replica
+         */
+        public long getSyncInterval() {
+            return syncInterval;
+        }
+
+        /**
+         * Set the milliseconds between rebuilds of the tuple replica.
+         *
+         * @param newSyncInterval
+         */
+        void setSyncInterval(final long newSyncInterval) {
+            this.syncInterval = newSyncInterval;
+        }
+
+        /**
+         * @return Maximum relation tuples removed by one batch write
+         */
+        public int getDeleteBatchSize() {
+            return deleteBatchSize;
+        }
+
+        /**
+         * Set the maximum relation tuples removed by one batch write.
+         *
+         * @param newDeleteBatchSize
+         */
+        void setDeleteBatchSize(final int newDeleteBatchSize) {
+            this.deleteBatchSize = newDeleteBatchSize;
+        }
+    }
+
+    /**
+     * Configuration properties for long running background jobs.
+     */
+    public static class Jobs {
+        /**
+         * Maximum background jobs running at the same time.
+         */
+        private int threads = 2;
+
+        /**
+         * Milliseconds a job's status is kept after it is submitted.
+         */
+        private long retention = 86400000;
+
+        /**
+         * @return Maximum background jobs running at the same time
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Set the maximum background jobs running at the same time.
+         *
+         * @param newThreads
+         */
+        void setThreads(final int newThreads) {
+            this.threads = newThreads;
+        }
+
+        /**
+         * @return Milliseconds a job's status is kept after it is submitted
+         */
+        public long getRetention() {
+            return retention;
+        }
+
+        /**
+         * Set the milliseconds a job's status is kept after it is submitted.
+         *
+         * @param newRetention
+         */
+        void setRetention(final long newRetention) {
+            this.retention = newRetention;
+        }
+    }
+
+    /**
+     * Configuration properties for spectral similarity search.
+     */
+    public static class Spectra {
+        /**
+         * A grid for the spectra of some techniques or x units, such as Raman
+         * spectra in 1/cm.
+         */
+        public static class Grid {
+            /**
+             * Technique types resampled onto this grid; empty for any technique.
+             */
+            private List<String> techniques = new ArrayList<>();
+
+            /**
+             * X units resampled onto this grid; empty for any units.
+             */
+            private List<String> units = new ArrayList<>();
+
+            /**
+             * Lowest x value of the grid.
+             */
+            private double start;
+
+            /**
+             * Highest x value of the grid.
+             */
+            private double end;
+
+            /**
+             * Number of points in the grid.
+             */
+            private int points = 512;
+
+            /**
+             * @return Technique types resampled onto this grid; empty for any
+             */
+            public List<String> getTechniques() {
+                return techniques;
+            }
+
+            /**
+             * Set the technique types resampled onto this grid.
+             *
+             * @param newTechniques
+             */
+            void setTechniques(final List<String> newTechniques) {
+                this.techniques = newTechniques;
+            }
+
+            /**
+             * @return X units resampled onto this grid; empty for any
+             */
+            public List<String> getUnits() {
+                return units;
+            }
+
+            /**
+             * Set the x units resampled onto this grid.
+             *
+             * @param newUnits
+             */
+            void setUnits(final List<String> newUnits) {
+                this.units = newUnits;
+            }
+
+            /**
+             * @return Lowest x value of the grid
+             */
+            public double getStart() {
+                return start;
+            }
+
+            /**
+             * Set the lowest x value of the grid.
+             *
+             * @param newStart
+             */
+            void setStart(final double newStart) {
+                this.start = newStart;
+            }
+
+            /**
+             * @return Highest x value of the grid
+             */
+            public double getEnd() {
+                return end;
+            }
+
+            /**
+             * Set the highest x value of the grid.
+             *
+             * @param newEnd
+             */
+            void setEnd(final double newEnd) {
+                this.end = newEnd;
+            }
+
+            /**
+             * @return Number of points in the grid
+             */
+            public int getPoints() {
+                return points;
+            }
+
+            /**
+             * Set the number of points in the grid.
+             *
+             * @param newPoints
+             */
+            void setPoints(final int newPoints) {
+                this.points = newPoints;
+            }
+        }
+
+        /**
+         * Grids for particular techniques or x units by name, tried in order
+         * before the default grid.
+         */
+        private Map<String, Grid> grids = new LinkedHashMap<>();
+
+        /**
+         * Lowest x value of the grid spectra are resampled onto for comparison.
+         */
+        private double gridStart;
+
+        /**
+         * Highest x value of the grid spectra are resampled onto for comparison.
+         */
+        private double gridEnd = 4000;
+
+        /**
+         * Number of points in the grid spectra are resampled onto.
+         */
+        private int gridPoints = 512;
+
+        /**
+         * Largest number of matches a single search may return.
+         */
+        private int maxResults = 100;
+
+        /**
+         * Least prominence of a detected peak, as a fraction of the spectrum's y range.
+         */
+        private double peakMinProminence = 0.05;
+
+        /**
+         * Most peaks indexed per spectrum, the most prominent first.
+         */
+        private int peakMaxCount = 32;
+
+        /**
+         * Width in x of the bins peak positions are indexed by, and the default
+         * tolerance of peak list queries.
+         */
+        private double peakBinWidth = 5;
+
+        /**
+         * Most candidates of a peak list query scored in full.
+         */
+        private int peakCandidates = 1000;
+
+        /**
+         * Most links of a node per layer of the approximate search graphs.
+         */
+        private int hnswM = 16;
+
+        /**
+         * Size of the candidate list searched when inserting into an
+         * approximate search graph.
+         */
+        private int hnswEfConstruction = 200;
+
+        /**
+         * Default size of the candidate list of an approximate search.
+         */
+        private int hnswEfSearch = 64;
+
+        /**
+         * Milliseconds between background saves of changed approximate search graphs.
+         */
+        private long hnswSaveInterval = 300000;
+
+        /**
+         * Numbers of points of the downsampled spectrum previews precomputed
+         * for each Dataset.
+         */
+        private List<Integer> previewLevels = new ArrayList<>(List.of(64, 256, 1024));
+
+        /**
+         * Seconds clients may cache a spectrum preview for.
+         */
+        private long previewMaxAge = 300;
+
+        /**
+         * Most Datasets whose spectra may be requested in one batch download.
+         */
+        private int maxBatch = 1000;
+
+        /**
+         * Directory of the memory-mapped spectrum store files.
+         */
+        private String storeDirectory = System.getProperty("java.io.tmpdir") + "/ssm-spectra";
 
-/**
- * All configuration derived from application properties.
- */
-@Configuration
-@ConfigurationProperties(prefix = "app", ignoreUnknownFields = false)
-public class ApplicationConfig {
+        /**
+         * Size in bytes of each spectrum store segment file.
+         */
+        private int storeSegmentSize = 64 * 1024 * 1024;
 
-    /**
-     * Configuration properties for File Converter service.
-     */
-    public static class FileConverter {
         /**
-         * URI for the file converter service.
+         * Milliseconds between background compactions of the spectrum store.
          */
-        private String uri;
+        private long storeCompactionInterval = 600000;
 
         /**
-         * @return File converter server URI
+         * @return Grids for particular techniques or x units by name, tried in order
          */
-        public String getURI() {
-            return uri;
+        public Map<String, Grid> getGrids() {
+            return grids;
         }
 
         /**
-         * Set the file converter server uri.
+         * Set the grids for particular techniques or x units.
          *
-         * @param newUri
+         * @param newGrids
          */
-        void setURI(final String newUri) {
-            this.uri = newUri;
+        void setGrids(final Map<String, Grid> newGrids) {
+            this.grids = newGrids;
+        }
+
+        /**
+         * @return Lowest x value of the comparison grid
+         */
+        public double getGridStart() {
+            return gridStart;
+        }
+
+        /**
+         * Set the lowest x value of the comparison grid.
+         *
+         * @param newGridStart
+         */
+        void setGridStart(final double newGridStart) {
+            this.gridStart = newGridStart;
+        }
+
+        /**
+         * @return Highest x value of the comparison grid
+         */
+        public double getGridEnd() {
+            return gridEnd;
+        }
+
+        /**
+         * Set the highest x value of the comparison grid.
+         *
+         * @param newGridEnd
+         */
+        void setGridEnd(final double newGridEnd) {
+            this.gridEnd = newGridEnd;
+        }
+
+        /**
+         * @return Number of points in the comparison grid
+         */
+        public int getGridPoints() {
+            return gridPoints;
+        }
+
+        /**
+         * Set the number of points in the comparison grid.
+         *
+         * @param newGridPoints
+         */
+        void setGridPoints(final int newGridPoints) {
+            this.gridPoints = newGridPoints;
+        }
+
+        /**
+         * @return Largest number of matches a single search may return
+         */
+        public int getMaxResults() {
+            return maxResults;
+        }
+
+        /**
+         * Set the largest number of matches a single search may return.
+         *
+         * @param newMaxResults
+         */
+        void setMaxResults(final int newMaxResults) {
+            this.maxResults = newMaxResults;
+        }
+
+        /**
+         * @return Least prominence of a detected peak, as a fraction of the y range
+         */
+        public double getPeakMinProminence() {
+            return peakMinProminence;
+        }
+
+        /**
+         * Set the least prominence of a detected peak, as a fraction of the y range.
+         *
+         * @param newPeakMinProminence
+         */
+        void setPeakMinProminence(final double newPeakMinProminence) {
+            this.peakMinProminence = newPeakMinProminence;
+        }
+
+        /**
+         * @return Most peaks indexed per spectrum
+         */
+        public int getPeakMaxCount() {
+            return peakMaxCount;
+        }
+
+        /**
+         * Set the most peaks indexed per spectrum.
+         *
+         * @param newPeakMaxCount
+         */
+        void setPeakMaxCount(final int newPeakMaxCount) {
+            this.peakMaxCount = newPeakMaxCount;
+        }
+
+        /**
+         * @return Width in x of the bins peak positions are indexed by
+         */
+        public double getPeakBinWidth() {
+            return peakBinWidth;
+        }
+
+        /**
+         * Set the width in x of the bins peak positions are indexed by.
+         *
+         * @param newPeakBinWidth
+         */
+        void setPeakBinWidth(final double newPeakBinWidth) {
+            this.peakBinWidth = newPeakBinWidth;
+        }
+
+        /**
+         * @return Most candidates of a peak list query scored in full
+         */
+        public int getPeakCandidates() {
+            return peakCandidates;
+        }
+
+        /**
+         * Set the most candidates of a peak list query scored in full.
+         *
+         * @param newPeakCandidates
+         */
+        void setPeakCandidates(final int newPeakCandidates) {
+            this.peakCandidates = newPeakCandidates;
+        }
+
+        /**
+         * @return Most links of a node per layer of the approximate search graphs
+         */
+        public int getHnswM() {
+            return hnswM;
+        }
+
+        /**
+         * Set the most links of a node per layer of the approximate search graphs.
+         *
+         * @param newHnswM
+         */
+        void setHnswM(final int newHnswM) {
+            this.hnswM = newHnswM;
+        }
+
+        /**
+         * @return Size of the candidate list searched when inserting into a graph
+         */
+        public int getHnswEfConstruction() {
+            return hnswEfConstruction;
+        }
+
+        /**
+         * Set the size of the candidate list searched when inserting into a graph.
+         *
+         * @param newHnswEfConstruction
+         */
+        void setHnswEfConstruction(final int newHnswEfConstruction) {
+            this.hnswEfConstruction = newHnswEfConstruction;
+        }
+
+        /**
+         * @return Default size of the candidate list of an approximate search
+         */
+        public int getHnswEfSearch() {
+            return hnswEfSearch;
+        }
+
+        /**
+         * Set the default size of the candidate list of an approximate search.
+         *
+         * @param newHnswEfSearch
+         */
+        void setHnswEfSearch(final int newHnswEfSearch) {
+            this.hnswEfSearch = newHnswEfSearch;
+        }
+
+        /**
+         * @return Milliseconds between background saves of changed graphs
+         */
+        public long getHnswSaveInterval() {
+            return hnswSaveInterval;
+        }
+
+        /**
+         * Set the milliseconds between background saves of changed graphs.
+         *
+         * @param newHnswSaveInterval
+         */
+        void setHnswSaveInterval(final long newHnswSaveInterval) {
+            this.hnswSaveInterval = newHnswSaveInterval;
+        }
+
+        /**
+         * @return Numbers of points of the spectrum previews precomputed
+         */
+        public List<Integer> getPreviewLevels() {
+            return previewLevels;
+        }
+
+        /**
+         * Set the numbers of points of the spectrum previews precomputed.
+         *
+         * @param newPreviewLevels
+         */
+        void setPreviewLevels(final List<Integer> newPreviewLevels) {
+            this.previewLevels = newPreviewLevels;
+        }
+
+        /**
+         * @return Seconds clients may cache a spectrum preview for
+         */
+        public long getPreviewMaxAge() {
+            return previewMaxAge;
+        }
+
+        /**
+         * Set the seconds clients may cache a spectrum preview for.
+         *
+         * @param newPreviewMaxAge
+         */
+        void setPreviewMaxAge(final long newPreviewMaxAge) {
+            this.previewMaxAge = newPreviewMaxAge;
+        }
+
+        /**
+         * @return Most Datasets whose spectra may be requested in one batch download
+         */
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        /**
+         * Set the most Datasets whose spectra may be requested in one batch download.
+         *
+         * @param newMaxBatch
+         */
+        void setMaxBatch(final int newMaxBatch) {
+            this.maxBatch = newMaxBatch;
+        }
+
+        /**
+         * @return Directory of the memory-mapped spectrum store files
+         */
+        public String getStoreDirectory() {
+            return storeDirectory;
+        }
+
+        /**
+         * Set the directory of the memory-mapped spectrum store files.
+         *
+         * @param newStoreDirectory
+         */
+        void setStoreDirectory(final String newStoreDirectory) {
+            this.storeDirectory = newStoreDirectory;
+        }
+
+        /**
+         * @return Size in bytes of each spectrum store segment file
+         */
+        public int getStoreSegmentSize() {
+            return storeSegmentSize;
+        }
+
+        /**
+         * Set the size in bytes of each spectrum store segment file.
+         *
+         * @param newStoreSegmentSize
+         */
+        void setStoreSegmentSize(final int newStoreSegmentSize) {
+            this.storeSegmentSize = newStoreSegmentSize;
+        }
+
+        /**
+         * @return Milliseconds between background compactions of the spectrum store
+         */
+        public long getStoreCompactionInterval() {
+            return storeCompactionInterval;
+        }
+
+        /**
+         * Set the milliseconds between background compactions of the spectrum store.
+         *
+         * @param newStoreCompactionInterval
+         */
+        void setStoreCompactionInterval(final long newStoreCompactionInterval) {
+            this.storeCompactionInterval = newStoreCompactionInterval;
         }
     }
 
@@ -51,6 +1032,10 @@ public class ApplicationConfig {
          * Fuseki server's port.
          */
         private Integer port;
+        /**
+         * Milliseconds between background refreshes of the collection catalog.
+         */
+        private long catalogRefresh = 60000;
 
         /**
          * @return Fuseki server hostname
@@ -96,6 +1081,22 @@ public class ApplicationConfig {
         public String getURI() {
             return this.hostname + ":" + this.port;
         }
+
+        /**
+         * @return Milliseconds between background refreshes of the collection catalog
+         */
+        public long getCatalogRefresh() {
+            return catalogRefresh;
+        }
+
+        /**
+         * Set the milliseconds between background refreshes of the collection catalog.
+         *
+         * @param newCatalogRefresh
+         */
+        void setCatalogRefresh(final long newCatalogRefresh) {
+            this.catalogRefresh = newCatalogRefresh;
+        }
     }
 
     /**
@@ -104,9 +1105,10 @@ public class ApplicationConfig {
     private String authorization;
 
     /**
-     * Handler for authorization API calls.
+     * Registry the authorization handler registers its metrics on.
      */
-    private AuthorizationHandler authorizationHandler;
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     /**
      * Nested Fuseki configuration.
@@ -120,11 +1122,38 @@ public class ApplicationConfig {
      */
     private String jsonConversion;
 
+    /**
+     * The store used to serve Dataset listings.
+     * Valid values are "graph" and "document".
+     */
+    private String datasetListing = "graph";
+
+    /**
+     * Whether to backfill the summaries of Dataset documents stored without
+     * them once the application has started.
+     */
+    private boolean documentBackfill;
+
     /**
      * Nested file converter service configuration.
      */
     private final FileConverter fileConverter = new FileConverter();
 
+    /**
+     * Zanzibar client configuration.
+     */
+    private final Zanzibar zanzibar = new Zanzibar();
+
+    /**
+     * Background job configuration.
+     */
+    private final Jobs jobs = new Jobs();
+
+    /**
+     * Spectral similarity search configuration.
+     */
+    private final Spectra spectra = new Spectra();
+
     /**
      * <p>
      * Hostname + port of the REST API server. Examples:
@@ -183,6 +1212,40 @@ public class ApplicationConfig {
         this.jsonConversion = jsonConversion;
     }
 
+    /**
+     * Getter for the DatasetListing type.
+     *
+     * @return The store the API will use for Dataset listings.
+     */
+    public DatasetListingType getDatasetListing() {
+        return EnumUtils.getEnumIgnoreCase(DatasetListingType.class, datasetListing);
+    }
+
+    /**
+     * Setter for the dataset listing type.
+     *
+     * @param datasetListing
+     */
+    void setDatasetListing(final String datasetListing) {
+        this.datasetListing = datasetListing;
+    }
+
+    /**
+     * @return Whether to backfill Dataset document summaries on startup
+     */
+    public boolean isDocumentBackfill() {
+        return documentBackfill;
+    }
+
+    /**
+     * Setter for backfilling Dataset document summaries on startup.
+     *
+     * @param newDocumentBackfill Whether to backfill on startup
+     */
+    void setDocumentBackfill(final boolean newDocumentBackfill) {
+        this.documentBackfill = newDocumentBackfill;
+    }
+
     /**
      * @return host for the REST API server
      */
@@ -237,19 +1300,27 @@ public class ApplicationConfig {
     }
 
     /**
-     * Returns the handler for authorization API calls, or null if authorization is not configured.
+     * The handler for authorization API calls, created once by Spring and closed
+     * on shutdown, releasing its Zanzibar client, check pool and local replica.
      *
      * @return An AuthorizationHandler if authorization is defined, or null if it is not.
      */
-    public AuthorizationHandler getAuthorizationHandler() {
-
-        // If the handler doesn't exist but the server address was given, create it.
-        if (authorizationHandler == null && zanzibarReadHost != null && zanzibarWriteHost != null) {
-            authorizationHandler = new AuthorizationHandler(this);
+    @Bean(destroyMethod = "close")
+    public AuthorizationHandler authorizationHandler() {
+        if (zanzibarReadHost == null || zanzibarWriteHost == null) {
+            return null;
         }
+        return new AuthorizationHandler(this, meterRegistry);
+    }
 
-        return authorizationHandler;
-
+    /**
+     * Returns the handler for authorization API calls, or null if authorization is not configured.
+     * Calls go through the configuration proxy, so every caller shares the one handler bean.
+     *
+     * @return An AuthorizationHandler if authorization is defined, or null if it is not.
+     */
+    public AuthorizationHandler getAuthorizationHandler() {
+        return authorizationHandler();
     }
 
     /**
@@ -265,4 +1336,25 @@ public class ApplicationConfig {
     public FileConverter getFileConverter() {
         return fileConverter;
     }
+
+    /**
+     * @return the Zanzibar client configuration
+     */
+    public Zanzibar getZanzibar() {
+        return zanzibar;
+    }
+
+    /**
+     * @return the background job configuration
+     */
+    public Jobs getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return the spectral similarity search configuration
+     */
+    public Spectra getSpectra() {
+        return spectra;
+    }
 }
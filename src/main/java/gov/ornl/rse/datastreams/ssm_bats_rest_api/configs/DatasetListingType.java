@@ -0,0 +1,13 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.configs;
+
+/**
+ * The store used to serve Dataset listings for a Collection.
+ */
+public enum DatasetListingType {
+
+    /**
+     * GRAPH - Use SPARQL queries against the Fuseki graph database.
+     * DOCUMENT - Use the indexed summary fields in the document store.
+    */
+    GRAPH, DOCUMENT
+}
@@ -1,14 +1,24 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.configs;
 
 import java.util.Collections;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import javax.servlet.ServletContext;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
 import springfox.documentation.service.ApiInfo;
 import springfox.documentation.service.Contact;
 import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
+import springfox.documentation.spring.web.plugins.WebMvcRequestHandlerProvider;
+import springfox.documentation.spring.web.readers.operation.HandlerMethodResolver;
 
 @Configuration
 public class SwaggerConfig {
@@ -32,6 +42,44 @@ public class SwaggerConfig {
           .apiInfo(apiInfo());
     }
 
+    /**
+     * Springfox only understands ant path matching handler mappings, but the
+     * actuator endpoints are always registered with path pattern parsing.
+     * Replace springfox's handler provider with one built, through its public
+     * constructor, from only the ant path matching mappings, so it can start
+     * alongside actuator.
+     *
+     * @param servletContext  Servlet context of the application
+     * @param methodResolver  Springfox's resolver of handler methods
+     * @param handlerMappings Every request mapping handler mapping
+     * @return Post processor replacing springfox's handler provider
+    */
+    @Bean
+    public static BeanPostProcessor springfoxHandlerProviderBeanPostProcessor(
+        final ObjectProvider<ServletContext> servletContext,
+        final ObjectProvider<HandlerMethodResolver> methodResolver,
+        final ObjectProvider<RequestMappingInfoHandlerMapping> handlerMappings
+    ) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(
+                final Object bean,
+                final String beanName
+            ) {
+                if (!(bean instanceof WebMvcRequestHandlerProvider)) {
+                    return bean;
+                }
+                return new WebMvcRequestHandlerProvider(
+                    Optional.ofNullable(servletContext.getIfAvailable()),
+                    methodResolver.getObject(),
+                    handlerMappings.orderedStream()
+                        .filter(mapping -> mapping.getPatternParser() == null)
+                        .collect(Collectors.toList())
+                );
+            }
+        };
+    }
+
     /**
      * Custom configuration of the API docs header page.
      *
@@ -5,17 +5,19 @@ import org.springframework.format.FormatterRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.converters.BatsDatasetFormatsConverter;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.converters.DatasetExportFormatsConverter;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     /**
-     * Overrides addFormatters to add the BatsDatasetFormatsConverter.
+     * Overrides addFormatters to add the dataset format converters.
      *
      * @param registry Formatter registry to add converters to
      */
     @Override
     public void addFormatters(final FormatterRegistry registry) {
         registry.addConverter(new BatsDatasetFormatsConverter());
+        registry.addConverter(new DatasetExportFormatsConverter());
     }
 }
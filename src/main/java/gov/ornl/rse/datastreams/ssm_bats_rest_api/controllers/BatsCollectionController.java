@@ -1,49 +1,53 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.net.URL;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Scanner;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Pattern;
 
 import org.apache.jena.query.QueryException;
-import org.apache.jena.rdf.model.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
  import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Permissions;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
-import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig.Fuseki;
-import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ConfigUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsCollection;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.CustomizedBatsCollection;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.CollectionCatalogService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.GraphService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.JobService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.MetadataIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.PeakIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectralSearchService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectrumStoreService;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.AuthorizationUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
-import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.sparql.DatasetSparql;
 
 @RestController
 @RequestMapping("/collections")
@@ -68,45 +72,58 @@ public class BatsCollectionController {
     private DocumentRepository repository;
 
     /**
-     * Configuration utilities.
+     * Collection utilities.
      */
     @Autowired
-    private ConfigUtils configUtils;
+    private CollectionUtils collectionUtils;
 
     /**
-     * Collection utilities.
+     * Graph service, listing the Datasets of a Collection.
      */
     @Autowired
-    private CollectionUtils collectionUtils;
+    private GraphService graphService;
 
     /**
-     * Class ObjectMapper.
+     * Cached list of collections.
      */
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+    @Autowired
+    private CollectionCatalogService catalogService;
 
     /**
-     * @return the Fuseki configuration.
+     * Runs large deletes in the background.
      */
-    private Fuseki fuseki() {
-        return appConfig.getFuseki();
-    }
+    @Autowired
+    private JobService jobService;
 
     /**
-     * Error message for reading collections.
+     * Spectral similarity search indexes, dropped with their Collection.
      */
-    private static final String READ_COLLECTIONS_ERROR =
-            "Unable to read collection(s) on the remote Fuseki server.";
+    @Autowired
+    private SpectralSearchService searchService;
 
     /**
-     * Error message for malformed URL.
+     * Metadata indexes, dropped with their Collection.
      */
-    private static final String BAD_URL_ERROR = "Error forming URL to Fuseki collection asset";
+    @Autowired
+    private MetadataIndexService metadataService;
+
+    /**
+     * Peak search members, dropped with their Collection.
+     */
+    @Autowired
+    private PeakIndexService peakService;
 
     /**
-     * Error message for URL and connection IO issues to Fuseki.
+     * Store of the spectra of Datasets.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Error message for reading collections.
      */
-    private static final String URL_ACCESS_ERROR =
-            "Fuseki URL / connection access error for collection";
+    private static final String READ_COLLECTIONS_ERROR =
+            "Unable to read collection(s) on the remote Fuseki server.";
 
     /**
      * CREATE a new Collection collection for Datasets.
@@ -153,6 +170,7 @@ public class BatsCollectionController {
 
         // Create the collection
         collection.create();
+        catalogService.added(collection.getName());
         LOGGER.info("Created collection: " + collection.getName());
         return new BatsCollection(collection.getName());
     }
@@ -160,6 +178,9 @@ public class BatsCollectionController {
     /**
      * READ A list of all collection titles.
      *
+     * The list is served from the collection catalog, tagged so that clients
+     * polling with If-None-Match get 304 Not Modified until it changes.
+     *
      * @return A JSON formatted list of every collection's title.
      */
     @RequestMapping(
@@ -167,56 +188,20 @@ public class BatsCollectionController {
       method = RequestMethod.GET,
       produces = MediaType.APPLICATION_JSON_VALUE
     )
-    @ResponseStatus(HttpStatus.OK)
-    @ResponseBody
-    public String getTitles() {
-
-        // Read the Fuseki collection list endpoint
-
-        URL url = null;
-
+    public ResponseEntity<String> getTitles() {
+        CollectionCatalogService.Catalog catalog;
         try {
-            url = new URL(fuseki().getHostname() + ":" + fuseki().getPort() + "/$/datasets");
-        } catch (MalformedURLException e) {
-            LOGGER.error(BAD_URL_ERROR, e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, BAD_URL_ERROR);
-        }
-
-        Scanner scanner = null;
-
-        try {
-            scanner = new Scanner(url.openStream(), "UTF-8");
+            catalog = catalogService.getCatalog();
         } catch (IOException e) {
-            LOGGER.error(URL_ACCESS_ERROR + ": " + url, e);
-            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
-                    READ_COLLECTIONS_ERROR);
-        }
-
-        try {
-            JsonNode fusekiResponse = MAPPER.readTree(scanner.useDelimiter("\\A").next());
-
-            // Get the node containing the list of collections
-            ArrayNode collectionsNode = (ArrayNode) fusekiResponse.get("datasets");
-            Iterator<JsonNode> collectionIterator = collectionsNode.elements();
-
-            // The JSON response being built
-            ArrayNode response = new ArrayNode(new JsonNodeFactory(false));
-
-            // Read out only the name field of each collection and add it to the
-            // response
-            while (collectionIterator.hasNext()) {
-                response.add(collectionIterator.next().get("ds.name").asText().replaceAll("/", ""));
-            }
-
-            // Return the JSON representation
-            return MAPPER.writeValueAsString(response);
-        } catch (JsonProcessingException e) {
             LOGGER.error(READ_COLLECTIONS_ERROR, e);
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR,
                     READ_COLLECTIONS_ERROR);
-        } finally {
-            scanner.close();
         }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(catalog.getETag())
+                .body(catalog.getJson());
     }
 
     /**
@@ -242,28 +227,39 @@ public class BatsCollectionController {
     /**
      * DELETE Collection collection for given Collection title.
      *
+     * The user must have DELETE on every Dataset in the Collection, whether
+     * found among its graphs or its documents. The graph database, every
+     * Dataset document and every Dataset's authorization tuples are then
+     * removed in bulk.
+     *
      * @param title Title of Collection to delete
+     * @param async True to delete in the background and return the tracking Job.
+     * @return Empty when deleted, or the accepted Job when async
      */
     @RequestMapping(
       value = "/{title}",
       method = RequestMethod.DELETE
     )
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteCollection(
-            @PathVariable("title") @Pattern(regexp = BatsCollection.TITLE_REGEX) final String title)
+    public ResponseEntity<Job> deleteCollection(
+            @PathVariable("title") @Pattern(regexp = BatsCollection.TITLE_REGEX) final String title,
+            @RequestParam(name = "async", defaultValue = "false") final boolean async)
             throws Exception {
         CustomizedBatsCollection collection = collectionUtils.getCollection(title);
 
-        // Get the Dataset UUID list for the collection
-        String endpointUrl = fuseki().getHostname() + ":" + fuseki().getPort() + "/" + title;
-        ArrayNode uuidArray = MAPPER.createArrayNode();
+        // Get the Dataset UUID list for the collection from its graphs, which are all
+        // deleted with it, and its documents
+        Set<String> members = new LinkedHashSet<>();
         try {
-            uuidArray = DatasetSparql.getDatasetUuids(endpointUrl);
+            members.addAll(graphService.listDatasetUUIDs(title));
         } catch (QueryException ex) {
-            LOGGER.info("No datasets to delete for datset.");
+            String message = "Unable to list the datasets of collection: " + title;
+            LOGGER.error(message, ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
         }
-
-        AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+        for (DocumentDataset document : repository.findDatasetIdsByCollectionTitle(title)) {
+            members.add(document.getDatasetId());
+        }
+        List<String> uuids = new ArrayList<String>(members);
 
         // Check whether authorization is to be enforced
         boolean authorization = AuthorizationUtils.isUsingAuthorization(appConfig);
@@ -275,89 +271,96 @@ public class BatsCollectionController {
 
             // Construct a list of all UUIDs belonging to this collection which the user isn't
             // authorized to delete
-            ArrayList<String> unauthorizedUUIDs = new ArrayList<String>();
-
-            for (JsonNode datasetUuidNode : uuidArray) {
-                String datasetUUID = datasetUuidNode.asText();
-                if (!authHandler.checkPermission(user, Permissions.DELETE, datasetUUID)) {
-                    unauthorizedUUIDs.add(datasetUUID);
+            Set<String> allowed = appConfig.getAuthorizationHandler()
+                    .checkPermissions(user, Permissions.DELETE, uuids);
+            List<String> unauthorizedUUIDs = new ArrayList<String>();
+            for (String uuid : uuids) {
+                if (!allowed.contains(uuid)) {
+                    unauthorizedUUIDs.add(uuid);
                 }
             }
 
             // If there were any undeletable datasets, do not delete the collection and instead
             // return an error.
             if (!unauthorizedUUIDs.isEmpty()) {
-
-                String initialMessage = "User " + user
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "User " + user
                         + " is not authorized to delete the following datasets contained in the "
-                        + "collectiont: ";
-
-                StringBuilder message = new StringBuilder(initialMessage);
-
-                for (String uuid : unauthorizedUUIDs) {
-                    String messageAppend = uuid + ",";
-                    message.append(messageAppend);
-                }
-
-                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, message.toString());
+                        + "collection: " + String.join(",", unauthorizedUUIDs));
             }
         }
 
-        // Loop to delete the datasets from collection
-        for (JsonNode datasetUuidNode : uuidArray) {
-            String datasetUUID = datasetUuidNode.asText();
-            String uuid = datasetUUID.substring(datasetUUID.lastIndexOf('/') + 1);
-            String datasetUri = configUtils.getDatasetUri(title, uuid);
+        if (async) {
+            Job job = jobService.submit("delete-collection", title, running ->
+                    deleteContents(collection, uuids, authorization, running::setProcessed));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        }
 
-            // Get dataset for rollback
-            Model dataset = collection.getModel(datasetUri);
+        deleteContents(collection, uuids, authorization, count -> { });
+        return ResponseEntity.noContent().build();
+    }
 
-            // Delete dataset from graph database
-            LOGGER.info("Deleting dataset: " + uuid + " from graph database");
-            try {
-                collection.deleteDataset(datasetUri);
-            } catch (Exception ex) {
-                String message = "Unable to delete dataset: " + uuid + " from graph database.";
-                LOGGER.error(message);
-                throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
-            }
+    /**
+     * Delete a Collection and everything stored for its Datasets, once the user
+     * has been authorized.
+     *
+     * @param collection    The Collection to delete
+     * @param uuids         UUIDs of the Datasets in the Collection
+     * @param authorization True to delete the Datasets' authorization tuples
+     * @param progress      Receives the running total of deleted tuples
+     * @throws ResponseStatusException If any store could not be updated
+     */
+    private void deleteContents(
+            final CustomizedBatsCollection collection,
+            final List<String> uuids,
+            final boolean authorization,
+            final LongConsumer progress) throws ResponseStatusException {
+        String title = collection.getName();
+
+        // Delete collection, with all of its datasets, from graph database
+        try {
+            collection.delete();
+        } catch (Exception ex) {
+            String message = "Unable to delete collection: " + title + " from graph database.";
+            LOGGER.error(message, ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+        }
+        try {
+            catalogService.removed(title);
+        } catch (JsonProcessingException ex) {
+            LOGGER.error("Unable to update the collection catalog", ex);
+        }
+        searchService.removeCollection(title);
+        metadataService.removeCollection(title);
+        peakService.removeCollection(title);
+        LOGGER.info("Deleted collection: " + title + " from graph database");
 
-            // Delete dataset from document store (rollback graph database if fails)
-            LOGGER.info("Deleting dataset: " + uuid + " from document store");
-            try {
-                repository.delete(repository.findById(uuid).get());
+        // Delete every dataset of the collection from document store
+        try {
+            long deleted = repository.deleteByCollectionTitleOrDatasetIdIn(title, uuids);
+            LOGGER.info("Deleted " + deleted + " datasets of collection: " + title
+                    + " from document store");
+        } catch (Exception ex) {
+            String message = "Unable to delete datasets of collection: " + title
+                    + " from document store.";
+            LOGGER.error(message, ex);
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
+        }
+        try {
+            spectrumStore.removeAll(uuids);
+        } catch (IOException ex) {
+            LOGGER.error("Unable to remove spectra of collection: " + title, ex);
+        }
 
+        // Delete all authorization information related to the datasets
+        if (authorization) {
+            try {
+                appConfig.getAuthorizationHandler().deleteObjects(null, uuids, progress);
             } catch (Exception ex) {
-                String message = "Unable to delete dataset: " + uuid + " from document store.";
-                LOGGER.error(message);
-                collection.updateModel(datasetUri, dataset);
+                String message = "Unable to delete permissions on the datasets of collection "
+                        + title + ". Authorization server is now in an inconsistant state.";
+                LOGGER.error(message, ex);
                 throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
             }
-
-            // If authorization is off or there is no user, skip authorization check
-            if (authorization) {
-
-                String user = AuthorizationUtils.getUser();
-
-                try {
-
-                    // Delete all authorization information related to this object
-                    authHandler.deleteObject(user, uuid);
-
-                } catch (Exception ex) {
-                    String message = "User " + user + " lost DELETE permission on object " + uuid
-                            + " while it was being deleted. Authorization server is now in an "
-                            + "inconsistant state.";
-                    LOGGER.error(message);
-                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, message);
-                }
-
-            }
-
         }
-
-        // Delete collection collection from graph database
-        collection.delete();
-        LOGGER.info("Deleted collection: " + collection.getName());
     }
 }
@@ -1,11 +1,25 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.Pattern;
 
@@ -13,6 +27,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,18 +41,31 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Permissions;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.DatasetListingType;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsCollection;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsDataset;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsDatasetFormats;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetExportFormats;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.MetadataFilter;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.UniquelyIdentifiable;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.DocumentService;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.GraphService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.MetadataIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.PeakIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectralSearchService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectrumPreviewService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectrumStoreService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumRecordWriter;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.AuthorizationUtils;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.UUIDGenerator;
 
 @RestController
@@ -69,6 +98,48 @@ public class DatasetController {
     @Autowired
     private DocumentService documentService;
 
+    /**
+     * Collection utilities.
+     */
+    @Autowired
+    private CollectionUtils collectionUtils;
+
+    /**
+     * Spectral similarity search indexes, kept up to date with the Datasets.
+     */
+    @Autowired
+    private SpectralSearchService searchService;
+
+    /**
+     * Metadata filters of the Dataset listing, kept up to date with the Datasets.
+     */
+    @Autowired
+    private MetadataIndexService metadataService;
+
+    /**
+     * Peak search members, kept up to date with the Datasets.
+     */
+    @Autowired
+    private PeakIndexService peakService;
+
+    /**
+     * Store of the spectra of Datasets, filled from the document store for
+     * Datasets stored before it existed.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Downsampled previews of the spectra of Datasets.
+     */
+    @Autowired
+    private SpectrumPreviewService previewService;
+
+    /**
+     * Media type for newline delimited JSON.
+     */
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     /**
      * Error message for uploading dataset.
     */
@@ -88,7 +159,56 @@ public class DatasetController {
         "Unable to delete dataset.";
 
     /**
-     * FETCH a certain amount of Datasets for a Collection.
+     * Create the 404 response for a Dataset that does not exist.
+     *
+     * @param datasetUUID UUID for the missing Dataset
+     * @return ResponseStatusException with NOT FOUND status
+     */
+    private ResponseStatusException datasetNotFound(final String datasetUUID) {
+        return new ResponseStatusException(
+            HttpStatus.NOT_FOUND,
+            "Dataset " + datasetUUID + " Not Found"
+        );
+    }
+
+    /**
+     * Build the error response for a Dataset without a spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset without a spectrum
+     * @return 404 ResponseStatusException for the Dataset's spectrum
+     */
+    private ResponseStatusException spectrumNotFound(final String datasetUUID) {
+        return new ResponseStatusException(
+            HttpStatus.NOT_FOUND,
+            "Dataset " + datasetUUID + " has no spectrum"
+        );
+    }
+
+    /**
+     * Get the stored spectrum of a Dataset. Datasets stored before the
+     * spectrum store existed are added to it from their JSON-LD first.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The stored spectrum, empty if the Dataset has none, or null if
+     *         the Dataset does not exist
+     * @throws IOException If the spectrum could not be read from the JSON-LD
+     */
+    private StoredSpectrum storedSpectrum(final String datasetUUID) throws IOException {
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        if (spectrum != null) {
+            return spectrum;
+        }
+        try {
+            return spectrumStore.put(datasetUUID, documentService.getJsonld(datasetUUID));
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * FETCH a certain amount of Datasets for a Collection, optionally only
+     * those whose spectra have some technique type, units and quantities and
+     * cover an x range.
      *
      * @param collectionTitle Title of the Collection this dataset belongs to
      * @param pageNumber page number to start on,
@@ -96,7 +216,11 @@ public class DatasetController {
      * @param pageSize number of results to return,
      *    must be positive (default: 5)
      * @param returnFull boolean for returning full dataset or not
+     * @param parameters every query parameter, of which technique, x_units,
+     *    x_quantity, y_quantity, x_min and x_max filter the Datasets by their
+     *    spectra (default: none)
      * @return List either BatsDatasets (full) or List of Map (not full)
+     * @throws Exception
      */
     @RequestMapping(
         value = "/{collection_title}/datasets",
@@ -111,53 +235,156 @@ public class DatasetController {
         @RequestParam(name = "pageSize", defaultValue = "5")
         @Min(1) final int pageSize,
         @RequestParam(name = "returnFull", defaultValue = "false")
-        final boolean returnFull
+        final boolean returnFull,
+        @RequestParam final Map<String, String> parameters
         //@RequestParam(
         //    name = "returnProperties",
         //    defaultValue = ["uuid","title","url","created","modified"]
         //) final String[] returnProperties
         // ) @Valid final String[] returnProperties
-    ) {
-        Map<String, Object> body = graphService.getDatasets(
-            collectionTitle,
-            pageNumber,
-            pageSize,
-            returnFull
-        );
-
+    ) throws Exception {
         AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
 
         // Skip authorization checking if authorization is not enabled or no user is
         // logged in.
+        String user = null;
         if (authHandler != null) {
+            user = AuthorizationUtils.getUser();
+        }
 
-            String user = AuthorizationUtils.getUser();
+        // Paginate over only the datasets the user can read, so every page is full
+        // and the total and links are right. This is a single, cached lookup.
+        Set<String> readable = null;
+        boolean filterPage = false;
+        if (user != null) {
+            try {
+                readable = authHandler.listObjects(user, Permissions.READ);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to list readable datasets, filtering the page instead", e);
+                filterPage = true;
+            }
+        }
 
-            if (user != null) {
+        Collection<String> listed = select(collectionTitle, metadataFilter(parameters), readable);
 
-                // Get list of all returned uuids
-                ArrayList<String> uuids = new ArrayList<String>();
+        Map<String, Object> body;
+        if (appConfig.getDatasetListing() == DatasetListingType.DOCUMENT) {
+            body = documentService.getDatasets(
+                collectionTitle,
+                pageNumber,
+                pageSize,
+                returnFull,
+                listed
+            );
+        } else {
+            body = graphService.getDatasets(
+                collectionTitle,
+                pageNumber,
+                pageSize,
+                returnFull,
+                listed
+            );
+        }
 
-                for (String key : body.keySet()) {
-                    uuids.add(key);
-                }
+        if (filterPage) {
 
-                // Map of uuids to datasets the user has authorization to read
-                HashMap<String, Object> authorizedDatasets = new HashMap<String, Object>();
+            // Keep only the datasets on this page the user can read
+            List<?> datasets = (List<?>) body.getOrDefault("data", Collections.emptyList());
+            List<String> uuids = new ArrayList<String>();
+            for (Object dataset : datasets) {
+                uuids.add(datasetUUIDOf(dataset));
+            }
+            Set<String> readableOnPage = authHandler.checkPermissions(
+                user,
+                Permissions.READ,
+                uuids
+            );
 
-                // Get each dataset that the user has access to and put it in the list
-                for (String key : uuids) {
-                    if (authHandler.checkPermission(user, Permissions.READ, key)) {
-                        authorizedDatasets.put(key, body.get(key));
-                    }
+            List<Object> authorizedDatasets = new ArrayList<Object>();
+            for (Object dataset : datasets) {
+                if (readableOnPage.contains(datasetUUIDOf(dataset))) {
+                    authorizedDatasets.add(dataset);
                 }
+            }
 
-                body = authorizedDatasets;
+            body = new LinkedHashMap<String, Object>(body);
+            body.put("data", authorizedDatasets);
+        }
 
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Read a metadata filter from the query parameters of a listing.
+     *
+     * @param parameters The query parameters
+     * @return The filter, empty if none of its parameters are given
+     * @throws ResponseStatusException If x_min or x_max is not a number
+     */
+    private static MetadataFilter metadataFilter(final Map<String, String> parameters)
+            throws ResponseStatusException {
+        MetadataFilter filter = new MetadataFilter();
+        filter.setTechnique(parameters.get("technique"));
+        filter.setXUnits(parameters.get("x_units"));
+        filter.setXQuantity(parameters.get("x_quantity"));
+        filter.setYQuantity(parameters.get("y_quantity"));
+        try {
+            if (parameters.containsKey("x_min")) {
+                filter.setXMin(Double.valueOf(parameters.get("x_min")));
             }
+            if (parameters.containsKey("x_max")) {
+                filter.setXMax(Double.valueOf(parameters.get("x_max")));
+            }
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "x_min and x_max must be numbers", e);
         }
+        return filter;
+    }
 
-        return ResponseEntity.ok(body);
+    /**
+     * Choose the Datasets to list: those passing a metadata filter and the
+     * user can read.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param filter          Filter on the metadata of the Datasets' spectra
+     * @param readable        UUIDs of the Datasets the user can read, or null
+     *                        to list them regardless
+     * @return UUIDs of the Datasets to list, or null to list every Dataset
+     * @throws ResponseStatusException If the filter is invalid
+     */
+    private Collection<String> select(
+        final String collectionTitle,
+        final MetadataFilter filter,
+        final Set<String> readable
+    ) throws ResponseStatusException {
+        Set<String> selected;
+        try {
+            selected = metadataService.select(collectionTitle, filter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+        if (selected == null || readable == null) {
+            return selected == null ? readable : selected;
+        }
+        Set<String> listed = new HashSet<>(selected);
+        listed.retainAll(readable);
+        return listed;
+    }
+
+    /**
+     * Get the UUID of an entry in a Dataset listing. Full entries are identified
+     * by their Dataset URI, summaries carry a "uuid" field.
+     *
+     * @param dataset Listing entry, either a UniquelyIdentifiable or a summary Map
+     * @return UUID of the Dataset
+     */
+    private static String datasetUUIDOf(final Object dataset) {
+        if (dataset instanceof UniquelyIdentifiable) {
+            String uri = ((UniquelyIdentifiable) dataset).getUUID();
+            return uri.substring(uri.lastIndexOf('/') + 1);
+        }
+        return String.valueOf(((Map<?, ?>) dataset).get("uuid"));
     }
 
     /**
@@ -200,8 +427,9 @@ public class DatasetController {
         String datasetUUID = UUIDGenerator.generateUUID();
 
         // Create in the graph database
+        Map<String, Object> summary;
         try {
-            graphService.uploadJsonld(collectionTitle, datasetUUID, jsonldPayload);
+            summary = graphService.uploadJsonld(collectionTitle, datasetUUID, jsonldPayload);
         } catch (Exception e) {
             LOGGER.error(UPLOAD_DATASET_ERROR, e);
             throw new ResponseStatusException(
@@ -213,7 +441,7 @@ public class DatasetController {
         // Create in the document database w/ rollback of graph database on error
         LOGGER.info("Uploading dataset to document store: " + datasetUUID);
         try {
-            documentService.upload(collectionTitle, datasetUUID, jsonldPayload);
+            documentService.upload(collectionTitle, datasetUUID, jsonldPayload, summary);
             LOGGER.info("Dataset uploaded to document store!");
         } catch (Exception e) {
             // Rollback graph database insert of dataset
@@ -229,6 +457,8 @@ public class DatasetController {
             );
         }
 
+        indexSpectrum(collectionTitle, datasetUUID, jsonldPayload);
+
         String jsonld = graphService.getModelJsonld(collectionTitle, datasetUUID);
         BatsDataset batsDataset = new BatsDataset(datasetUUID, jsonld);
         return new ResponseEntity<BatsDataset>(batsDataset, HttpStatus.CREATED);
@@ -239,14 +469,15 @@ public class DatasetController {
      *
      * @param collectionTitle Title for Collection collection that Dataset belonds to
      * @param datasetUUID    UUID for Dataset to retrieve from the Collection
-     * @param format       Format to return the dataset ["graph", "json", "jsonld"]
+     * @param format       Format to return the dataset
+     *                     ["graph", "json", "jsonld", "binary"]
      * @return             Requested format of Dataset UUID
      * @throws Exception
     */
     @RequestMapping(
         value = "/{collection_title}/datasets/{dataset_uuid}",
         method = RequestMethod.GET,
-        produces = MediaType.APPLICATION_JSON_VALUE
+        produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE}
     )
     @ResponseStatus(HttpStatus.OK)
     @ResponseBody
@@ -274,29 +505,230 @@ public class DatasetController {
             }
         }
 
-        try {
-            documentService.getJson(datasetUUID);
-        } catch (ResourceNotFoundException e) {
-            throw new ResponseStatusException(
-                HttpStatus.NOT_FOUND,
-                "Dataset " + datasetUUID + " Not Found"
-            );
+        if (format == BatsDatasetFormats.BINARY) {
+            return spectrumRecord(datasetUUID);
         }
-        String output;
+
         if (format == BatsDatasetFormats.GRAPH || format == BatsDatasetFormats.FULL) {
+            if (!documentService.exists(datasetUUID)) {
+                throw datasetNotFound(datasetUUID);
+            }
             String jsonld = graphService.getModelJsonld(collectionTitle, datasetUUID);
             BatsDataset batsDataset = new BatsDataset(datasetUUID, jsonld);
             return ResponseEntity.ok(batsDataset);
         }
 
-        if (format == BatsDatasetFormats.JSONLD) {
-            output = documentService.getJsonld(datasetUUID);
-        } else {
-            output = documentService.getJson(datasetUUID);
+        // Only fetch the document field needed for the requested format
+        String output;
+        try {
+            if (format == BatsDatasetFormats.JSONLD) {
+                output = documentService.getJsonld(datasetUUID);
+            } else {
+                output = documentService.getJson(datasetUUID);
+            }
+        } catch (ResourceNotFoundException e) {
+            throw datasetNotFound(datasetUUID);
         }
         return ResponseEntity.ok(output);
     }
 
+    /**
+     * READ a downsampled preview of the spectrum of a Dataset, for plotting.
+     * The preview keeps the shape of the spectrum with at most the given
+     * number of points, chosen by Largest-Triangle-Three-Buckets, and may be
+     * cached by the client until its ETag changes.
+     *
+     * @param collectionTitle Title of the Collection the Dataset belongs to
+     * @param datasetUUID     UUID of the Dataset
+     * @param points          Most points to return (default: 256)
+     * @param request         The request, for its If-None-Match header
+     * @return Axis metadata and the x and y values of the preview, or no body
+     *         if the client's copy is current
+     * @throws Exception If the Dataset is missing, not in the Collection or has
+     *                   no spectrum
+     */
+    @RequestMapping(
+        value = "/{collection_title}/datasets/{dataset_uuid}/spectrum",
+        method = RequestMethod.GET,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Map<String, Object>> getSpectrumPreview(
+        @PathVariable("collection_title") @Pattern(regexp = BatsCollection.TITLE_REGEX)
+        final String collectionTitle,
+        @PathVariable("dataset_uuid") @Pattern(regexp = UUIDGenerator.UUID_REGEX)
+        final String datasetUUID,
+        @RequestParam(name = "points", defaultValue = "256")
+        @Min(2) final int points,
+        final WebRequest request
+    ) throws Exception {
+
+        AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+
+        // Skip authorization checking if authorization is not enabled or no user is
+        // logged in.
+        if (authHandler != null) {
+
+            String user = AuthorizationUtils.getUser();
+
+            // If the user can't read the dataset, return an error message
+            if (user != null && !authHandler.checkPermission(user, Permissions.READ, datasetUUID)) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                        "User " + user + " lacks permission to READ dataset " + datasetUUID);
+            }
+        }
+
+        if (!documentService.exists(collectionTitle, datasetUUID)
+                || storedSpectrum(datasetUUID) == null) {
+            throw datasetNotFound(datasetUUID);
+        }
+        SpectrumPreviewService.Preview preview = previewService.get(datasetUUID, points);
+        if (preview == null) {
+            throw spectrumNotFound(datasetUUID);
+        }
+
+        String etag = previewETag(datasetUUID, points, preview);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("uuid", datasetUUID);
+        body.put("technique", spectrum == null ? null : spectrum.getTechnique());
+        body.put("x_units", spectrum == null ? null : spectrum.getXUnits());
+        body.put("x_quantity", spectrum == null ? null : spectrum.getXQuantity());
+        body.put("y_quantity", spectrum == null ? null : spectrum.getYQuantity());
+        body.put("points", preview.size());
+        body.put("total_points", preview.getTotalPoints());
+        body.put("x", preview.getXValues());
+        body.put("y", preview.getYValues());
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(appConfig.getSpectra().getPreviewMaxAge(),
+                TimeUnit.SECONDS).cachePrivate())
+            .eTag(etag)
+            .body(body);
+    }
+
+    /**
+     * Make the ETag of a spectrum preview. Besides the values, it covers the
+     * Dataset, the requested level and the size of the spectrum, so previews
+     * of different Datasets or sizes never share an ETag even when their values
+     * agree. It stays the same across versions of the Dataset with the same
+     * preview.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param points      Most points requested
+     * @param preview     The preview
+     * @return The quoted ETag
+     */
+    private static String previewETag(
+        final String datasetUUID,
+        final int points,
+        final SpectrumPreviewService.Preview preview
+    ) {
+        ByteBuffer bytes = ByteBuffer.allocate(2 * Float.BYTES * preview.size());
+        FloatBuffer floats = bytes.asFloatBuffer();
+        floats.put(preview.getXValues());
+        floats.put(preview.getYValues());
+        CRC32 crc = new CRC32();
+        crc.update(datasetUUID.getBytes(StandardCharsets.UTF_8));
+        crc.update(bytes);
+        return "\"" + Long.toHexString(crc.getValue()) + "-" + points + "-"
+            + preview.getTotalPoints() + "\"";
+    }
+
+    /**
+     * Respond with the spectrum of a Dataset as a binary record.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The record, as written by SpectrumRecordWriter
+     * @throws IOException If the spectrum could not be read
+     * @throws ResponseStatusException If the Dataset is missing or has no spectrum
+     */
+    private ResponseEntity<byte[]> spectrumRecord(final String datasetUUID)
+            throws IOException, ResponseStatusException {
+        StoredSpectrum spectrum = storedSpectrum(datasetUUID);
+        if (spectrum == null) {
+            throw datasetNotFound(datasetUUID);
+        }
+        if (spectrum.isEmpty()) {
+            throw spectrumNotFound(datasetUUID);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SpectrumRecordWriter writer = new SpectrumRecordWriter(bytes);
+        writer.write(datasetUUID, spectrum);
+        writer.flush();
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(bytes.toByteArray());
+    }
+
+    /**
+     * READ the spectra of many Datasets of a Collection as binary records,
+     * one per requested UUID in the order requested. The records are those
+     * of format=binary, streamed one after another; a Dataset that is
+     * missing, not in the Collection, not readable by the user or without a
+     * spectrum has a record with no points. Requests for more Datasets than
+     * app.spectra.max_batch are rejected with 413.
+     *
+     * @param collectionTitle Title of the Collection the Datasets belong to
+     * @param datasetUUIDs    JSON array of the UUIDs of the Datasets
+     * @param response        HTTP response to stream the records to
+     * @throws IOException If the response could not be written
+     */
+    @RequestMapping(
+        value = "/{collection_title}/datasets/spectra",
+        method = RequestMethod.POST,
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_OCTET_STREAM_VALUE
+    )
+    public void getSpectrumRecords(
+        @PathVariable("collection_title") @Pattern(regexp = BatsCollection.TITLE_REGEX)
+        final String collectionTitle,
+        @RequestBody final List<String> datasetUUIDs,
+        final HttpServletResponse response
+    ) throws IOException {
+        int maxBatch = appConfig.getSpectra().getMaxBatch();
+        if (datasetUUIDs.size() > maxBatch) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "At most " + maxBatch + " datasets may be requested at once");
+        }
+
+        // Check if collection exists
+        collectionUtils.getCollection(collectionTitle);
+        Set<String> members = new HashSet<>(datasetUUIDs);
+        members.retainAll(new HashSet<>(documentService.getDatasetUUIDs(collectionTitle)));
+
+        // Only include datasets the user can read when authorization is enabled,
+        // checking only the requested members of the Collection
+        Set<String> readable = members;
+        AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+        if (authHandler != null) {
+            String user = AuthorizationUtils.getUser();
+            if (user != null) {
+                readable = authHandler.checkPermissions(user, Permissions.READ, members);
+            }
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        try (OutputStream out = response.getOutputStream()) {
+            SpectrumRecordWriter writer = new SpectrumRecordWriter(out);
+            for (String datasetUUID : datasetUUIDs) {
+                StoredSpectrum spectrum = null;
+                if (readable.contains(datasetUUID)) {
+                    try {
+                        spectrum = storedSpectrum(datasetUUID);
+                    } catch (IOException e) {
+                        LOGGER.debug("Unable to read spectrum of dataset " + datasetUUID, e);
+                    }
+                }
+                writer.write(datasetUUID, spectrum);
+            }
+            writer.flush();
+        }
+    }
+
     /**
      * READ A list of all UUIDs for datasets belonging to the given collection.
      *
@@ -325,6 +757,65 @@ public class DatasetController {
         }
     }
 
+    /**
+     * EXPORT all Datasets in a Collection as newline delimited JSON (NDJSON).
+     * The response is streamed from the document store, one Dataset per line.
+     *
+     * @param collectionTitle Title of the Collection to export
+     * @param format          Formats to include per line ["json", "jsonld", "both"]
+     * @param gzip            Compress the response w/ gzip content encoding
+     * @param response        HTTP response to stream the NDJSON to
+     * @throws IOException
+     */
+    @RequestMapping(
+        value = "/{collection_title}/datasets/export",
+        method = RequestMethod.GET,
+        produces = NDJSON_VALUE
+    )
+    public void exportDatasets(
+        @PathVariable("collection_title") @Pattern(regexp = BatsCollection.TITLE_REGEX)
+        final String collectionTitle,
+        @RequestParam(name = "format", defaultValue = "json")
+        final DatasetExportFormats format,
+        @RequestParam(name = "gzip", defaultValue = "false")
+        final boolean gzip,
+        final HttpServletResponse response
+    ) throws IOException {
+        // Check if collection exists
+        collectionUtils.getCollection(collectionTitle);
+
+        // Only export datasets the user can read when authorization is enabled,
+        // resolved once up front so only their documents are read
+        Collection<String> include = null;
+        AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+        String user = authHandler == null ? null : AuthorizationUtils.getUser();
+        if (user != null) {
+            List<String> members = documentService.getDatasetUUIDs(collectionTitle);
+            try {
+                Set<String> readable = authHandler.listObjects(user, Permissions.READ);
+                members.retainAll(readable);
+                include = members;
+            } catch (IOException e) {
+                LOGGER.warn("Unable to list readable datasets, checking the collection instead", e);
+                include = authHandler.checkPermissions(user, Permissions.READ, members);
+            }
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        try (OutputStream out = gzip
+            ? new GZIPOutputStream(response.getOutputStream())
+            : response.getOutputStream()
+        ) {
+            documentService.exportCollection(collectionTitle, format, include, out);
+        }
+    }
+
     /**
      * UPDATE (REPLACE) for Dataset w/ UUID in Collection collection.
      *
@@ -375,12 +866,13 @@ public class DatasetController {
 
         // Update graph database dataset
         LOGGER.info("Uploading dataset to graph database: " + datasetUUID);
-        graphService.uploadJsonld(collectionTitle, datasetUUID, jsonldPayload, createdTime);
+        Map<String, Object> summary = graphService.uploadJsonld(
+            collectionTitle, datasetUUID, jsonldPayload, createdTime);
 
         // Add updated dataset to document store
         LOGGER.info("Uploading dataset to document store: " + datasetUUID);
         try {
-            documentService.upload(collectionTitle, datasetUUID, jsonldPayload);
+            documentService.upload(collectionTitle, datasetUUID, jsonldPayload, summary);
             LOGGER.info("Dataset uploaded to document store!");
         } catch (Exception e) {
             graphService.uploadJsonld(collectionTitle, datasetUUID, oldJsonld, createdTime);
@@ -391,6 +883,8 @@ public class DatasetController {
             );
         }
 
+        indexSpectrum(collectionTitle, datasetUUID, jsonldPayload);
+
         String jsonld = graphService.getModelJsonld(collectionTitle, datasetUUID);
         BatsDataset batsDataset = new BatsDataset(datasetUUID, jsonld);
         return ResponseEntity.ok(batsDataset);
@@ -459,12 +953,14 @@ public class DatasetController {
 
         // Update graph database dataset
         LOGGER.info("Uploading dataset to graph database: " + datasetUUID);
-        graphService.uploadJsonld(collectionTitle, datasetUUID, mergedGraphJsonld, createdTime);
+        Map<String, Object> summary = graphService.uploadJsonld(
+            collectionTitle, datasetUUID, mergedGraphJsonld, createdTime);
 
         // Add updated dataset to document store
         LOGGER.info("Uploading dataset to document store: " + datasetUUID);
         try {
-            documentService.upload(collectionTitle, datasetUUID, mergedDocumentJsonld);
+            documentService.upload(
+                collectionTitle, datasetUUID, mergedDocumentJsonld, summary);
             LOGGER.info("Dataset uploaded to document store!");
         } catch (Exception e) {
             graphService.uploadJsonld(collectionTitle, datasetUUID, oldJsonld, createdTime);
@@ -475,6 +971,8 @@ public class DatasetController {
             );
         }
 
+        indexSpectrum(collectionTitle, datasetUUID, mergedDocumentJsonld);
+
         String jsonld = graphService.getModelJsonld(collectionTitle, datasetUUID);
         BatsDataset batsDataset = new BatsDataset(datasetUUID, jsonld);
         return ResponseEntity.ok(batsDataset);
@@ -547,5 +1045,30 @@ public class DatasetController {
                 "Dataset unable to be deleted from document database"
             );
         }
+        searchService.remove(collectionTitle, datasetUUID);
+        metadataService.remove(collectionTitle, datasetUUID);
+        peakService.removeMember(collectionTitle, datasetUUID);
+    }
+
+    /**
+     * Update the spectral search and metadata indexes with a Dataset's spectrum. The Dataset is
+     * already stored, so a failure is only logged.
+     *
+     * @param collectionTitle Title of the Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     * @param jsonld          JSON-LD stored for the Dataset
+     */
+    private void indexSpectrum(
+        final String collectionTitle,
+        final String datasetUUID,
+        final String jsonld
+    ) {
+        try {
+            searchService.index(collectionTitle, datasetUUID, jsonld);
+            metadataService.index(collectionTitle, datasetUUID);
+            peakService.addMember(collectionTitle, datasetUUID);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to index spectrum of dataset: " + datasetUUID, e);
+        }
     }
 }
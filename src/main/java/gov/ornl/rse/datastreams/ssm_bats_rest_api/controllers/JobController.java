@@ -0,0 +1,48 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.JobService;
+
+/**
+ * Controller for polling the status of background jobs.
+ */
+@RestController
+@RequestMapping("/jobs")
+@Validated
+public class JobController {
+
+    /**
+     * Background job tracking.
+     */
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * Get the status of a background job.
+     *
+     * @param id ID of the Job.
+     * @return The Job's current status and progress
+     * @throws ResponseStatusException If the Job is unknown or has expired.
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.GET)
+    @ResponseStatus(HttpStatus.OK)
+    @ResponseBody
+    public Job getJob(@PathVariable("id") final String id) throws ResponseStatusException {
+        Job job = jobService.getJob(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Job " + id + " not found");
+        }
+        return job;
+    }
+}
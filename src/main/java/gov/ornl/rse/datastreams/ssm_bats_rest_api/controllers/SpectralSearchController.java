@@ -0,0 +1,261 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Permissions;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsCollection;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.MetadataFilter;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.PeakQuery;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.SpectrumQuery;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.DocumentService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.MetadataIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.PeakIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectralSearchService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Peak;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.AuthorizationUtils;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
+
+@RestController
+@RequestMapping("/collections")
+@Validated
+public class SpectralSearchController {
+
+    /**
+     * Setup logger for SpectralSearchController.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpectralSearchController.class);
+
+    /**
+     * Setup Application config.
+     */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Spectral similarity search service.
+     */
+    @Autowired
+    private SpectralSearchService searchService;
+
+    /**
+     * Peak list search service.
+     */
+    @Autowired
+    private PeakIndexService peakService;
+
+    /**
+     * Filters the matches by the metadata of their spectra.
+     */
+    @Autowired
+    private MetadataIndexService metadataService;
+
+    /**
+     * Document store service for the summaries of matches.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Collection utilities.
+     */
+    @Autowired
+    private CollectionUtils collectionUtils;
+
+    /**
+     * SEARCH a Collection for the Datasets with the spectra most similar to the
+     * query spectrum on the grid for its technique and x units, by cosine
+     * similarity or the metric or weighted metrics the query names.
+     *
+     * @param collectionTitle Title of the Collection to search
+     * @param query           Query spectrum and number of matches to return
+     * @return Matches, most similar first, each with its score and Dataset summary
+     * @throws ResponseStatusException If the Collection is missing or the query invalid
+    */
+    @RequestMapping(
+        value = "/{collection_title}/search",
+        method = RequestMethod.POST,
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Map<String, Object>> searchDatasets(
+        @PathVariable("collection_title") @Pattern(regexp = BatsCollection.TITLE_REGEX)
+        final String collectionTitle,
+        @Valid @RequestBody final SpectrumQuery query
+    ) throws ResponseStatusException {
+        int maxResults = appConfig.getSpectra().getMaxResults();
+        if (query.getK() > maxResults) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "k must be at most " + maxResults);
+        }
+        if (query.getX().length != query.getY().length) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "x and y must have the same number of values");
+        }
+
+        return matches(collectionTitle, query.getK(), query.getFilter(), (k, filter) ->
+            searchService.search(collectionTitle, query, k, filter));
+    }
+
+    /**
+     * SEARCH a Collection for the Datasets whose detected peaks best match a
+     * peak list. Candidates sharing peak positions are found through the peak
+     * index, then scored by the cosine similarity of the two peak lists.
+     *
+     * @param collectionTitle Title of the Collection to search
+     * @param query           Query peaks, tolerance and number of matches to return
+     * @return Matches, best first, each with its score and Dataset summary
+     * @throws ResponseStatusException If the Collection is missing or the query invalid
+    */
+    @RequestMapping(
+        value = "/{collection_title}/peaks/search",
+        method = RequestMethod.POST,
+        consumes = MediaType.APPLICATION_JSON_VALUE,
+        produces = MediaType.APPLICATION_JSON_VALUE
+    )
+    public ResponseEntity<Map<String, Object>> searchPeaks(
+        @PathVariable("collection_title") @Pattern(regexp = BatsCollection.TITLE_REGEX)
+        final String collectionTitle,
+        @Valid @RequestBody final PeakQuery query
+    ) throws ResponseStatusException {
+        int maxResults = appConfig.getSpectra().getMaxResults();
+        if (query.getK() > maxResults) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "k must be at most " + maxResults);
+        }
+        double tolerance = query.getTolerance() == null
+            ? appConfig.getSpectra().getPeakBinWidth() : query.getTolerance();
+        List<Peak> peaks = new ArrayList<>(query.getPeaks().size());
+        for (PeakQuery.QueryPeak peak : query.getPeaks()) {
+            peaks.add(new Peak(peak.getPosition(), peak.getHeight().floatValue(), //NOPMD
+                peak.getWidth() == null ? 0 : peak.getWidth().floatValue()));
+        }
+
+        return matches(collectionTitle, query.getK(), query.getFilter(), (k, filter) ->
+            peakService.search(collectionTitle, peaks, tolerance, k, filter));
+    }
+
+    /**
+     * Run a search of a Collection for the matches the user can read that pass
+     * a metadata filter, and respond with them and their Dataset summaries.
+     *
+     * @param collectionTitle Title of the Collection to search
+     * @param k               Most matches to return
+     * @param metadata        Filter on the metadata of the matches. May be null.
+     * @param search          Finds up to a number of matches passing a filter
+     * @return Matches, best first, each with its score and Dataset summary
+     * @throws ResponseStatusException If the Collection is missing or the query invalid
+     */
+    private ResponseEntity<Map<String, Object>> matches(
+        final String collectionTitle,
+        final int k,
+        final MetadataFilter metadata,
+        final BiFunction<Integer, Predicate<String>, List<SpectralIndex.Match>> search
+    ) throws ResponseStatusException {
+        // Check if collection exists
+        collectionUtils.getCollection(collectionTitle);
+
+        // Skip authorization checking if authorization is not enabled or no user is
+        // logged in.
+        AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+        String user = authHandler == null ? null : AuthorizationUtils.getUser();
+        Set<String> readable = null;
+        boolean filterMatches = false;
+        if (user != null) {
+            try {
+                readable = authHandler.listObjects(user, Permissions.READ);
+            } catch (IOException e) {
+                LOGGER.warn("Unable to list readable datasets, filtering the matches instead", e);
+                filterMatches = true;
+            }
+        }
+
+        List<SpectralIndex.Match> matches;
+        try {
+            Set<String> selected = metadataService.select(collectionTitle, metadata);
+            Predicate<String> passes = selected == null ? uuid -> true : selected::contains;
+            if (readable != null) {
+                matches = search.apply(k, passes.and(readable::contains));
+            } else if (filterMatches) {
+                // Check the best matches one by one, so fewer than k may remain
+                matches = readableMatches(authHandler, user, search.apply(
+                    appConfig.getSpectra().getMaxResults(), passes));
+                matches = matches.subList(0, Math.min(k, matches.size()));
+            } else {
+                matches = search.apply(k, passes);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+
+        List<String> uuids = new ArrayList<>(matches.size());
+        for (SpectralIndex.Match match : matches) {
+            uuids.add(match.getId());
+        }
+        Map<String, Map<String, Object>> summaries = documentService.getSummaries(uuids);
+
+        List<Map<String, Object>> data = new ArrayList<>(matches.size());
+        for (SpectralIndex.Match match : matches) {
+            Map<String, Object> entry = new LinkedHashMap<>(); //NOPMD
+            entry.put("uuid", match.getId());
+            entry.put("score", match.getScore());
+            entry.putAll(summaries.getOrDefault(match.getId(), Collections.emptyMap()));
+            data.add(entry);
+        }
+        return ResponseEntity.ok(Collections.singletonMap("data", data));
+    }
+
+    /**
+     * Keep only the matches the user can read.
+     *
+     * @param authHandler Authorization handler
+     * @param user        User making the request
+     * @param matches     Matches to check
+     * @return The readable matches, in the same order
+     */
+    private static List<SpectralIndex.Match> readableMatches(
+        final AuthorizationHandler authHandler,
+        final String user,
+        final List<SpectralIndex.Match> matches
+    ) {
+        List<String> uuids = new ArrayList<>(matches.size());
+        for (SpectralIndex.Match match : matches) {
+            uuids.add(match.getId());
+        }
+        Set<String> readable = authHandler.checkPermissions(user, Permissions.READ, uuids);
+        List<SpectralIndex.Match> authorized = new ArrayList<>(readable.size());
+        for (SpectralIndex.Match match : matches) {
+            if (readable.contains(match.getId())) {
+                authorized.add(match);
+            }
+        }
+        return authorized;
+    }
+}
@@ -4,10 +4,12 @@ import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
@@ -18,6 +20,8 @@ import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Permissions;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Relationship;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.Roles;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.JobService;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.AuthorizationUtils;
 
 /**
@@ -37,6 +41,12 @@ public class ZanzibarCollectionController {
     @Autowired
     private ApplicationConfig appConfig;
 
+    /**
+     * Background job tracking for long deletes.
+     */
+    @Autowired
+    private JobService jobService;
+
     /**
      * Add something to a collection.
      *
@@ -91,24 +101,40 @@ public class ZanzibarCollectionController {
      * Delete a collection. Only the literal collection itself is deleted. Members
      * of the collection will continue to exist.
      *
-     * @param name UUID of the collection to delete.
+     * @param name  UUID of the collection to delete.
+     * @param async True to delete in the background and return the tracking Job.
+     * @return Empty when deleted, or the accepted Job when async
      * @throws ResponseStatusException If user lacks DELETE on the collection.
      */
     @RequestMapping(value = "/collection/{name}", method = RequestMethod.DELETE)
-    @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public void delete(@PathVariable("name") final String name) throws ResponseStatusException {
+    public ResponseEntity<Job> delete(@PathVariable("name") final String name,
+            @RequestParam(name = "async", defaultValue = "false") final boolean async)
+            throws ResponseStatusException {
 
         AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
         String user = AuthorizationUtils.getUser();
 
+        // Check permission up front so a background delete can skip it
+        if (user != null && !authHandler.checkPermission(user, Permissions.DELETE, name)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
+                    "User " + user + " lacks DELETE permissions on collection " + name);
+        }
+
+        if (async) {
+            Job job = jobService.submit("delete-collection", name,
+                    running -> authHandler.deleteObject(null, name, running::setProcessed));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        }
+
         // Delete the collection
         try {
-            authHandler.deleteObject(user, name);
+            authHandler.deleteObject(null, name);
         } catch (Exception e) {
-            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
-                    "User " + user + " lacks DELETE permissions on collection " + name);
+            throw new ResponseStatusException(HttpStatus.BAD_GATEWAY,
+                    "Unable to delete permissions on collection " + name);
         }
+        return ResponseEntity.ok().build();
     }
 
     /**
@@ -2,16 +2,20 @@ package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization.AuthorizationHandler;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.JobService;
 
 /**
  * Controller for endpoints administrating Zanzibar users.
@@ -30,6 +34,12 @@ public class ZanzibarUserController {
     @Autowired
     private ApplicationConfig appConfig;
 
+    /**
+     * Background job tracking for long deletes.
+     */
+    @Autowired
+    private JobService jobService;
+
     /**
      * Create a new user.
      *
@@ -47,15 +57,24 @@ public class ZanzibarUserController {
     /**
      * Delete a user.
      *
-     * @param name Username to delete.
+     * @param name  Username to delete.
+     * @param async True to delete in the background and return the tracking Job.
+     * @return Empty when deleted, or the accepted Job when async
      */
     @RequestMapping(value = "/{name}", method = RequestMethod.DELETE)
-    @ResponseStatus(HttpStatus.OK)
     @ResponseBody
-    public void delete(@PathVariable("name") final String name) {
+    public ResponseEntity<Job> delete(@PathVariable("name") final String name,
+            @RequestParam(name = "async", defaultValue = "false") final boolean async) {
 
         AuthorizationHandler authHandler = appConfig.getAuthorizationHandler();
+        if (async) {
+            Job job = jobService.submit("delete-user", name,
+                    running -> authHandler.deleteUser(name, running::setProcessed));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        }
+
         authHandler.deleteUser(name);
+        return ResponseEntity.ok().build();
     }
 
 }
@@ -0,0 +1,21 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.converters;
+
+import java.util.Locale;
+
+import org.springframework.core.convert.converter.Converter;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetExportFormats;
+
+public class DatasetExportFormatsConverter implements Converter<String, DatasetExportFormats> {
+
+    /**
+     * Overrides convert of String to uppercase for DatasetExportFormats Enum.
+     *
+     * @param source Input string to uppercase for conversion
+     * @return DatasetExportFormats value for source
+     */
+    @Override
+    public DatasetExportFormats convert(final String source) {
+        return DatasetExportFormats.valueOf(source.toUpperCase(Locale.getDefault()));
+    }
+}
@@ -22,5 +22,11 @@ public enum BatsDatasetFormats {
     /**
      * Full graph format JSON-LD from Apache Jena.
      */
-    GRAPH
+    GRAPH,
+
+    /**
+     * Spectrum as a binary record of axis metadata and little-endian float64
+     * x and y values, as written by SpectrumRecordWriter.
+     */
+    BINARY
 }
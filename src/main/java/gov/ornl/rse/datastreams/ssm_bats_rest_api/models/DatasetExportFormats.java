@@ -0,0 +1,21 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+/**
+ * Document formats to include per line when exporting a Collection.
+ */
+public enum DatasetExportFormats {
+    /**
+     * Abbreviated JSON format.
+     */
+    JSON,
+
+    /**
+     * JSON-LD format.
+     */
+    JSONLD,
+
+    /**
+     * Both the abbreviated JSON and JSON-LD formats.
+     */
+    BOTH
+}
@@ -0,0 +1,32 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+/**
+ * Projection of a DocumentDataset with only the summary fields used for listings.
+ */
+public interface DatasetSummary {
+
+    /**
+     * @return ID for the Dataset
+     */
+    String getDatasetId();
+
+    /**
+     * @return Title of the Dataset
+     */
+    String getTitle();
+
+    /**
+     * @return URL for the SciData framework node of the Dataset
+     */
+    String getUrl();
+
+    /**
+     * @return Created timestamp of the Dataset
+     */
+    String getCreated();
+
+    /**
+     * @return Modified timestamp of the Dataset
+     */
+    String getModified();
+}
@@ -2,7 +2,13 @@ package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
 
 import org.bson.Document;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 
+@org.springframework.data.mongodb.core.mapping.Document
+@CompoundIndex(
+    name = "collection_modified",
+    def = "{ 'collectionTitle' : 1, 'modified' : -1 }"
+)
 public class DocumentDataset {
 
     /**
@@ -11,6 +17,31 @@ public class DocumentDataset {
     @Id
     private String datasetId;
 
+    /**
+     * Title of the Collection the Dataset belongs to.
+     */
+    private String collectionTitle;
+
+    /**
+     * Title of the Dataset.
+     */
+    private String title;
+
+    /**
+     * URL for the SciData framework node of the Dataset.
+     */
+    private String url;
+
+    /**
+     * Created timestamp of the Dataset.
+     */
+    private String created;
+
+    /**
+     * Modified timestamp of the Dataset.
+     */
+    private String modified;
+
     /**
      * Abbreviated JSON document version of Dataset.
      */
@@ -63,13 +94,104 @@ public class DocumentDataset {
         this.datasetId = datasetId;
     }
 
+    /**
+     * Getter for the title of the Collection the DocumentDataset belongs to.
+     *
+     * @return Collection title for the DocumentDataset
+    */
+    public String getCollectionTitle() {
+        return this.collectionTitle;
+    }
+
+    /**
+     * Setter for the title of the Collection the DocumentDataset belongs to.
+     *
+     * @param collectionTitle New Collection title for DocumentDataset
+    */
+    public void setCollectionTitle(final String collectionTitle) {
+        this.collectionTitle = collectionTitle;
+    }
+
+    /**
+     * Getter for the DocumentDataset's title.
+     *
+     * @return Title for the DocumentDataset
+    */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * Setter for the DocumentDataset's title.
+     *
+     * @param title New title for DocumentDataset
+    */
+    public void setTitle(final String title) {
+        this.title = title;
+    }
+
+    /**
+     * Getter for the DocumentDataset's SciData framework URL.
+     *
+     * @return SciData framework URL for the DocumentDataset
+    */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Setter for the DocumentDataset's SciData framework URL.
+     *
+     * @param url New SciData framework URL for DocumentDataset
+    */
+    public void setUrl(final String url) {
+        this.url = url;
+    }
+
+    /**
+     * Getter for the DocumentDataset's created timestamp.
+     *
+     * @return Created timestamp for the DocumentDataset
+    */
+    public String getCreated() {
+        return this.created;
+    }
+
+    /**
+     * Setter for the DocumentDataset's created timestamp.
+     *
+     * @param created New created timestamp for DocumentDataset
+    */
+    public void setCreated(final String created) {
+        this.created = created;
+    }
+
+    /**
+     * Getter for the DocumentDataset's modified timestamp.
+     *
+     * @return Modified timestamp for the DocumentDataset
+    */
+    public String getModified() {
+        return this.modified;
+    }
+
+    /**
+     * Setter for the DocumentDataset's modified timestamp.
+     *
+     * @param modified New modified timestamp for DocumentDataset
+    */
+    public void setModified(final String modified) {
+        this.modified = modified;
+    }
+
     /**
      * Getter for the DocumentDataset's abbreviated json document.
      *
-     * @return Abbreviated JSON document for the DocumentDataset
+     * @return Abbreviated JSON document for the DocumentDataset,
+     *         or null if it was not loaded
     */
     public String getJson() {
-        return this.json.toJson();
+        return this.json == null ? null : this.json.toJson();
     }
 
     /**
@@ -81,13 +203,23 @@ public class DocumentDataset {
         this.json = Document.parse(json);
     }
 
+    /**
+     * Setter for the DocumentDataset's JSON document from an already parsed document.
+     *
+     * @param json New JSON document for the DocumentDataset
+     */
+    public void setJson(final Document json) {
+        this.json = json;
+    }
+
     /**
      * Getter for the DocumentDataset's JSON-LD document.
      *
-     * @return JSON-LD document for the DocumentDataset
+     * @return JSON-LD document for the DocumentDataset,
+     *         or null if it was not loaded
     */
     public String getJsonld() {
-        return this.jsonld.toJson();
+        return this.jsonld == null ? null : this.jsonld.toJson();
     }
 
     /**
@@ -0,0 +1,180 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.DateUtils;
+
+/**
+ * Status of a long running operation executed in the background.
+ */
+public class Job {
+
+    /**
+     * States a Job moves through, in order.
+     */
+    public enum Status {
+        /**
+         * Waiting for a free worker.
+         */
+        PENDING,
+
+        /**
+         * Currently executing.
+         */
+        RUNNING,
+
+        /**
+         * Finished without error.
+         */
+        SUCCEEDED,
+
+        /**
+         * Stopped by an error.
+         */
+        FAILED
+    }
+
+    /**
+     * ID for the Job.
+     */
+    private final String id;
+
+    /**
+     * Short description of the operation, such as "delete-user".
+     */
+    private final String type;
+
+    /**
+     * Target of the operation, such as the UUID being deleted.
+     */
+    private final String target;
+
+    /**
+     * Created timestamp of the Job.
+     */
+    private final String created = DateUtils.now();
+
+    /**
+     * Current state of the Job.
+     */
+    private volatile Status status = Status.PENDING; //NOPMD
+
+    /**
+     * Number of items the Job has processed so far.
+     */
+    private final AtomicLong processed = new AtomicLong();
+
+    /**
+     * Error message if the Job failed.
+     */
+    private volatile String error; //NOPMD
+
+    /**
+     * Finished timestamp of the Job.
+     */
+    private volatile String finished; //NOPMD
+
+    /**
+     * Constructor to create a Job.
+     *
+     * @param newId     ID for the Job
+     * @param newType   Short description of the operation
+     * @param newTarget Target of the operation
+     */
+    public Job(final String newId, final String newType, final String newTarget) {
+        this.id = newId;
+        this.type = newType;
+        this.target = newTarget;
+    }
+
+    /**
+     * @return ID for the Job
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return Short description of the operation
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return Target of the operation
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * @return Created timestamp of the Job
+     */
+    public String getCreated() {
+        return created;
+    }
+
+    /**
+     * @return Current state of the Job
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return Number of items the Job has processed so far
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return Error message if the Job failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return Finished timestamp of the Job
+     */
+    public String getFinished() {
+        return finished;
+    }
+
+    /**
+     * Record progress on the Job.
+     *
+     * @param count The total number of items processed so far.
+     */
+    public void setProcessed(final long count) {
+        processed.set(count);
+    }
+
+    /**
+     * Mark the Job as started.
+     */
+    public void start() {
+        status = Status.RUNNING;
+    }
+
+    /**
+     * Mark the Job as finished without error.
+     */
+    public void succeed() {
+        finished = DateUtils.now();
+        status = Status.SUCCEEDED;
+    }
+
+    /**
+     * Mark the Job as stopped by an error.
+     *
+     * @param message Description of the error.
+     */
+    public void fail(final String message) {
+        error = message;
+        finished = DateUtils.now();
+        status = Status.FAILED;
+    }
+}
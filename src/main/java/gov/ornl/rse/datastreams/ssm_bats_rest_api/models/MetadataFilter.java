@@ -0,0 +1,154 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Restricts a listing or search to the Datasets whose spectra have some
+ * technique type, units and quantities, and cover an x range. Every field may
+ * be null; those given must all match.
+ */
+public class MetadataFilter {
+
+    /**
+     * Technique type of the spectra.
+     */
+    private String technique;
+
+    /**
+     * Units of the x values of the spectra.
+     */
+    @JsonProperty("x_units")
+    private String xUnits;
+
+    /**
+     * Quantity of the x values of the spectra.
+     */
+    @JsonProperty("x_quantity")
+    private String xQuantity;
+
+    /**
+     * Quantity of the y values of the spectra.
+     */
+    @JsonProperty("y_quantity")
+    private String yQuantity;
+
+    /**
+     * Lowest x value the spectra must cover.
+     */
+    @JsonProperty("x_min")
+    private Double xMin;
+
+    /**
+     * Highest x value the spectra must cover.
+     */
+    @JsonProperty("x_max")
+    private Double xMax;
+
+    /**
+     * Default constructor to create a MetadataFilter object.
+     */
+    public MetadataFilter() {
+    }
+
+    /**
+     * @return True if the filter lets every Dataset through
+     */
+    public boolean isEmpty() {
+        return technique == null && xUnits == null && xQuantity == null
+            && yQuantity == null && xMin == null && xMax == null;
+    }
+
+    /**
+     * @return Technique type of the spectra. May be null.
+     */
+    public String getTechnique() {
+        return technique;
+    }
+
+    /**
+     * @param newTechnique Technique type of the spectra
+     */
+    public void setTechnique(final String newTechnique) {
+        this.technique = newTechnique;
+    }
+
+    /**
+     * @return Units of the x values of the spectra. May be null.
+     */
+    @JsonProperty("x_units")
+    public String getXUnits() {
+        return xUnits;
+    }
+
+    /**
+     * @param newXUnits Units of the x values of the spectra
+     */
+    @JsonProperty("x_units")
+    public void setXUnits(final String newXUnits) {
+        this.xUnits = newXUnits;
+    }
+
+    /**
+     * @return Quantity of the x values of the spectra. May be null.
+     */
+    @JsonProperty("x_quantity")
+    public String getXQuantity() {
+        return xQuantity;
+    }
+
+    /**
+     * @param newXQuantity Quantity of the x values of the spectra
+     */
+    @JsonProperty("x_quantity")
+    public void setXQuantity(final String newXQuantity) {
+        this.xQuantity = newXQuantity;
+    }
+
+    /**
+     * @return Quantity of the y values of the spectra. May be null.
+     */
+    @JsonProperty("y_quantity")
+    public String getYQuantity() {
+        return yQuantity;
+    }
+
+    /**
+     * @param newYQuantity Quantity of the y values of the spectra
+     */
+    @JsonProperty("y_quantity")
+    public void setYQuantity(final String newYQuantity) {
+        this.yQuantity = newYQuantity;
+    }
+
+    /**
+     * @return Lowest x value the spectra must cover. May be null.
+     */
+    @JsonProperty("x_min")
+    public Double getXMin() {
+        return xMin;
+    }
+
+    /**
+     * @param newXMin Lowest x value the spectra must cover
+     */
+    @JsonProperty("x_min")
+    public void setXMin(final Double newXMin) {
+        this.xMin = newXMin;
+    }
+
+    /**
+     * @return Highest x value the spectra must cover. May be null.
+     */
+    @JsonProperty("x_max")
+    public Double getXMax() {
+        return xMax;
+    }
+
+    /**
+     * @param newXMax Highest x value the spectra must cover
+     */
+    @JsonProperty("x_max")
+    public void setXMax(final Double newXMax) {
+        this.xMax = newXMax;
+    }
+}
@@ -0,0 +1,183 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
+
+/**
+ * Body of a peak list search: the query peaks, how far apart matching peaks
+ * may be and how many of the best matching Datasets to return.
+ */
+public class PeakQuery {
+
+    /**
+     * Number of matches returned when not given.
+     */
+    public static final int DEFAULT_K = 10;
+
+    /**
+     * Most peaks in a query.
+     */
+    public static final int MAX_PEAKS = 256;
+
+    /**
+     * A peak of the query.
+     */
+    public static class QueryPeak {
+
+        /**
+         * X value of the top of the peak.
+         */
+        @NotNull
+        private Double position;
+
+        /**
+         * Height of the peak; only relative heights matter.
+         */
+        @NotNull
+        @Positive
+        private Double height;
+
+        /**
+         * Width of the peak in x at half its height. May be null.
+         */
+        @PositiveOrZero
+        private Double width;
+
+        /**
+         * @return X value of the top of the peak
+         */
+        public Double getPosition() {
+            return position;
+        }
+
+        /**
+         * @param newPosition X value of the top of the peak
+         */
+        public void setPosition(final Double newPosition) {
+            this.position = newPosition;
+        }
+
+        /**
+         * @return Height of the peak
+         */
+        public Double getHeight() {
+            return height;
+        }
+
+        /**
+         * @param newHeight Height of the peak
+         */
+        public void setHeight(final Double newHeight) {
+            this.height = newHeight;
+        }
+
+        /**
+         * @return Width of the peak in x at half its height. May be null.
+         */
+        public Double getWidth() {
+            return width;
+        }
+
+        /**
+         * @param newWidth Width of the peak in x at half its height
+         */
+        public void setWidth(final Double newWidth) {
+            this.width = newWidth;
+        }
+    }
+
+    /**
+     * Peaks of the query.
+     */
+    @NotNull
+    @Size(min = 1, max = MAX_PEAKS)
+    @Valid
+    private List<QueryPeak> peaks;
+
+    /**
+     * Largest difference in position of matching peaks. May be null for the
+     * configured default.
+     */
+    @Positive
+    private Double tolerance;
+
+    /**
+     * Most matches to return.
+     */
+    @Min(1)
+    private int k = DEFAULT_K;
+
+    /**
+     * Restricts the matches by the metadata of their spectra. May be null.
+     */
+    @Valid
+    private MetadataFilter filter;
+
+    /**
+     * Default constructor to create a PeakQuery object.
+     */
+    public PeakQuery() {
+    }
+
+    /**
+     * @return Peaks of the query
+     */
+    public List<QueryPeak> getPeaks() {
+        return peaks;
+    }
+
+    /**
+     * @param newPeaks Peaks of the query
+     */
+    public void setPeaks(final List<QueryPeak> newPeaks) {
+        this.peaks = newPeaks;
+    }
+
+    /**
+     * @return Largest difference in position of matching peaks. May be null.
+     */
+    public Double getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param newTolerance Largest difference in position of matching peaks
+     */
+    public void setTolerance(final Double newTolerance) {
+        this.tolerance = newTolerance;
+    }
+
+    /**
+     * @return Most matches to return
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @param newK Most matches to return
+     */
+    public void setK(final int newK) {
+        this.k = newK;
+    }
+
+    /**
+     * @return Restricts the matches by the metadata of their spectra. May be null.
+     */
+    public MetadataFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @param newFilter Restricts the matches by the metadata of their spectra
+     */
+    public void setFilter(final MetadataFilter newFilter) {
+        this.filter = newFilter;
+    }
+}
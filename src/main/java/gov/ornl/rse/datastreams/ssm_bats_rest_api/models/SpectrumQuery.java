@@ -0,0 +1,235 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.models;
+
+import java.util.Map;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Body of a spectral similarity search: the query spectrum and how many of the
+ * most similar Datasets to return. The technique type and x units of the query
+ * choose the grid it is compared on, as for uploaded Datasets. An approximate
+ * query walks the Collection's search graph instead of comparing every
+ * Dataset, trading some recall for time. Matches are scored by cosine
+ * similarity unless the query names another metric or weights several.
+ */
+public class SpectrumQuery {
+
+    /**
+     * Number of matches returned when not given.
+     */
+    public static final int DEFAULT_K = 10;
+
+    /**
+     * Independent (x-axis) values of the query spectrum, in any order.
+     */
+    @NotNull
+    @Size(min = 2)
+    private double[] x;
+
+    /**
+     * Dependent (y-axis) value for each x value.
+     */
+    @NotNull
+    @Size(min = 2)
+    private double[] y;
+
+    /**
+     * Most matches to return.
+     */
+    @Min(1)
+    private int k = DEFAULT_K;
+
+    /**
+     * Technique type of the query spectrum. May be null.
+     */
+    private String technique;
+
+    /**
+     * Units of the x values of the query spectrum. May be null.
+     */
+    @JsonProperty("x_units")
+    private String xUnits;
+
+    /**
+     * Whether to search approximately.
+     */
+    private boolean approximate;
+
+    /**
+     * Size of the candidate list of an approximate search. May be null for
+     * the configured default.
+     */
+    @Min(1)
+    private Integer ef;
+
+    /**
+     * Restricts the matches by the metadata of their spectra. May be null.
+     */
+    @Valid
+    private MetadataFilter filter;
+
+    /**
+     * Name of the similarity metric, such as pearson or euclidean. May be
+     * null for cosine similarity.
+     */
+    private String metric;
+
+    /**
+     * Weight of each metric of a composite score, by name, replacing metric.
+     * May be null.
+     */
+    private Map<String, Double> weights;
+
+    /**
+     * Default constructor to create a SpectrumQuery object.
+     */
+    public SpectrumQuery() {
+    }
+
+    /**
+     * @return Independent values of the query spectrum
+     */
+    public double[] getX() {
+        return x;
+    }
+
+    /**
+     * @param newX Independent values of the query spectrum
+     */
+    public void setX(final double[] newX) {
+        this.x = newX;
+    }
+
+    /**
+     * @return Dependent value for each x value
+     */
+    public double[] getY() {
+        return y;
+    }
+
+    /**
+     * @param newY Dependent value for each x value
+     */
+    public void setY(final double[] newY) {
+        this.y = newY;
+    }
+
+    /**
+     * @return Most matches to return
+     */
+    public int getK() {
+        return k;
+    }
+
+    /**
+     * @param newK Most matches to return
+     */
+    public void setK(final int newK) {
+        this.k = newK;
+    }
+
+    /**
+     * @return Technique type of the query spectrum. May be null.
+     */
+    public String getTechnique() {
+        return technique;
+    }
+
+    /**
+     * @param newTechnique Technique type of the query spectrum
+     */
+    public void setTechnique(final String newTechnique) {
+        this.technique = newTechnique;
+    }
+
+    /**
+     * @return Units of the x values of the query spectrum. May be null.
+     */
+    @JsonProperty("x_units")
+    public String getXUnits() {
+        return xUnits;
+    }
+
+    /**
+     * @param newXUnits Units of the x values of the query spectrum
+     */
+    @JsonProperty("x_units")
+    public void setXUnits(final String newXUnits) {
+        this.xUnits = newXUnits;
+    }
+
+    /**
+     * @return Whether to search approximately
+     */
+    public boolean isApproximate() {
+        return approximate;
+    }
+
+    /**
+     * @param newApproximate Whether to search approximately
+     */
+    public void setApproximate(final boolean newApproximate) {
+        this.approximate = newApproximate;
+    }
+
+    /**
+     * @return Size of the candidate list of an approximate search. May be null.
+     */
+    public Integer getEf() {
+        return ef;
+    }
+
+    /**
+     * @param newEf Size of the candidate list of an approximate search
+     */
+    public void setEf(final Integer newEf) {
+        this.ef = newEf;
+    }
+
+    /**
+     * @return Restricts the matches by the metadata of their spectra. May be null.
+     */
+    public MetadataFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * @param newFilter Restricts the matches by the metadata of their spectra
+     */
+    public void setFilter(final MetadataFilter newFilter) {
+        this.filter = newFilter;
+    }
+
+    /**
+     * @return Name of the similarity metric. May be null for cosine similarity.
+     */
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     * @param newMetric Name of the similarity metric
+     */
+    public void setMetric(final String newMetric) {
+        this.metric = newMetric;
+    }
+
+    /**
+     * @return Weight of each metric of a composite score, by name. May be null.
+     */
+    public Map<String, Double> getWeights() {
+        return weights;
+    }
+
+    /**
+     * @param newWeights Weight of each metric of a composite score, by name
+     */
+    public void setWeights(final Map<String, Double> newWeights) {
+        this.weights = newWeights;
+    }
+}
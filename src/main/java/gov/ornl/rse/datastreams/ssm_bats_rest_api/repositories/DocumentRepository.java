@@ -1,7 +1,15 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetSummary;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
 
 public interface DocumentRepository extends MongoRepository<DocumentDataset, String> {
@@ -12,4 +20,81 @@ public interface DocumentRepository extends MongoRepository<DocumentDataset, Str
      * @return DocumentDataset object for the given ID
      */
     DocumentDataset findByDatasetId(String datasetId);
+
+    /**
+     * Check if a Dataset is stored as a member of a Collection.
+     *
+     * @param datasetId       ID of the DocumentDataset
+     * @param collectionTitle Title of the Collection
+     * @return True if the Dataset is stored with that Collection title
+     */
+    boolean existsByDatasetIdAndCollectionTitle(String datasetId, String collectionTitle);
+
+    /**
+     * Find DocumentDataset by ID with only the abbreviated JSON document loaded.
+     *
+     * @param datasetId ID of the DocumentDataset
+     * @return DocumentDataset with only the ID and JSON fields populated
+     */
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'json' : 1 }")
+    Optional<DocumentDataset> findJsonByDatasetId(String datasetId);
+
+    /**
+     * Find DocumentDataset by ID with only the JSON-LD document loaded.
+     *
+     * @param datasetId ID of the DocumentDataset
+     * @return DocumentDataset with only the ID and JSON-LD fields populated
+     */
+    @Query(value = "{ '_id' : ?0 }", fields = "{ 'jsonld' : 1 }")
+    Optional<DocumentDataset> findJsonldByDatasetId(String datasetId);
+
+    /**
+     * Find a page of Dataset summaries for a Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param pageable        Page number, size and sort order to use
+     * @return Page of Dataset summaries w/ the total count for the Collection
+     */
+    Page<DatasetSummary> findByCollectionTitle(String collectionTitle, Pageable pageable);
+
+    /**
+     * Find the Dataset summaries for the given IDs.
+     *
+     * @param datasetIds IDs of the Datasets
+     * @return Dataset summaries of the IDs found, in no particular order
+     */
+    List<DatasetSummary> findByDatasetIdIn(Collection<String> datasetIds);
+
+    /**
+     * Find the IDs of every Dataset in a Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return DocumentDatasets with only the ID field populated
+     */
+    @Query(value = "{ 'collectionTitle' : ?0 }", fields = "{ '_id' : 1 }")
+    List<DocumentDataset> findDatasetIdsByCollectionTitle(String collectionTitle);
+
+    /**
+     * Find the IDs of every Dataset in a Collection, most recently modified
+     * first, the order of Dataset listings.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return DocumentDatasets with only the ID field populated
+     */
+    @Query(value = "{ 'collectionTitle' : ?0 }", fields = "{ '_id' : 1 }",
+        sort = "{ 'modified' : -1 }")
+    List<DocumentDataset> findDatasetIdsByCollectionTitleOrderByModified(String collectionTitle);
+
+    /**
+     * Delete every Dataset in a Collection with a single request, including
+     * the given Datasets stored without a Collection title.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param datasetIds      IDs of the Collection's Datasets
+     * @return Number of Datasets deleted
+     */
+    long deleteByCollectionTitleOrDatasetIdIn(
+        String collectionTitle,
+        Collection<String> datasetIds
+    );
 }
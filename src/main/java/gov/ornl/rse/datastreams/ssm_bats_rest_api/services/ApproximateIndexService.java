@@ -0,0 +1,512 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.HnswIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralIndex;
+
+/**
+ * Approximate spectral similarity search over the Datasets of a Collection.
+ * Each Collection's vectors are held in an HnswIndex per grid, loaded from
+ * its saved graph files or, if there are none, built in a background job on
+ * the first approximate search. Loaded graphs are kept up to date as Datasets
+ * are created, updated and deleted, and saved in the background once changed.
+ * A graph file is deleted when its graph first changes after a save, so a
+ * file on disk always matches the Datasets.
+ */
+@Service
+public class ApproximateIndexService {
+
+    /**
+     * Setup logger for ApproximateIndexService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        ApproximateIndexService.class
+    );
+
+    /**
+     * Subdirectory of the spectrum store directory holding the graph files.
+     */
+    private static final String DIRECTORY = "hnsw";
+
+    /**
+     * Suffix of each graph file, named for its Collection and grid.
+     */
+    private static final String FILE_SUFFIX = ".hnsw";
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Vectors the graphs are built from.
+     */
+    @Autowired
+    private SpectrumVectorService spectrumVectors;
+
+    /**
+     * Runs the build jobs.
+     */
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * Graphs of each Collection loaded or being built, by grid name. Loads
+     * and builds start synchronized on it.
+     */
+    private final Map<String, Map<String, HnswIndex>> graphs = new ConcurrentHashMap<>();
+
+    /**
+     * Collections whose graphs are complete and may be searched.
+     */
+    private final Set<String> ready = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Datasets updated or removed during the build of each Collection being
+     * built, which the build must not overwrite with the vectors it read
+     * earlier. Each set is synchronized on while either adds to a graph.
+     */
+    private final Map<String, Set<String>> touched = new ConcurrentHashMap<>();
+
+    /**
+     * Collection and grid of each graph changed since it was last saved.
+     */
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Synchronized on while saving, so a graph file is written by one thread.
+     */
+    private final Object saving = new Object();
+
+    /**
+     * Directory of the graph files.
+     */
+    private Path directory;
+
+    /**
+     * Identifies the grids and graph settings the graph files were built with.
+     */
+    private long fingerprint;
+
+    /**
+     * Runs the background saves.
+     */
+    private ScheduledExecutorService scheduler; //NOPMD
+
+    /**
+     * Create the graph directory and schedule background saves once the
+     * configuration is available.
+     *
+     * @throws IOException If the graph directory could not be created
+     */
+    @PostConstruct
+    public void openGraphs() throws IOException {
+        ApplicationConfig.Spectra config = appConfig.getSpectra();
+        directory = Paths.get(config.getStoreDirectory()).resolve(DIRECTORY);
+        Files.createDirectories(directory);
+        String settings = spectrumVectors.getGrids().fingerprint() + "|" + config.getHnswM()
+            + "|" + config.getHnswEfConstruction();
+        CRC32 checksum = new CRC32();
+        checksum.update(settings.getBytes(StandardCharsets.UTF_8));
+        fingerprint = checksum.getValue();
+
+        long interval = config.getHnswSaveInterval();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "ssm-hnsw"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::save, interval, interval, //NOPMD
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Save the changed graphs on shutdown.
+     */
+    @PreDestroy
+    public void closeGraphs() {
+        scheduler.shutdownNow(); //NOPMD
+        save();
+    }
+
+    /**
+     * Find the Datasets of a Collection whose vectors on a grid are most
+     * similar to a query. The Collection's graphs are loaded or their build is
+     * started if needed.
+     *
+     * @param collectionTitle Collection to search
+     * @param grid            Name of the grid of the query
+     * @param query           Unit length query vector on the grid
+     * @param k               Most matches to return
+     * @param ef              Size of the candidate list searched
+     * @param filter          Which Dataset UUIDs may be returned
+     * @return Up to k matches, most similar first, or null if the
+     *         Collection's graphs are still being built
+     */
+    public List<SpectralIndex.Match> search(
+        final String collectionTitle,
+        final String grid,
+        final float[] query,
+        final int k,
+        final int ef,
+        final Predicate<String> filter
+    ) {
+        Map<String, HnswIndex> collectionGraphs = getGraphs(collectionTitle, true);
+        if (!ready.contains(collectionTitle)) {
+            return null;
+        }
+        HnswIndex graph = collectionGraphs.get(grid);
+        return graph == null
+            ? Collections.emptyList() : graph.search(query, k, ef, filter);
+    }
+
+    /**
+     * Add or replace the vector of a Dataset in its Collection's graphs, if
+     * loaded, built or saved. A Dataset without a vector is removed from them.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     * @param vector          Vector of the Dataset. May be null.
+     */
+    public void index(
+        final String collectionTitle,
+        final String datasetUUID,
+        final SpectrumVectorService.Vector vector
+    ) {
+        Map<String, HnswIndex> collectionGraphs = getGraphs(collectionTitle, false);
+        if (collectionGraphs == null) {
+            return;
+        }
+        Set<String> building = touched.get(collectionTitle);
+        if (building == null) {
+            apply(collectionTitle, collectionGraphs, datasetUUID, vector);
+            return;
+        }
+        synchronized (building) {
+            building.add(datasetUUID);
+            apply(collectionTitle, collectionGraphs, datasetUUID, vector);
+        }
+    }
+
+    /**
+     * Remove the vector of a Dataset from its Collection's graphs.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void remove(final String collectionTitle, final String datasetUUID) {
+        index(collectionTitle, datasetUUID, null);
+    }
+
+    /**
+     * Drop the graphs and graph files of a deleted Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     */
+    public void removeCollection(final String collectionTitle) {
+        synchronized (graphs) {
+            graphs.remove(collectionTitle);
+            ready.remove(collectionTitle);
+            touched.remove(collectionTitle);
+        }
+        dirty.removeIf(key -> key.startsWith(collectionTitle + "."));
+        deleteFiles(collectionTitle);
+    }
+
+    /**
+     * Save every graph changed since it was last saved.
+     */
+    public void save() {
+        synchronized (saving) {
+            for (String key : new ArrayList<>(dirty)) {
+                dirty.remove(key);
+                String collectionTitle = key.substring(0, key.indexOf('.'));
+                String grid = key.substring(key.indexOf('.') + 1);
+                Map<String, HnswIndex> collectionGraphs = graphs.get(collectionTitle);
+                // Graphs being built are saved once complete
+                if (collectionGraphs == null || !ready.contains(collectionTitle)
+                    || !collectionGraphs.containsKey(grid)) {
+                    continue;
+                }
+                Path path = path(collectionTitle, grid);
+                try {
+                    collectionGraphs.get(grid).save(path, fingerprint);
+                    if (graphs.get(collectionTitle) != collectionGraphs) { //NOPMD
+                        // The Collection was deleted while saving
+                        Files.deleteIfExists(path);
+                    }
+                } catch (IOException e) {
+                    dirty.add(key);
+                    LOGGER.warn("Unable to save approximate search graph " + key, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the graphs of a Collection: loaded, being built, or read from its
+     * graph files.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param build           Whether to start a build if there are no graph
+     *                        files
+     * @return The Collection's graph of each grid, or null if there are none
+     *         and none are being built
+     */
+    private Map<String, HnswIndex> getGraphs(final String collectionTitle, final boolean build) {
+        Map<String, HnswIndex> collectionGraphs = graphs.get(collectionTitle);
+        if (collectionGraphs != null) {
+            return collectionGraphs;
+        }
+        synchronized (graphs) {
+            collectionGraphs = graphs.get(collectionTitle);
+            if (collectionGraphs != null) {
+                return collectionGraphs;
+            }
+            collectionGraphs = read(collectionTitle);
+            if (collectionGraphs != null) {
+                graphs.put(collectionTitle, collectionGraphs);
+                ready.add(collectionTitle);
+                return collectionGraphs;
+            }
+            if (!build) {
+                return null;
+            }
+            Map<String, HnswIndex> building = new ConcurrentHashMap<>();
+            Set<String> updated = ConcurrentHashMap.newKeySet();
+            graphs.put(collectionTitle, building);
+            touched.put(collectionTitle, updated);
+            Job job = jobService.submit("build-hnsw", collectionTitle,
+                running -> build(collectionTitle, building, updated, running));
+            LOGGER.info("Building approximate search graphs of collection " + collectionTitle
+                + " in job " + job.getId());
+            return building;
+        }
+    }
+
+    /**
+     * Read the graph files of a Collection. Incomplete, damaged or outdated
+     * files, or graphs mostly of tombstones, are deleted so the graphs are
+     * built again.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's graph of each grid, or null if it has no
+     *         usable graph files
+     */
+    private Map<String, HnswIndex> read(final String collectionTitle) {
+        Set<String> names = spectrumVectors.getGrids().names();
+        int saved = 0;
+        for (String name : names) {
+            saved += Files.exists(path(collectionTitle, name)) ? 1 : 0;
+        }
+        if (saved == 0) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        Map<String, HnswIndex> collectionGraphs = new ConcurrentHashMap<>();
+        try {
+            for (String name : names) {
+                HnswIndex graph = HnswIndex.load(path(collectionTitle, name),
+                    spectrumVectors.getGrids().get(name).getPoints(), fingerprint,
+                    seed(collectionTitle, name));
+                if (graph == null || graph.tombstones() > graph.size()) {
+                    LOGGER.info("Rebuilding approximate search graphs of collection "
+                        + collectionTitle);
+                    deleteFiles(collectionTitle);
+                    return null;
+                }
+                collectionGraphs.put(name, graph);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to read approximate search graphs of collection "
+                + collectionTitle, e);
+            deleteFiles(collectionTitle);
+            return null;
+        }
+        LOGGER.info("Loaded approximate search graphs of collection " + collectionTitle
+            + " in " + (System.currentTimeMillis() - start) + "ms");
+        return collectionGraphs;
+    }
+
+    /**
+     * Build the graphs of a Collection from its vectors, then save them.
+     *
+     * @param collectionTitle  Title of the Collection
+     * @param collectionGraphs The Collection's graphs, filled in place
+     * @param updated          Datasets updated or removed meanwhile
+     * @param job              The Job to report progress through
+     */
+    private void build(
+        final String collectionTitle,
+        final Map<String, HnswIndex> collectionGraphs,
+        final Set<String> updated,
+        final Job job
+    ) {
+        long start = System.currentTimeMillis();
+        AtomicLong processed = new AtomicLong();
+        try {
+            int datasets = spectrumVectors.forEachVector(collectionTitle, (datasetUUID, vector) -> {
+                synchronized (updated) {
+                    if (!updated.contains(datasetUUID)) {
+                        graph(collectionTitle, collectionGraphs, vector.getGrid())
+                            .put(datasetUUID, vector.getValues());
+                    }
+                }
+                job.setProcessed(processed.incrementAndGet());
+            });
+            for (String name : spectrumVectors.getGrids().names()) {
+                graph(collectionTitle, collectionGraphs, name);
+                dirty.add(collectionTitle + "." + name);
+            }
+            synchronized (graphs) {
+                if (graphs.get(collectionTitle) != collectionGraphs) { //NOPMD
+                    return;
+                }
+                touched.remove(collectionTitle);
+                ready.add(collectionTitle);
+            }
+            LOGGER.info("Built approximate search graphs of " + processed.get() + " of "
+                + datasets + " datasets in collection " + collectionTitle + " in "
+                + (System.currentTimeMillis() - start) + "ms");
+        } catch (RuntimeException e) {
+            synchronized (graphs) {
+                if (graphs.get(collectionTitle) == collectionGraphs) { //NOPMD
+                    graphs.remove(collectionTitle);
+                    touched.remove(collectionTitle);
+                }
+            }
+            throw e;
+        }
+        save();
+    }
+
+    /**
+     * Apply an update of a Dataset to a Collection's graphs, marking each
+     * graph changed.
+     *
+     * @param collectionTitle  Title of the Collection
+     * @param collectionGraphs The Collection's graphs
+     * @param datasetUUID      UUID of the Dataset
+     * @param vector           Vector of the Dataset. May be null.
+     */
+    private void apply(
+        final String collectionTitle,
+        final Map<String, HnswIndex> collectionGraphs,
+        final String datasetUUID,
+        final SpectrumVectorService.Vector vector
+    ) {
+        for (Map.Entry<String, HnswIndex> entry : collectionGraphs.entrySet()) {
+            if ((vector == null || !entry.getKey().equals(vector.getGrid()))
+                && entry.getValue().contains(datasetUUID)) {
+                entry.getValue().remove(datasetUUID);
+                changed(collectionTitle, entry.getKey());
+            }
+        }
+        if (vector != null) {
+            graph(collectionTitle, collectionGraphs, vector.getGrid())
+                .put(datasetUUID, vector.getValues());
+            changed(collectionTitle, vector.getGrid());
+        }
+    }
+
+    /**
+     * Mark a graph changed, deleting its file the first time after a save.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param grid            Name of the grid
+     */
+    private void changed(final String collectionTitle, final String grid) {
+        if (dirty.add(collectionTitle + "." + grid)) {
+            try {
+                Files.deleteIfExists(path(collectionTitle, grid));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to delete outdated approximate search graph "
+                    + collectionTitle + "." + grid, e);
+            }
+        }
+    }
+
+    /**
+     * Get a Collection's graph of a grid, creating it if needed.
+     *
+     * @param collectionTitle  Title of the Collection
+     * @param collectionGraphs The Collection's graphs
+     * @param grid             Name of the grid
+     * @return The graph
+     */
+    private HnswIndex graph(
+        final String collectionTitle,
+        final Map<String, HnswIndex> collectionGraphs,
+        final String grid
+    ) {
+        ApplicationConfig.Spectra config = appConfig.getSpectra();
+        return collectionGraphs.computeIfAbsent(grid, name -> new HnswIndex(
+            spectrumVectors.getGrids().get(name).getPoints(),
+            config.getHnswM(),
+            config.getHnswEfConstruction(),
+            seed(collectionTitle, name)
+        ));
+    }
+
+    /**
+     * Delete the graph files of a Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     */
+    private void deleteFiles(final String collectionTitle) {
+        for (String name : spectrumVectors.getGrids().names()) {
+            try {
+                Files.deleteIfExists(path(collectionTitle, name));
+            } catch (IOException e) {
+                LOGGER.warn("Unable to delete approximate search graph " + collectionTitle
+                    + "." + name, e);
+            }
+        }
+    }
+
+    /**
+     * @param collectionTitle Title of a Collection
+     * @param grid            Name of a grid
+     * @return Path of the Collection's graph file of the grid
+     */
+    private Path path(final String collectionTitle, final String grid) {
+        return directory.resolve(collectionTitle + "." + grid + FILE_SUFFIX);
+    }
+
+    /**
+     * @param collectionTitle Title of a Collection
+     * @param grid            Name of a grid
+     * @return Seed of the random node levels of the Collection's graph of the grid
+     */
+    private static long seed(final String collectionTitle, final String grid) {
+        return (collectionTitle + "." + grid).hashCode();
+    }
+}
@@ -0,0 +1,243 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+
+/**
+ * In-memory list of the collections in Fuseki, so listing collections does not
+ * read the Fuseki admin API on every request. The list is refreshed in the
+ * background and updated immediately when this service creates or deletes a
+ * collection.
+ */
+@Service
+public class CollectionCatalogService {
+
+    /**
+     * Setup logger for CollectionCatalogService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        CollectionCatalogService.class
+    );
+
+    /**
+     * Class ObjectMapper.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * An immutable snapshot of the collection titles.
+     */
+    public static final class Catalog {
+
+        /**
+         * Collection titles in Fuseki's order.
+         */
+        private final List<String> titles;
+
+        /**
+         * The titles as a JSON array.
+         */
+        private final String json;
+
+        /**
+         * Entity tag identifying this version of the titles.
+         */
+        private final String eTag;
+
+        /**
+         * Constructor.
+         *
+         * @param newTitles Collection titles
+         * @throws JsonProcessingException If the titles could not be serialized
+         */
+        Catalog(final List<String> newTitles) throws JsonProcessingException {
+            this.titles = Collections.unmodifiableList(newTitles);
+            this.json = MAPPER.writeValueAsString(newTitles);
+            this.eTag = "\"" + DigestUtils.sha256Hex(json) + "\"";
+        }
+
+        /**
+         * @return Collection titles in Fuseki's order
+         */
+        public List<String> getTitles() {
+            return titles;
+        }
+
+        /**
+         * @return The titles as a JSON array
+         */
+        public String getJson() {
+            return json;
+        }
+
+        /**
+         * @return Entity tag identifying this version of the titles
+         */
+        public String getETag() {
+            return eTag;
+        }
+    }
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * The current snapshot, null until first read.
+     */
+    private Catalog catalog;
+
+    /**
+     * Number of local creates and deletes, used to discard refreshes that
+     * started before one of them and so may not include it.
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
+    /**
+     * Runs the background refresh.
+     */
+    private ScheduledExecutorService scheduler; //NOPMD
+
+    /**
+     * Schedule the background refresh once the configuration is available. The
+     * first read happens on the first request so startup does not wait on Fuseki.
+     */
+    @PostConstruct
+    public void initScheduler() {
+        long interval = appConfig.getFuseki().getCatalogRefresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "ssm-collection-catalog"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> { //NOPMD
+            try {
+                refresh();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to refresh the collection catalog", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background refresh on shutdown.
+     */
+    @PreDestroy
+    public void shutdownScheduler() {
+        scheduler.shutdownNow(); //NOPMD
+    }
+
+    /**
+     * Get the current collection titles, reading them from Fuseki if they have
+     * not been read yet.
+     *
+     * @return The current snapshot
+     * @throws IOException If the titles could not be read from Fuseki
+     */
+    public Catalog getCatalog() throws IOException {
+        synchronized (this) {
+            if (catalog != null) {
+                return catalog;
+            }
+        }
+        return refresh();
+    }
+
+    /**
+     * Read the collection titles from Fuseki and replace the snapshot.
+     *
+     * @return The new snapshot
+     * @throws IOException If the titles could not be read from Fuseki
+     */
+    public Catalog refresh() throws IOException {
+        long version = modifications.get();
+        Catalog fresh = new Catalog(readTitles());
+        synchronized (this) {
+            // A create or delete since the read started may be missing from it
+            if (catalog == null || modifications.get() == version) {
+                catalog = fresh;
+            }
+            return catalog;
+        }
+    }
+
+    /**
+     * Record a newly created collection.
+     *
+     * @param title Title of the collection
+     * @throws JsonProcessingException If the titles could not be serialized
+     */
+    public void added(final String title) throws JsonProcessingException {
+        synchronized (this) {
+            modifications.incrementAndGet();
+            if (catalog != null && !catalog.getTitles().contains(title)) {
+                List<String> titles = new ArrayList<>(catalog.getTitles());
+                titles.add(title);
+                catalog = new Catalog(titles);
+            }
+        }
+    }
+
+    /**
+     * Record a deleted collection.
+     *
+     * @param title Title of the collection
+     * @throws JsonProcessingException If the titles could not be serialized
+     */
+    public void removed(final String title) throws JsonProcessingException {
+        synchronized (this) {
+            modifications.incrementAndGet();
+            if (catalog != null && catalog.getTitles().contains(title)) {
+                List<String> titles = new ArrayList<>(catalog.getTitles());
+                titles.remove(title);
+                catalog = new Catalog(titles);
+            }
+        }
+    }
+
+    /**
+     * Read the collection titles from the Fuseki admin API.
+     *
+     * @return Collection titles in Fuseki's order
+     * @throws IOException If Fuseki could not be read or the reply parsed
+     */
+    private List<String> readTitles() throws IOException {
+        URL url = new URL(appConfig.getFuseki().getURI() + "/$/datasets");
+        JsonNode fusekiResponse;
+        try (InputStream in = url.openStream()) {
+            fusekiResponse = MAPPER.readTree(in);
+        }
+
+        // Read out only the name field of each collection
+        List<String> titles = new ArrayList<>();
+        for (JsonNode collection : fusekiResponse.path("datasets")) {
+            titles.add(collection.path("ds.name").asText().replaceAll("/", ""));
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,197 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.ExpiringCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Content addressed cache of file converter service results.
+ * Results are keyed by a hash of the JSON-LD payload and converter version,
+ * held in memory and optionally in a document store collection shared by
+ * all instances.
+ */
+@Component
+public class ConversionCacheService {
+
+    /**
+     * Setup logger for ConversionCacheService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        ConversionCacheService.class
+    );
+
+    /**
+     * Name of the conversion cache metrics.
+     */
+    private static final String METRIC_NAME = "ssm.fileconverter.cache";
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Document store access for the shared cache collection.
+    */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Registry to expose cache hit/miss counts on.
+    */
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * In-memory cache of conversion results as JSON strings.
+     */
+    private ExpiringCache<String, String> memoryCache;
+
+    /**
+     * Number of lookups served by the document store collection.
+     */
+    private final AtomicLong storeHits = new AtomicLong();
+
+    /**
+     * Number of lookups not found in any cache.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Whether the expiry index for the cache collection has been created.
+     */
+    private final AtomicBoolean storeIndexEnsured = new AtomicBoolean(false);
+
+    /**
+     * Create the in-memory cache and register its metrics.
+     */
+    @PostConstruct
+    public void init() {
+        ApplicationConfig.FileConverter config = appConfig.getFileConverter();
+        memoryCache = new ExpiringCache<>(config.getCacheSize(), config.getCacheTtl());
+
+        FunctionCounter.builder(METRIC_NAME + ".hits", memoryCache, ExpiringCache::getHits)
+            .tag("store", "memory")
+            .description("File converter results served from the in-memory cache")
+            .register(meterRegistry);
+        FunctionCounter.builder(METRIC_NAME + ".hits", storeHits, AtomicLong::get)
+            .tag("store", "document")
+            .description("File converter results served from the document store cache")
+            .register(meterRegistry);
+        FunctionCounter.builder(METRIC_NAME + ".misses", misses, AtomicLong::get)
+            .description("File converter results not found in any cache")
+            .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".size", memoryCache, ExpiringCache::size)
+            .description("File converter results held in memory")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Compute the cache key for a JSON-LD payload.
+     *
+     * @param jsonld JSON-LD payload to convert
+     *
+     * @return Hex SHA-256 of the converter version and payload
+     */
+    public String key(final String jsonld) {
+        String version = appConfig.getFileConverter().getVersion();
+        return DigestUtils.sha256Hex(
+            (version + "\n" + jsonld).getBytes(StandardCharsets.UTF_8)
+        );
+    }
+
+    /**
+     * Look up a cached conversion result.
+     *
+     * @param key Cache key from {@link #key(String)}
+     *
+     * @return Converted JSON document, or null if not cached
+     */
+    public Document get(final String key) {
+        String json = memoryCache.get(key);
+        if (json != null) {
+            return Document.parse(json);
+        }
+
+        String collection = appConfig.getFileConverter().getCacheCollection();
+        if (!collection.isEmpty()) {
+            try {
+                Document stored = mongoTemplate.findById(key, Document.class, collection);
+                if (stored != null && stored.get("json") instanceof Document) {
+                    Document converted = stored.get("json", Document.class);
+                    memoryCache.put(key, converted.toJson());
+                    storeHits.incrementAndGet();
+                    return converted;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to read conversion cache collection: " + collection, e);
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache a conversion result.
+     *
+     * @param key  Cache key from {@link #key(String)}
+     * @param json Converted JSON document
+     */
+    public void put(final String key, final Document json) {
+        memoryCache.put(key, json.toJson());
+
+        String collection = appConfig.getFileConverter().getCacheCollection();
+        if (collection.isEmpty()) {
+            return;
+        }
+        try {
+            ensureStoreIndex(collection);
+            Document stored = new Document("_id", key)
+                .append("json", json)
+                .append("created", new Date());
+            mongoTemplate.save(stored, collection);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to write conversion cache collection: " + collection, e);
+        }
+    }
+
+    /**
+     * Lazily create the index that expires cached results from the collection.
+     *
+     * @param collection Name of the cache collection
+     */
+    private void ensureStoreIndex(final String collection) {
+        if (storeIndexEnsured.get()) {
+            return;
+        }
+        mongoTemplate.indexOps(collection).ensureIndex(
+            new Index()
+                .on("created", Sort.Direction.ASC)
+                .expire(appConfig.getFileConverter().getCacheTtl(), TimeUnit.MILLISECONDS)
+        );
+        storeIndexEnsured.set(true);
+    }
+}
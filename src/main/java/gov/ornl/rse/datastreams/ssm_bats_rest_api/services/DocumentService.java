@@ -1,23 +1,56 @@
 package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
 
 import java.io.BufferedWriter;
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
-import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
-import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.json.JsonReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.data.util.CloseableIterator;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
@@ -27,9 +60,17 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ConfigUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.JsonConversionType;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetExportFormats;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetSummary;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CircuitBreaker;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.HttpClientUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.JsonUtils;
 
 @Component
@@ -67,66 +108,323 @@ public class DocumentService {
     private DocumentRepository repository;
 
     /**
-     * Write temporary file for JSON-LD.
+     * Template for document store operations not covered by the repository.
+     */
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * Configuration utilities.
+     */
+    @Autowired
+    private ConfigUtils configUtils;
+
+    /**
+     * Collection utilities.
+     */
+    @Autowired
+    private CollectionUtils collectionUtils;
+
+    /**
+     * Cache of file converter service results.
+     */
+    @Autowired
+    private ConversionCacheService conversionCache;
+
+    /**
+     * Titles of the Collections, searched for Datasets to backfill.
+     */
+    @Autowired
+    private CollectionCatalogService catalogService;
+
+    /**
+     * Runs the backfill of Dataset summaries in the background.
+     */
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * Sort order for Dataset listings, most recently modified first.
+     */
+    private static final Sort LISTING_SORT = Sort.by(Sort.Direction.DESC, "modified");
+
+    /**
+     * Number of documents fetched per cursor batch when exporting a Collection.
+     * Documents can be large, so keep batches small to bound memory.
+     */
+    private static final int EXPORT_BATCH_SIZE = 32;
+
+    /**
+     * Most Dataset UUIDs in the query of one chunk of an export.
+     */
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    /**
+     * Whether the DocumentDataset indexes have been created in the document store.
+     */
+    private final AtomicBoolean indexesEnsured = new AtomicBoolean(false);
+
+    /**
+     * Codec used to decode file converter responses into documents.
+     */
+    private static final DocumentCodec DOCUMENT_CODEC = new DocumentCodec();
+
+    /**
+     * Shared pooled HTTP client for the file converter service.
+     */
+    private CloseableHttpClient fileConverterClient;
+
+    /**
+     * Circuit breaker so a slow file converter service fails fast.
+     */
+    private CircuitBreaker fileConverterBreaker;
+
+    /**
+     * Create the indexes declared on DocumentDataset if not yet done for this instance.
+     * Done lazily, instead of at startup, so the service can start before the document
+     * store is reachable. Index creation is idempotent in MongoDB.
+     */
+    private void ensureIndexes() {
+        if (indexesEnsured.get()) {
+            return;
+        }
+        try {
+            IndexOperations indexOps = mongoTemplate.indexOps(DocumentDataset.class);
+            IndexResolver.create(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(DocumentDataset.class)
+                .forEach(indexOps::ensureIndex);
+            indexesEnsured.set(true);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to create document store indexes; will retry.", e);
+        }
+    }
+
+    /**
+     * Backfill the summaries of Datasets stored without them in a background
+     * Job once the application has started, so startup does not wait on the
+     * document store or Fuseki. Only runs when app.document_backfill is set,
+     * as it lists every Collection in Fuseki.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void scheduleBackfill() {
+        if (!appConfig.isDocumentBackfill()) {
+            return;
+        }
+        Job job = jobService.submit("backfill-documents", "DocumentDataset", this::backfill);
+        LOGGER.info("Backfilling dataset document summaries in job " + job.getId());
+    }
+
+    /**
+     * Fill in the Collection title and summary fields of Dataset documents
+     * stored before they were kept, from the graph database. Without them the
+     * Datasets are missing from document listings, exports, Collection deletes
+     * and the spectral indexes. Documents with a Collection title are left as
+     * they are, so this does nothing once every document has one.
+     *
+     * @param job The Job to report progress through
+     * @throws IOException If the Collections could not be listed
+     */
+    void backfill(final Job job) throws IOException {
+        String collectionName = mongoTemplate.getCollectionName(DocumentDataset.class);
+        Query legacy = new Query(Criteria.where("collectionTitle").exists(false));
+        legacy.fields().include("_id");
+        Set<String> missing = new HashSet<>();
+        for (Document document : mongoTemplate.find(legacy, Document.class, collectionName)) {
+            missing.add(document.getString("_id"));
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Backfilling summaries of " + missing.size() + " dataset documents");
+
+        long filled = 0;
+        for (String collectionTitle : catalogService.getCatalog().getTitles()) {
+            BulkOperations updates = mongoTemplate.bulkOps(
+                BulkOperations.BulkMode.UNORDERED, collectionName);
+            long updated = 0;
+            for (String datasetUUID : graphService.listDatasetUUIDs(collectionTitle)) {
+                if (!missing.remove(datasetUUID)) {
+                    continue;
+                }
+                Map<String, Object> summary = graphService.getDatasetSummary(
+                    collectionTitle, datasetUUID);
+                updates.updateOne(
+                    new Query(Criteria.where("_id").is(datasetUUID)), //NOPMD
+                    new Update() //NOPMD
+                        .set("collectionTitle", collectionTitle)
+                        .set("title", summary.get("title"))
+                        .set("url", summary.get("url"))
+                        .set("created", summary.get("created"))
+                        .set("modified", summary.get("modified"))
+                );
+                updated++;
+            }
+            if (updated > 0) {
+                updates.execute();
+                filled += updated;
+                job.setProcessed(filled);
+            }
+            if (missing.isEmpty()) {
+                break;
+            }
+        }
+        LOGGER.info("Backfilled summaries of " + filled + " dataset documents");
+        if (!missing.isEmpty()) {
+            LOGGER.warn(missing.size() + " dataset documents belong to no collection");
+        }
+    }
+
+    /**
+     * Create the pooled client and circuit breaker for the file converter service.
+     */
+    @PostConstruct
+    public void initFileConverterClient() {
+        ApplicationConfig.FileConverter config = appConfig.getFileConverter();
+        fileConverterClient = HttpClientUtils.createPooledClient(
+            config.getMaxConnections(),
+            config.getConnectTimeout(),
+            config.getReadTimeout()
+        );
+        fileConverterBreaker = new CircuitBreaker(
+            config.getFailureThreshold(),
+            config.getOpenDuration()
+        );
+    }
+
+    /**
+     * Release the pooled file converter connections on shutdown.
+     *
+     * @throws IOException
+     */
+    @PreDestroy
+    public void closeFileConverterClient() throws IOException {
+        fileConverterClient.close();
+    }
+
+    /**
+     * Get SSM JSON from JSON-LD using the file converter service, failing fast
+     * while its circuit breaker is open.
+     *
+     * @param jsonld JSON-LD to convert
      *
-     * @param jsonld JSON-LD to write to temporary file
+     * @return SSM JSON document from conversion using file converter service
      *
-     * @return File object for temporary file with JSON-LD
+     * @throws IOException
      */
-    private File writeTemporaryJsonld(
+    private Document getJsonFromFileConverterService(
         final String jsonld
     ) throws IOException {
-        // Use parser service to perform json conversion
-        File tmpFile = File.createTempFile("jsonld", ".jsonld");
-        BufferedWriter bf = Files.newBufferedWriter(Paths.get(tmpFile.getAbsolutePath()));
+        if (!fileConverterBreaker.tryAcquire()) {
+            throw new IOException(
+                "File converter service unavailable; failing fast until it recovers"
+            );
+        }
+
+        // Every call let through reports its outcome, whatever it throws, so a
+        // half-open trial always resolves
+        boolean succeeded = false;
         try {
-            bf.write(jsonld);
+            Document json = convertWithFileConverterService(jsonld);
+            succeeded = true;
+            return json;
         } finally {
-            bf.close();
+            if (succeeded) {
+                fileConverterBreaker.onSuccess();
+            } else {
+                fileConverterBreaker.onFailure();
+            }
         }
-        return tmpFile;
     }
 
     /**
-     * Get SSM JSON from a JSON-LD in a file.
+     * Send JSON-LD to the file converter service and decode its SSM JSON.
+     * The JSON-LD is sent from memory as the multipart body and the response
+     * is decoded straight from the connection into a document.
      *
-     * @param jsonldFile File containing JSON-LD to convert
+     * @param jsonld JSON-LD to convert
      *
-     * @return SSM JSON from conversion using file converter service
+     * @return SSM JSON document from conversion using file converter service
      *
-     * @throws Exception
+     * @throws IOException
      */
-    private String getJsonFromFileConverterService(
-        final File jsonldFile
-    ) throws Exception {
+    private Document convertWithFileConverterService(
+        final String jsonld
+    ) throws IOException {
         // Get HTTP request ready for file converter service
-        final MultipartEntityBuilder builder = MultipartEntityBuilder.create();
-        builder.addBinaryBody("upload_file", jsonldFile);
-        final HttpEntity entity = builder.build();
+        final HttpEntity entity = MultipartEntityBuilder.create()
+            .addBinaryBody(
+                "upload_file",
+                jsonld.getBytes(StandardCharsets.UTF_8),
+                ContentType.DEFAULT_BINARY,
+                "dataset.jsonld"
+            )
+            .build();
 
         final String jsonEndpoint = "/convert/json";
         final String fileConverterUri = appConfig.getFileConverter().getURI() + jsonEndpoint;
         HttpPost request = new HttpPost(fileConverterUri);
         request.setEntity(entity);
 
-        // Save file converter service's response
-        HttpClient client = HttpClientBuilder.create().build();
-        HttpResponse response = client.execute(request);
-        String json = IOUtils.toString(
-            response.getEntity().getContent(),
-            StandardCharsets.UTF_8
-        );
-        int status = response.getStatusLine().getStatusCode();
+        // Decode file converter service's response
+        try (CloseableHttpResponse response = fileConverterClient.execute(request)) {
+            int status = response.getStatusLine().getStatusCode();
 
-        // Check if correct status returned; exception if not
-        if (status != HttpStatus.OK.value()) {
-            LOGGER.error("Unable to get JSON from file converter service.");
-            throw new Exception(
-                "File converter service error; response code: " + status
-            );
+            // Check if correct status returned; exception if not
+            if (status != HttpStatus.OK.value()) {
+                EntityUtils.consume(response.getEntity());
+                LOGGER.error("Unable to get JSON from file converter service.");
+                throw new IOException(
+                    "File converter service error; response code: " + status
+                );
+            }
+
+            try (Reader reader = new InputStreamReader(
+                response.getEntity().getContent(),
+                StandardCharsets.UTF_8
+            )) {
+                return DOCUMENT_CODEC.decode(
+                    new JsonReader(reader),
+                    DecoderContext.builder().build()
+                );
+            }
         }
+    }
+
+    /**
+     * Create the exception for a Dataset missing from the document store.
+     *
+     * @param datasetUUID UUID of the missing Dataset
+     *
+     * @return ResourceNotFoundException for the Dataset UUID
+     */
+    private ResourceNotFoundException notFound(final String datasetUUID) {
+        return new ResourceNotFoundException(
+            "Dataset " + datasetUUID + " not found in document store"
+        );
+    }
+
+    /**
+     * Check if Dataset exists in the document store without loading it.
+     *
+     * @param datasetUUID UUID of Dataset to check
+     *
+     * @return True if the Dataset exists in the document store
+     */
+    public boolean exists(final String datasetUUID) {
+        return repository.existsById(datasetUUID);
+    }
 
-        return json;
+    /**
+     * Check if Dataset exists in a Collection in the document store without
+     * loading it.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param datasetUUID     UUID of Dataset to check
+     *
+     * @return True if the Dataset exists in the Collection
+     */
+    public boolean exists(final String collectionTitle, final String datasetUUID) {
+        return repository.existsByDatasetIdAndCollectionTitle(datasetUUID, collectionTitle);
     }
 
     /**
@@ -138,12 +436,8 @@ public class DocumentService {
      */
     public String getJsonld(final String datasetUUID) throws ResourceNotFoundException {
         LOGGER.info("Getting json-ld for dataset " + datasetUUID + " from document store...");
-        DocumentDataset documentDataset;
-            documentDataset = repository.findById(datasetUUID).orElseThrow(
-                () -> new ResourceNotFoundException(
-                    "Dataset " + datasetUUID + " not found in document store"
-                )
-            );
+        DocumentDataset documentDataset = repository.findJsonldByDatasetId(datasetUUID)
+            .orElseThrow(() -> notFound(datasetUUID));
         LOGGER.info("Retrieved json-ld for dataset " + datasetUUID + " from document store.");
         return documentDataset.getJsonld();
     }
@@ -157,16 +451,251 @@ public class DocumentService {
      */
     public String getJson(final String datasetUUID) throws ResourceNotFoundException {
         LOGGER.info("Getting json for dataset " + datasetUUID + " from document store...");
-        DocumentDataset documentDataset;
-            documentDataset = repository.findById(datasetUUID).orElseThrow(
-                () -> new ResourceNotFoundException(
-                    "Dataset " + datasetUUID + " not found in document store"
-                )
-            );
+        DocumentDataset documentDataset = repository.findJsonByDatasetId(datasetUUID)
+            .orElseThrow(() -> notFound(datasetUUID));
         LOGGER.info("Retrieved json for dataset " + datasetUUID + " from document store.");
         return documentDataset.getJson();
     }
 
+    /**
+     * Get list of Datasets for Collection w/ pagination from the document store indexes.
+     *
+     * @param collectionTitle Collection to get Datasets for
+     * @param pageNumber   Page number to get for Datasets
+     * @param pageSize     Size of pages (number of Datasets per page)
+     * @param returnFull   Boolean if we want full datasets or just summaries (default: summaries)
+     * @param datasetUUIDs UUIDs of the Datasets to paginate over; null for every Dataset
+     *
+     * @return Map of the Dataset objects w/ pagination links
+     * @throws Exception
+     */
+    public Map<String, Object> getDatasets(
+        final String collectionTitle,
+        final int pageNumber,
+        final int pageSize,
+        final boolean returnFull,
+        final Collection<String> datasetUUIDs
+    ) throws Exception {
+        // Check if collection exists
+        collectionUtils.getCollection(collectionTitle);
+        ensureIndexes();
+
+        PageRequest pageRequest = PageRequest.of(pageNumber - 1, pageSize, LISTING_SORT);
+        Page<DatasetSummary> page;
+        if (datasetUUIDs == null) {
+            page = repository.findByCollectionTitle(collectionTitle, pageRequest);
+        } else {
+            // Intersect with the Collection's Datasets first, so only the page's
+            // Datasets are queried however many the user can read elsewhere
+            List<String> listed = graphService.listedDatasetUUIDs(collectionTitle, datasetUUIDs);
+            int from = (int) Math.min(pageRequest.getOffset(), listed.size());
+            int to = (int) Math.min((long) from + pageSize, listed.size());
+            List<String> pageUUIDs = listed.subList(from, to);
+            Map<String, DatasetSummary> summaries = new HashMap<>();
+            for (DatasetSummary summary : repository.findByDatasetIdIn(pageUUIDs)) {
+                summaries.put(summary.getDatasetId(), summary);
+            }
+            List<DatasetSummary> content = new ArrayList<>(pageUUIDs.size());
+            for (String datasetUUID : pageUUIDs) {
+                if (summaries.containsKey(datasetUUID)) {
+                    content.add(summaries.get(datasetUUID));
+                }
+            }
+            page = new PageImpl<>(content, pageRequest, listed.size());
+        }
+
+        List<Object> datasets = new ArrayList<>(page.getNumberOfElements());
+        for (DatasetSummary summary : page) {
+            if (returnFull) {
+                datasets.add(new BatsDataset(//NOPMD
+                    configUtils.getDatasetUri(collectionTitle, summary.getDatasetId()),
+                    graphService.getModelJsonld(collectionTitle, summary.getDatasetId())
+                ));
+            } else {
+                datasets.add(toSummaryMap(summary));
+            }
+        }
+
+        return graphService.constructDatasetsBody(
+            collectionTitle, datasets, page.getTotalElements(),
+            pageSize, pageNumber, returnFull);
+    }
+
+    /**
+     * Get the UUIDs of every Dataset in a Collection from the document store.
+     *
+     * @param collectionTitle Collection to list
+     *
+     * @return UUIDs of the Datasets
+     */
+    public List<String> getDatasetUUIDs(final String collectionTitle) {
+        List<DocumentDataset> documents = repository.findDatasetIdsByCollectionTitle(
+            collectionTitle
+        );
+        List<String> datasetUUIDs = new ArrayList<>(documents.size());
+        for (DocumentDataset document : documents) {
+            datasetUUIDs.add(document.getDatasetId());
+        }
+        return datasetUUIDs;
+    }
+
+    /**
+     * Get the summaries of the given Datasets from the document store indexes.
+     *
+     * @param datasetUUIDs UUIDs of the Datasets
+     *
+     * @return Map of each found Dataset UUID to its summary info
+     */
+    public Map<String, Map<String, Object>> getSummaries(final Collection<String> datasetUUIDs) {
+        Map<String, Map<String, Object>> summaries = new HashMap<>();
+        for (DatasetSummary summary : repository.findByDatasetIdIn(datasetUUIDs)) {
+            summaries.put(summary.getDatasetId(), toSummaryMap(summary));
+        }
+        return summaries;
+    }
+
+    /**
+     * Convert a Dataset summary to the same map returned by graph listings.
+     *
+     * @param summary Dataset summary from the document store
+     *
+     * @return Map of the Dataset summary info
+     */
+    private static Map<String, Object> toSummaryMap(final DatasetSummary summary) {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("title", summary.getTitle());
+        map.put("url", summary.getUrl());
+        map.put("created", summary.getCreated());
+        map.put("modified", summary.getModified());
+        map.put("uuid", summary.getDatasetId());
+        return map;
+    }
+
+    /**
+     * Stream every Dataset in a Collection as newline delimited JSON (NDJSON).
+     * Each line is an object with the Dataset "uuid" and its "json" and/or "jsonld".
+     * Documents are read from a document store cursor and written one at a time,
+     * so memory use does not grow with the size of the Collection. When only
+     * some Datasets are exported, only their documents are read, a chunk of
+     * UUIDs per query.
+     *
+     * @param collectionTitle Collection to export
+     * @param format          Document formats to include in each line
+     * @param datasetUUIDs    UUIDs of the Datasets to export; null for all of them
+     * @param out             Stream to write the NDJSON to; flushed but not closed
+     *
+     * @return Number of Datasets written
+     * @throws IOException
+     */
+    public long exportCollection(
+        final String collectionTitle,
+        final DatasetExportFormats format,
+        final Collection<String> datasetUUIDs,
+        final OutputStream out
+    ) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long count = 0;
+        if (datasetUUIDs == null) {
+            count = export(Criteria.where("collectionTitle").is(collectionTitle), format, writer);
+        } else {
+            List<String> uuids = new ArrayList<>(datasetUUIDs);
+            for (int from = 0; from < uuids.size(); from += EXPORT_CHUNK_SIZE) {
+                List<String> chunk = uuids.subList(
+                    from, Math.min(from + EXPORT_CHUNK_SIZE, uuids.size()));
+                count += export(
+                    Criteria.where("collectionTitle").is(collectionTitle).and("_id").in(chunk),
+                    format, writer);
+            }
+        }
+        writer.flush();
+        LOGGER.info("Exported " + count + " datasets from collection " + collectionTitle);
+        return count;
+    }
+
+    /**
+     * Write the Datasets matching a query as NDJSON lines, from a document
+     * store cursor.
+     *
+     * @param criteria Criteria of the Datasets to write
+     * @param format   Document formats to include in each line
+     * @param writer   Writer to write the lines to; not flushed
+     *
+     * @return Number of Datasets written
+     * @throws IOException
+     */
+    private long export(
+        final Criteria criteria,
+        final DatasetExportFormats format,
+        final Writer writer
+    ) throws IOException {
+        final boolean withJson = format != DatasetExportFormats.JSONLD;
+        final boolean withJsonld = format != DatasetExportFormats.JSON;
+
+        Query query = new Query(criteria).cursorBatchSize(EXPORT_BATCH_SIZE);
+        if (withJson) {
+            query.fields().include("json");
+        }
+        if (withJsonld) {
+            query.fields().include("jsonld");
+        }
+
+        String collectionName = mongoTemplate.getCollectionName(DocumentDataset.class);
+        long count = 0;
+        try (CloseableIterator<Document> cursor = mongoTemplate.stream(
+            query, Document.class, collectionName
+        )) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                Document line = new Document("uuid", document.getString("_id")); //NOPMD
+                if (withJson) {
+                    line.append("json", document.get("json"));
+                }
+                if (withJsonld) {
+                    line.append("jsonld", document.get("jsonld"));
+                }
+                writer.write(line.toJson());
+                writer.write('\n');
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read the JSON-LD of every Dataset in a Collection from a document store
+     * cursor, one Dataset at a time.
+     *
+     * @param collectionTitle Collection to read
+     * @param consumer        Called with the UUID and JSON-LD of each Dataset
+     *
+     * @return Number of Datasets read
+     */
+    public long forEachJsonld(
+        final String collectionTitle,
+        final BiConsumer<String, String> consumer
+    ) {
+        Query query = new Query(Criteria.where("collectionTitle").is(collectionTitle))
+            .cursorBatchSize(EXPORT_BATCH_SIZE);
+        query.fields().include("jsonld");
+
+        String collectionName = mongoTemplate.getCollectionName(DocumentDataset.class);
+        long count = 0;
+        try (CloseableIterator<Document> cursor = mongoTemplate.stream(
+            query, Document.class, collectionName
+        )) {
+            while (cursor.hasNext()) {
+                Document document = cursor.next();
+                // Stored as an embedded document, not a string; see DocumentDataset
+                Document jsonld = document.get("jsonld", Document.class);
+                if (jsonld != null) {
+                    consumer.accept(document.getString("_id"), jsonld.toJson());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
     /**
      * Merge Dataset UUID JSON-LD and new JSON-LD together.
      *
@@ -202,31 +731,47 @@ public class DocumentService {
      * @param collectionTitle  Collection title
      * @param datasetUUID     Dataset UUID
      * @param jsonldPayload JSON-LD for Dataset
+     * @param summary       Summary (title, url, created, modified) of the
+     *                      Dataset, as returned by GraphService.uploadJsonld
      *
      * @throws Exception
      */
     public void upload(
         final String collectionTitle,
         final String datasetUUID,
-        final String jsonldPayload
+        final String jsonldPayload,
+        final Map<String, Object> summary
     ) throws Exception {
         // Create abbreviated json
         LOGGER.info("Creating json for document store...");
 
         // Get JSON-LD -> SSM JSON conversion
-        String json = "";
+        Document json = new Document();
         if (appConfig.getJsonConversion().equals(JsonConversionType.EMBEDDED)) {
-            json = graphService.getModelJson(collectionTitle, datasetUUID);
+            json = Document.parse(graphService.getModelJson(collectionTitle, datasetUUID));
         } else if (
             appConfig.getJsonConversion().equals(JsonConversionType.FILE_CONVERTER_SERVICE)
         ) {
-            File tmpFile = this.writeTemporaryJsonld(jsonldPayload);
-            json = getJsonFromFileConverterService(tmpFile);
+            // Identical payloads reuse an earlier conversion
+            String cacheKey = conversionCache.key(jsonldPayload);
+            json = conversionCache.get(cacheKey);
+            if (json == null) {
+                json = getJsonFromFileConverterService(jsonldPayload);
+                conversionCache.put(cacheKey, json);
+            }
         }
 
+        // Summary fields are stored top-level so listings can be served from indexes
+        ensureIndexes();
+
          // Create document
         DocumentDataset document = new DocumentDataset();
         document.setDatasetId(datasetUUID);
+        document.setCollectionTitle(collectionTitle);
+        document.setTitle((String) summary.get("title"));
+        document.setUrl((String) summary.get("url"));
+        document.setCreated((String) summary.get("created"));
+        document.setModified((String) summary.get("modified"));
         document.setJsonld(jsonldPayload);
         document.setJson(json);
 
@@ -4,10 +4,14 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.jena.query.QueryException;
 import org.apache.jena.rdf.model.Model;
@@ -29,8 +33,9 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig.Fuseki;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ConfigUtils;
-import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.BatsDataset;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.CustomizedBatsCollection;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.AbbreviatedJson;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
 import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.DateUtils;
@@ -66,6 +71,18 @@ public class GraphService {
     @Autowired
     private CollectionUtils collectionUtils;
 
+    /**
+     * Store of the spectra of uploaded Datasets.
+    */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Document store ordering and counting restricted Dataset listings.
+    */
+    @Autowired
+    private DocumentRepository repository;
+
     /**
      * @return shorthand for the Fuseki configuration
      */
@@ -228,30 +245,30 @@ public class GraphService {
     /**
      * Construct the body response for the GET method of datasets.
      *
-     * @param endpointUrl URI used to query Fuseki for the count
-     * @param datasets     Generic object, representing list of datasets from SPARQL query
-     * @param datasetsUri  Uri to use for the datasets
+     * @param collectionTitle Title of the Collection the datasets belong to
+     * @param datasets     Generic object, representing list of datasets from the query
+     * @param datasetCount Total number of datasets in the Collection
      * @param pageSize   Size of the pages for pagination
      * @param pageNumber Page number for pagination
      * @param returnFull boolean for returning full dataset or not
      * @return Body for JSON response as a Map for list of datasets
      */
-    private Map<String, Object> constructDatasetsBody(
-        final String endpointUrl,
+    public Map<String, Object> constructDatasetsBody(
+        final String collectionTitle,
         final Object datasets,
-        final String datasetsUri,
+        final long datasetCount,
         final int pageSize,
         final int pageNumber,
         final boolean returnFull
-    ) throws QueryException {
+    ) {
         final Map<String, Object> body = new LinkedHashMap<>();
-        final int datasetCount = DatasetSparql.getDatasetCount(endpointUrl);
+        final String datasetsUri = configUtils.getCollectionUri(collectionTitle) + "/datasets";
         /*
         cheeky way to avoid the division twice,
         compare Option 1 vs Option 2 here:
         https://stackoverflow.com/a/21830188
         */
-        final int totalPages = (datasetCount - 1) / pageSize + 1;
+        final long totalPages = (datasetCount - 1) / pageSize + 1;
 
         body.put("data", datasets);
 
@@ -335,6 +352,7 @@ public class GraphService {
      * @param pageNumber   Page number to get for dataset UUIDs
      * @param pageSize     Size of pages (number of datasets per page)
      * @param returnFull   Boolean if we want full datasets or just summaries (default: summaries)
+     * @param datasetUUIDs UUIDs of the datasets to paginate over; null for every dataset
      *
      * @return Map of the dataset objects via UUIDs
      */
@@ -342,45 +360,102 @@ public class GraphService {
         final String collectionTitle,
         final int pageNumber,
         final int pageSize,
-        final boolean returnFull
+        final boolean returnFull,
+        final Collection<String> datasetUUIDs
     ) {
         CustomizedBatsCollection collection = collectionUtils.getCollection(collectionTitle);
 
         // final PropertyEnum[]
         // pmd does not recognize that this will always be closed
         String endpointUrl = fuseki().getURI() + "/" + collectionTitle;
-        String datasetsUri = configUtils.getCollectionUri(collectionTitle) + "/datasets";
+
+        // Restricted listings are ordered, counted and paged in the document store, so
+        // Fuseki is only sent the URIs of one page rather than of every listed dataset
+        List<String> modelUris = null;
+        int queryPage = pageNumber;
+        long total = -1;
+        if (datasetUUIDs != null) {
+            List<String> listed = listedDatasetUUIDs(collectionTitle, datasetUUIDs);
+            total = listed.size();
+            int from = (int) Math.min((long) (pageNumber - 1) * pageSize, total);
+            int to = (int) Math.min((long) from + pageSize, total);
+            modelUris = new ArrayList<>(to - from);
+            for (String datasetUUID : listed.subList(from, to)) {
+                modelUris.add(configUtils.getDatasetUri(collectionTitle, datasetUUID));
+            }
+            queryPage = 1;
+        }
 
         try {
             //Add each found dataset
+            Object datasets;
             if (returnFull) {
-                List<BatsDataset> datasets = DatasetSparql.getFullModels(
+                datasets = DatasetSparql.getFullModels(
                     pageSize,
-                    pageNumber,
+                    queryPage,
                     endpointUrl,
-                    collection
+                    collection,
+                    modelUris
                 );
-                Map<String, Object> body = constructDatasetsBody(
-                    endpointUrl, datasets, datasetsUri,
-                    pageSize, pageNumber, returnFull);
-                return body;
             } else {
-                // build the actual body
-                List<Map<String, Object>> datasets = DatasetSparql.getDatasetSummaries(
+                datasets = DatasetSparql.getDatasetSummaries(
                     pageSize,
-                    pageNumber,
-                    endpointUrl
+                    queryPage,
+                    endpointUrl,
+                    modelUris
                 );
-                Map<String, Object> body = constructDatasetsBody(
-                    endpointUrl, datasets, datasetsUri,
-                    pageSize, pageNumber, returnFull);
-                return body;
             }
+            if (total < 0) {
+                total = DatasetSparql.getDatasetCount(endpointUrl, null);
+            }
+            return constructDatasetsBody(
+                collectionTitle, datasets, total, pageSize, pageNumber, returnFull);
         } catch (QueryException ex) {
             return Collections.emptyMap();
         }
     }
 
+    /**
+     * Get the UUIDs of a Collection's Datasets that are among the given ones, in
+     * listing order, from the document store.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param datasetUUIDs    UUIDs of the Datasets that may be listed
+     * @return UUIDs of the listed Datasets, most recently modified first
+     */
+    List<String> listedDatasetUUIDs(
+        final String collectionTitle,
+        final Collection<String> datasetUUIDs
+    ) {
+        Set<String> allowed = datasetUUIDs instanceof Set
+            ? (Set<String>) datasetUUIDs : new HashSet<>(datasetUUIDs);
+        List<String> listed = new ArrayList<>();
+        for (DocumentDataset document
+                : repository.findDatasetIdsByCollectionTitleOrderByModified(collectionTitle)) {
+            if (allowed.contains(document.getDatasetId())) {
+                listed.add(document.getDatasetId());
+            }
+        }
+        return listed;
+    }
+
+    /**
+     * Get summary (title, url, created, modified) for a Dataset from the graph database.
+     *
+     * @param collectionTitle Collection the Dataset belongs to
+     * @param datasetUUID     UUID of the Dataset
+     *
+     * @return Map with the Dataset summary; empty if the Dataset has no summary fields
+     */
+    public Map<String, Object> getDatasetSummary(
+        final String collectionTitle,
+        final String datasetUUID
+    ) {
+        String endpointUrl = fuseki().getURI() + "/" + collectionTitle;
+        String datasetUri = configUtils.getDatasetUri(collectionTitle, datasetUUID);
+        return DatasetSparql.getDatasetSummary(endpointUrl, datasetUri);
+    }
+
     /**
      * Get list of UUIDS for the Datasets in Collection.
      *
@@ -407,6 +482,27 @@ public class GraphService {
         return output;
     }
 
+    /**
+     * Get the UUIDs of every Dataset in a Collection from the graph database,
+     * including Datasets the document store has no Collection title for.
+     *
+     * @param collectionTitle Title of the Collection
+     *
+     * @return UUIDs of the Datasets
+     * @throws QueryException If the graph database could not be queried
+     */
+    public List<String> listDatasetUUIDs(final String collectionTitle) throws QueryException {
+        String endpointUrl = fuseki().getURI() + "/" + collectionTitle;
+        ArrayNode graphs = DatasetSparql.getDatasetUuids(endpointUrl);
+        List<String> datasetUUIDs = new ArrayList<>(graphs.size());
+        for (JsonNode graph : graphs) {
+            // Graphs are named by Dataset URI, which ends with the UUID
+            String[] bits = graph.asText().split("/");
+            datasetUUIDs.add(bits[bits.length - 1]);
+        }
+        return datasetUUIDs;
+    }
+
     /**
      * Get the created time from Model UUID.
      *
@@ -474,12 +570,12 @@ public class GraphService {
      * @param datasetUUID     Dataset UUID
      * @param jsonld        JSON-LD to upload
      *
-     * @return BatsDataset of the new upload Dataset
+     * @return Summary (title, url, created, modified) of the uploaded Dataset
      *
      * @throws IOException
      * @throws NoSuchAlgorithmException
      */
-    public BatsDataset uploadJsonld(
+    public Map<String, Object> uploadJsonld(
         final String collectionTitle,
         final String datasetUUID,
         final String jsonld
@@ -495,12 +591,13 @@ public class GraphService {
      * @param jsonld        JSON-LD to upload
      * @param priorCreatedTime Prior created time to add
      *
-     * @return BatsModel of the new upload Model
+     * @return Summary (title, url, created, modified) of the uploaded Model,
+     *         read from the Model as uploaded rather than from Fuseki
      *
      * @throws IOException
      * @throws NoSuchAlgorithmException
      */
-    public BatsDataset uploadJsonld(
+    public Map<String, Object> uploadJsonld(
         final String collectionTitle,
         final String modelUUID,
         final String jsonld,
@@ -518,9 +615,15 @@ public class GraphService {
         Model model = jsonldToModel(modifiedJsonld, modelUUID, priorCreatedTime);
         String modelUri = configUtils.getDatasetUri(collectionTitle, modelUUID);
         collection.updateModel(modelUri, model);
-        Model newModel = collection.getModel(modelUri);
 
-        return new BatsDataset(modelUUID, RdfModelWriter.getJsonldForModel(newModel));
+        // The graph is the record; a spectrum store failure is logged, not fatal
+        try {
+            spectrumStore.put(modelUUID, jsonld);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Unable to store spectrum of dataset: " + modelUUID, e);
+        }
+
+        return DatasetSparql.getDatasetSummary(model, modelUri);
     }
 
     /**
@@ -536,5 +639,11 @@ public class GraphService {
         CustomizedBatsCollection collection = collectionUtils.getCollection(collectionTitle);
         String datasetUri = configUtils.getDatasetUri(collectionTitle, datasetUUID);
         collection.deleteDataset(datasetUri);
+
+        try {
+            spectrumStore.remove(datasetUUID);
+        } catch (IOException e) {
+            LOGGER.error("Unable to remove spectrum of dataset: " + datasetUUID, e);
+        }
     }
 }
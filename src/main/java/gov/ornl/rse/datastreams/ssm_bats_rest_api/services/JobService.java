@@ -0,0 +1,120 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.ExpiringCache;
+
+/**
+ * Runs long operations in the background and keeps their status for polling.
+ */
+@Service
+public class JobService {
+
+    /**
+     * Setup logger for JobService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobService.class);
+
+    /**
+     * Maximum number of job statuses held in memory.
+     */
+    private static final int MAX_JOBS = 10000;
+
+    /**
+     * Work performed by a Job.
+     */
+    @FunctionalInterface
+    public interface Task {
+        /**
+         * Perform the work, reporting progress through the job.
+         *
+         * @param job The Job being run.
+         * @throws Exception If the work fails.
+         */
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Submitted jobs by ID, dropped after the retention period.
+     */
+    private ExpiringCache<String, Job> jobs;
+
+    /**
+     * Bounded pool the jobs run on.
+     */
+    private ExecutorService executor; //NOPMD
+
+    /**
+     * Create the job pool once the configuration is available.
+     */
+    @PostConstruct
+    public void initExecutor() {
+        ApplicationConfig.Jobs config = appConfig.getJobs();
+        jobs = new ExpiringCache<>(MAX_JOBS, config.getRetention());
+        executor = Executors.newFixedThreadPool(config.getThreads(), runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "ssm-job"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the job pool on shutdown.
+     */
+    @PreDestroy
+    public void shutdownExecutor() {
+        executor.shutdownNow(); //NOPMD
+    }
+
+    /**
+     * Queue a task to run in the background.
+     *
+     * @param type   Short description of the operation.
+     * @param target Target of the operation.
+     * @param task   The work to perform.
+     * @return The Job tracking the task
+     */
+    public Job submit(final String type, final String target, final Task task) {
+        Job job = new Job(UUID.randomUUID().toString(), type, target);
+        jobs.put(job.getId(), job);
+        executor.execute(() -> { //NOPMD
+            job.start();
+            try {
+                task.run(job);
+                job.succeed();
+            } catch (Exception e) { //NOPMD
+                LOGGER.error("Job " + job.getId() + " (" + type + " " + target + ") failed", e);
+                job.fail(e.getMessage());
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Get a Job by ID.
+     *
+     * @param id ID of the Job.
+     * @return The Job, or null if it is unknown or has expired
+     */
+    public Job getJob(final String id) {
+        return jobs.get(id);
+    }
+}
@@ -0,0 +1,198 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.MetadataFilter;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.MetadataIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+
+/**
+ * Filters the Datasets of a Collection by the technique type, units,
+ * quantities and x range of their spectra. Each Collection's metadata is held
+ * in a MetadataIndex, loaded from the spectrum store on the first filter and
+ * kept up to date as Datasets are created, updated and deleted. Values are
+ * compared ignoring case.
+ */
+@Service
+public class MetadataIndexService {
+
+    /**
+     * Setup logger for MetadataIndexService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataIndexService.class);
+
+    /**
+     * Store of the spectra the metadata is read from.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Loaded index of each Collection. Loads and the updates of Collections
+     * not yet in the map synchronize on it, so an update made during a load
+     * is applied after the load rather than lost.
+     */
+    private final Map<String, MetadataIndex> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Find the Datasets of a Collection passing a filter.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param filter          The filter. May be null.
+     * @return UUIDs of the Datasets passing the filter, or null if it lets
+     *         every Dataset through
+     * @throws IllegalArgumentException If x_min is above x_max
+     */
+    public Set<String> select(final String collectionTitle, final MetadataFilter filter) {
+        if (filter == null || filter.isEmpty()) {
+            return null;
+        }
+        Map<String, String> criteria = new HashMap<>();
+        putValue(criteria, MetadataIndex.TECHNIQUE, filter.getTechnique());
+        putValue(criteria, MetadataIndex.X_UNITS, filter.getXUnits());
+        putValue(criteria, MetadataIndex.X_QUANTITY, filter.getXQuantity());
+        putValue(criteria, MetadataIndex.Y_QUANTITY, filter.getYQuantity());
+        double from = filter.getXMin() == null ? Double.NaN : filter.getXMin();
+        double to = filter.getXMax() == null ? Double.NaN : filter.getXMax();
+        return new HashSet<>(getIndex(collectionTitle).filter(criteria, from, to));
+    }
+
+    /**
+     * Add or replace the metadata of a Dataset in its Collection's index, if
+     * loaded, from its stored spectrum.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void index(final String collectionTitle, final String datasetUUID) {
+        MetadataIndex index = getLoadedIndex(collectionTitle);
+        if (index == null) {
+            return;
+        }
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        if (spectrum == null) {
+            index.remove(datasetUUID);
+        } else {
+            put(index, datasetUUID, spectrum);
+        }
+    }
+
+    /**
+     * Remove a Dataset from its Collection's index, if loaded.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void remove(final String collectionTitle, final String datasetUUID) {
+        MetadataIndex index = getLoadedIndex(collectionTitle);
+        if (index != null) {
+            index.remove(datasetUUID);
+        }
+    }
+
+    /**
+     * Drop the index of a deleted Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     */
+    public void removeCollection(final String collectionTitle) {
+        synchronized (indexes) {
+            indexes.remove(collectionTitle);
+        }
+    }
+
+    /**
+     * Get the index of a Collection if loaded, waiting for a load in progress.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's index, or null if not loaded
+     */
+    private MetadataIndex getLoadedIndex(final String collectionTitle) {
+        MetadataIndex index = indexes.get(collectionTitle);
+        if (index == null) {
+            synchronized (indexes) {
+                // Wait for a load in progress, which may have read the old version
+                index = indexes.get(collectionTitle);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Get the index of a Collection, loading it if needed.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's index
+     */
+    private MetadataIndex getIndex(final String collectionTitle) {
+        MetadataIndex index = indexes.get(collectionTitle);
+        if (index != null) {
+            return index;
+        }
+        synchronized (indexes) {
+            index = indexes.get(collectionTitle);
+            if (index == null) {
+                long start = System.currentTimeMillis();
+                MetadataIndex loaded = new MetadataIndex();
+                int datasets = spectrumStore.forEachSpectrum(collectionTitle,
+                    (datasetUUID, spectrum) -> put(loaded, datasetUUID, spectrum));
+                LOGGER.info("Indexed metadata of " + loaded.size() + " of " + datasets
+                    + " datasets in collection " + collectionTitle + " in "
+                    + (System.currentTimeMillis() - start) + "ms");
+                indexes.put(collectionTitle, loaded);
+                index = loaded;
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Add the metadata of a stored spectrum to an index.
+     *
+     * @param index       The index
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The Dataset's stored spectrum, empty if it has none
+     */
+    private static void put(
+        final MetadataIndex index,
+        final String datasetUUID,
+        final StoredSpectrum spectrum
+    ) {
+        Map<String, String> attributes = new HashMap<>();
+        putValue(attributes, MetadataIndex.TECHNIQUE, spectrum.getTechnique());
+        putValue(attributes, MetadataIndex.X_UNITS, spectrum.getXUnits());
+        putValue(attributes, MetadataIndex.X_QUANTITY, spectrum.getXQuantity());
+        putValue(attributes, MetadataIndex.Y_QUANTITY, spectrum.getYQuantity());
+        // Stored x values are in increasing order
+        double low = spectrum.isEmpty() ? Double.NaN : spectrum.getX(0);
+        double high = spectrum.isEmpty() ? Double.NaN : spectrum.getX(spectrum.size() - 1);
+        index.put(datasetUUID, attributes, low, high);
+    }
+
+    /**
+     * Add an attribute value, ignoring case, if not null.
+     *
+     * @param attributes Value of each attribute
+     * @param attribute  The attribute
+     * @param value      Its value. May be null.
+     */
+    private static void putValue(
+        final Map<String, String> attributes,
+        final String attribute,
+        final String value
+    ) {
+        if (value != null) {
+            attributes.put(attribute, value.toLowerCase(Locale.ROOT));
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Peak;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.PeakDetector;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.PeakIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+
+/**
+ * Detects the peaks of every stored spectrum and keeps them in a PeakIndex,
+ * answering peak list queries over a Collection. When peak detection is
+ * configured differently, every stored spectrum is indexed again in a
+ * background job.
+ */
+@Service
+public class PeakIndexService implements SpectrumListener {
+
+    /**
+     * Setup logger for PeakIndexService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(PeakIndexService.class);
+
+    /**
+     * Name of the peak index file in the spectrum store directory.
+     */
+    private static final String FILE_NAME = "peaks.log";
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Store of the spectra the peaks are detected in.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Document store service listing the Datasets of a Collection.
+     */
+    @Autowired
+    private DocumentService documentService;
+
+    /**
+     * Runs the indexing job.
+     */
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * Finds the peaks of a spectrum.
+     */
+    private PeakDetector detector;
+
+    /**
+     * The index.
+     */
+    private PeakIndex index;
+
+    /**
+     * UUIDs of the Datasets of each loaded Collection, all of them indexed.
+     * Loads and the updates of Collections not yet in the map synchronize on
+     * it, so an update made during a load is applied after the load rather
+     * than lost.
+     */
+    private final Map<String, Set<String>> members = new ConcurrentHashMap<>();
+
+    /**
+     * Open the index once the configuration is available, and index every
+     * stored spectrum if the index is new or was built differently.
+     *
+     * @throws IOException If the index could not be opened
+     */
+    @PostConstruct
+    public void openIndex() throws IOException {
+        ApplicationConfig.Spectra config = appConfig.getSpectra();
+        detector = new PeakDetector(config.getPeakMinProminence(), config.getPeakMaxCount());
+        String settings = config.getPeakMinProminence() + "|" + config.getPeakMaxCount()
+            + "|" + config.getPeakBinWidth();
+        CRC32 fingerprint = new CRC32();
+        fingerprint.update(settings.getBytes(StandardCharsets.UTF_8));
+
+        Path directory = Paths.get(config.getStoreDirectory());
+        Files.createDirectories(directory);
+        index = new PeakIndex(directory.resolve(FILE_NAME), config.getPeakBinWidth(),
+            fingerprint.getValue());
+        LOGGER.info("Opened peak index with " + index.size() + " datasets");
+
+        if (index.isFresh() && !spectrumStore.getDatasetUUIDs().isEmpty()) {
+            Job job = jobService.submit("index-peaks", FILE_NAME, this::reindex);
+            LOGGER.info("Peak detection changed; indexing stored spectra in job " + job.getId());
+        }
+    }
+
+    /**
+     * Flush the index on shutdown.
+     */
+    @PreDestroy
+    public void closeIndex() {
+        try {
+            index.close();
+        } catch (IOException e) {
+            LOGGER.warn("Unable to close the peak index", e);
+        }
+    }
+
+    /**
+     * Detect and index the peaks of a stored spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The stored spectrum, empty if the Dataset has none
+     * @throws IOException If the index could not be written
+     */
+    @Override
+    public void stored(final String datasetUUID, final StoredSpectrum spectrum)
+            throws IOException {
+        index.put(datasetUUID, detector.detect(spectrum));
+    }
+
+    /**
+     * Remove a Dataset from the index.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If the index could not be written
+     */
+    @Override
+    public void removed(final String datasetUUID) throws IOException {
+        index.remove(datasetUUID);
+    }
+
+    /**
+     * @param datasetUUID UUID of a Dataset
+     * @return Peaks of the Dataset in order of increasing position, or null if
+     *         it is not indexed
+     */
+    public List<Peak> getPeaks(final String datasetUUID) {
+        return index.get(datasetUUID);
+    }
+
+    /**
+     * Find the Datasets of a Collection whose peaks best match a peak list.
+     *
+     * @param collectionTitle Collection to search
+     * @param query           Query peaks
+     * @param tolerance       Largest difference in position of matching peaks
+     * @param k               Most matches to return
+     * @param filter          Which Dataset UUIDs may be returned
+     * @return Up to k matches, best first
+     * @throws IllegalArgumentException If the tolerance spans too many bins
+     */
+    public List<SpectralIndex.Match> search(
+        final String collectionTitle,
+        final List<Peak> query,
+        final double tolerance,
+        final int k,
+        final Predicate<String> filter
+    ) {
+        Set<String> datasetUUIDs = getMembers(collectionTitle);
+        int candidates = Math.max(k, appConfig.getSpectra().getPeakCandidates());
+        return index.search(query, tolerance, k, candidates,
+            datasetUUID -> datasetUUIDs.contains(datasetUUID) && filter.test(datasetUUID));
+    }
+
+    /**
+     * Add a Dataset to its Collection's members, if loaded. Its peaks are
+     * indexed when its spectrum is stored.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void addMember(final String collectionTitle, final String datasetUUID) {
+        Set<String> datasetUUIDs = getLoadedMembers(collectionTitle);
+        if (datasetUUIDs != null) {
+            datasetUUIDs.add(datasetUUID);
+        }
+    }
+
+    /**
+     * Remove a Dataset from its Collection's members, if loaded.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void removeMember(final String collectionTitle, final String datasetUUID) {
+        Set<String> datasetUUIDs = getLoadedMembers(collectionTitle);
+        if (datasetUUIDs != null) {
+            datasetUUIDs.remove(datasetUUID);
+        }
+    }
+
+    /**
+     * Drop the members of a deleted Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     */
+    public void removeCollection(final String collectionTitle) {
+        synchronized (members) {
+            members.remove(collectionTitle);
+        }
+    }
+
+    /**
+     * Get the members of a Collection if loaded, waiting for a load in progress.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return UUIDs of the Collection's Datasets, or null if not loaded
+     */
+    private Set<String> getLoadedMembers(final String collectionTitle) {
+        Set<String> datasetUUIDs = members.get(collectionTitle);
+        if (datasetUUIDs == null) {
+            synchronized (members) {
+                // Wait for a load in progress, which may have read the old members
+                datasetUUIDs = members.get(collectionTitle);
+            }
+        }
+        return datasetUUIDs;
+    }
+
+    /**
+     * Get the members of a Collection, loading them and indexing any missing
+     * from the index if needed. A Collection is only kept once every member
+     * is indexed, so a failed backfill is retried by the next search.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return UUIDs of the Collection's Datasets
+     */
+    private Set<String> getMembers(final String collectionTitle) {
+        Set<String> datasetUUIDs = members.get(collectionTitle);
+        if (datasetUUIDs != null) {
+            return datasetUUIDs;
+        }
+        synchronized (members) {
+            datasetUUIDs = members.get(collectionTitle);
+            if (datasetUUIDs == null) {
+                Set<String> loaded = ConcurrentHashMap.newKeySet();
+                loaded.addAll(documentService.getDatasetUUIDs(collectionTitle));
+                backfill(collectionTitle, loaded);
+                members.put(collectionTitle, loaded);
+                datasetUUIDs = loaded;
+            }
+            return datasetUUIDs;
+        }
+    }
+
+    /**
+     * Index the Datasets of a Collection missing from the index: from the
+     * spectrum store, or from their JSON-LD if stored before it existed.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param datasetUUIDs    UUIDs of the Collection's Datasets
+     */
+    private void backfill(final String collectionTitle, final Set<String> datasetUUIDs) {
+        Set<String> missing = new HashSet<>();
+        for (String datasetUUID : datasetUUIDs) {
+            if (index.contains(datasetUUID)) {
+                continue;
+            }
+            StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+            try {
+                if (spectrum == null) {
+                    missing.add(datasetUUID);
+                } else {
+                    stored(datasetUUID, spectrum);
+                }
+            } catch (IOException e) {
+                LOGGER.debug("Unable to index peaks of dataset " + datasetUUID, e);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        // Storing the spectrum indexes its peaks through this listener
+        documentService.forEachJsonld(collectionTitle, (datasetUUID, jsonld) -> {
+            if (missing.contains(datasetUUID)) {
+                try {
+                    spectrumStore.put(datasetUUID, jsonld);
+                } catch (IOException e) {
+                    LOGGER.debug("Unable to read spectrum of dataset " + datasetUUID, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Detect and index the peaks of every stored spectrum, in parallel.
+     *
+     * @param job The Job to report progress through
+     * @throws IOException If any Dataset could not be indexed
+     */
+    private void reindex(final Job job) throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> datasetUUIDs = new ArrayList<>(spectrumStore.getDatasetUUIDs());
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        datasetUUIDs.parallelStream().forEach(datasetUUID -> {
+            try {
+                reindex(datasetUUID);
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                LOGGER.debug("Unable to index peaks of dataset " + datasetUUID, e);
+            }
+            job.setProcessed(processed.incrementAndGet());
+        });
+        if (failed.get() > 0) {
+            throw new IOException("Unable to index peaks of " + failed.get() + " datasets");
+        }
+        LOGGER.info("Indexed peaks of " + datasetUUIDs.size() + " spectra in "
+            + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Index the peaks of a Dataset's stored spectrum. If the Dataset is
+     * replaced or removed meanwhile, it is indexed again so the job never
+     * leaves older peaks behind.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If the peaks could not be indexed
+     */
+    private void reindex(final String datasetUUID) throws IOException {
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        while (spectrum != null) {
+            stored(datasetUUID, spectrum);
+            // The store returns the same view until the Dataset is written again
+            StoredSpectrum latest = spectrumStore.get(datasetUUID);
+            if (latest == spectrum) { //NOPMD
+                return;
+            }
+            spectrum = latest;
+        }
+        removed(datasetUUID);
+    }
+}
@@ -0,0 +1,325 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.SpectrumQuery;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Scorer;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Scorers;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralGrid;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralIndex;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Spectrum;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumExtractor;
+
+/**
+ * Spectral similarity search over the Datasets of a Collection. Each
+ * Collection's spectra are held in a SpectralIndex per grid, loaded from the
+ * stored vectors on the first search and kept up to date as Datasets are
+ * created, updated and deleted. Queries asking for approximate search are
+ * answered by the ApproximateIndexService instead once its graphs are built,
+ * unless they score by a metric other than cosine similarity, which the
+ * graphs are built for.
+ */
+@Service
+public class SpectralSearchService {
+
+    /**
+     * Setup logger for SpectralSearchService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        SpectralSearchService.class
+    );
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Store of the spectra of Datasets, read instead of their JSON-LD.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Resampled spectra of Datasets.
+     */
+    @Autowired
+    private SpectrumVectorService spectrumVectors;
+
+    /**
+     * Graphs answering approximate searches.
+     */
+    @Autowired
+    private ApproximateIndexService approximateIndexes;
+
+    /**
+     * Scorers of the application, chosen by name before the built-in ones.
+     */
+    @Autowired
+    private ObjectProvider<Scorer> scorers;
+
+    /**
+     * Loaded indexes of each Collection, by grid name.
+     */
+    private final Map<String, Map<String, SpectralIndex>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * Lock of each Collection. A load holds its Collection's lock, and updates
+     * of a Collection not yet loaded take it, so an update made during a load
+     * is applied after the load rather than lost. Other Collections are not
+     * held up.
+     */
+    private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Find the Datasets of a Collection whose spectra are most similar to a
+     * query, among those on the grid of the query's technique and x units.
+     * Approximate queries are answered exactly while the Collection's graphs
+     * are being built.
+     *
+     * @param collectionTitle Collection to search
+     * @param query           The query spectrum
+     * @param k               Most matches to return
+     * @param filter          Which Dataset UUIDs may be returned
+     *
+     * @return Up to k matches, most similar first
+     * @throws IllegalArgumentException If the query has no values on its grid
+     *                                  or names an unknown metric
+     */
+    public List<SpectralIndex.Match> search(
+        final String collectionTitle,
+        final SpectrumQuery query,
+        final int k,
+        final Predicate<String> filter
+    ) {
+        Scorer scorer = getScorer(query);
+        Spectrum spectrum = SpectrumExtractor.fromArrays(
+            query.getX(), query.getY(), query.getXUnits(), query.getTechnique());
+        SpectrumVectorService.Vector vector = spectrum == null ? null
+            : spectrumVectors.vectorize(spectrum, query.getTechnique(), query.getXUnits());
+        if (vector == null) {
+            String name = spectrumVectors.getGrids().select(
+                query.getTechnique(), query.getXUnits());
+            SpectralGrid grid = spectrumVectors.getGrids().get(name);
+            throw new IllegalArgumentException(
+                "Query spectrum needs non-zero values between x = " + grid.getStart()
+                + " and x = " + grid.getEnd() + " of grid " + name
+            );
+        }
+        if (query.isApproximate() && Scorers.COSINE.equals(scorer)) {
+            int ef = query.getEf() == null
+                ? appConfig.getSpectra().getHnswEfSearch() : query.getEf();
+            List<SpectralIndex.Match> matches = approximateIndexes.search(
+                collectionTitle, vector.getGrid(), vector.getValues(), k, ef, filter);
+            if (matches != null) {
+                return matches;
+            }
+        }
+        SpectralIndex index = getIndexes(collectionTitle).get(vector.getGrid());
+        return index == null
+            ? Collections.emptyList() : index.search(vector.getValues(), k, scorer, filter);
+    }
+
+    /**
+     * Get the scorer a query asks for.
+     *
+     * @param query The query
+     * @return Its metric, a composite of its weighted metrics, or cosine
+     *         similarity if it names none
+     * @throws IllegalArgumentException If a metric is unknown or a weight not
+     *                                  positive
+     */
+    private Scorer getScorer(final SpectrumQuery query) {
+        if (query.getWeights() != null && !query.getWeights().isEmpty()) {
+            Map<Scorer, Double> weights = new LinkedHashMap<>();
+            for (Map.Entry<String, Double> entry : query.getWeights().entrySet()) {
+                weights.merge(getScorer(entry.getKey()), entry.getValue(), Double::sum);
+            }
+            return Scorers.composite(weights);
+        }
+        return query.getMetric() == null ? Scorers.COSINE : getScorer(query.getMetric());
+    }
+
+    /**
+     * @param name Name of a metric
+     * @return The application's scorer of that name, else the built-in one
+     * @throws IllegalArgumentException If there is no scorer of that name
+     */
+    private Scorer getScorer(final String name) {
+        Scorer scorer = scorers.orderedStream()
+            .filter(bean -> bean.getName().equals(name))
+            .findFirst()
+            .orElseGet(() -> Scorers.get(name));
+        if (scorer == null) {
+            throw new IllegalArgumentException("Unknown metric " + name + "; expected one of "
+                + Stream.concat(scorers.orderedStream().map(Scorer::getName),
+                    Scorers.names().stream()).distinct().collect(Collectors.joining(", ")));
+        }
+        return scorer;
+    }
+
+    /**
+     * Add or replace the spectrum of a Dataset in its Collection's indexes and
+     * graphs, if loaded. A Dataset without a spectrum is removed from them.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     * @param jsonld          JSON-LD of the Dataset, read only if its spectrum
+     *                        is missing from the spectrum store
+     * @throws IOException If the spectrum could not be read
+     */
+    public void index(
+        final String collectionTitle,
+        final String datasetUUID,
+        final String jsonld
+    ) throws IOException {
+        if (spectrumStore.get(datasetUUID) == null) {
+            spectrumStore.put(datasetUUID, jsonld);
+        }
+        SpectrumVectorService.Vector vector = spectrumVectors.get(datasetUUID);
+        approximateIndexes.index(collectionTitle, datasetUUID, vector);
+        Map<String, SpectralIndex> collectionIndexes = getLoadedIndexes(collectionTitle);
+        if (collectionIndexes == null) {
+            return;
+        }
+        for (Map.Entry<String, SpectralIndex> entry : collectionIndexes.entrySet()) {
+            if (vector == null || !entry.getKey().equals(vector.getGrid())) {
+                entry.getValue().remove(datasetUUID);
+            }
+        }
+        if (vector != null) {
+            put(collectionIndexes, datasetUUID, vector);
+        }
+    }
+
+    /**
+     * Remove the spectrum of a Dataset from its Collection's indexes and
+     * graphs, if loaded.
+     *
+     * @param collectionTitle Collection of the Dataset
+     * @param datasetUUID     UUID of the Dataset
+     */
+    public void remove(final String collectionTitle, final String datasetUUID) {
+        approximateIndexes.remove(collectionTitle, datasetUUID);
+        Map<String, SpectralIndex> collectionIndexes = getLoadedIndexes(collectionTitle);
+        if (collectionIndexes != null) {
+            for (SpectralIndex index : collectionIndexes.values()) {
+                index.remove(datasetUUID);
+            }
+        }
+    }
+
+    /**
+     * Drop the indexes and graphs of a deleted Collection.
+     *
+     * @param collectionTitle Title of the Collection
+     */
+    public void removeCollection(final String collectionTitle) {
+        approximateIndexes.removeCollection(collectionTitle);
+        synchronized (getLoadLock(collectionTitle)) {
+            indexes.remove(collectionTitle);
+        }
+    }
+
+    /**
+     * @param collectionTitle Title of the Collection
+     * @return The lock of the Collection's load
+     */
+    private Object getLoadLock(final String collectionTitle) {
+        return loadLocks.computeIfAbsent(collectionTitle, title -> new Object());
+    }
+
+    /**
+     * Get the indexes of a Collection if loaded, waiting for a load in
+     * progress, which may have read the old version of a Dataset.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's index of each grid, or null if not loaded
+     */
+    private Map<String, SpectralIndex> getLoadedIndexes(final String collectionTitle) {
+        Map<String, SpectralIndex> collectionIndexes = indexes.get(collectionTitle);
+        if (collectionIndexes == null) {
+            synchronized (getLoadLock(collectionTitle)) {
+                collectionIndexes = indexes.get(collectionTitle);
+            }
+        }
+        return collectionIndexes;
+    }
+
+    /**
+     * Get the indexes of a Collection, loading them if needed.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's index of each grid
+     */
+    private Map<String, SpectralIndex> getIndexes(final String collectionTitle) {
+        Map<String, SpectralIndex> collectionIndexes = indexes.get(collectionTitle);
+        if (collectionIndexes != null) {
+            return collectionIndexes;
+        }
+        synchronized (getLoadLock(collectionTitle)) {
+            collectionIndexes = indexes.get(collectionTitle);
+            if (collectionIndexes == null) {
+                collectionIndexes = load(collectionTitle);
+                indexes.put(collectionTitle, collectionIndexes);
+            }
+            return collectionIndexes;
+        }
+    }
+
+    /**
+     * Build the indexes of a Collection from the stored vectors.
+     *
+     * @param collectionTitle Title of the Collection
+     * @return The Collection's index of each grid
+     */
+    private Map<String, SpectralIndex> load(final String collectionTitle) {
+        long start = System.currentTimeMillis();
+        Map<String, SpectralIndex> collectionIndexes = new ConcurrentHashMap<>();
+        int datasets = spectrumVectors.forEachVector(collectionTitle,
+            (datasetUUID, vector) -> put(collectionIndexes, datasetUUID, vector));
+        int indexed = 0;
+        for (SpectralIndex index : collectionIndexes.values()) {
+            indexed += index.size();
+        }
+        LOGGER.info("Indexed " + indexed + " of " + datasets
+            + " spectra on " + collectionIndexes.size() + " grids in collection "
+            + collectionTitle + " in " + (System.currentTimeMillis() - start) + "ms");
+        return collectionIndexes;
+    }
+
+    /**
+     * Add a Dataset's vector to the index of its grid, if it has one.
+     *
+     * @param collectionIndexes The Collection's index of each grid
+     * @param datasetUUID       UUID of the Dataset
+     * @param vector            Vector of the Dataset. May be null.
+     */
+    private void put(
+        final Map<String, SpectralIndex> collectionIndexes,
+        final String datasetUUID,
+        final SpectrumVectorService.Vector vector
+    ) {
+        if (vector != null) {
+            collectionIndexes.computeIfAbsent(vector.getGrid(),
+                grid -> new SpectralIndex(vector.getValues().length))
+                .put(datasetUUID, vector.getValues());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+
+/**
+ * Keeps data derived from the spectra of Datasets, such as resampled vectors
+ * or peak lists, up to date. Every Spring bean implementing it is told by
+ * SpectrumStoreService of each spectrum stored and removed.
+ */
+public interface SpectrumListener {
+
+    /**
+     * A Dataset's spectrum was stored or replaced.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The stored spectrum, empty if the Dataset has none
+     * @throws IOException If the derived data could not be written
+     */
+    void stored(String datasetUUID, StoredSpectrum spectrum) throws IOException;
+
+    /**
+     * A Dataset's spectrum was removed.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If the derived data could not be written
+     */
+    void removed(String datasetUUID) throws IOException;
+}
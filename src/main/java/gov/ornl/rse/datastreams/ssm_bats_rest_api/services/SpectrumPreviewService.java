@@ -0,0 +1,280 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Lttb;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumView;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.VectorStore;
+
+/**
+ * Downsampled previews of the spectra of Datasets, for plotting thumbnails
+ * without reading whole Datasets. Each spectrum is downsampled with
+ * Largest-Triangle-Three-Buckets to every configured level when stored, and a
+ * preview of any other size is downsampled from the next larger level.
+ */
+@Service
+public class SpectrumPreviewService implements SpectrumListener {
+
+    /**
+     * Setup logger for SpectrumPreviewService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        SpectrumPreviewService.class
+    );
+
+    /**
+     * Prefix of the store file of each level.
+     */
+    private static final String FILE_PREFIX = "previews-";
+
+    /**
+     * Suffix of the store file of each level.
+     */
+    private static final String FILE_SUFFIX = ".dat";
+
+    /**
+     * Version of the downsampling the stored levels were made with.
+     */
+    private static final long VERSION = 1;
+
+    /**
+     * A downsampled spectrum.
+     */
+    public static final class Preview implements SpectrumView {
+
+        /**
+         * Independent (x-axis) values in increasing order.
+         */
+        private final float[] x;
+
+        /**
+         * Dependent (y-axis) value for each x value.
+         */
+        private final float[] y;
+
+        /**
+         * Number of points of the whole spectrum.
+         */
+        private final int totalPoints;
+
+        /**
+         * Constructor.
+         *
+         * @param newX           Independent values in increasing order
+         * @param newY           Dependent value for each x value
+         * @param newTotalPoints Number of points of the whole spectrum
+         */
+        Preview(final float[] newX, final float[] newY, final int newTotalPoints) {
+            this.x = newX;
+            this.y = newY;
+            this.totalPoints = newTotalPoints;
+        }
+
+        /**
+         * @return Independent values in increasing order
+         */
+        public float[] getXValues() {
+            return x;
+        }
+
+        /**
+         * @return Dependent value for each x value
+         */
+        public float[] getYValues() {
+            return y;
+        }
+
+        /**
+         * @return Number of points of the whole spectrum
+         */
+        public int getTotalPoints() {
+            return totalPoints;
+        }
+
+        @Override
+        public int size() {
+            return x.length;
+        }
+
+        @Override
+        public double getX(final int index) {
+            return x[index];
+        }
+
+        @Override
+        public double getY(final int index) {
+            return y[index];
+        }
+    }
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Store of the spectra the previews are downsampled from.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Stored previews of each level by number of points, smallest first. Each
+     * preview is stored as its x values followed by its y values.
+     */
+    private final TreeMap<Integer, VectorStore> levels = new TreeMap<>();
+
+    /**
+     * Open a store per level once the configuration is available.
+     *
+     * @throws IOException If a store could not be opened
+     */
+    @PostConstruct
+    public void openStores() throws IOException {
+        Path directory = Paths.get(appConfig.getSpectra().getStoreDirectory());
+        Files.createDirectories(directory);
+        for (int points : appConfig.getSpectra().getPreviewLevels()) {
+            if (points < 2 || levels.containsKey(points)) {
+                continue;
+            }
+            Path path = directory.resolve(FILE_PREFIX + points + FILE_SUFFIX);
+            levels.put(points, new VectorStore(path, 2 * points, VERSION)); //NOPMD
+        }
+        LOGGER.info("Opened spectrum previews of " + levels.keySet() + " points");
+    }
+
+    /**
+     * Flush the stores on shutdown.
+     */
+    @PreDestroy
+    public void closeStores() {
+        for (Map.Entry<Integer, VectorStore> entry : levels.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close previews of " + entry.getKey() + " points", e);
+            }
+        }
+    }
+
+    /**
+     * Store the previews of a spectrum at every level it has more points than.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The stored spectrum, empty if the Dataset has none
+     * @throws IOException If a store could not be written
+     */
+    @Override
+    public void stored(final String datasetUUID, final StoredSpectrum spectrum)
+            throws IOException {
+        for (Map.Entry<Integer, VectorStore> entry : levels.entrySet()) {
+            if (spectrum.size() > entry.getKey()) {
+                entry.getValue().put(datasetUUID, downsample(spectrum, entry.getKey()));
+            } else {
+                entry.getValue().remove(datasetUUID);
+            }
+        }
+    }
+
+    /**
+     * Remove the previews of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If a store could not be written
+     */
+    @Override
+    public void removed(final String datasetUUID) throws IOException {
+        for (Map.Entry<Integer, VectorStore> entry : levels.entrySet()) {
+            entry.getValue().remove(datasetUUID);
+        }
+    }
+
+    /**
+     * Get a preview of a Dataset's stored spectrum. A level missing for a
+     * spectrum stored before it was configured is stored on first use.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param points      Most points of the preview
+     * @return The preview, or null if the Dataset's spectrum is not stored or
+     *         it has none
+     * @throws IOException If a store could not be read or written
+     */
+    public Preview get(final String datasetUUID, final int points) throws IOException {
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        if (spectrum == null || spectrum.isEmpty()) {
+            return null;
+        }
+        int size = spectrum.size();
+        Map.Entry<Integer, VectorStore> level = levels.ceilingEntry(points);
+        if (size <= points || level == null || size <= level.getKey()) {
+            return toPreview(spectrum, Lttb.select(spectrum, points), size);
+        }
+        int levelPoints = level.getKey();
+        float[] values = level.getValue().get(datasetUUID);
+        if (values == null) {
+            values = downsample(spectrum, levelPoints);
+            level.getValue().put(datasetUUID, values);
+        }
+        Preview preview = new Preview(
+            Arrays.copyOfRange(values, 0, levelPoints),
+            Arrays.copyOfRange(values, levelPoints, 2 * levelPoints),
+            size
+        );
+        return levelPoints == points
+            ? preview : toPreview(preview, Lttb.select(preview, points), size);
+    }
+
+    /**
+     * Downsample a spectrum for storing.
+     *
+     * @param spectrum The spectrum
+     * @param points   Number of points to keep; fewer than its points
+     * @return The x values of the points kept followed by their y values
+     */
+    private static float[] downsample(final SpectrumView spectrum, final int points) {
+        int[] kept = Lttb.select(spectrum, points);
+        float[] values = new float[2 * points];
+        for (int i = 0; i < points; i++) {
+            values[i] = (float) spectrum.getX(kept[i]);
+            values[points + i] = (float) spectrum.getY(kept[i]);
+        }
+        return values;
+    }
+
+    /**
+     * @param spectrum    A spectrum
+     * @param kept        Indexes of the points to keep
+     * @param totalPoints Number of points of the whole spectrum
+     * @return Preview of the points kept
+     */
+    private static Preview toPreview(
+        final SpectrumView spectrum,
+        final int[] kept,
+        final int totalPoints
+    ) {
+        float[] x = new float[kept.length];
+        float[] y = new float[kept.length];
+        for (int i = 0; i < kept.length; i++) {
+            x[i] = (float) spectrum.getX(kept[i]);
+            y[i] = (float) spectrum.getY(kept[i]);
+        }
+        return new Preview(x, y, totalPoints);
+    }
+}
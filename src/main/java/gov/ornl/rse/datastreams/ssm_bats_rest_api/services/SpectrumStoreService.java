@@ -0,0 +1,243 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumExtractor;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumStore;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+
+/**
+ * Keeps the spectrum of every uploaded Dataset in a memory-mapped
+ * SpectrumStore, so numeric consumers read x and y values without parsing
+ * JSON-LD. The store is compacted in the background. Each SpectrumListener
+ * is told of every spectrum stored and removed.
+ */
+@Service
+public class SpectrumStoreService {
+
+    /**
+     * Setup logger for SpectrumStoreService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        SpectrumStoreService.class
+    );
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Keep data derived from the spectra up to date. Looked up on use, as
+     * listeners read the store themselves.
+     */
+    @Autowired
+    private ObjectProvider<SpectrumListener> listeners;
+
+    /**
+     * Lists the Datasets of a Collection and reads their JSON-LD. Looked up
+     * on use, as it stores spectra through the graph service.
+     */
+    @Autowired
+    private ObjectProvider<DocumentService> documents;
+
+    /**
+     * The store.
+     */
+    private SpectrumStore store;
+
+    /**
+     * Runs the background compaction.
+     */
+    private ScheduledExecutorService scheduler; //NOPMD
+
+    /**
+     * Open the store and schedule its compaction once the configuration is available.
+     *
+     * @throws IOException If the store could not be opened
+     */
+    @PostConstruct
+    public void openStore() throws IOException {
+        ApplicationConfig.Spectra config = appConfig.getSpectra();
+        store = new SpectrumStore(
+            Paths.get(config.getStoreDirectory()),
+            config.getStoreSegmentSize()
+        );
+        LOGGER.info("Opened spectrum store in " + config.getStoreDirectory() + " with "
+            + store.size() + " datasets");
+
+        long interval = config.getStoreCompactionInterval();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> { //NOPMD
+            Thread thread = new Thread(runnable, "ssm-spectrum-store"); //NOPMD
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compact, interval, interval, //NOPMD
+            TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the background compaction and flush the store on shutdown.
+     */
+    @PreDestroy
+    public void closeStore() {
+        scheduler.shutdownNow(); //NOPMD
+        store.close();
+    }
+
+    /**
+     * Get a zero-copy view of a Dataset's spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The spectrum, empty if the Dataset has none, or null if the
+     *         Dataset has not been stored
+     */
+    public StoredSpectrum get(final String datasetUUID) {
+        return store.get(datasetUUID);
+    }
+
+    /**
+     * @return UUIDs of the stored Datasets, a live view
+     */
+    public Set<String> getDatasetUUIDs() {
+        return store.ids();
+    }
+
+    /**
+     * Pass the stored spectrum of every Dataset of a Collection to an action.
+     * Datasets stored before the spectrum store existed are added to it from
+     * their JSON-LD first.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param action          Called with the UUID and stored spectrum of each
+     *                        Dataset, empty if it has none
+     * @return Number of Datasets of the Collection
+     */
+    public int forEachSpectrum(
+        final String collectionTitle,
+        final BiConsumer<String, StoredSpectrum> action
+    ) {
+        DocumentService documentService = documents.getObject();
+        List<String> datasetUUIDs = documentService.getDatasetUUIDs(collectionTitle);
+        Set<String> missing = new HashSet<>();
+        for (String datasetUUID : datasetUUIDs) {
+            StoredSpectrum spectrum = get(datasetUUID);
+            if (spectrum == null) {
+                missing.add(datasetUUID);
+            } else {
+                action.accept(datasetUUID, spectrum);
+            }
+        }
+        if (missing.isEmpty()) {
+            return datasetUUIDs.size();
+        }
+
+        AtomicLong unreadable = new AtomicLong();
+        documentService.forEachJsonld(collectionTitle, (datasetUUID, jsonld) -> {
+            if (!missing.contains(datasetUUID)) {
+                return;
+            }
+            try {
+                action.accept(datasetUUID, put(datasetUUID, jsonld));
+            } catch (IOException e) {
+                unreadable.incrementAndGet();
+                LOGGER.debug("Unable to read spectrum of dataset " + datasetUUID, e);
+            }
+        });
+        LOGGER.info("Stored " + (missing.size() - unreadable.get()) + " spectra of collection "
+            + collectionTitle + " from JSON-LD");
+        if (unreadable.get() > 0) {
+            LOGGER.warn("Unable to read spectra of " + unreadable.get() + " datasets in "
+                + "collection " + collectionTitle);
+        }
+        return datasetUUIDs.size();
+    }
+
+    /**
+     * Store the spectrum of a Dataset, or that it has none, from its JSON-LD.
+     * A listener failing is logged, as the spectrum itself is stored.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param jsonld      JSON-LD of the Dataset
+     * @return The stored spectrum, empty if the Dataset has none
+     * @throws IOException If the JSON-LD could not be parsed or the store written
+     */
+    public StoredSpectrum put(final String datasetUUID, final String jsonld) throws IOException {
+        StoredSpectrum spectrum = store.put(datasetUUID, SpectrumExtractor.fromJsonld(jsonld));
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.stored(datasetUUID, spectrum);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to update " + listener.getClass().getSimpleName()
+                    + " for dataset: " + datasetUUID, e);
+            }
+        });
+        return spectrum;
+    }
+
+    /**
+     * Remove the spectrum of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If the store could not be written
+     */
+    public void remove(final String datasetUUID) throws IOException {
+        store.remove(datasetUUID);
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.removed(datasetUUID);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.error("Unable to update " + listener.getClass().getSimpleName()
+                    + " for removed dataset: " + datasetUUID, e);
+            }
+        });
+    }
+
+    /**
+     * Remove the spectra of many Datasets.
+     *
+     * @param datasetUUIDs UUIDs of the Datasets
+     * @throws IOException If the store could not be written
+     */
+    public void removeAll(final Collection<String> datasetUUIDs) throws IOException {
+        for (String datasetUUID : datasetUUIDs) {
+            remove(datasetUUID);
+        }
+    }
+
+    /**
+     * Compact the store, logging rather than throwing on failure so the
+     * background compaction keeps running.
+     */
+    public void compact() {
+        try {
+            long reclaimed = store.compact();
+            if (reclaimed > 0) {
+                LOGGER.info("Compacted spectrum store, freeing " + reclaimed + " bytes");
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to compact the spectrum store", e);
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralGrid;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralGrids;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectrumView;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.StoredSpectrum;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.VectorStore;
+
+/**
+ * Resamples the spectrum of every uploaded Dataset onto the grid for its
+ * technique and x units and stores the unit length result, so comparisons
+ * read fixed-length vectors instead of resampling. When the configured grids
+ * change, every stored spectrum is resampled again in a background job.
+ */
+@Service
+public class SpectrumVectorService implements SpectrumListener {
+
+    /**
+     * Setup logger for SpectrumVectorService.
+    */
+    private static final Logger LOGGER = LoggerFactory.getLogger(
+        SpectrumVectorService.class
+    );
+
+    /**
+     * Prefix of the vector store file of each grid.
+     */
+    private static final String FILE_PREFIX = "vectors-";
+
+    /**
+     * Suffix of the vector store file of each grid.
+     */
+    private static final String FILE_SUFFIX = ".dat";
+
+    /**
+     * A Dataset's spectrum resampled onto its grid.
+     */
+    public static final class Vector {
+
+        /**
+         * Name of the grid.
+         */
+        private final String grid;
+
+        /**
+         * Unit length values on the grid.
+         */
+        private final float[] values;
+
+        /**
+         * Constructor.
+         *
+         * @param newGrid   Name of the grid
+         * @param newValues Unit length values on the grid
+         */
+        Vector(final String newGrid, final float[] newValues) {
+            this.grid = newGrid;
+            this.values = newValues;
+        }
+
+        /**
+         * @return Name of the grid
+         */
+        public String getGrid() {
+            return grid;
+        }
+
+        /**
+         * @return Unit length values on the grid
+         */
+        public float[] getValues() {
+            return values;
+        }
+    }
+
+    /**
+     * Configuration of application from properties.
+    */
+    @Autowired
+    private ApplicationConfig appConfig;
+
+    /**
+     * Store of the spectra the vectors are resampled from.
+     */
+    @Autowired
+    private SpectrumStoreService spectrumStore;
+
+    /**
+     * Runs the re-grid job.
+     */
+    @Autowired
+    private JobService jobService;
+
+    /**
+     * The configured grids.
+     */
+    private SpectralGrids grids;
+
+    /**
+     * Vectors of each grid by grid name.
+     */
+    private final Map<String, VectorStore> stores = new LinkedHashMap<>();
+
+    /**
+     * Open a vector store per grid once the configuration is available, and
+     * re-grid every stored spectrum if the grids have changed.
+     *
+     * @throws IOException If a vector store could not be opened
+     */
+    @PostConstruct
+    public void openStores() throws IOException {
+        ApplicationConfig.Spectra config = appConfig.getSpectra();
+        grids = new SpectralGrids(new SpectralGrid(
+            config.getGridStart(),
+            config.getGridEnd(),
+            config.getGridPoints()
+        ));
+        for (Map.Entry<String, ApplicationConfig.Spectra.Grid> entry
+                : config.getGrids().entrySet()) {
+            ApplicationConfig.Spectra.Grid grid = entry.getValue();
+            grids.add(
+                entry.getKey(),
+                new SpectralGrid(grid.getStart(), grid.getEnd(), grid.getPoints()), //NOPMD
+                grid.getTechniques(),
+                grid.getUnits()
+            );
+        }
+
+        Path directory = Paths.get(config.getStoreDirectory());
+        Files.createDirectories(directory);
+        long fingerprint = grids.fingerprint();
+        boolean fresh = false;
+        for (String name : grids.names()) {
+            Path path = directory.resolve(FILE_PREFIX + name + FILE_SUFFIX);
+            VectorStore store = new VectorStore(path, grids.get(name).getPoints(), //NOPMD
+                fingerprint);
+            fresh |= store.isFresh();
+            stores.put(name, store);
+        }
+
+        if (fresh && !spectrumStore.getDatasetUUIDs().isEmpty()) {
+            Job job = jobService.submit("regrid-spectra", String.join(",", grids.names()),
+                this::regrid);
+            LOGGER.info("Spectral grids changed; re-gridding stored spectra in job "
+                + job.getId());
+        }
+    }
+
+    /**
+     * Flush the vector stores on shutdown.
+     */
+    @PreDestroy
+    public void closeStores() {
+        for (Map.Entry<String, VectorStore> entry : stores.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                LOGGER.warn("Unable to close vector store of grid " + entry.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * @return The configured grids
+     */
+    public SpectralGrids getGrids() {
+        return grids;
+    }
+
+    /**
+     * Get the stored vector of a Dataset, resampling its stored spectrum if
+     * the vector is missing, such as while the grids are re-gridded.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The vector, or null if the Dataset has no spectrum on its grid
+     * @throws IOException If a vector store could not be read or written
+     */
+    public Vector get(final String datasetUUID) throws IOException {
+        for (Map.Entry<String, VectorStore> entry : stores.entrySet()) {
+            float[] values = entry.getValue().get(datasetUUID);
+            if (values != null) {
+                return new Vector(entry.getKey(), values);
+            }
+        }
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        return spectrum == null ? null : put(datasetUUID, spectrum);
+    }
+
+    /**
+     * Pass the vector of every Dataset of a Collection that has one to an
+     * action. Datasets stored before the spectrum store existed are added to
+     * it from their JSON-LD.
+     *
+     * @param collectionTitle Title of the Collection
+     * @param action          Called with the UUID and vector of each Dataset
+     * @return Number of Datasets of the Collection
+     */
+    public int forEachVector(
+        final String collectionTitle,
+        final BiConsumer<String, Vector> action
+    ) {
+        AtomicLong unreadable = new AtomicLong();
+        int datasets = spectrumStore.forEachSpectrum(collectionTitle, (datasetUUID, spectrum) -> {
+            try {
+                Vector vector = get(datasetUUID);
+                if (vector != null) {
+                    action.accept(datasetUUID, vector);
+                }
+            } catch (IOException e) {
+                unreadable.incrementAndGet();
+                LOGGER.debug("Unable to read vector of dataset " + datasetUUID, e);
+            }
+        });
+        if (unreadable.get() > 0) {
+            LOGGER.warn("Unable to read vectors of " + unreadable.get() + " datasets in "
+                + "collection " + collectionTitle);
+        }
+        return datasets;
+    }
+
+    /**
+     * Resample a spectrum onto the grid for its technique and x units.
+     *
+     * @param spectrum  Spectrum with points in order of increasing x
+     * @param technique Technique type of the spectrum. May be null.
+     * @param xUnits    Units of the x values of the spectrum. May be null.
+     * @return The vector, or null if the spectrum has no values on its grid
+     */
+    public Vector vectorize(
+        final SpectrumView spectrum,
+        final String technique,
+        final String xUnits
+    ) {
+        if (spectrum.size() < 2) {
+            return null;
+        }
+        String name = grids.select(technique, xUnits);
+        float[] values = grids.get(name).resample(spectrum);
+        return values == null ? null : new Vector(name, values);
+    }
+
+    /**
+     * Resample a Dataset's stored spectrum and store the vector, replacing any
+     * vector it had on another grid.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    Stored spectrum of the Dataset
+     * @return The vector, or null if the Dataset has no spectrum on its grid
+     * @throws IOException If a vector store could not be written
+     */
+    public Vector put(final String datasetUUID, final StoredSpectrum spectrum)
+            throws IOException {
+        Vector vector = vectorize(spectrum, spectrum.getTechnique(), spectrum.getXUnits());
+        for (Map.Entry<String, VectorStore> entry : stores.entrySet()) {
+            if (vector != null && entry.getKey().equals(vector.getGrid())) {
+                entry.getValue().put(datasetUUID, vector.getValues());
+            } else {
+                entry.getValue().remove(datasetUUID);
+            }
+        }
+        return vector;
+    }
+
+    /**
+     * Remove the vector of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If a vector store could not be written
+     */
+    public void remove(final String datasetUUID) throws IOException {
+        for (Map.Entry<String, VectorStore> entry : stores.entrySet()) {
+            entry.getValue().remove(datasetUUID);
+        }
+    }
+
+    /**
+     * Resample and store the vector of a stored spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The stored spectrum, empty if the Dataset has none
+     * @throws IOException If a vector store could not be written
+     */
+    @Override
+    public void stored(final String datasetUUID, final StoredSpectrum spectrum)
+            throws IOException {
+        put(datasetUUID, spectrum);
+    }
+
+    /**
+     * Remove the vector of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If a vector store could not be written
+     */
+    @Override
+    public void removed(final String datasetUUID) throws IOException {
+        remove(datasetUUID);
+    }
+
+    /**
+     * Resample every stored spectrum onto the current grids, in parallel.
+     *
+     * @param job The Job to report progress through
+     * @throws IOException If any vector could not be stored
+     */
+    private void regrid(final Job job) throws IOException {
+        long start = System.currentTimeMillis();
+        List<String> datasetUUIDs = new ArrayList<>(spectrumStore.getDatasetUUIDs());
+        AtomicLong processed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        datasetUUIDs.parallelStream().forEach(datasetUUID -> {
+            try {
+                regrid(datasetUUID);
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                LOGGER.debug("Unable to store vector of dataset " + datasetUUID, e);
+            }
+            job.setProcessed(processed.incrementAndGet());
+        });
+        if (failed.get() > 0) {
+            throw new IOException("Unable to store vectors of " + failed.get() + " datasets");
+        }
+        LOGGER.info("Re-gridded " + datasetUUIDs.size() + " spectra in "
+            + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Resample a Dataset's stored spectrum onto the current grids. If the
+     * Dataset is replaced or removed meanwhile, its vector is redone so the
+     * re-grid never leaves an older vector behind.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @throws IOException If the vector could not be stored
+     */
+    private void regrid(final String datasetUUID) throws IOException {
+        StoredSpectrum spectrum = spectrumStore.get(datasetUUID);
+        while (spectrum != null) {
+            put(datasetUUID, spectrum);
+            // The store returns the same view until the Dataset is written again
+            StoredSpectrum latest = spectrumStore.get(datasetUUID);
+            if (latest == spectrum) { //NOPMD
+                return;
+            }
+            spectrum = latest;
+        }
+        remove(datasetUUID);
+    }
+}
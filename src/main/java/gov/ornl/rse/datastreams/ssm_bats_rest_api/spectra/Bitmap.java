@@ -0,0 +1,461 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed set of non-negative ints. Values are split by their high 16 bits
+ * into chunks, each held as a sorted array of its low 16 bits while it has up
+ * to 4096 values, and as a 65536 bit bitset once denser, so a set costs at
+ * most about two bytes per value and intersections work a chunk at a time.
+ * Not thread safe.
+ */
+public final class Bitmap {
+
+    /**
+     * Bits of a value giving its position within its chunk.
+     */
+    private static final int CHUNK_BITS = 16;
+
+    /**
+     * Mask of the bits of a value within its chunk.
+     */
+    private static final int LOW_MASK = 0xFFFF;
+
+    /**
+     * Most values of a chunk held as an array.
+     */
+    private static final int ARRAY_MAX = 4096;
+
+    /**
+     * Room for values of a new array chunk, and of its growing arrays.
+     */
+    private static final int MIN_ARRAY = 4;
+
+    /**
+     * Longs of a chunk held as a bitset.
+     */
+    private static final int WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+
+    /**
+     * Bits of a bit index giving the bit within its long.
+     */
+    private static final int WORD_BITS = 6;
+
+    /**
+     * High 16 bits of the values of each chunk, in increasing order.
+     */
+    private int[] keys = new int[0];
+
+    /**
+     * Low 16 bits of the values of each chunk held as an array, or null.
+     */
+    private char[][] arrays = new char[0][];
+
+    /**
+     * Bitset of each chunk held as one, or null.
+     */
+    private long[][] bitsets = new long[0][];
+
+    /**
+     * Number of values in each chunk.
+     */
+    private int[] counts = new int[0];
+
+    /**
+     * Number of chunks.
+     */
+    private int chunks;
+
+    /**
+     * Build a bitmap of some values.
+     *
+     * @param values Non-negative values in any order; may repeat
+     * @param length Number of values to take, from the first
+     * @return The bitmap
+     */
+    public static Bitmap of(final int[] values, final int length) {
+        int[] sorted = Arrays.copyOf(values, length);
+        Arrays.sort(sorted);
+        Bitmap bitmap = new Bitmap();
+        for (int value : sorted) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return Number of values in the bitmap
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < chunks; i++) {
+            cardinality += counts[i];
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return True if the bitmap has no values
+     */
+    public boolean isEmpty() {
+        return chunks == 0;
+    }
+
+    /**
+     * @param value A value
+     * @return True if the bitmap has the value
+     */
+    public boolean contains(final int value) {
+        int chunk = find(value >>> CHUNK_BITS);
+        if (chunk < 0) {
+            return false;
+        }
+        char low = (char) (value & LOW_MASK);
+        return arrays[chunk] == null
+            ? (bitsets[chunk][low >>> WORD_BITS] & (1L << low)) != 0
+            : Arrays.binarySearch(arrays[chunk], 0, counts[chunk], low) >= 0;
+    }
+
+    /**
+     * Add a value.
+     *
+     * @param value Non-negative value
+     */
+    public void add(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Bitmap values must not be negative");
+        }
+        int key = value >>> CHUNK_BITS;
+        int chunk = find(key);
+        if (chunk < 0) {
+            chunk = insertChunk(-chunk - 1, key);
+        }
+        char low = (char) (value & LOW_MASK);
+        if (arrays[chunk] == null) {
+            long bit = 1L << low;
+            long[] words = bitsets[chunk];
+            if ((words[low >>> WORD_BITS] & bit) == 0) {
+                words[low >>> WORD_BITS] |= bit;
+                counts[chunk]++;
+            }
+            return;
+        }
+        char[] array = arrays[chunk];
+        int count = counts[chunk];
+        int at = Arrays.binarySearch(array, 0, count, low);
+        if (at >= 0) {
+            return;
+        }
+        at = -at - 1;
+        if (count == ARRAY_MAX) {
+            toBitset(chunk);
+            add(value);
+            return;
+        }
+        if (count == array.length) {
+            array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(MIN_ARRAY, count * 2)));
+            arrays[chunk] = array;
+        }
+        System.arraycopy(array, at, array, at + 1, count - at);
+        array[at] = low;
+        counts[chunk] = count + 1;
+    }
+
+    /**
+     * Remove a value, if present.
+     *
+     * @param value A value
+     */
+    public void remove(final int value) {
+        int chunk = find(value >>> CHUNK_BITS);
+        if (chunk < 0) {
+            return;
+        }
+        char low = (char) (value & LOW_MASK);
+        if (arrays[chunk] == null) {
+            long bit = 1L << low;
+            long[] words = bitsets[chunk];
+            if ((words[low >>> WORD_BITS] & bit) == 0) {
+                return;
+            }
+            words[low >>> WORD_BITS] &= ~bit;
+            counts[chunk]--;
+            if (counts[chunk] <= ARRAY_MAX / 2) {
+                toArray(chunk);
+            }
+        } else {
+            char[] array = arrays[chunk];
+            int at = Arrays.binarySearch(array, 0, counts[chunk], low);
+            if (at < 0) {
+                return;
+            }
+            System.arraycopy(array, at + 1, array, at, counts[chunk] - at - 1);
+            counts[chunk]--;
+        }
+        if (counts[chunk] == 0) {
+            removeChunk(chunk);
+        }
+    }
+
+    /**
+     * Intersect two bitmaps.
+     *
+     * @param a A bitmap
+     * @param b Another bitmap
+     * @return A new bitmap of the values in both
+     */
+    public static Bitmap and(final Bitmap a, final Bitmap b) {
+        Bitmap result = new Bitmap();
+        int i = 0;
+        int j = 0;
+        while (i < a.chunks && j < b.chunks) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                result.andChunk(a, i++, b, j++);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pass every value to an action, in increasing order.
+     *
+     * @param action The action
+     */
+    public void forEach(final IntConsumer action) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int high = keys[chunk] << CHUNK_BITS;
+            if (arrays[chunk] == null) {
+                long[] words = bitsets[chunk];
+                for (int word = 0; word < WORDS; word++) {
+                    long bits = words[word];
+                    int base = high | (word << WORD_BITS);
+                    while (bits != 0) {
+                        action.accept(base + Long.numberOfTrailingZeros(bits));
+                        bits &= bits - 1;
+                    }
+                }
+            } else {
+                char[] array = arrays[chunk];
+                for (int i = 0; i < counts[chunk]; i++) {
+                    action.accept(high | array[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the intersection of a chunk of each of two bitmaps, if not empty.
+     *
+     * @param a      A bitmap
+     * @param chunkA Chunk of a
+     * @param b      Another bitmap
+     * @param chunkB Chunk of b with the same key
+     */
+    private void andChunk(final Bitmap a, final int chunkA, final Bitmap b, final int chunkB) {
+        int key = a.keys[chunkA];
+        char[] arrayA = a.arrays[chunkA];
+        char[] arrayB = b.arrays[chunkB];
+        if (arrayA != null && arrayB != null) {
+            andArrays(key, arrayA, a.counts[chunkA], arrayB, b.counts[chunkB]);
+        } else if (arrayA != null) {
+            andArrayBitset(key, arrayA, a.counts[chunkA], b.bitsets[chunkB]);
+        } else if (arrayB != null) {
+            andArrayBitset(key, arrayB, b.counts[chunkB], a.bitsets[chunkA]);
+        } else {
+            andBitsets(key, a.bitsets[chunkA], b.bitsets[chunkB]);
+        }
+    }
+
+    /**
+     * Append the intersection of two array chunks, if not empty.
+     *
+     * @param key    High 16 bits of the values of both chunks
+     * @param arrayA Values of one chunk
+     * @param countA Number of values of arrayA
+     * @param arrayB Values of the other
+     * @param countB Number of values of arrayB
+     */
+    private void andArrays(
+        final int key,
+        final char[] arrayA,
+        final int countA,
+        final char[] arrayB,
+        final int countB
+    ) {
+        char[] array = new char[Math.min(countA, countB)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < countA && j < countB) {
+            if (arrayA[i] < arrayB[j]) {
+                i++;
+            } else if (arrayA[i] > arrayB[j]) {
+                j++;
+            } else {
+                array[count++] = arrayA[i];
+                i++;
+                j++;
+            }
+        }
+        appendArray(key, array, count);
+    }
+
+    /**
+     * Append the intersection of an array chunk and a bitset chunk, if not empty.
+     *
+     * @param key    High 16 bits of the values of both chunks
+     * @param source Values of the array chunk
+     * @param count  Number of values of source
+     * @param words  Bitset of the other chunk
+     */
+    private void andArrayBitset(
+        final int key,
+        final char[] source,
+        final int count,
+        final long[] words
+    ) {
+        char[] array = new char[count];
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            char low = source[i];
+            if ((words[low >>> WORD_BITS] & (1L << low)) != 0) {
+                array[found++] = low;
+            }
+        }
+        appendArray(key, array, found);
+    }
+
+    /**
+     * Append an array chunk, if not empty.
+     *
+     * @param key   High 16 bits of its values
+     * @param array Low 16 bits of its values, in increasing order
+     * @param count Number of values of array
+     */
+    private void appendArray(final int key, final char[] array, final int count) {
+        if (count > 0) {
+            int chunk = insertChunk(chunks, key);
+            arrays[chunk] = array;
+            counts[chunk] = count;
+        }
+    }
+
+    /**
+     * Append the intersection of two bitset chunks, if not empty.
+     *
+     * @param key    High 16 bits of the values of both chunks
+     * @param wordsA Bitset of one chunk
+     * @param wordsB Bitset of the other
+     */
+    private void andBitsets(final int key, final long[] wordsA, final long[] wordsB) {
+        long[] words = new long[WORDS];
+        int count = 0;
+        for (int word = 0; word < WORDS; word++) {
+            words[word] = wordsA[word] & wordsB[word];
+            count += Long.bitCount(words[word]);
+        }
+        if (count == 0) {
+            return;
+        }
+        int chunk = insertChunk(chunks, key);
+        counts[chunk] = count;
+        bitsets[chunk] = words;
+        if (count > ARRAY_MAX) {
+            arrays[chunk] = null; //NOPMD
+        } else {
+            toArray(chunk);
+        }
+    }
+
+    /**
+     * @param key High 16 bits of a value
+     * @return Index of the chunk with the key, or -(insertion point) - 1
+     */
+    private int find(final int key) {
+        return Arrays.binarySearch(keys, 0, chunks, key);
+    }
+
+    /**
+     * Insert an empty array chunk.
+     *
+     * @param at  Index of the new chunk
+     * @param key High 16 bits of its values
+     * @return Index of the new chunk
+     */
+    private int insertChunk(final int at, final int key) {
+        if (chunks == keys.length) {
+            int capacity = Math.max(MIN_ARRAY, chunks * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            arrays = Arrays.copyOf(arrays, capacity);
+            bitsets = Arrays.copyOf(bitsets, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+        }
+        int moved = chunks - at;
+        System.arraycopy(keys, at, keys, at + 1, moved);
+        System.arraycopy(arrays, at, arrays, at + 1, moved);
+        System.arraycopy(bitsets, at, bitsets, at + 1, moved);
+        System.arraycopy(counts, at, counts, at + 1, moved);
+        keys[at] = key;
+        arrays[at] = new char[MIN_ARRAY];
+        bitsets[at] = null; //NOPMD
+        counts[at] = 0;
+        chunks++;
+        return at;
+    }
+
+    /**
+     * Remove an empty chunk.
+     *
+     * @param at Index of the chunk
+     */
+    private void removeChunk(final int at) {
+        int moved = chunks - at - 1;
+        System.arraycopy(keys, at + 1, keys, at, moved);
+        System.arraycopy(arrays, at + 1, arrays, at, moved);
+        System.arraycopy(bitsets, at + 1, bitsets, at, moved);
+        System.arraycopy(counts, at + 1, counts, at, moved);
+        chunks--;
+        arrays[chunks] = null; //NOPMD
+        bitsets[chunks] = null; //NOPMD
+    }
+
+    /**
+     * Convert an array chunk to a bitset.
+     *
+     * @param chunk Index of the chunk
+     */
+    private void toBitset(final int chunk) {
+        long[] words = new long[WORDS];
+        char[] array = arrays[chunk];
+        for (int i = 0; i < counts[chunk]; i++) {
+            words[array[i] >>> WORD_BITS] |= 1L << array[i];
+        }
+        bitsets[chunk] = words;
+        arrays[chunk] = null; //NOPMD
+    }
+
+    /**
+     * Convert a bitset chunk to an array.
+     *
+     * @param chunk Index of the chunk
+     */
+    private void toArray(final int chunk) {
+        char[] array = new char[Math.max(MIN_ARRAY, counts[chunk])];
+        int at = 0;
+        long[] words = bitsets[chunk];
+        for (int word = 0; word < WORDS; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                array[at++] = (char) ((word << WORD_BITS) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        arrays[chunk] = array;
+        bitsets[chunk] = null; //NOPMD
+    }
+}
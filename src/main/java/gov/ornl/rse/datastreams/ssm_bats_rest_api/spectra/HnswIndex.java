@@ -0,0 +1,1036 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * In-memory hierarchical navigable small world graph of unit length spectra,
+ * all resampled onto the same grid, answering approximate top-k cosine
+ * similarity queries in time roughly logarithmic in the number of spectra.
+ * Each node links to up to m near neighbours on each of its layers, 2m on the
+ * bottom layer, chosen so links spread in different directions.
+ *
+ * Removed or replaced spectra stay in the graph as tombstones, still linking
+ * their neighbours but never returned, until the graph is rebuilt. The graph
+ * is saved to and loaded from a single checksummed file. Safe for concurrent
+ * use: searches share the graph, inserts and removals are exclusive.
+ */
+public final class HnswIndex {
+
+    /**
+     * First int of every graph file: "SSMH".
+     */
+    private static final int MAGIC = 0x53534D48;
+
+    /**
+     * Version of the graph file layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Nodes the graph has room for when created.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Bytes read or written through the file channel at a time.
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Bytes of the checksum ending every graph file.
+     */
+    private static final int CHECKSUM_BYTES = Long.BYTES;
+
+    /**
+     * Length of every vector.
+     */
+    private final int dimension;
+
+    /**
+     * Most links of a node on each layer above the bottom one.
+     */
+    private final int m;
+
+    /**
+     * Size of the candidate list searched when inserting a node.
+     */
+    private final int efConstruction;
+
+    /**
+     * Multiplier of the random level drawn for each node, 1 / ln(m).
+     */
+    private final double levelFactor;
+
+    /**
+     * Draws the level of each node.
+     */
+    private final Random random;
+
+    /**
+     * Vectors of the nodes stored back to back.
+     */
+    private float[] vectors;
+
+    /**
+     * Dataset UUID of each node.
+     */
+    private String[] ids;
+
+    /**
+     * Removed or replaced nodes, kept to link their neighbours.
+     */
+    private final BitSet deleted = new BitSet();
+
+    /**
+     * Links of each node on each of its layers. Element 0 of each list is the
+     * number of links that follow.
+     */
+    private int[][][] links;
+
+    /**
+     * Live node of each Dataset UUID.
+     */
+    private final Map<String, Integer> nodes = new HashMap<>();
+
+    /**
+     * Number of nodes, live and removed.
+     */
+    private int count;
+
+    /**
+     * Node every search starts from, or -1 if the graph is empty.
+     */
+    private int entryPoint = -1;
+
+    /**
+     * Highest layer of the graph.
+     */
+    private int maxLevel;
+
+    /**
+     * Guards the graph: searches share it, updates are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor.
+     *
+     * @param newDimension      Length of every vector
+     * @param newM              Most links of a node per layer, twice that on
+     *                          the bottom layer; at least 2
+     * @param newEfConstruction Size of the candidate list searched when
+     *                          inserting a node
+     * @param seed              Seed of the random node levels
+     */
+    public HnswIndex(
+        final int newDimension,
+        final int newM,
+        final int newEfConstruction,
+        final long seed
+    ) {
+        if (newM < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.dimension = newDimension;
+        this.m = newM;
+        this.efConstruction = Math.max(newEfConstruction, newM);
+        this.levelFactor = 1 / Math.log(newM);
+        this.random = new Random(seed);
+        this.vectors = new float[INITIAL_CAPACITY * newDimension];
+        this.ids = new String[INITIAL_CAPACITY];
+        this.links = new int[INITIAL_CAPACITY][][];
+    }
+
+    /**
+     * @return Length of every vector
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return Number of live vectors
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return Number of removed or replaced vectors still in the graph
+     */
+    public int tombstones() {
+        lock.readLock().lock();
+        try {
+            return deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id Dataset UUID
+     * @return True if the graph holds a live vector for the Dataset
+     */
+    public boolean contains(final String id) {
+        lock.readLock().lock();
+        try {
+            return nodes.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace the vector of a Dataset. A replaced vector is left in
+     * the graph as a tombstone, unless the new one is the same.
+     *
+     * @param id     Dataset UUID
+     * @param vector Unit length vector of the graph's dimension
+     */
+    public void put(final String id, final float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                "Vector has " + vector.length + " values; index expects " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodes.get(id);
+            if (previous != null) {
+                int offset = previous * dimension;
+                if (Arrays.equals(vectors, offset, offset + dimension, vector, 0, dimension)) {
+                    return;
+                }
+                deleted.set(previous);
+            }
+            int node = add(id, vector, (int) (-Math.log(1 - random.nextDouble()) * levelFactor));
+            nodes.put(id, node);
+            link(node);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the vector of a Dataset, if stored, leaving a tombstone.
+     *
+     * @param id Dataset UUID
+     */
+    public void remove(final String id) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodes.remove(id);
+            if (node != null) {
+                deleted.set(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find live vectors most similar to a query. Nodes the filter rejects are
+     * still traversed, so a selective filter costs more time, not recall.
+     *
+     * @param query  Unit length vector of the graph's dimension
+     * @param k      Most matches to return
+     * @param ef     Size of the candidate list searched; larger finds more of
+     *               the true top k at the cost of time
+     * @param filter Which Dataset UUIDs may be returned
+     * @return Up to k matches, most similar first
+     */
+    public List<SpectralIndex.Match> search(
+        final float[] query,
+        final int k,
+        final int ef,
+        final Predicate<String> filter
+    ) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException(
+                "Query has " + query.length + " values; index expects " + dimension);
+        }
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return new ArrayList<>();
+            }
+            int node = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                node = greedy(query, node, level);
+            }
+            TopK best = searchLayer(query, node, Math.max(ef, k), 0,
+                candidate -> !deleted.get(candidate) && filter.test(ids[candidate]));
+
+            int[] entries = best.entries();
+            float[] scores = best.scores();
+            int size = Math.min(k, entries.length);
+            List<SpectralIndex.Match> matches = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                matches.add(new SpectralIndex.Match(ids[entries[i]], scores[i])); //NOPMD
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Save the graph to a file, replacing it atomically.
+     *
+     * @param path        The file
+     * @param fingerprint Identifies how the vectors were made, checked on load
+     * @throws IOException If the file could not be written
+     */
+    public void save(final Path path, final long fingerprint) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (Output output = new Output(temporary)) {
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            output.putLong(fingerprint);
+            output.putInt(dimension);
+            output.putInt(m);
+            output.putInt(efConstruction);
+            output.putInt(count);
+            output.putInt(entryPoint);
+            output.putInt(maxLevel);
+            for (int node = 0; node < count; node++) {
+                byte[] key = ids[node].getBytes(StandardCharsets.UTF_8);
+                output.putInt(key.length);
+                output.put(key);
+                output.putInt(deleted.get(node) ? 1 : 0);
+                output.putInt(links[node].length);
+                output.putFloats(vectors, node * dimension, dimension);
+                for (int[] layer : links[node]) {
+                    output.putInts(layer, layer[0] + 1);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a graph saved by save.
+     *
+     * @param path        The file
+     * @param dimension   Length the vectors must have
+     * @param fingerprint Identifies how the vectors must have been made
+     * @param seed        Seed of the random levels of nodes added later
+     * @return The graph, or null if the file is missing, damaged or was saved
+     *         for another grid or fingerprint
+     * @throws IOException If the file could not be read
+     */
+    public static HnswIndex load(
+        final Path path,
+        final int dimension,
+        final long fingerprint,
+        final long seed
+    ) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (Input input = new Input(path)) {
+            if (input.getInt() != MAGIC || input.getInt() != VERSION
+                || input.getLong() != fingerprint || input.getInt() != dimension) {
+                return null;
+            }
+            HnswIndex index = new HnswIndex(dimension, input.getInt(), input.getInt(), seed);
+            int nodeCount = input.getInt();
+            index.entryPoint = input.getInt();
+            index.maxLevel = input.getInt();
+            index.grow(nodeCount);
+            for (int node = 0; node < nodeCount; node++) {
+                byte[] key = input.getBytes(input.getInt());
+                index.ids[node] = new String(key, StandardCharsets.UTF_8); //NOPMD
+                if (input.getInt() != 0) {
+                    index.deleted.set(node);
+                } else {
+                    index.nodes.put(index.ids[node], node);
+                }
+                int levels = input.getInt();
+                input.getFloats(index.vectors, node * dimension, dimension);
+                index.links[node] = new int[levels][]; //NOPMD
+                for (int level = 0; level < levels; level++) {
+                    int linkCount = input.getInt();
+                    int[] layer = new int[index.capacity(level) + 1]; //NOPMD
+                    layer[0] = linkCount;
+                    input.getInts(layer, 1, linkCount);
+                    index.links[node][level] = layer;
+                }
+            }
+            index.count = nodeCount;
+            return input.verify() ? index : null;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException
+                | NegativeArraySizeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Append a node without links.
+     *
+     * @param id     Dataset UUID
+     * @param vector Vector of the node
+     * @param level  Highest layer of the node
+     * @return The node
+     */
+    private int add(final String id, final float[] vector, final int level) {
+        grow(count + 1);
+        int node = count++;
+        ids[node] = id;
+        System.arraycopy(vector, 0, vectors, node * dimension, dimension);
+        links[node] = new int[level + 1][];
+        for (int layer = 0; layer <= level; layer++) {
+            links[node][layer] = new int[capacity(layer) + 1]; //NOPMD
+        }
+        return node;
+    }
+
+    /**
+     * Link a new node into each of its layers.
+     *
+     * @param node The node
+     */
+    private void link(final int node) {
+        int level = links[node].length - 1;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+        float[] query = Arrays.copyOfRange(vectors, node * dimension, (node + 1) * dimension);
+        int nearest = entryPoint;
+        for (int layer = maxLevel; layer > level; layer--) {
+            nearest = greedy(query, nearest, layer);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            TopK candidates = searchLayer(query, nearest, efConstruction, layer,
+                candidate -> candidate != node);
+            int[] found = candidates.entries();
+            if (found.length == 0) {
+                continue;
+            }
+            nearest = found[0];
+            int[] neighbours = select(node, found, m);
+            System.arraycopy(neighbours, 0, links[node][layer], 1, neighbours.length);
+            links[node][layer][0] = neighbours.length;
+            for (int neighbour : neighbours) {
+                connect(neighbour, node, layer);
+            }
+        }
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * Link a node to another on a layer, reselecting its links if it then has
+     * too many.
+     *
+     * @param node  The node to add a link to
+     * @param other The node linked to
+     * @param layer The layer
+     */
+    private void connect(final int node, final int other, final int layer) {
+        int[] layerLinks = links[node][layer];
+        int linkCount = layerLinks[0];
+        if (linkCount < layerLinks.length - 1) {
+            layerLinks[linkCount + 1] = other;
+            layerLinks[0] = linkCount + 1;
+            return;
+        }
+        // Reselect among the current links and the new one, most similar first
+        TopK candidates = new TopK(linkCount + 1);
+        candidates.offer(other, similarity(node, other));
+        for (int i = 1; i <= linkCount; i++) {
+            candidates.offer(layerLinks[i], similarity(node, layerLinks[i]));
+        }
+        int[] kept = select(node, candidates.entries(), capacity(layer));
+        System.arraycopy(kept, 0, layerLinks, 1, kept.length);
+        layerLinks[0] = kept.length;
+    }
+
+    /**
+     * Choose the links of a node from candidates: a candidate is kept only if
+     * it is more similar to the node than to every candidate already kept, so
+     * links spread around the node instead of bunching in one cluster.
+     *
+     * @param node       The node
+     * @param candidates Candidates, most similar to the node first
+     * @param limit      Most links to keep
+     * @return The chosen links
+     */
+    private int[] select(final int node, final int[] candidates, final int limit) {
+        int[] kept = new int[Math.min(limit, candidates.length)];
+        int keptCount = 0;
+        for (int i = 0; i < candidates.length && keptCount < kept.length; i++) {
+            int candidate = candidates[i];
+            float score = similarity(node, candidate);
+            boolean diverse = true;
+            for (int j = 0; j < keptCount && diverse; j++) {
+                diverse = similarity(candidate, kept[j]) < score;
+            }
+            if (diverse) {
+                kept[keptCount++] = candidate;
+            }
+        }
+        return Arrays.copyOf(kept, keptCount);
+    }
+
+    /**
+     * Walk a layer from a node to the neighbour most similar to a query until
+     * no neighbour is more similar.
+     *
+     * @param query Query vector
+     * @param start Node to start from
+     * @param layer The layer
+     * @return The most similar node reached
+     */
+    private int greedy(final float[] query, final int start, final int layer) {
+        int node = start;
+        float best = similarity(query, node);
+        boolean moved = true;
+        while (moved) {
+            moved = false;
+            int[] layerLinks = links[node][layer];
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                float score = similarity(query, layerLinks[i]);
+                if (score > best) {
+                    best = score;
+                    node = layerLinks[i];
+                    moved = true;
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Best first search of a layer from a node, keeping the ef most similar
+     * accepted nodes reached. Every node is traversed whether accepted or not.
+     *
+     * @param query  Query vector
+     * @param start  Node to start from
+     * @param ef     Most nodes to keep
+     * @param layer  The layer
+     * @param accept Which nodes may be kept
+     * @return The kept nodes
+     */
+    private TopK searchLayer(
+        final float[] query,
+        final int start,
+        final int ef,
+        final int layer,
+        final IntPredicate accept
+    ) {
+        TopK best = new TopK(ef);
+        Frontier frontier = new Frontier();
+        BitSet visited = new BitSet(count);
+        visited.set(start);
+        float score = similarity(query, start);
+        frontier.push(start, score);
+        if (accept.test(start)) {
+            best.offer(start, score);
+        }
+        while (!frontier.isEmpty()) {
+            if (frontier.peekScore() < best.threshold()) {
+                break;
+            }
+            int node = frontier.pop();
+            if (layer >= links[node].length) {
+                continue;
+            }
+            int[] layerLinks = links[node][layer];
+            for (int i = 1; i <= layerLinks[0]; i++) {
+                int neighbour = layerLinks[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                score = similarity(query, neighbour);
+                if (score > best.threshold()) {
+                    frontier.push(neighbour, score);
+                    if (accept.test(neighbour)) {
+                        best.offer(neighbour, score);
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param layer A layer
+     * @return Most links of a node on the layer
+     */
+    private int capacity(final int layer) {
+        return layer == 0 ? 2 * m : m;
+    }
+
+    /**
+     * Make room for a number of nodes.
+     *
+     * @param needed Nodes to make room for
+     */
+    private void grow(final int needed) {
+        if (needed <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(needed, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        links = Arrays.copyOf(links, capacity);
+        vectors = Arrays.copyOf(vectors, capacity * dimension);
+    }
+
+    /**
+     * @param query Query vector
+     * @param node  A node
+     * @return Cosine similarity of the node's vector to the query
+     */
+    private float similarity(final float[] query, final int node) {
+        float score = 0;
+        int offset = node * dimension;
+        for (int i = 0; i < dimension; i++) {
+            score += query[i] * vectors[offset + i];
+        }
+        return score;
+    }
+
+    /**
+     * @param a A node
+     * @param b Another node
+     * @return Cosine similarity of the nodes' vectors
+     */
+    private float similarity(final int a, final int b) {
+        float score = 0;
+        int offsetA = a * dimension;
+        int offsetB = b * dimension;
+        for (int i = 0; i < dimension; i++) {
+            score += vectors[offsetA + i] * vectors[offsetB + i];
+        }
+        return score;
+    }
+
+    /**
+     * Nodes still to expand in a layer search, as a binary max-heap on
+     * primitive arrays.
+     */
+    private static final class Frontier {
+
+        /**
+         * Scores of the nodes, in heap order.
+         */
+        private float[] scores = new float[INITIAL_CAPACITY];
+
+        /**
+         * Nodes, in heap order alongside their scores.
+         */
+        private int[] heapNodes = new int[INITIAL_CAPACITY];
+
+        /**
+         * Number of nodes in the heap.
+         */
+        private int size;
+
+        /**
+         * @return True if no nodes are left
+         */
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return Highest score in the heap
+         */
+        float peekScore() {
+            return scores[0];
+        }
+
+        /**
+         * Add a node.
+         *
+         * @param node  The node
+         * @param score Its similarity to the query
+         */
+        void push(final int node, final float score) {
+            if (size == scores.length) {
+                scores = Arrays.copyOf(scores, size * 2);
+                heapNodes = Arrays.copyOf(heapNodes, size * 2);
+            }
+            int child = size++;
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (scores[parent] >= score) {
+                    break;
+                }
+                scores[child] = scores[parent];
+                heapNodes[child] = heapNodes[parent];
+                child = parent;
+            }
+            scores[child] = score;
+            heapNodes[child] = node;
+        }
+
+        /**
+         * Remove the node with the highest score.
+         *
+         * @return The node
+         */
+        int pop() {
+            int top = heapNodes[0];
+            size--;
+            float score = scores[size];
+            int node = heapNodes[size];
+            int parent = 0;
+            while (true) {
+                int child = 2 * parent + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] > scores[child]) {
+                    child++;
+                }
+                if (score >= scores[child]) {
+                    break;
+                }
+                scores[parent] = scores[child];
+                heapNodes[parent] = heapNodes[child];
+                parent = child;
+            }
+            scores[parent] = score;
+            heapNodes[parent] = node;
+            return top;
+        }
+    }
+
+    /**
+     * Buffered writer of a graph file, ending it with the CRC32 of everything
+     * written.
+     */
+    private static final class Output implements Closeable {
+
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Bytes not yet written.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * Checksum of the bytes written.
+         */
+        private final CRC32 checksum = new CRC32();
+
+        /**
+         * Constructor.
+         *
+         * @param path File to create or replace
+         * @throws IOException If the file could not be opened
+         */
+        Output(final Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        /**
+         * @param value Int to write
+         * @throws IOException If the file could not be written
+         */
+        void putInt(final int value) throws IOException {
+            room(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        /**
+         * @param value Long to write
+         * @throws IOException If the file could not be written
+         */
+        void putLong(final long value) throws IOException {
+            room(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        /**
+         * @param bytes Bytes to write
+         * @throws IOException If the file could not be written
+         */
+        void put(final byte[] bytes) throws IOException {
+            room(bytes.length);
+            buffer.put(bytes);
+        }
+
+        /**
+         * @param values Array of floats to write from
+         * @param offset First float to write
+         * @param length Number of floats to write
+         * @throws IOException If the file could not be written
+         */
+        void putFloats(final float[] values, final int offset, final int length)
+                throws IOException {
+            int done = 0;
+            while (done < length) {
+                room(Float.BYTES);
+                int chunk = Math.min(length - done, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().put(values, offset + done, chunk);
+                buffer.position(buffer.position() + chunk * Float.BYTES);
+                done += chunk;
+            }
+        }
+
+        /**
+         * @param values Ints to write, from the first
+         * @param length Number of ints to write
+         * @throws IOException If the file could not be written
+         */
+        void putInts(final int[] values, final int length) throws IOException {
+            int done = 0;
+            while (done < length) {
+                room(Integer.BYTES);
+                int chunk = Math.min(length - done, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, done, chunk);
+                buffer.position(buffer.position() + chunk * Integer.BYTES);
+                done += chunk;
+            }
+        }
+
+        /**
+         * Write the buffered bytes if fewer than some remain free.
+         *
+         * @param bytes Bytes needed
+         * @throws IOException If the file could not be written
+         */
+        private void room(final int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Write the buffered bytes.
+         *
+         * @throws IOException If the file could not be written
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            checksum.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Write the checksum and close the file.
+         *
+         * @throws IOException If the file could not be written
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                buffer.putLong(checksum.getValue());
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Buffered reader of a graph file, checking the CRC32 ending it.
+     */
+    private static final class Input implements Closeable {
+
+        /**
+         * The file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Bytes read but not yet consumed.
+         */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * Checksum of the bytes read before the checksum.
+         */
+        private final CRC32 checksum = new CRC32();
+
+        /**
+         * Bytes of the file before the checksum not yet read into the buffer.
+         */
+        private long unread;
+
+        /**
+         * Constructor.
+         *
+         * @param path File to read
+         * @throws IOException If the file could not be opened
+         */
+        Input(final Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.unread = channel.size() - CHECKSUM_BYTES;
+            buffer.limit(0);
+        }
+
+        /**
+         * @return The next int
+         * @throws IOException If the file could not be read
+         */
+        int getInt() throws IOException {
+            fill(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        /**
+         * @return The next long
+         * @throws IOException If the file could not be read
+         */
+        long getLong() throws IOException {
+            fill(Long.BYTES);
+            return buffer.getLong();
+        }
+
+        /**
+         * @param length Number of bytes
+         * @return The next bytes
+         * @throws IOException If the file could not be read
+         */
+        byte[] getBytes(final int length) throws IOException {
+            if (length < 0 || length > BUFFER_SIZE) {
+                throw new IllegalArgumentException("Bad key length " + length);
+            }
+            fill(length);
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return bytes;
+        }
+
+        /**
+         * @param values Array to read floats into
+         * @param offset First float to read into
+         * @param length Number of floats to read
+         * @throws IOException If the file could not be read
+         */
+        void getFloats(final float[] values, final int offset, final int length)
+                throws IOException {
+            int done = 0;
+            while (done < length) {
+                fill(Float.BYTES);
+                int chunk = Math.min(length - done, buffer.remaining() / Float.BYTES);
+                buffer.asFloatBuffer().get(values, offset + done, chunk);
+                buffer.position(buffer.position() + chunk * Float.BYTES);
+                done += chunk;
+            }
+        }
+
+        /**
+         * @param values Array to read ints into
+         * @param offset First int to read into
+         * @param length Number of ints to read
+         * @throws IOException If the file could not be read
+         */
+        void getInts(final int[] values, final int offset, final int length)
+                throws IOException {
+            int done = 0;
+            while (done < length) {
+                fill(Integer.BYTES);
+                int chunk = Math.min(length - done, buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, offset + done, chunk);
+                buffer.position(buffer.position() + chunk * Integer.BYTES);
+                done += chunk;
+            }
+        }
+
+        /**
+         * @return True if everything before the checksum was read and matches it
+         * @throws IOException If the file could not be read
+         */
+        boolean verify() throws IOException {
+            if (unread != 0 || buffer.hasRemaining()) {
+                return false;
+            }
+            ByteBuffer stored = ByteBuffer.allocate(CHECKSUM_BYTES);
+            while (stored.hasRemaining()) {
+                if (channel.read(stored) < 0) {
+                    break;
+                }
+            }
+            return !stored.hasRemaining() && stored.getLong(0) == checksum.getValue();
+        }
+
+        /**
+         * Read more of the file if fewer than some bytes are buffered.
+         *
+         * @param bytes Bytes needed
+         * @throws IOException If the file could not be read
+         * @throws IllegalArgumentException If the file ends first
+         */
+        private void fill(final int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            int start = buffer.position();
+            buffer.limit((int) Math.min(buffer.capacity(), start + unread));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            unread -= buffer.position() - start;
+            ByteBuffer added = buffer.duplicate();
+            added.flip().position(start);
+            checksum.update(added);
+            buffer.flip();
+            if (buffer.remaining() < bytes) {
+                throw new IllegalArgumentException("Graph file ends early");
+            }
+        }
+
+        /**
+         * Close the file.
+         *
+         * @throws IOException If the file could not be closed
+         */
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling, which keeps the shape of a
+ * spectrum when plotted with few points. The first and last points are kept;
+ * the points between are split into equal buckets, and from each bucket the
+ * point forming the largest triangle with the point kept from the previous
+ * bucket and the average of the next bucket is kept.
+ */
+public final class Lttb {
+
+    /**
+     * Fewest points for which buckets are formed: the first, the last and
+     * one bucket between.
+     */
+    private static final int MIN_BUCKETED = 3;
+
+    private Lttb() {
+
+    }
+
+    /**
+     * Choose the points of a spectrum to keep.
+     *
+     * @param spectrum Spectrum in order of increasing x
+     * @param points   Most points to keep
+     * @return Indexes of the points kept, in increasing order; every index if
+     *         the spectrum has no more than that many points
+     */
+    public static int[] select(final SpectrumView spectrum, final int points) {
+        int size = spectrum.size();
+        if (points >= size) {
+            int[] all = new int[size];
+            for (int i = 0; i < size; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+        if (points < MIN_BUCKETED) {
+            return points < 2 ? new int[] {0} : new int[] {0, size - 1};
+        }
+
+        int[] kept = new int[points];
+        kept[points - 1] = size - 1;
+        double bucketSize = (double) (size - 2) / (points - 2);
+        int previous = 0;
+        for (int bucket = 0; bucket < points - 2; bucket++) {
+            // Average of the next bucket, or the last point after the last bucket
+            int nextStart = (int) ((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) ((bucket + 2) * bucketSize) + 1, size);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += spectrum.getX(i);
+                averageY += spectrum.getY(i);
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            double previousX = spectrum.getX(previous);
+            double previousY = spectrum.getY(previous);
+            double largest = -1;
+            int start = (int) (bucket * bucketSize) + 1;
+            kept[bucket + 1] = start;
+            for (int i = start; i < nextStart; i++) {
+                // Twice the area of the triangle, which orders them the same
+                double area = Math.abs((previousX - averageX) * (spectrum.getY(i) - previousY)
+                    - (previousX - spectrum.getX(i)) * (averageY - previousY));
+                if (area > largest) {
+                    largest = area;
+                    kept[bucket + 1] = i;
+                }
+            }
+            previous = kept[bucket + 1];
+        }
+        return kept;
+    }
+}
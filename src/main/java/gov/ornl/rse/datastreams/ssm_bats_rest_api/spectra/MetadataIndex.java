@@ -0,0 +1,373 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory index of the spectrum metadata of a Collection's Datasets, for
+ * filtering them by attribute values and x range. Each Dataset has a dense
+ * ordinal; each attribute value has a Bitmap of the ordinals with it, so a
+ * filter on several attributes is an intersection of bitmaps. The x ranges
+ * are kept in arrays of ordinals sorted by lowest and by highest x, rebuilt
+ * on the first range filter after a change. Safe for concurrent use.
+ */
+public final class MetadataIndex {
+
+    /**
+     * Attribute of the technique type of the measurement.
+     */
+    public static final String TECHNIQUE = "technique";
+
+    /**
+     * Attribute of the units of the x values.
+     */
+    public static final String X_UNITS = "x_units";
+
+    /**
+     * Attribute of the quantity of the x values.
+     */
+    public static final String X_QUANTITY = "x_quantity";
+
+    /**
+     * Attribute of the quantity of the y values.
+     */
+    public static final String Y_QUANTITY = "y_quantity";
+
+    /**
+     * Datasets the index has room for when created.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Ordinal of each Dataset UUID.
+     */
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Dataset UUID of each ordinal, null if free.
+     */
+    private String[] ids = new String[INITIAL_CAPACITY];
+
+    /**
+     * Attribute values of each ordinal.
+     */
+    private final List<Map<String, String>> attributes = new ArrayList<>();
+
+    /**
+     * Lowest x value of each ordinal, NaN if it has no spectrum.
+     */
+    private double[] lows = new double[INITIAL_CAPACITY];
+
+    /**
+     * Highest x value of each ordinal, NaN if it has no spectrum.
+     */
+    private double[] highs = new double[INITIAL_CAPACITY];
+
+    /**
+     * Ordinals freed by removals, reused first so ordinals stay dense.
+     */
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * Number of ordinals ever used.
+     */
+    private int used;
+
+    /**
+     * Ordinals with each value of each attribute.
+     */
+    private final Map<String, Map<String, Bitmap>> bitmaps = new HashMap<>();
+
+    /**
+     * Ordinals of the Datasets in the index.
+     */
+    private final Bitmap live = new Bitmap();
+
+    /**
+     * Ordinals with a spectrum in order of increasing lowest x, or null if
+     * changed since last sorted.
+     */
+    private int[] byLow;
+
+    /**
+     * Lowest x of each ordinal of byLow.
+     */
+    private double[] sortedLows;
+
+    /**
+     * Ordinals with a spectrum in order of decreasing highest x, or null if
+     * changed since last sorted.
+     */
+    private int[] byHigh;
+
+    /**
+     * Negated highest x of each ordinal of byHigh, so in increasing order.
+     */
+    private double[] sortedHighs;
+
+    /**
+     * Guards the index: filters share it, updates are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @return Number of Datasets in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace the metadata of a Dataset.
+     *
+     * @param id              Dataset UUID
+     * @param attributeValues Value of each attribute the Dataset has
+     * @param low             Lowest x value, NaN if it has no spectrum
+     * @param high            Highest x value, NaN if it has no spectrum
+     */
+    public void put(
+        final String id,
+        final Map<String, String> attributeValues,
+        final double low,
+        final double high
+    ) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.get(id);
+            if (ordinal == null) {
+                ordinal = free.isEmpty() ? used++ : free.pop();
+                if (ordinal == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                    lows = Arrays.copyOf(lows, ids.length);
+                    highs = Arrays.copyOf(highs, ids.length);
+                }
+                if (ordinal == attributes.size()) {
+                    attributes.add(null);
+                }
+                ids[ordinal] = id;
+                ordinals.put(id, ordinal);
+                live.add(ordinal);
+            } else {
+                unindex(ordinal);
+            }
+            Map<String, String> values = new LinkedHashMap<>(attributeValues);
+            attributes.set(ordinal, values);
+            for (Map.Entry<String, String> entry : values.entrySet()) {
+                bitmaps.computeIfAbsent(entry.getKey(), attribute -> new HashMap<>()) //NOPMD
+                    .computeIfAbsent(entry.getValue(), value -> new Bitmap()) //NOPMD
+                    .add(ordinal);
+            }
+            lows[ordinal] = low;
+            highs[ordinal] = high;
+            byLow = null; //NOPMD
+            byHigh = null; //NOPMD
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the metadata of a Dataset, if indexed.
+     *
+     * @param id Dataset UUID
+     */
+    public void remove(final String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinals.remove(id);
+            if (ordinal == null) {
+                return;
+            }
+            unindex(ordinal);
+            attributes.set(ordinal, null);
+            ids[ordinal] = null; //NOPMD
+            live.remove(ordinal);
+            free.push(ordinal);
+            byLow = null; //NOPMD
+            byHigh = null; //NOPMD
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the Datasets with some attribute values whose spectra cover an x
+     * range. With only one end of the range given, the spectra must cover
+     * that x value.
+     *
+     * @param criteria Value each attribute must have
+     * @param from     Lowest x value to cover, or NaN
+     * @param to       Highest x value to cover, or NaN
+     * @return UUIDs of the matching Datasets
+     * @throws IllegalArgumentException If from is above to
+     */
+    public List<String> filter(
+        final Map<String, String> criteria,
+        final double from,
+        final double to
+    ) {
+        if (from > to) {
+            throw new IllegalArgumentException("x_min must not be above x_max");
+        }
+        boolean ranged = !Double.isNaN(from) || !Double.isNaN(to);
+        lock.readLock().lock();
+        try {
+            if (!ranged || byLow != null) {
+                return select(criteria, Double.isNaN(from) ? to : from,
+                    Double.isNaN(to) ? from : to, ranged);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            sort();
+            return select(criteria, Double.isNaN(from) ? to : from,
+                Double.isNaN(to) ? from : to, true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Intersect the bitmaps of the criteria and of the ordinals that may
+     * cover the range, starting from the smallest.
+     *
+     * @param criteria Value each attribute must have
+     * @param from     Lowest x value to cover
+     * @param to       Highest x value to cover
+     * @param ranged   Whether to filter by range
+     * @return UUIDs of the matching Datasets
+     */
+    private List<String> select(
+        final Map<String, String> criteria,
+        final double from,
+        final double to,
+        final boolean ranged
+    ) {
+        List<Bitmap> sets = new ArrayList<>(criteria.size() + 1);
+        for (Map.Entry<String, String> criterion : criteria.entrySet()) {
+            Map<String, Bitmap> values = bitmaps.get(criterion.getKey());
+            Bitmap set = values == null ? null : values.get(criterion.getValue());
+            if (set == null) {
+                return new ArrayList<>();
+            }
+            sets.add(set);
+        }
+        sets.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        Bitmap result = sets.isEmpty() ? live : sets.get(0);
+        for (int i = 1; i < sets.size(); i++) {
+            result = Bitmap.and(result, sets.get(i));
+        }
+
+        if (ranged) {
+            result = narrow(result, sets.isEmpty(), from, to);
+        }
+
+        List<String> matches = new ArrayList<>(result.cardinality());
+        result.forEach(ordinal -> {
+            if (!ranged || lows[ordinal] <= from && highs[ordinal] >= to) {
+                matches.add(ids[ordinal]);
+            }
+        });
+        return matches;
+    }
+
+    /**
+     * Narrow candidates to the ordinals that may cover a range: either those
+     * starting low enough or those ending high enough, whichever are fewer.
+     *
+     * @param candidates Ordinals to narrow
+     * @param all        Whether the candidates are every ordinal
+     * @param from       Lowest x value to cover
+     * @param to         Highest x value to cover
+     * @return The narrowed candidates, still to be checked against the other
+     *         end of the range
+     */
+    private Bitmap narrow(
+        final Bitmap candidates,
+        final boolean all,
+        final double from,
+        final double to
+    ) {
+        int lowCount = upperBound(sortedLows, from);
+        int highCount = upperBound(sortedHighs, -to);
+        // Checking a few candidates directly beats building a large bitmap
+        if (!all && candidates.cardinality() <= Math.min(lowCount, highCount)) {
+            return candidates;
+        }
+        Bitmap inRange = lowCount <= highCount
+            ? Bitmap.of(byLow, lowCount) : Bitmap.of(byHigh, highCount);
+        return all ? inRange : Bitmap.and(candidates, inRange);
+    }
+
+    /**
+     * Remove an ordinal from the bitmaps of its attribute values.
+     *
+     * @param ordinal The ordinal
+     */
+    private void unindex(final int ordinal) {
+        for (Map.Entry<String, String> entry : attributes.get(ordinal).entrySet()) {
+            Map<String, Bitmap> values = bitmaps.get(entry.getKey());
+            Bitmap set = values.get(entry.getValue());
+            set.remove(ordinal);
+            if (set.isEmpty()) {
+                values.remove(entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Sort the ordinals with a spectrum by lowest and by highest x.
+     */
+    private void sort() {
+        int[] ranged = IntStream.range(0, used)
+            .filter(ordinal -> ids[ordinal] != null && !Double.isNaN(lows[ordinal]))
+            .toArray();
+        byLow = IntStream.of(ranged).boxed()
+            .sorted((a, b) -> Double.compare(lows[a], lows[b]))
+            .mapToInt(Integer::intValue).toArray();
+        byHigh = IntStream.of(ranged).boxed()
+            .sorted((a, b) -> Double.compare(highs[b], highs[a]))
+            .mapToInt(Integer::intValue).toArray();
+        sortedLows = new double[ranged.length];
+        sortedHighs = new double[ranged.length];
+        for (int i = 0; i < ranged.length; i++) {
+            sortedLows[i] = lows[byLow[i]];
+            sortedHighs[i] = -highs[byHigh[i]];
+        }
+    }
+
+    /**
+     * @param sorted Values in increasing order
+     * @param value  A value
+     * @return Number of the values at most the value
+     */
+    private static int upperBound(final double[] sorted, final double value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
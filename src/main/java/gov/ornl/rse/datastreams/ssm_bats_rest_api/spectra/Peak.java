@@ -0,0 +1,57 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * A peak of a spectrum: where it is, how far it rises above its surroundings
+ * and how wide it is at half that height.
+ */
+public final class Peak {
+
+    /**
+     * X value of the top of the peak.
+     */
+    private final double position;
+
+    /**
+     * Height of the peak above the higher of the minima either side of it.
+     */
+    private final float height;
+
+    /**
+     * Width of the peak in x at half its height.
+     */
+    private final float width;
+
+    /**
+     * Constructor.
+     *
+     * @param newPosition X value of the top of the peak
+     * @param newHeight   Height of the peak above its surroundings
+     * @param newWidth    Width of the peak in x at half its height
+     */
+    public Peak(final double newPosition, final float newHeight, final float newWidth) {
+        this.position = newPosition;
+        this.height = newHeight;
+        this.width = newWidth;
+    }
+
+    /**
+     * @return X value of the top of the peak
+     */
+    public double getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Height of the peak above the higher of the minima either side of it
+     */
+    public float getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Width of the peak in x at half its height
+     */
+    public float getWidth() {
+        return width;
+    }
+}
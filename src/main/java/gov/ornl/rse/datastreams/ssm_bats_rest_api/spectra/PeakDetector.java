@@ -0,0 +1,136 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds the peaks of a spectrum by prominence: a local maximum is a peak if it
+ * rises far enough above the higher of the lowest points between it and the
+ * nearest higher point on either side. Its width is measured at half that
+ * height, interpolating between points.
+ */
+public final class PeakDetector {
+
+    /**
+     * Least prominence of a peak, as a fraction of the spectrum's y range.
+     */
+    private final double minProminence;
+
+    /**
+     * Most peaks kept per spectrum, the most prominent first.
+     */
+    private final int maxPeaks;
+
+    /**
+     * Constructor.
+     *
+     * @param newMinProminence Least prominence of a peak, as a fraction of the
+     *                         spectrum's y range
+     * @param newMaxPeaks      Most peaks kept per spectrum
+     */
+    public PeakDetector(final double newMinProminence, final int newMaxPeaks) {
+        this.minProminence = newMinProminence;
+        this.maxPeaks = newMaxPeaks;
+    }
+
+    /**
+     * Find the peaks of a spectrum.
+     *
+     * @param spectrum Spectrum in order of increasing x
+     * @return The most prominent peaks, in order of increasing position
+     */
+    public List<Peak> detect(final SpectrumView spectrum) {
+        int size = spectrum.size();
+        if (size < 3) {
+            return Collections.emptyList();
+        }
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < size; i++) {
+            min = Math.min(min, spectrum.getY(i));
+            max = Math.max(max, spectrum.getY(i));
+        }
+        if (!(max > min)) {
+            return Collections.emptyList();
+        }
+        double threshold = (max - min) * minProminence;
+
+        List<Peak> peaks = new ArrayList<>();
+        for (int i = 1; i < size - 1; i++) {
+            double top = spectrum.getY(i);
+            // Rises strictly on the left so a flat top counts once
+            if (top <= spectrum.getY(i - 1) || top < spectrum.getY(i + 1)
+                || top - min < threshold) {
+                continue;
+            }
+            double prominence = top - Math.max(base(spectrum, i, -1), base(spectrum, i, 1));
+            if (prominence >= threshold && prominence > 0) {
+                double half = top - prominence / 2;
+                double width = crossing(spectrum, i, 1, half) - crossing(spectrum, i, -1, half);
+                peaks.add(new Peak(spectrum.getX(i), (float) prominence, (float) width)); //NOPMD
+            }
+        }
+
+        if (peaks.size() > maxPeaks) {
+            peaks.sort(Comparator.comparingDouble(Peak::getHeight).reversed());
+            peaks = new ArrayList<>(peaks.subList(0, maxPeaks));
+            peaks.sort(Comparator.comparingDouble(Peak::getPosition));
+        }
+        return peaks;
+    }
+
+    /**
+     * Lowest point between a maximum and the nearest higher point, or the end
+     * of the spectrum, in one direction.
+     *
+     * @param spectrum  The spectrum
+     * @param top       Index of the maximum
+     * @param direction 1 to look right, -1 to look left
+     * @return The lowest y value found
+     */
+    private static double base(final SpectrumView spectrum, final int top, final int direction) {
+        double height = spectrum.getY(top);
+        double lowest = height;
+        for (int i = top + direction; i >= 0 && i < spectrum.size(); i += direction) {
+            double y = spectrum.getY(i);
+            if (y > height) {
+                break;
+            }
+            lowest = Math.min(lowest, y);
+        }
+        return lowest;
+    }
+
+    /**
+     * X value where the spectrum first falls to a level, moving away from a
+     * maximum in one direction.
+     *
+     * @param spectrum  The spectrum
+     * @param top       Index of the maximum
+     * @param direction 1 to look right, -1 to look left
+     * @param level     Y value to fall to
+     * @return The interpolated x value, or the x value of the end of the
+     *         spectrum if it never falls that far
+     */
+    private static double crossing(
+        final SpectrumView spectrum,
+        final int top,
+        final int direction,
+        final double level
+    ) {
+        int previous = top;
+        for (int i = top + direction; i >= 0 && i < spectrum.size(); i += direction) {
+            double y = spectrum.getY(i);
+            if (y <= level) {
+                double y0 = spectrum.getY(previous);
+                double fraction = y0 > y ? (y0 - level) / (y0 - y) : 0;
+                double x0 = spectrum.getX(previous);
+                return x0 + fraction * (spectrum.getX(i) - x0);
+            }
+            previous = i;
+        }
+        return spectrum.getX(previous);
+    }
+}
@@ -0,0 +1,765 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Inverted index from peak position to the Datasets with a peak there, for
+ * finding the spectra that share peaks with a query without comparing every
+ * spectrum. Peak positions are quantized into bins of a fixed width, and each
+ * bin lists the Datasets with a peak in it and the peak's relative height.
+ *
+ * <p>
+ * The index is kept in memory and logged to a file so it survives restarts.
+ * The file starts with the magic number "SSMP", a format version and a
+ * fingerprint of how the peaks were found, followed by records. All values
+ * are little-endian. A record is:
+ * </p>
+ * <pre>
+ *  int    length of the record in bytes
+ *  int    CRC32 of the rest of the record
+ *  int    kind: 1 peaks, 2 removal
+ *  int    length of the UTF-8 Dataset UUID, then its bytes
+ *  int    number of peaks, then for each a double position, float height
+ *         and float width
+ * </pre>
+ *
+ * <p>
+ * The latest record of a Dataset wins when the file is read back, which stops
+ * at the first torn or damaged record. The file is rewritten with only the
+ * latest records once it is mostly superseded ones. A file with another
+ * fingerprint is emptied on open. Safe for concurrent use.
+ * </p>
+ */
+public final class PeakIndex implements Closeable {
+
+    /**
+     * "SSMP", the first int of the file.
+     */
+    private static final int MAGIC = 0x53534D50;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes of the file header.
+     */
+    private static final int FILE_HEADER = 16;
+
+    /**
+     * Offset of the fingerprint in the file header.
+     */
+    private static final int FINGERPRINT_OFFSET = 8;
+
+    /**
+     * Bytes of a record before its kind: length and CRC32.
+     */
+    private static final int RECORD_HEADER = 8;
+
+    /**
+     * Bytes of each peak in a record.
+     */
+    private static final int PEAK_BYTES = Double.BYTES + 2 * Float.BYTES;
+
+    /**
+     * Record kind of a Dataset's peaks.
+     */
+    private static final int KIND_PEAKS = 1;
+
+    /**
+     * Record kind of a removed Dataset.
+     */
+    private static final int KIND_REMOVAL = 2;
+
+    /**
+     * The file is rewritten once it is larger than this many bytes and more
+     * than twice the size of its latest records.
+     */
+    private static final long COMPACTION_MINIMUM = 1 << 20;
+
+    /**
+     * Most bins a single query peak may span.
+     */
+    private static final int MAX_BINS_PER_PEAK = 1024;
+
+    /**
+     * Datasets with a peak in one bin, with the peak's height relative to the
+     * Dataset's other peaks.
+     */
+    private static final class Posting {
+
+        /**
+         * Ordinals of the Datasets.
+         */
+        private int[] ordinals = new int[2];
+
+        /**
+         * Relative height of the peak of each Dataset.
+         */
+        private float[] heights = new float[2];
+
+        /**
+         * Number of Datasets.
+         */
+        private int size;
+
+        /**
+         * @param ordinal Ordinal of the Dataset
+         * @param height  Relative height of its peak
+         */
+        void add(final int ordinal, final float height) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                heights = Arrays.copyOf(heights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            heights[size] = height;
+            size++;
+        }
+
+        /**
+         * Remove every entry of a Dataset.
+         *
+         * @param ordinal Ordinal of the Dataset
+         */
+        void remove(final int ordinal) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (ordinals[i] == ordinal) {
+                    size--;
+                    ordinals[i] = ordinals[size];
+                    heights[i] = heights[size];
+                }
+            }
+        }
+    }
+
+    /**
+     * Width in x of each bin.
+     */
+    private final double binWidth;
+
+    /**
+     * The log file.
+     */
+    private final Path path;
+
+    /**
+     * The open log file.
+     */
+    private FileChannel channel;
+
+    /**
+     * Fingerprint of how the peaks were found.
+     */
+    private final long fingerprint;
+
+    /**
+     * True if the file was created or emptied when opened.
+     */
+    private final boolean fresh;
+
+    /**
+     * Bytes of the log file.
+     */
+    private long end;
+
+    /**
+     * Bytes of the latest record of every Dataset.
+     */
+    private long liveBytes;
+
+    /**
+     * Ordinal of each indexed Dataset UUID.
+     */
+    private final Map<String, Integer> ordinals = new HashMap<>();
+
+    /**
+     * Dataset UUID of each ordinal, null for free ordinals.
+     */
+    private final List<String> ids = new ArrayList<>();
+
+    /**
+     * Peaks of each ordinal, in order of increasing position.
+     */
+    private final List<List<Peak>> peaks = new ArrayList<>();
+
+    /**
+     * Bytes of the latest record of each ordinal.
+     */
+    private final List<Integer> recordSizes = new ArrayList<>();
+
+    /**
+     * Free ordinals, reused before new ones.
+     */
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * Datasets with a peak in each bin.
+     */
+    private final Map<Long, Posting> bins = new HashMap<>();
+
+    /**
+     * Guards the index: searches share it, updates are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Open the index, reading back the file if it has the same fingerprint.
+     *
+     * @param newPath        The log file, created if missing
+     * @param newBinWidth    Width in x of each bin
+     * @param newFingerprint Fingerprint of how the peaks are found
+     * @throws IOException If the file could not be opened
+     */
+    public PeakIndex(final Path newPath, final double newBinWidth, final long newFingerprint)
+            throws IOException {
+        if (!(newBinWidth > 0)) {
+            throw new IllegalArgumentException("Peak bin width must be positive");
+        }
+        this.path = newPath;
+        this.binWidth = newBinWidth;
+        this.fingerprint = newFingerprint;
+        this.channel = open(newPath);
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        boolean matches = channel.size() >= FILE_HEADER
+            && channel.read(header, 0) == FILE_HEADER
+            && header.getInt(0) == MAGIC
+            && header.getInt(Integer.BYTES) == VERSION
+            && header.getLong(FINGERPRINT_OFFSET) == newFingerprint;
+        this.fresh = !matches;
+        if (fresh) {
+            channel.truncate(0);
+            writeHeader(channel);
+            end = FILE_HEADER;
+        } else {
+            recover();
+        }
+    }
+
+    /**
+     * @return True if the file was created or emptied when opened, so every
+     *         spectrum needs to be indexed again
+     */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * @return Number of Datasets indexed, including those without peaks
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param datasetUUID UUID of a Dataset
+     * @return True if the Dataset is indexed, with or without peaks
+     */
+    public boolean contains(final String datasetUUID) {
+        lock.readLock().lock();
+        try {
+            return ordinals.containsKey(datasetUUID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param datasetUUID UUID of a Dataset
+     * @return Peaks of the Dataset in order of increasing position, or null if
+     *         it is not indexed
+     */
+    public List<Peak> get(final String datasetUUID) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(datasetUUID);
+            return ordinal == null ? null : peaks.get(ordinal);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Index or re-index the peaks of a Dataset.
+     *
+     * @param datasetUUID  UUID of the Dataset
+     * @param datasetPeaks Peaks of the Dataset in order of increasing position
+     * @throws IOException If the file could not be written
+     */
+    public void put(final String datasetUUID, final List<Peak> datasetPeaks) throws IOException {
+        ByteBuffer record = encode(KIND_PEAKS, datasetUUID, datasetPeaks);
+        lock.writeLock().lock();
+        try {
+            append(record);
+            apply(datasetUUID, Collections.unmodifiableList(new ArrayList<>(datasetPeaks)),
+                record.limit());
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a Dataset from the index.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return True if the Dataset was indexed
+     * @throws IOException If the file could not be written
+     */
+    public boolean remove(final String datasetUUID) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (!ordinals.containsKey(datasetUUID)) {
+                return false;
+            }
+            append(encode(KIND_REMOVAL, datasetUUID, Collections.emptyList()));
+            apply(datasetUUID, null, 0);
+            compactIfWasteful();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the Datasets whose peaks best match a query peak list. Candidates
+     * sharing the most query peak height are read from the bins each query
+     * peak falls in, then each candidate's full peak list is scored.
+     *
+     * @param query      Query peaks
+     * @param tolerance  Largest difference in position of matching peaks
+     * @param k          Most matches to return
+     * @param candidates Most candidates to score
+     * @param filter     Which Dataset UUIDs may be returned
+     * @return Up to k matches, best first, each scored from 0 to 1
+     */
+    public List<SpectralIndex.Match> search(
+        final List<Peak> query,
+        final double tolerance,
+        final int k,
+        final int candidates,
+        final Predicate<String> filter
+    ) {
+        if (tolerance / binWidth > MAX_BINS_PER_PEAK) {
+            throw new IllegalArgumentException(
+                "Peak tolerance must be at most " + MAX_BINS_PER_PEAK * binWidth);
+        }
+        double[] positions = new double[query.size()];
+        float[] heights = new float[query.size()];
+        normalize(query, positions, heights);
+
+        lock.readLock().lock();
+        try {
+            TopK best = candidates(positions, heights, tolerance, candidates, filter);
+            TopK top = new TopK(k);
+            for (int ordinal : best.entries()) {
+                top.offer(ordinal, similarity(positions, heights, peaks.get(ordinal), tolerance));
+            }
+
+            int[] entries = top.entries();
+            float[] scores = top.scores();
+            List<SpectralIndex.Match> matches = new ArrayList<>(entries.length);
+            for (int i = 0; i < entries.length; i++) {
+                matches.add(new SpectralIndex.Match(ids.get(entries[i]), scores[i])); //NOPMD
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Flush the file to disk and close it.
+     *
+     * @throws IOException If the file could not be flushed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the Datasets sharing the most query peak height, read from the bins
+     * each query peak falls in. Must be called holding the read lock.
+     *
+     * @param positions  Positions of the query peaks
+     * @param heights    Heights of the query peaks, of unit length
+     * @param tolerance  Largest difference in position of matching peaks
+     * @param candidates Most candidates to return
+     * @param filter     Which Dataset UUIDs may be returned
+     * @return Ordinals of the candidates and the height they share
+     */
+    private TopK candidates(
+        final double[] positions,
+        final float[] heights,
+        final double tolerance,
+        final int candidates,
+        final Predicate<String> filter
+    ) {
+        float[] shared = new float[ids.size()];
+        int[] touched = new int[ids.size()];
+        int touchedCount = 0;
+        for (int i = 0; i < positions.length; i++) {
+            long last = bin(positions[i] + tolerance);
+            for (long bin = bin(positions[i] - tolerance); bin <= last; bin++) {
+                Posting posting = bins.get(bin);
+                for (int j = 0; posting != null && j < posting.size; j++) {
+                    float product = heights[i] * posting.heights[j];
+                    int ordinal = posting.ordinals[j];
+                    if (!(product > 0)) {
+                        continue;
+                    }
+                    if (shared[ordinal] == 0) {
+                        touched[touchedCount++] = ordinal;
+                    }
+                    shared[ordinal] += product;
+                }
+            }
+        }
+
+        TopK best = new TopK(candidates);
+        for (int i = 0; i < touchedCount; i++) {
+            int ordinal = touched[i];
+            if (shared[ordinal] > best.threshold() && filter.test(ids.get(ordinal))) {
+                best.offer(ordinal, shared[ordinal]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Cosine similarity of two peak lists, where a query peak matches the
+     * nearest peak within the tolerance and the match counts less the further
+     * apart the two are.
+     *
+     * @param positions Positions of the query peaks
+     * @param heights   Heights of the query peaks, of unit length
+     * @param candidate Peaks of a Dataset in order of increasing position
+     * @param tolerance Largest difference in position of matching peaks
+     * @return The similarity, from 0 to 1
+     */
+    static float similarity(
+        final double[] positions,
+        final float[] heights,
+        final List<Peak> candidate,
+        final double tolerance
+    ) {
+        double norm = 0;
+        for (Peak peak : candidate) {
+            norm += peak.getHeight() * peak.getHeight();
+        }
+        if (!(norm > 0)) {
+            return 0;
+        }
+        double score = 0;
+        for (int i = 0; i < positions.length; i++) {
+            double best = 0;
+            for (Peak peak : candidate) {
+                double distance = (peak.getPosition() - positions[i]) / tolerance;
+                if (Math.abs(distance) <= 1) {
+                    best = Math.max(best, peak.getHeight() * Math.exp(-distance * distance));
+                }
+            }
+            score += heights[i] * best;
+        }
+        return (float) Math.min(1, score / Math.sqrt(norm));
+    }
+
+    /**
+     * Read the positions and unit length heights of peaks into arrays.
+     *
+     * @param list      The peaks
+     * @param positions Filled with the positions
+     * @param heights   Filled with the heights, scaled to unit length
+     */
+    private static void normalize(
+        final List<Peak> list,
+        final double[] positions,
+        final float[] heights
+    ) {
+        double norm = 0;
+        for (Peak peak : list) {
+            norm += peak.getHeight() * peak.getHeight();
+        }
+        float scale = norm > 0 ? (float) (1 / Math.sqrt(norm)) : 0;
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = list.get(i).getPosition();
+            heights[i] = list.get(i).getHeight() * scale;
+        }
+    }
+
+    /**
+     * @param position An x value
+     * @return The bin it falls in
+     */
+    private long bin(final double position) {
+        return (long) Math.floor(position / binWidth);
+    }
+
+    /**
+     * Replace the in-memory entry of a Dataset.
+     *
+     * @param datasetUUID  UUID of the Dataset
+     * @param datasetPeaks Its peaks, or null to remove it
+     * @param recordSize   Bytes of its latest record
+     */
+    private void apply(final String datasetUUID, final List<Peak> datasetPeaks,
+            final int recordSize) {
+        Integer ordinal = ordinals.get(datasetUUID);
+        if (ordinal != null) {
+            for (Peak peak : peaks.get(ordinal)) {
+                // Several peaks may share a bin, which the first of them empties
+                Posting posting = bins.get(bin(peak.getPosition()));
+                if (posting != null) {
+                    posting.remove(ordinal);
+                    if (posting.size == 0) {
+                        bins.remove(bin(peak.getPosition()));
+                    }
+                }
+            }
+            liveBytes -= recordSizes.get(ordinal);
+        }
+        if (datasetPeaks == null) {
+            if (ordinal != null) {
+                ordinals.remove(datasetUUID);
+                ids.set(ordinal, null);
+                peaks.set(ordinal, null);
+                recordSizes.set(ordinal, 0);
+                free.push(ordinal);
+            }
+            return;
+        }
+
+        if (ordinal == null) {
+            if (free.isEmpty()) {
+                ordinal = ids.size();
+                ids.add(datasetUUID);
+                peaks.add(datasetPeaks);
+                recordSizes.add(recordSize);
+            } else {
+                ordinal = free.pop();
+                ids.set(ordinal, datasetUUID);
+            }
+            ordinals.put(datasetUUID, ordinal);
+        }
+        peaks.set(ordinal, datasetPeaks);
+        recordSizes.set(ordinal, recordSize);
+        liveBytes += recordSize;
+
+        double[] positions = new double[datasetPeaks.size()];
+        float[] heights = new float[datasetPeaks.size()];
+        normalize(datasetPeaks, positions, heights);
+        for (int i = 0; i < positions.length; i++) {
+            bins.computeIfAbsent(bin(positions[i]), bin -> new Posting()) //NOPMD
+                .add(ordinal, heights[i]);
+        }
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param kind         Kind of record
+     * @param datasetUUID  UUID of the Dataset
+     * @param datasetPeaks Peaks of the Dataset
+     * @return The record, ready to write
+     */
+    private static ByteBuffer encode(
+        final int kind,
+        final String datasetUUID,
+        final List<Peak> datasetPeaks
+    ) {
+        byte[] key = datasetUUID.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + 3 * Integer.BYTES + key.length
+            + datasetPeaks.size() * PEAK_BYTES;
+        ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(RECORD_HEADER);
+        record.putInt(kind).putInt(key.length).put(key).putInt(datasetPeaks.size());
+        for (Peak peak : datasetPeaks) {
+            record.putDouble(peak.getPosition()).putFloat(peak.getHeight())
+                .putFloat(peak.getWidth());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), RECORD_HEADER, length - RECORD_HEADER);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+        record.flip();
+        return record;
+    }
+
+    /**
+     * Append a record to the file.
+     *
+     * @param record The record
+     * @throws IOException If the file could not be written
+     */
+    private void append(final ByteBuffer record) throws IOException {
+        long at = end;
+        while (record.hasRemaining()) {
+            at += channel.write(record, at);
+        }
+        record.rewind();
+        end = at;
+    }
+
+    /**
+     * Read back the records of the file, dropping any torn or damaged tail.
+     *
+     * @throws IOException If the file could not be read
+     */
+    private void recover() throws IOException {
+        long size = channel.size();
+        long at = FILE_HEADER;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        while (at + RECORD_HEADER <= size) {
+            header.clear();
+            channel.read(header, at);
+            int length = header.getInt(0);
+            if (length < RECORD_HEADER + 3 * Integer.BYTES || at + length > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(record, at);
+            crc.reset();
+            crc.update(record.array(), RECORD_HEADER, length - RECORD_HEADER);
+            if (record.getInt(Integer.BYTES) != (int) crc.getValue()) {
+                break;
+            }
+            decode(record);
+            at += length;
+        }
+        end = at;
+        if (end < size) {
+            channel.truncate(end);
+        }
+    }
+
+    /**
+     * Fill a buffer from the file.
+     *
+     * @param buffer   Buffer to fill up to its limit
+     * @param position Offset in the file to read from
+     * @throws IOException If the file ends first or could not be read
+     */
+    private void readFully(final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Peak index file ends at " + (position + buffer.position()));
+            }
+        }
+    }
+
+    /**
+     * Apply a record read back from the file.
+     *
+     * @param record A record with a valid CRC32
+     */
+    private void decode(final ByteBuffer record) {
+        record.position(RECORD_HEADER);
+        int kind = record.getInt();
+        byte[] key = new byte[record.getInt()];
+        record.get(key);
+        String datasetUUID = new String(key, StandardCharsets.UTF_8);
+        if (kind != KIND_PEAKS) {
+            apply(datasetUUID, null, 0);
+            return;
+        }
+        int count = record.getInt();
+        List<Peak> datasetPeaks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double position = record.getDouble();
+            float height = record.getFloat();
+            datasetPeaks.add(new Peak(position, height, record.getFloat())); //NOPMD
+        }
+        apply(datasetUUID, Collections.unmodifiableList(datasetPeaks), record.limit());
+    }
+
+    /**
+     * Rewrite the file with only the latest records once it is mostly
+     * superseded ones.
+     *
+     * @throws IOException If the file could not be rewritten
+     */
+    private void compactIfWasteful() throws IOException {
+        if (end < COMPACTION_MINIMUM || end < 2 * (liveBytes + FILE_HEADER)) {
+            return;
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        long written = FILE_HEADER;
+        try (FileChannel output = open(compacted)) {
+            output.truncate(0);
+            writeHeader(output);
+            for (Map.Entry<String, Integer> entry : ordinals.entrySet()) {
+                ByteBuffer record = encode(KIND_PEAKS, entry.getKey(),
+                    peaks.get(entry.getValue()));
+                while (record.hasRemaining()) {
+                    written += output.write(record, written);
+                }
+            }
+            output.force(false);
+        }
+        channel.close();
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        channel = open(path);
+        end = written;
+    }
+
+    /**
+     * Write the file header.
+     *
+     * @param output File to write it to
+     * @throws IOException If the file could not be written
+     */
+    private void writeHeader(final FileChannel output) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(fingerprint).flip();
+        while (header.hasRemaining()) {
+            output.write(header, header.position());
+        }
+    }
+
+    /**
+     * @param file A file
+     * @return The file opened for reading and writing, created if missing
+     * @throws IOException If the file could not be opened
+     */
+    private static FileChannel open(final Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+}
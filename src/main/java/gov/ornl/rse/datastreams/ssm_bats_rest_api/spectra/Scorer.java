@@ -0,0 +1,29 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * Similarity metric of spectral searches, scoring a query against a block of
+ * candidate vectors stored back to back, as a SpectralIndex holds them.
+ * Higher scores are more similar. Implementations score in primitive loops
+ * and allocate nothing per candidate. Every Spring bean implementing it can
+ * be chosen by name in a search, besides those of Scorers.
+ */
+public interface Scorer {
+
+    /**
+     * @return Name a search chooses the scorer by
+     */
+    String getName();
+
+    /**
+     * Score a query against consecutive vectors.
+     *
+     * @param query     The query, of the vectors' dimension
+     * @param vectors   Vectors stored back to back
+     * @param offset    Index in vectors of the first value of the first vector
+     * @param count     Number of vectors to score
+     * @param dimension Length of the query and of every vector
+     * @param scores    Set to the score of each vector, from index 0
+     */
+    void score(float[] query, float[] vectors, int offset, int count, int dimension,
+        float[] scores);
+}
@@ -0,0 +1,294 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The built-in similarity metrics, for the unit length vectors a SpectralIndex
+ * holds, and weighted combinations of metrics.
+ */
+public final class Scorers {
+
+    /**
+     * Cosine similarity, the dot product of unit length vectors.
+     */
+    public static final Scorer COSINE = new Cosine();
+
+    /**
+     * Pearson correlation coefficient of the values of the two vectors.
+     */
+    public static final Scorer PEARSON = new Pearson();
+
+    /**
+     * Spectral contrast angle, scored from 1 for parallel vectors down to -1
+     * for opposite ones.
+     */
+    public static final Scorer CONTRAST_ANGLE = new ContrastAngle();
+
+    /**
+     * Euclidean distance d, scored 1 / (1 + d).
+     */
+    public static final Scorer EUCLIDEAN = new Euclidean();
+
+    /**
+     * Built-in scorers by name; "dot" is cosine, as the vectors are unit length.
+     */
+    private static final Map<String, Scorer> BUILT_IN;
+
+    static {
+        Map<String, Scorer> builtIn = new LinkedHashMap<>();
+        for (Scorer scorer : new Scorer[] {COSINE, PEARSON, CONTRAST_ANGLE, EUCLIDEAN}) {
+            builtIn.put(scorer.getName(), scorer);
+        }
+        builtIn.put("dot", COSINE);
+        BUILT_IN = Collections.unmodifiableMap(builtIn);
+    }
+
+    private Scorers() {
+
+    }
+
+    /**
+     * @param name Name of a built-in scorer
+     * @return The scorer, or null if there is none by that name
+     */
+    public static Scorer get(final String name) {
+        return BUILT_IN.get(name);
+    }
+
+    /**
+     * @return Names of the built-in scorers
+     */
+    public static Set<String> names() {
+        return BUILT_IN.keySet();
+    }
+
+    /**
+     * Combine scorers into one whose score is the weighted mean of theirs.
+     *
+     * @param weights Positive weight of each scorer
+     * @return The combined scorer
+     * @throws IllegalArgumentException If there are no scorers or a weight is
+     *                                  not positive
+     */
+    public static Scorer composite(final Map<Scorer, Double> weights) {
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("A composite score needs at least one metric");
+        }
+        Scorer[] scorers = new Scorer[weights.size()];
+        float[] normalized = new float[weights.size()];
+        double total = 0;
+        int i = 0;
+        for (Map.Entry<Scorer, Double> entry : weights.entrySet()) {
+            if (entry.getValue() == null || !(entry.getValue() > 0)
+                    || Double.isInfinite(entry.getValue())) {
+                throw new IllegalArgumentException("Weight of metric "
+                    + entry.getKey().getName() + " must be positive");
+            }
+            scorers[i++] = entry.getKey();
+            total += entry.getValue();
+        }
+        i = 0;
+        for (double weight : weights.values()) {
+            normalized[i++] = (float) (weight / total);
+        }
+        return new Composite(scorers, normalized);
+    }
+
+    /**
+     * @param query     A query
+     * @param vectors   Vectors stored back to back
+     * @param offset    Index in vectors of the first value of a vector
+     * @param dimension Length of the query and vector
+     * @return Dot product of the query and the vector
+     */
+    private static float dot(
+        final float[] query,
+        final float[] vectors,
+        final int offset,
+        final int dimension
+    ) {
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * vectors[offset + i];
+        }
+        return dot;
+    }
+
+    /**
+     * Cosine similarity of unit length vectors.
+     */
+    private static final class Cosine implements Scorer {
+
+        @Override
+        public String getName() {
+            return "cosine";
+        }
+
+        @Override
+        public void score(final float[] query, final float[] vectors, final int offset,
+                final int count, final int dimension, final float[] scores) {
+            for (int c = 0; c < count; c++) {
+                scores[c] = dot(query, vectors, offset + c * dimension, dimension);
+            }
+        }
+    }
+
+    /**
+     * Pearson correlation coefficient, 0 if either vector is constant. Sums
+     * are taken in double over values centered on their means, found in a
+     * first pass, rather than as sum(x^2) - n mean^2, which cancels badly for
+     * the nearly constant vectors of flat spectra.
+     */
+    private static final class Pearson implements Scorer {
+
+        @Override
+        public String getName() {
+            return "pearson";
+        }
+
+        @Override
+        public void score(final float[] query, final float[] vectors, final int offset,
+                final int count, final int dimension, final float[] scores) {
+            // The centered query is shared by every vector of the block
+            double[] centered = new double[dimension];
+            double queryMean = 0;
+            for (int i = 0; i < dimension; i++) {
+                queryMean += query[i];
+            }
+            queryMean /= dimension;
+            double queryVariance = 0;
+            for (int i = 0; i < dimension; i++) {
+                centered[i] = query[i] - queryMean;
+                queryVariance += centered[i] * centered[i];
+            }
+            for (int c = 0; c < count; c++) {
+                int start = offset + c * dimension;
+                double mean = 0;
+                for (int i = 0; i < dimension; i++) {
+                    mean += vectors[start + i];
+                }
+                mean /= dimension;
+                double covariance = 0;
+                double variance = 0;
+                for (int i = 0; i < dimension; i++) {
+                    double value = vectors[start + i] - mean;
+                    covariance += centered[i] * value;
+                    variance += value * value;
+                }
+                double product = queryVariance * variance;
+                scores[c] = product > 0 ? (float) (covariance / Math.sqrt(product)) : 0;
+            }
+        }
+    }
+
+    /**
+     * Spectral contrast angle of unit length vectors, scored 1 - 2 angle / pi.
+     */
+    private static final class ContrastAngle implements Scorer {
+
+        @Override
+        public String getName() {
+            return "contrast_angle";
+        }
+
+        @Override
+        public void score(final float[] query, final float[] vectors, final int offset,
+                final int count, final int dimension, final float[] scores) {
+            for (int c = 0; c < count; c++) {
+                float cosine = dot(query, vectors, offset + c * dimension, dimension);
+                double angle = Math.acos(Math.max(-1, Math.min(1, cosine)));
+                scores[c] = (float) (1 - 2 * angle / Math.PI);
+            }
+        }
+    }
+
+    /**
+     * Euclidean distance d, scored 1 / (1 + d).
+     */
+    private static final class Euclidean implements Scorer {
+
+        @Override
+        public String getName() {
+            return "euclidean";
+        }
+
+        @Override
+        public void score(final float[] query, final float[] vectors, final int offset,
+                final int count, final int dimension, final float[] scores) {
+            for (int c = 0; c < count; c++) {
+                int start = offset + c * dimension;
+                float squares = 0;
+                for (int i = 0; i < dimension; i++) {
+                    float difference = query[i] - vectors[start + i];
+                    squares += difference * difference;
+                }
+                scores[c] = (float) (1 / (1 + Math.sqrt(squares)));
+            }
+        }
+    }
+
+    /**
+     * Weighted mean of the scores of other scorers.
+     */
+    private static final class Composite implements Scorer {
+
+        /**
+         * Scorers combined.
+         */
+        private final Scorer[] scorers;
+
+        /**
+         * Weight of each scorer, summing to 1.
+         */
+        private final float[] weights;
+
+        /**
+         * Buffer of each scorer's scores, per thread so concurrent searches
+         * share the scorer, grown to the largest block scored.
+         */
+        private final ThreadLocal<float[]> partials =
+            ThreadLocal.withInitial(() -> new float[0]);
+
+        /**
+         * Constructor.
+         *
+         * @param newScorers Scorers combined
+         * @param newWeights Weight of each scorer, summing to 1
+         */
+        Composite(final Scorer[] newScorers, final float[] newWeights) {
+            this.scorers = newScorers;
+            this.weights = newWeights;
+        }
+
+        @Override
+        public String getName() {
+            StringBuilder name = new StringBuilder("composite");
+            for (int i = 0; i < scorers.length; i++) {
+                name.append(i == 0 ? '(' : ',').append(scorers[i].getName())
+                    .append(':').append(weights[i]);
+            }
+            return name.append(')').toString();
+        }
+
+        @Override
+        public void score(final float[] query, final float[] vectors, final int offset,
+                final int count, final int dimension, final float[] scores) {
+            float[] partial = partials.get();
+            if (partial.length < count) {
+                partial = new float[count];
+                partials.set(partial);
+            }
+            Arrays.fill(scores, 0, count, 0);
+            for (int s = 0; s < scorers.length; s++) {
+                scorers[s].score(query, vectors, offset, count, dimension, partial);
+                for (int c = 0; c < count; c++) {
+                    scores[c] += weights[s] * partial[c];
+                }
+            }
+        }
+    }
+}
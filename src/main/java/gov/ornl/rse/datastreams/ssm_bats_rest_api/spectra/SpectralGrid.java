@@ -0,0 +1,113 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * A uniform grid of x values that spectra are resampled onto so they can be
+ * compared point by point. Resampled spectra are normalized to unit length, so
+ * the dot product of two of them is their cosine similarity.
+ */
+public final class SpectralGrid {
+
+    /**
+     * First x value of the grid.
+     */
+    private final double start;
+
+    /**
+     * Last x value of the grid.
+     */
+    private final double end;
+
+    /**
+     * Number of points in the grid.
+     */
+    private final int points;
+
+    /**
+     * Distance between consecutive grid points.
+     */
+    private final double step;
+
+    /**
+     * Constructor.
+     *
+     * @param newStart  First x value of the grid
+     * @param newEnd    Last x value of the grid, greater than the first
+     * @param newPoints Number of points in the grid, at least two
+     */
+    public SpectralGrid(final double newStart, final double newEnd, final int newPoints) {
+        if (newPoints < 2 || !(newEnd > newStart)) {
+            throw new IllegalArgumentException(
+                "Spectral grid needs at least two points over an increasing range");
+        }
+        this.start = newStart;
+        this.end = newEnd;
+        this.points = newPoints;
+        this.step = (newEnd - newStart) / (newPoints - 1);
+    }
+
+    /**
+     * @return First x value of the grid
+     */
+    public double getStart() {
+        return start;
+    }
+
+    /**
+     * @return Last x value of the grid
+     */
+    public double getEnd() {
+        return end;
+    }
+
+    /**
+     * @return Number of points in the grid
+     */
+    public int getPoints() {
+        return points;
+    }
+
+    /**
+     * Resample a spectrum onto the grid by linear interpolation and normalize
+     * it to unit length. Grid points outside the spectrum's x range are zero.
+     *
+     * @param spectrum Spectrum with at least two points in order of increasing x
+     * @return The resampled spectrum, or null if it is zero everywhere on the grid
+     */
+    public float[] resample(final SpectrumView spectrum) {
+        int last = spectrum.size() - 1;
+        double first = spectrum.getX(0);
+        double lastX = spectrum.getX(last);
+        float[] values = new float[points];
+        double norm = 0;
+        int segment = 0;
+        double x0 = first;
+        double x1 = spectrum.getX(1);
+        for (int i = 0; i < points; i++) {
+            double gridX = start + i * step;
+            if (gridX < first || gridX > lastX) {
+                continue;
+            }
+            // Grid points increase, so the segment only ever moves forward
+            while (segment < last - 1 && x1 < gridX) {
+                segment++;
+                x0 = x1;
+                x1 = spectrum.getX(segment + 1);
+            }
+            double y0 = spectrum.getY(segment);
+            double width = x1 - x0;
+            double fraction = width > 0 ? (gridX - x0) / width : 0;
+            double value = y0 + fraction * (spectrum.getY(segment + 1) - y0);
+            values[i] = (float) value;
+            norm += value * value;
+        }
+        if (!(norm > 0)) {
+            return null;
+        }
+
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < points; i++) {
+            values[i] *= scale;
+        }
+        return values;
+    }
+}
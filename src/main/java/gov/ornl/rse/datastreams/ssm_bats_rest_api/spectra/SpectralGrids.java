@@ -0,0 +1,128 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Named grids that spectra are resampled onto, chosen per spectrum by its
+ * technique type and x units, so that for example Raman spectra in 1/cm and
+ * X-ray diffraction patterns in degrees 2-theta are each compared on a grid that
+ * suits them. A spectrum no grid claims is resampled onto the default grid.
+ */
+public final class SpectralGrids {
+
+    /**
+     * Name of the grid used for spectra no other grid claims.
+     */
+    public static final String DEFAULT = "default";
+
+    /**
+     * The grids by name, in the order they are tried.
+     */
+    private final Map<String, SpectralGrid> grids = new LinkedHashMap<>();
+
+    /**
+     * Technique types each grid claims; empty for any technique.
+     */
+    private final Map<String, Set<String>> techniques = new LinkedHashMap<>();
+
+    /**
+     * X units each grid claims; empty for any units.
+     */
+    private final Map<String, Set<String>> units = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param defaultGrid Grid for spectra no other grid claims
+     */
+    public SpectralGrids(final SpectralGrid defaultGrid) {
+        grids.put(DEFAULT, defaultGrid);
+    }
+
+    /**
+     * Add a grid, tried after the grids already added.
+     *
+     * @param name          Name of the grid
+     * @param grid          The grid
+     * @param newTechniques Technique types the grid claims; empty for any
+     * @param newUnits      X units the grid claims; empty for any
+     */
+    public void add(
+        final String name,
+        final SpectralGrid grid,
+        final Collection<String> newTechniques,
+        final Collection<String> newUnits
+    ) {
+        if (grids.containsKey(name)) {
+            throw new IllegalArgumentException("Spectral grid " + name + " is already defined");
+        }
+        grids.put(name, grid);
+        techniques.put(name, new LinkedHashSet<>(newTechniques));
+        units.put(name, new LinkedHashSet<>(newUnits));
+    }
+
+    /**
+     * Choose the grid for a spectrum: the first grid claiming both its
+     * technique type and x units, or else the default grid.
+     *
+     * @param technique Technique type of the spectrum. May be null.
+     * @param xUnits    Units of the x values of the spectrum. May be null.
+     * @return Name of the grid
+     */
+    public String select(final String technique, final String xUnits) {
+        for (Map.Entry<String, Set<String>> entry : techniques.entrySet()) {
+            Set<String> claimedUnits = units.get(entry.getKey());
+            if ((entry.getValue().isEmpty() || entry.getValue().contains(technique))
+                && (claimedUnits.isEmpty() || claimedUnits.contains(xUnits))) {
+                return entry.getKey();
+            }
+        }
+        return DEFAULT;
+    }
+
+    /**
+     * @param name Name of a grid
+     * @return The grid, or null if there is none of that name
+     */
+    public SpectralGrid get(final String name) {
+        return grids.get(name);
+    }
+
+    /**
+     * @return Names of the grids, the default grid first
+     */
+    public Set<String> names() {
+        return Collections.unmodifiableSet(grids.keySet());
+    }
+
+    /**
+     * Checksum of every grid and what it claims. Vectors resampled under a
+     * different fingerprint may be on the wrong grid.
+     *
+     * @return The checksum
+     */
+    public long fingerprint() {
+        StringBuilder description = new StringBuilder();
+        for (Map.Entry<String, SpectralGrid> entry : grids.entrySet()) {
+            SpectralGrid grid = entry.getValue();
+            description.append(entry.getKey()).append('|')
+                .append(grid.getStart()).append('|')
+                .append(grid.getEnd()).append('|')
+                .append(grid.getPoints()).append('|')
+                .append(techniques.getOrDefault(entry.getKey(), Collections.emptySet()))
+                .append('|')
+                .append(units.getOrDefault(entry.getKey(), Collections.emptySet()))
+                .append('\n');
+        }
+        CRC32 crc = new CRC32();
+        crc.update(description.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+}
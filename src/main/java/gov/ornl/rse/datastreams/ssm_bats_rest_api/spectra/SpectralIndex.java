@@ -0,0 +1,289 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory index of unit length spectra, all resampled onto the same grid,
+ * answering exact top-k similarity queries by cosine or any other Scorer.
+ * Vectors are stored back to back in one float array so a query is a
+ * sequential scan, split into blocks scored in parallel. Safe for concurrent
+ * use.
+ */
+public final class SpectralIndex {
+
+    /**
+     * Vectors scanned by each parallel task.
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Vectors the store has room for when created.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * A Dataset matching a query.
+     */
+    public static final class Match {
+
+        /**
+         * UUID of the Dataset.
+         */
+        private final String id;
+
+        /**
+         * Score of the Dataset's spectrum against the query.
+         */
+        private final float score;
+
+        /**
+         * Constructor.
+         *
+         * @param newId    UUID of the Dataset
+         * @param newScore Score against the query
+         */
+        public Match(final String newId, final float newScore) {
+            this.id = newId;
+            this.score = newScore;
+        }
+
+        /**
+         * @return UUID of the Dataset
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return Score of the Dataset's spectrum against the query
+         */
+        public float getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Length of every vector.
+     */
+    private final int dimension;
+
+    /**
+     * Vectors stored back to back, one per slot.
+     */
+    private float[] vectors;
+
+    /**
+     * Dataset UUID stored in each slot, null for free slots.
+     */
+    private String[] ids;
+
+    /**
+     * Slot of each stored Dataset UUID.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Free slots below the high water mark, reused before new ones.
+     */
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * Number of slots ever used; slots from here on are unused.
+     */
+    private int used;
+
+    /**
+     * Guards the store: searches share it, updates are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Constructor.
+     *
+     * @param newDimension Length of every vector
+     */
+    public SpectralIndex(final int newDimension) {
+        this.dimension = newDimension;
+        this.vectors = new float[INITIAL_CAPACITY * newDimension];
+        this.ids = new String[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return Length of every vector
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return Number of vectors stored
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param id Dataset UUID
+     * @return True if the index holds a vector for the Dataset
+     */
+    public boolean contains(final String id) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Add or replace the vector of a Dataset.
+     *
+     * @param id     Dataset UUID
+     * @param vector Unit length vector of the index's dimension
+     */
+    public void put(final String id, final float[] vector) {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                "Vector has " + vector.length + " values; index expects " + dimension);
+        }
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                slot = free.isEmpty() ? used++ : free.pop();
+                if (slot == ids.length) {
+                    ids = Arrays.copyOf(ids, ids.length * 2);
+                    vectors = Arrays.copyOf(vectors, ids.length * dimension);
+                }
+                ids[slot] = id;
+                slots.put(id, slot);
+            }
+            System.arraycopy(vector, 0, vectors, slot * dimension, dimension);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the vector of a Dataset, if stored.
+     *
+     * @param id Dataset UUID
+     */
+    public void remove(final String id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot != null) {
+                ids[slot] = null; //NOPMD
+                free.push(slot);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Find the stored vectors most similar to a query by cosine similarity.
+     *
+     * @param query  Unit length vector of the index's dimension
+     * @param k      Most matches to return
+     * @param filter Which Dataset UUIDs may be returned
+     * @return Up to k matches, most similar first
+     */
+    public List<Match> search(final float[] query, final int k, final Predicate<String> filter) {
+        return search(query, k, Scorers.COSINE, filter);
+    }
+
+    /**
+     * Find the stored vectors scoring highest against a query.
+     *
+     * @param query  Unit length vector of the index's dimension
+     * @param k      Most matches to return
+     * @param scorer Similarity metric
+     * @param filter Which Dataset UUIDs may be returned
+     * @return Up to k matches, highest score first
+     */
+    public List<Match> search(
+        final float[] query,
+        final int k,
+        final Scorer scorer,
+        final Predicate<String> filter
+    ) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException(
+                "Query has " + query.length + " values; index expects " + dimension);
+        }
+        lock.readLock().lock();
+        try {
+            int blocks = (used + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            TopK best = IntStream.range(0, blocks)
+                .parallel()
+                .mapToObj(block -> scan(query, k, scorer, filter, block * BLOCK_SIZE,
+                    Math.min(used, (block + 1) * BLOCK_SIZE)))
+                // No identity: a shared one would be merged into from several threads
+                .reduce((merged, block) -> {
+                    merged.addAll(block);
+                    return merged;
+                })
+                .orElseGet(() -> new TopK(k));
+
+            int[] entries = best.entries();
+            float[] scores = best.scores();
+            List<Match> matches = new ArrayList<>(entries.length);
+            for (int i = 0; i < entries.length; i++) {
+                matches.add(new Match(ids[entries[i]], scores[i])); //NOPMD
+            }
+            return matches;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Score a range of slots against a query.
+     *
+     * @param query  Unit length query vector
+     * @param k      Most matches to keep
+     * @param scorer Similarity metric
+     * @param filter Which Dataset UUIDs may be kept
+     * @param from   First slot to score
+     * @param to     Slot after the last to score
+     * @return The best matches in the range
+     */
+    private TopK scan(
+        final float[] query,
+        final int k,
+        final Scorer scorer,
+        final Predicate<String> filter,
+        final int from,
+        final int to
+    ) {
+        TopK best = new TopK(k);
+        // Free slots are scored too, so the scorer sees one contiguous block
+        float[] scores = new float[to - from];
+        scorer.score(query, vectors, from * dimension, to - from, dimension, scores);
+        for (int slot = from; slot < to; slot++) {
+            float score = scores[slot - from];
+            // The filter may be a set lookup, so only test entries that would be kept
+            if (ids[slot] != null && score > best.threshold() && filter.test(ids[slot])) {
+                best.offer(slot, score);
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,136 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * The x and y values of a Dataset's spectrum with the metadata describing
+ * them. Points are ordered by increasing x. The arrays are shared, not copied,
+ * and must not be modified.
+ */
+public final class Spectrum implements SpectrumView {
+
+    /**
+     * Independent (x-axis) values in increasing order.
+     */
+    private final double[] x;
+
+    /**
+     * Dependent (y-axis) values for each x value.
+     */
+    private final double[] y;
+
+    /**
+     * Units of the x values, such as "qudt:PER-CentiM". May be null.
+     */
+    private final String xUnits;
+
+    /**
+     * Quantity of the x values, such as "wavenumbers". May be null.
+     */
+    private final String xQuantity;
+
+    /**
+     * Quantity of the y values, such as "intensity". May be null.
+     */
+    private final String yQuantity;
+
+    /**
+     * Technique type of the measurement, such as "obo:CHMO_0000228". May be null.
+     */
+    private final String technique;
+
+    /**
+     * Constructor.
+     *
+     * @param newX         Independent values in increasing order
+     * @param newY         Dependent value for each x value
+     * @param newXUnits    Units of the x values. May be null.
+     * @param newXQuantity Quantity of the x values. May be null.
+     * @param newYQuantity Quantity of the y values. May be null.
+     * @param newTechnique Technique type of the measurement. May be null.
+     */
+    public Spectrum(
+        final double[] newX,
+        final double[] newY,
+        final String newXUnits,
+        final String newXQuantity,
+        final String newYQuantity,
+        final String newTechnique
+    ) {
+        if (newX.length != newY.length) {
+            throw new IllegalArgumentException(
+                "Spectrum has " + newX.length + " x values but " + newY.length + " y values");
+        }
+        this.x = newX;
+        this.y = newY;
+        this.xUnits = newXUnits;
+        this.xQuantity = newXQuantity;
+        this.yQuantity = newYQuantity;
+        this.technique = newTechnique;
+    }
+
+    /**
+     * Constructor for a spectrum with no metadata, such as a search query.
+     *
+     * @param newX Independent values in increasing order
+     * @param newY Dependent value for each x value
+     */
+    public Spectrum(final double[] newX, final double[] newY) {
+        this(newX, newY, null, null, null, null);
+    }
+
+    /**
+     * @return Independent values in increasing order
+     */
+    public double[] getX() {
+        return x;
+    }
+
+    /**
+     * @return Dependent value for each x value
+     */
+    public double[] getY() {
+        return y;
+    }
+
+    @Override
+    public int size() {
+        return x.length;
+    }
+
+    @Override
+    public double getX(final int index) {
+        return x[index];
+    }
+
+    @Override
+    public double getY(final int index) {
+        return y[index];
+    }
+
+    /**
+     * @return Units of the x values. May be null.
+     */
+    public String getXUnits() {
+        return xUnits;
+    }
+
+    /**
+     * @return Quantity of the x values. May be null.
+     */
+    public String getXQuantity() {
+        return xQuantity;
+    }
+
+    /**
+     * @return Quantity of the y values. May be null.
+     */
+    public String getYQuantity() {
+        return yQuantity;
+    }
+
+    /**
+     * @return Technique type of the measurement. May be null.
+     */
+    public String getTechnique() {
+        return technique;
+    }
+}
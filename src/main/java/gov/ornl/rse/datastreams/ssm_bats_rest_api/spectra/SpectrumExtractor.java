@@ -0,0 +1,201 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads the spectrum out of a Dataset's SciData JSON-LD: the "x-axis" and
+ * "y-axis" dataseries of scidata.dataset and the technique type of the
+ * methodology.
+ */
+public final class SpectrumExtractor {
+
+    /**
+     * Class ObjectMapper.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Fewest points a spectrum can have.
+     */
+    private static final int MIN_POINTS = 2;
+
+    private SpectrumExtractor() {
+
+    }
+
+    /**
+     * Extract the spectrum from a Dataset's JSON-LD.
+     *
+     * @param jsonld JSON-LD of the Dataset
+     * @return The spectrum, or null if the Dataset does not have one
+     * @throws IOException If the JSON-LD could not be parsed
+     */
+    public static Spectrum fromJsonld(final String jsonld) throws IOException {
+        return fromJsonld(MAPPER.readTree(jsonld));
+    }
+
+    /**
+     * Extract the spectrum from a Dataset's JSON-LD.
+     *
+     * @param root Parsed JSON-LD of the Dataset
+     * @return The spectrum, or null if the Dataset does not have one
+     * @throws IOException If a value array could not be parsed
+     */
+    public static Spectrum fromJsonld(final JsonNode root) throws IOException {
+        JsonNode xSeries = null;
+        JsonNode ySeries = null;
+        for (JsonNode series : root.findValues("dataseries")) {
+            for (JsonNode entry : series.isArray() ? series : Arrays.asList(series)) {
+                String axis = entry.path("axis").asText();
+                if (xSeries == null && "x-axis".equals(axis)) {
+                    xSeries = entry.path("parameter");
+                } else if (ySeries == null && "y-axis".equals(axis)) {
+                    ySeries = entry.path("parameter");
+                }
+            }
+        }
+        if (xSeries == null || ySeries == null) {
+            return null;
+        }
+
+        return sorted(
+            values(xSeries.path("valuearray")),
+            values(ySeries.path("valuearray")),
+            text(xSeries.path("valuearray"), "unitref"),
+            text(xSeries, "quantity"),
+            text(ySeries, "quantity"),
+            text(root.findValue("techniqueType"))
+        );
+    }
+
+    /**
+     * Build a spectrum without metadata from x and y values in any order, such
+     * as a search query.
+     *
+     * @param x Independent values
+     * @param y Dependent value for each x value
+     * @return The spectrum, or null if it has fewer than two finite points
+     */
+    public static Spectrum fromArrays(final double[] x, final double[] y) {
+        return sorted(x, y, null, null, null, null);
+    }
+
+    /**
+     * Build a spectrum from x and y values in any order, with the metadata
+     * that chooses its grid.
+     *
+     * @param x         Independent values
+     * @param y         Dependent value for each x value
+     * @param xUnits    Units of the x values. May be null.
+     * @param technique Technique type of the measurement. May be null.
+     * @return The spectrum, or null if it has fewer than two finite points
+     */
+    public static Spectrum fromArrays(
+        final double[] x,
+        final double[] y,
+        final String xUnits,
+        final String technique
+    ) {
+        return sorted(x, y, xUnits, null, null, technique);
+    }
+
+    /**
+     * Build a spectrum from its finite points in order of increasing x.
+     *
+     * @param x         Independent values
+     * @param y         Dependent value for each x value
+     * @param xUnits    Units of the x values. May be null.
+     * @param xQuantity Quantity of the x values. May be null.
+     * @param yQuantity Quantity of the y values. May be null.
+     * @param technique Technique type of the measurement. May be null.
+     * @return The spectrum, or null if it has fewer than two finite points
+     */
+    private static Spectrum sorted(
+        final double[] x,
+        final double[] y,
+        final String xUnits,
+        final String xQuantity,
+        final String yQuantity,
+        final String technique
+    ) {
+        int size = Math.min(x.length, y.length);
+        List<double[]> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (Double.isFinite(x[i]) && Double.isFinite(y[i])) {
+                points.add(new double[] {x[i], y[i]}); //NOPMD
+            }
+        }
+        if (points.size() < MIN_POINTS) {
+            return null;
+        }
+        // Spectra are often recorded in decreasing x, such as Raman shifts
+        points.sort(Comparator.comparingDouble(point -> point[0]));
+
+        double[] sortedX = new double[points.size()];
+        double[] sortedY = new double[points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            sortedX[i] = points.get(i)[0];
+            sortedY[i] = points.get(i)[1];
+        }
+        return new Spectrum(sortedX, sortedY, xUnits, xQuantity, yQuantity, technique);
+    }
+
+    /**
+     * Read the numbers of a SciData value array. The numbers may be given as a
+     * "numberarray" or "dataarray", as JSON numbers or strings, or as a single
+     * string holding a JSON array.
+     *
+     * @param valueArray The valuearray node
+     * @return The numbers, NaN where a value is not a number
+     * @throws IOException If a string holding an array could not be parsed
+     */
+    private static double[] values(final JsonNode valueArray) throws IOException {
+        JsonNode array = valueArray.has("numberarray")
+            ? valueArray.get("numberarray") : valueArray.path("dataarray");
+        if (array.isTextual()) {
+            array = MAPPER.readTree(array.asText());
+        }
+        double[] values = new double[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            JsonNode value = array.get(i);
+            values[i] = value.isNumber() ? value.asDouble() : parse(value.asText());
+        }
+        return values;
+    }
+
+    /**
+     * @param text A number as text
+     * @return The number, or NaN if the text is not one
+     */
+    private static double parse(final String text) {
+        try {
+            return Double.parseDouble(text.trim());
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    /**
+     * @param node  Node to read a field of
+     * @param field Name of the field
+     * @return The text of the field, or null if it is not text
+     */
+    private static String text(final JsonNode node, final String field) {
+        return text(node.get(field));
+    }
+
+    /**
+     * @param value A node. May be null.
+     * @return The text of the node, or null if it is not text
+     */
+    private static String text(final JsonNode value) {
+        return value == null || !value.isTextual() ? null : value.asText();
+    }
+}
@@ -0,0 +1,197 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes spectra as binary records, so clients read their values without
+ * parsing text. Records are self-delimiting and may be concatenated.
+ *
+ * <p>
+ * All values are little-endian. The header length is a multiple of 8, so the
+ * values are aligned for reading in place, for example with NumPy:
+ * {@code numpy.frombuffer(record, "<f8", 2 * points, header)}. The magic
+ * number and version are those of this download format, separate from those
+ * of SpectrumStore's segment files, so either format can change on its own.
+ * </p>
+ * <pre>
+ *  record: int    "SSMR", as its four bytes in order
+ *          int    version, 1
+ *          int    number of points, 0 if the Dataset has no spectrum
+ *          int    bytes of the header, where the x values start
+ *          5 x    int length, -1 if absent, and that many bytes of UTF-8:
+ *                 Dataset UUID, technique type, x units, x quantity, y quantity
+ *                 zero bytes up to the header length
+ *          n x    double, the x values in increasing order
+ *          n x    double, the y value of each x value
+ * </pre>
+ */
+public final class SpectrumRecordWriter implements Flushable {
+
+    /**
+     * "SSMR" read as a little-endian int, the first int of a record.
+     */
+    private static final int MAGIC = 0x524D5353;
+
+    /**
+     * Version of the record format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes of the header before its strings.
+     */
+    private static final int PREFIX = 16;
+
+    /**
+     * Header lengths are a multiple of this.
+     */
+    private static final int ALIGNMENT = Double.BYTES;
+
+    /**
+     * Bytes buffered before writing to the stream.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Stream the records are written to.
+     */
+    private final OutputStream out;
+
+    /**
+     * Record bytes not yet written to the stream.
+     */
+    private final ByteBuffer buffer =
+        ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    /**
+     * Constructor.
+     *
+     * @param newOut Stream the records are written to; not closed
+     */
+    public SpectrumRecordWriter(final OutputStream newOut) {
+        this.out = newOut;
+    }
+
+    /**
+     * Write the record of a Dataset's spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The stored spectrum, or null or empty for a record
+     *                    with no points
+     * @throws IOException If the stream could not be written
+     */
+    public void write(final String datasetUUID, final StoredSpectrum spectrum)
+            throws IOException {
+        byte[][] strings = spectrum == null
+            ? new byte[][] {utf8(datasetUUID), null, null, null, null}
+            : new byte[][] {
+                utf8(datasetUUID),
+                utf8(spectrum.getTechnique()),
+                utf8(spectrum.getXUnits()),
+                utf8(spectrum.getXQuantity()),
+                utf8(spectrum.getYQuantity()),
+            };
+        int length = PREFIX;
+        for (byte[] string : strings) {
+            length += Integer.BYTES + (string == null ? 0 : string.length);
+        }
+        int headerLength = (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+
+        ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.putInt(spectrum == null ? 0 : spectrum.size()).putInt(headerLength);
+        for (byte[] string : strings) {
+            header.putInt(string == null ? -1 : string.length);
+            if (string != null) {
+                header.put(string);
+            }
+        }
+        put(header.array());
+        if (spectrum != null) {
+            put(spectrum.getXColumn());
+            put(spectrum.getYColumn());
+        }
+    }
+
+    /**
+     * Write the buffered records to the stream and flush it.
+     *
+     * @throws IOException If the stream could not be written
+     */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Buffer bytes.
+     *
+     * @param bytes The bytes
+     * @throws IOException If the stream could not be written
+     */
+    private void put(final byte[] bytes) throws IOException {
+        if (bytes.length > buffer.remaining()) {
+            drain();
+        }
+        if (bytes.length > buffer.remaining()) {
+            out.write(bytes);
+        } else {
+            buffer.put(bytes);
+        }
+    }
+
+    /**
+     * Buffer the values of a column as doubles, copying float64 columns in bulk.
+     *
+     * @param column The column
+     * @throws IOException If the stream could not be written
+     */
+    private void put(final StoredSpectrum.Column column) throws IOException {
+        if (column.isSinglePrecision()) {
+            for (int i = 0; i < column.size(); i++) {
+                if (buffer.remaining() < Double.BYTES) {
+                    drain();
+                }
+                buffer.putDouble(column.get(i));
+            }
+            return;
+        }
+        DoubleBuffer values = column.asDoubleBuffer();
+        while (values.hasRemaining()) {
+            if (buffer.remaining() < Double.BYTES) {
+                drain();
+            }
+            int count = Math.min(values.remaining(), buffer.remaining() / Double.BYTES);
+            DoubleBuffer chunk = values.slice();
+            chunk.limit(count);
+            buffer.asDoubleBuffer().put(chunk);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            values.position(values.position() + count);
+        }
+    }
+
+    /**
+     * Write the buffered bytes to the stream.
+     *
+     * @throws IOException If the stream could not be written
+     */
+    private void drain() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+
+    /**
+     * @param value A string. May be null.
+     * @return Its UTF-8 bytes, or null
+     */
+    private static byte[] utf8(final String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,770 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store of the spectra of Datasets in memory-mapped segment files,
+ * so numeric work reads x and y values in place instead of parsing JSON-LD.
+ *
+ * <p>
+ * Each segment file starts with the magic number "SSMS" and a format version,
+ * followed by records aligned to 8 bytes. All values are little-endian. A
+ * record is:
+ * </p>
+ * <pre>
+ *  int    length of the record in bytes, written last so a torn write is ignored
+ *  int    CRC32 of the rest of the record
+ *  byte   kind: 1 spectrum, 2 tombstone
+ *  byte   bytes per x value: 4 (float32) or 8 (float64)
+ *  byte   bytes per y value: 4 or 8
+ *  byte   unused
+ *  int    number of points, 0 for a Dataset without a spectrum
+ *  5 x    UTF-8 strings, each a short length (-1 for null) then its bytes:
+ *         Dataset UUID, technique, x units, x quantity, y quantity
+ *  ...    x column then y column, each starting on an 8 byte boundary
+ * </pre>
+ *
+ * <p>
+ * A column is float32 when every value converts to float and back exactly, and
+ * float64 otherwise. Replacing or removing a Dataset appends a new record, and
+ * the latest record of a Dataset wins when the files are read back on open.
+ * compact() rewrites segments that are mostly superseded records. Segments
+ * are never unmapped, so views returned by get() stay valid after compaction.
+ * </p>
+ *
+ * <p>
+ * Reads are lock free; writes and compaction are serialized.
+ * </p>
+ */
+public final class SpectrumStore implements Closeable {
+
+    /**
+     * "SSMS", the first int of every segment file.
+     */
+    private static final int MAGIC = 0x53534D53;
+
+    /**
+     * Version of the record format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes before the first record of a segment: magic number and version.
+     */
+    private static final int FILE_HEADER = 8;
+
+    /**
+     * Bytes of the fixed part of a record header.
+     */
+    private static final int RECORD_HEADER = 16;
+
+    /**
+     * Offset of the CRC32 in a record.
+     */
+    private static final int CRC_OFFSET = 4;
+
+    /**
+     * Offset of the first byte covered by the CRC32 in a record.
+     */
+    private static final int CHECKED_OFFSET = 8;
+
+    /**
+     * Offset of the kind in a record.
+     */
+    private static final int KIND_OFFSET = 8;
+
+    /**
+     * Offset of the bytes per x value in a record.
+     */
+    private static final int X_TYPE_OFFSET = 9;
+
+    /**
+     * Offset of the bytes per y value in a record.
+     */
+    private static final int Y_TYPE_OFFSET = 10;
+
+    /**
+     * Offset of the number of points in a record.
+     */
+    private static final int POINTS_OFFSET = 12;
+
+    /**
+     * Records and columns start on multiples of this many bytes.
+     */
+    private static final int ALIGNMENT = 8;
+
+    /**
+     * Record kind of a spectrum.
+     */
+    private static final byte KIND_SPECTRUM = 1;
+
+    /**
+     * Record kind of a tombstone, marking a removed Dataset.
+     */
+    private static final byte KIND_TOMBSTONE = 2;
+
+    /**
+     * Number of strings in a record.
+     */
+    private static final int STRINGS = 5;
+
+    /**
+     * Segments with less than this fraction of their bytes live are compacted.
+     */
+    private static final double COMPACTION_THRESHOLD = 0.5;
+
+    /**
+     * Prefix of segment file names.
+     */
+    private static final String FILE_PREFIX = "segment-";
+
+    /**
+     * Suffix of segment file names.
+     */
+    private static final String FILE_SUFFIX = ".dat";
+
+    /**
+     * A segment file, mapped into memory.
+     */
+    private static final class Segment {
+
+        /**
+         * Sequence number of the segment; later segments hold later records.
+         */
+        private final long number;
+
+        /**
+         * Path of the segment file.
+         */
+        private final Path path;
+
+        /**
+         * The mapped file, little-endian.
+         */
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Offset after the last record.
+         */
+        private int end = FILE_HEADER;
+
+        /**
+         * Bytes of records that are still current.
+         */
+        private long liveBytes;
+
+        /**
+         * Constructor.
+         *
+         * @param newNumber Sequence number of the segment
+         * @param newPath   Path of the segment file
+         * @param newBuffer The mapped file
+         */
+        Segment(final long newNumber, final Path newPath, final MappedByteBuffer newBuffer) {
+            this.number = newNumber;
+            this.path = newPath;
+            this.buffer = newBuffer;
+            newBuffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    /**
+     * Where the current record of a Dataset is.
+     */
+    private static final class Location {
+
+        /**
+         * Segment holding the record.
+         */
+        private final Segment segment;
+
+        /**
+         * Offset of the record in the segment.
+         */
+        private final int offset;
+
+        /**
+         * Length of the record in bytes.
+         */
+        private final int length;
+
+        /**
+         * The spectrum read from the record, null for a tombstone.
+         */
+        private final StoredSpectrum spectrum;
+
+        /**
+         * Constructor.
+         *
+         * @param newSegment  Segment holding the record
+         * @param newOffset   Offset of the record in the segment
+         * @param newLength   Length of the record in bytes
+         * @param newSpectrum The spectrum, null for a tombstone
+         */
+        Location(
+            final Segment newSegment,
+            final int newOffset,
+            final int newLength,
+            final StoredSpectrum newSpectrum
+        ) {
+            this.segment = newSegment;
+            this.offset = newOffset;
+            this.length = newLength;
+            this.spectrum = newSpectrum;
+        }
+    }
+
+    /**
+     * Directory holding the segment files.
+     */
+    private final Path directory;
+
+    /**
+     * Size in bytes of new segment files.
+     */
+    private final int segmentSize;
+
+    /**
+     * Segments, oldest first. The last is the one appended to.
+     */
+    private final List<Segment> segments = new ArrayList<>();
+
+    /**
+     * Current spectrum record of each stored Dataset.
+     */
+    private final Map<String, Location> records = new ConcurrentHashMap<>();
+
+    /**
+     * Tombstones of removed Datasets that may still have an older record in a
+     * segment on disk. Guarded by this.
+     */
+    private final Map<String, Location> tombstones = new HashMap<>();
+
+    /**
+     * Open the store in a directory, reading back any segments already there.
+     *
+     * @param newDirectory   Directory holding the segment files, created if missing
+     * @param newSegmentSize Size in bytes of new segment files
+     * @throws IOException If the directory or a segment could not be opened
+     */
+    public SpectrumStore(final Path newDirectory, final int newSegmentSize) throws IOException {
+        this.directory = newDirectory;
+        this.segmentSize = newSegmentSize;
+        Files.createDirectories(newDirectory);
+
+        List<Path> paths;
+        try (Stream<Path> files = Files.list(newDirectory)) {
+            paths = files
+                .filter(path -> path.getFileName().toString().startsWith(FILE_PREFIX)
+                    && path.getFileName().toString().endsWith(FILE_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+        for (Path path : paths) {
+            Segment segment = openSegment(path);
+            segments.add(segment);
+            recover(segment);
+        }
+        if (segments.isEmpty()) {
+            segments.add(createSegment(1, segmentSize));
+        }
+    }
+
+    /**
+     * @return Number of Datasets stored, including those without a spectrum
+     */
+    public int size() {
+        return records.size();
+    }
+
+    /**
+     * @return UUIDs of the stored Datasets, a live view
+     */
+    public Set<String> ids() {
+        return Collections.unmodifiableSet(records.keySet());
+    }
+
+    /**
+     * @param datasetUUID UUID of a Dataset
+     * @return True if the Dataset is stored, with or without a spectrum
+     */
+    public boolean contains(final String datasetUUID) {
+        return records.containsKey(datasetUUID);
+    }
+
+    /**
+     * Get a zero-copy view of a Dataset's spectrum.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The spectrum, empty if the Dataset was stored without one, or null
+     *         if the Dataset is not stored
+     */
+    public StoredSpectrum get(final String datasetUUID) {
+        Location location = records.get(datasetUUID);
+        return location == null ? null : location.spectrum;
+    }
+
+    /**
+     * Store or replace the spectrum of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The spectrum, or null to record the Dataset has none
+     * @return The stored spectrum
+     * @throws IOException If a new segment could not be created
+     */
+    public StoredSpectrum put(final String datasetUUID, final Spectrum spectrum)
+            throws IOException {
+        ByteBuffer record = encode(KIND_SPECTRUM, datasetUUID, spectrum);
+        synchronized (this) {
+            Location location = append(record);
+            release(records.put(datasetUUID, location));
+            release(tombstones.remove(datasetUUID));
+            return location.spectrum;
+        }
+    }
+
+    /**
+     * Remove a Dataset from the store.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return True if the Dataset was stored
+     * @throws IOException If a new segment could not be created
+     */
+    public boolean remove(final String datasetUUID) throws IOException {
+        synchronized (this) {
+            Location removed = records.remove(datasetUUID);
+            if (removed == null) {
+                return false;
+            }
+            release(removed);
+            release(tombstones.put(datasetUUID, append(encode(KIND_TOMBSTONE, datasetUUID, null))));
+            return true;
+        }
+    }
+
+    /**
+     * Rewrite the live records of every full segment that is mostly superseded
+     * records into the current segment, then delete it.
+     *
+     * @return Number of bytes of segment files deleted
+     * @throws IOException If a segment could not be created or deleted
+     */
+    public long compact() throws IOException {
+        List<Segment> candidates = new ArrayList<>();
+        synchronized (this) {
+            for (Segment segment : segments.subList(0, segments.size() - 1)) {
+                if (segment.liveBytes < (segment.end - FILE_HEADER) * COMPACTION_THRESHOLD) {
+                    candidates.add(segment);
+                }
+            }
+        }
+
+        long reclaimed = 0;
+        for (Segment segment : candidates) {
+            synchronized (this) {
+                if (segments.contains(segment)) {
+                    reclaimed += compact(segment);
+                }
+            }
+        }
+        return reclaimed;
+    }
+
+    /**
+     * @return Number of segment files
+     */
+    public int getSegmentCount() {
+        synchronized (this) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * Flush every segment to disk.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+            }
+        }
+    }
+
+    /**
+     * Move the live records of a segment to the current segment and delete it.
+     * Must hold the lock on this.
+     *
+     * @param segment Segment to compact, not the current one
+     * @return Size in bytes of the deleted segment file
+     * @throws IOException If a segment could not be created or deleted
+     */
+    private long compact(final Segment segment) throws IOException {
+        // Nothing older can be resurrected once the oldest segment is gone
+        boolean oldest = segments.get(0) == segment;
+        moveRecords(segment, records);
+        if (oldest) {
+            tombstones.values().removeIf(location -> location.segment == segment);
+        } else {
+            moveRecords(segment, tombstones);
+        }
+
+        // The moved records must be on disk before the only other copy is deleted
+        segments.get(segments.size() - 1).buffer.force();
+        segments.remove(segment);
+        long size = segment.buffer.capacity();
+        Files.delete(segment.path);
+        return size;
+    }
+
+    /**
+     * Copy the records of a map that are in a segment to the current segment.
+     *
+     * @param segment  Segment being compacted
+     * @param locations Records or tombstones, updated with the new locations
+     * @throws IOException If a new segment could not be created
+     */
+    private void moveRecords(final Segment segment, final Map<String, Location> locations)
+            throws IOException {
+        List<Map.Entry<String, Location>> moving = new ArrayList<>();
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            if (entry.getValue().segment == segment) {
+                moving.add(entry);
+            }
+        }
+        for (Map.Entry<String, Location> entry : moving) {
+            Location old = entry.getValue();
+            locations.put(entry.getKey(), append(slice(segment.buffer, old.offset, old.length)));
+        }
+    }
+
+    /**
+     * Append a record to the current segment, starting a new one if it is full.
+     * Must hold the lock on this.
+     *
+     * @param record The record, from position to limit
+     * @return Location of the appended record
+     * @throws IOException If a new segment could not be created
+     */
+    private Location append(final ByteBuffer record) throws IOException {
+        int length = record.remaining();
+        Segment segment = segments.get(segments.size() - 1);
+        if ((long) segment.end + length > segment.buffer.capacity()) {
+            segment = createSegment(segment.number + 1,
+                Math.max(segmentSize, FILE_HEADER + length));
+            segments.add(segment);
+        }
+
+        int offset = segment.end;
+        ByteBuffer target = segment.buffer.duplicate();
+        target.position(offset + Integer.BYTES);
+        ByteBuffer source = record.duplicate();
+        source.position(source.position() + Integer.BYTES);
+        target.put(source);
+        // Written last, so a partly written record is not read back
+        segment.buffer.putInt(offset, length);
+        segment.end = offset + length;
+        segment.liveBytes += length;
+        return decode(segment, offset, length);
+    }
+
+    /**
+     * Account for a record that is no longer current.
+     *
+     * @param location The record, may be null
+     */
+    private static void release(final Location location) {
+        if (location != null) {
+            location.segment.liveBytes -= location.length;
+        }
+    }
+
+    /**
+     * Read back the records of a segment, stopping at the first missing or
+     * damaged one.
+     *
+     * @param segment Segment to read
+     */
+    private void recover(final Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int offset = FILE_HEADER;
+        while (offset + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < RECORD_HEADER || length % ALIGNMENT != 0
+                || (long) offset + length > buffer.capacity()
+                || buffer.getInt(offset + CRC_OFFSET) != checksum(buffer, offset, length)) {
+                break;
+            }
+
+            Location location = decode(segment, offset, length);
+            segment.liveBytes += length;
+            String datasetUUID = readStrings(buffer, offset)[0];
+            if (location.spectrum == null) {
+                release(records.remove(datasetUUID));
+                release(tombstones.put(datasetUUID, location));
+            } else {
+                release(records.put(datasetUUID, location));
+                release(tombstones.remove(datasetUUID));
+            }
+            offset += length;
+        }
+        segment.end = offset;
+    }
+
+    /**
+     * Read a record.
+     *
+     * @param segment Segment holding the record
+     * @param offset  Offset of the record
+     * @param length  Length of the record
+     * @return Location of the record, with its spectrum unless it is a tombstone
+     */
+    private static Location decode(final Segment segment, final int offset, final int length) {
+        ByteBuffer buffer = segment.buffer;
+        if (buffer.get(offset + KIND_OFFSET) == KIND_TOMBSTONE) {
+            return new Location(segment, offset, length, null);
+        }
+
+        int xType = buffer.get(offset + X_TYPE_OFFSET);
+        int yType = buffer.get(offset + Y_TYPE_OFFSET);
+        int points = buffer.getInt(offset + POINTS_OFFSET);
+        String[] strings = readStrings(buffer, offset);
+        int xOffset = offset + align(RECORD_HEADER + encodedLength(strings));
+        int yOffset = xOffset + align(points * xType);
+        StoredSpectrum spectrum = new StoredSpectrum(
+            new StoredSpectrum.Column(slice(buffer, xOffset, points * xType), xType == Float.BYTES),
+            new StoredSpectrum.Column(slice(buffer, yOffset, points * yType), yType == Float.BYTES),
+            strings[2],
+            strings[3],
+            strings[4],
+            strings[1]
+        );
+        return new Location(segment, offset, length, spectrum);
+    }
+
+    /**
+     * Encode a record.
+     *
+     * @param kind        Kind of record
+     * @param datasetUUID UUID of the Dataset
+     * @param spectrum    The spectrum, null for a tombstone or a Dataset without one
+     * @return The record, ready to append
+     */
+    private static ByteBuffer encode(
+        final byte kind,
+        final String datasetUUID,
+        final Spectrum spectrum
+    ) {
+        int points = spectrum == null ? 0 : spectrum.size();
+        int xType = spectrum != null && fitsFloat(spectrum.getX()) ? Float.BYTES : Double.BYTES;
+        int yType = spectrum != null && fitsFloat(spectrum.getY()) ? Float.BYTES : Double.BYTES;
+        String[] strings = spectrum == null
+            ? new String[] {datasetUUID, null, null, null, null}
+            : new String[] {datasetUUID, spectrum.getTechnique(), spectrum.getXUnits(),
+                spectrum.getXQuantity(), spectrum.getYQuantity()};
+        int xOffset = align(RECORD_HEADER + encodedLength(strings));
+        int yOffset = xOffset + align(points * xType);
+        int length = yOffset + align(points * yType);
+
+        ByteBuffer record = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        record.putInt(length);
+        record.putInt(0);
+        record.put(kind);
+        record.put((byte) xType);
+        record.put((byte) yType);
+        record.put((byte) 0);
+        record.putInt(points);
+        for (String string : strings) {
+            if (string == null) {
+                record.putShort((short) -1);
+            } else {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                record.putShort((short) bytes.length);
+                record.put(bytes);
+            }
+        }
+        if (spectrum != null) {
+            putColumn(record, xOffset, spectrum.getX(), xType);
+            putColumn(record, yOffset, spectrum.getY(), yType);
+        }
+        record.putInt(CRC_OFFSET, checksum(record, 0, length));
+        record.clear();
+        return record;
+    }
+
+    /**
+     * Write a column into a record.
+     *
+     * @param record Record being encoded
+     * @param offset Offset of the column in the record
+     * @param values Values of the column
+     * @param type   Bytes per value
+     */
+    private static void putColumn(
+        final ByteBuffer record,
+        final int offset,
+        final double[] values,
+        final int type
+    ) {
+        record.position(offset);
+        for (double value : values) {
+            if (type == Float.BYTES) {
+                record.putFloat((float) value);
+            } else {
+                record.putDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Read the strings of a record.
+     *
+     * @param buffer Buffer holding the record
+     * @param offset Offset of the record
+     * @return The strings, in record order
+     */
+    private static String[] readStrings(final ByteBuffer buffer, final int offset) {
+        ByteBuffer reader = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        reader.position(offset + RECORD_HEADER);
+        String[] strings = new String[STRINGS];
+        for (int i = 0; i < STRINGS; i++) {
+            int length = reader.getShort();
+            if (length >= 0) {
+                byte[] bytes = new byte[length]; //NOPMD
+                reader.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8); //NOPMD
+            }
+        }
+        return strings;
+    }
+
+    /**
+     * @param strings Strings of a record, may contain nulls
+     * @return Bytes taken by the strings in a record
+     * @throws IllegalArgumentException If a string is too long to store
+     */
+    private static int encodedLength(final String[] strings) {
+        int length = 0;
+        for (String string : strings) {
+            length += Short.BYTES;
+            if (string != null) {
+                int bytes = string.getBytes(StandardCharsets.UTF_8).length;
+                if (bytes > Short.MAX_VALUE) {
+                    throw new IllegalArgumentException("Spectrum metadata is too long to store");
+                }
+                length += bytes;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @param values Values of a column
+     * @return True if every value is exactly representable as a float
+     */
+    private static boolean fitsFloat(final double[] values) {
+        for (double value : values) {
+            if ((double) (float) value != value) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param length A length in bytes
+     * @return The length rounded up to the alignment
+     */
+    private static int align(final int length) {
+        return (length + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * @param buffer Buffer holding a record
+     * @param offset Offset of the record
+     * @param length Length of the record
+     * @return CRC32 of the bytes of the record it covers
+     */
+    private static int checksum(final ByteBuffer buffer, final int offset, final int length) {
+        CRC32 crc = new CRC32();
+        crc.update(slice(buffer, offset + CHECKED_OFFSET, length - CHECKED_OFFSET));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @param buffer Buffer to take a view of
+     * @param offset Offset of the view
+     * @param length Length of the view
+     * @return Read-only little-endian view of the bytes
+     */
+    private static ByteBuffer slice(final ByteBuffer buffer, final int offset, final int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view.slice().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Create and map a new segment file.
+     *
+     * @param number   Sequence number of the segment
+     * @param capacity Size of the file in bytes
+     * @return The segment
+     * @throws IOException If the file could not be created
+     */
+    private Segment createSegment(final long number, final int capacity) throws IOException {
+        Path path = directory.resolve(String.format("%s%012d%s", FILE_PREFIX, number, FILE_SUFFIX));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+        Segment segment = new Segment(number, path, buffer);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(Integer.BYTES, VERSION);
+        return segment;
+    }
+
+    /**
+     * Map an existing segment file.
+     *
+     * @param path Path of the file
+     * @return The segment
+     * @throws IOException If the file could not be mapped or is not a segment
+     */
+    private static Segment openSegment(final Path path) throws IOException {
+        String name = path.getFileName().toString();
+        long number = Long.parseLong(
+            name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        Segment segment = new Segment(number, path, buffer);
+        if (buffer.capacity() < FILE_HEADER || buffer.getInt(0) != MAGIC
+            || buffer.getInt(Integer.BYTES) != VERSION) {
+            throw new IOException("Not a spectrum store segment: " + path);
+        }
+        return segment;
+    }
+}
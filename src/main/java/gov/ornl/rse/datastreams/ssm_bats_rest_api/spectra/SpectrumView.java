@@ -0,0 +1,25 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+/**
+ * Read access to the points of a spectrum, in order of increasing x, whether
+ * held in arrays or read in place from the spectrum store.
+ */
+public interface SpectrumView {
+
+    /**
+     * @return Number of points in the spectrum
+     */
+    int size();
+
+    /**
+     * @param index Index of a point
+     * @return Independent (x-axis) value of the point
+     */
+    double getX(int index);
+
+    /**
+     * @param index Index of a point
+     * @return Dependent (y-axis) value of the point
+     */
+    double getY(int index);
+}
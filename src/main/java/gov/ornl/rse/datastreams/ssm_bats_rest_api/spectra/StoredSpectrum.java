@@ -0,0 +1,225 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A spectrum read in place from the spectrum store. Its columns are read-only
+ * views of the memory-mapped store file, so reading them copies nothing. A
+ * Dataset stored without a spectrum has no points.
+ */
+public final class StoredSpectrum implements SpectrumView {
+
+    /**
+     * One axis of a stored spectrum, held as float64 or, when every value fits
+     * exactly, float32.
+     */
+    public static final class Column {
+
+        /**
+         * Little-endian values of the column.
+         */
+        private final ByteBuffer bytes;
+
+        /**
+         * True if values are float32, false if float64.
+         */
+        private final boolean singlePrecision;
+
+        /**
+         * Constructor.
+         *
+         * @param newBytes           Read-only little-endian values
+         * @param newSinglePrecision True if values are float32, false if float64
+         */
+        Column(final ByteBuffer newBytes, final boolean newSinglePrecision) {
+            this.bytes = newBytes;
+            this.singlePrecision = newSinglePrecision;
+        }
+
+        /**
+         * @return True if values are float32, false if float64
+         */
+        public boolean isSinglePrecision() {
+            return singlePrecision;
+        }
+
+        /**
+         * @return Read-only view of float64 values
+         * @throws IllegalStateException If the values are float32
+         */
+        public DoubleBuffer asDoubleBuffer() {
+            if (singlePrecision) {
+                throw new IllegalStateException("Column holds float32 values");
+            }
+            return bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        }
+
+        /**
+         * @return Read-only view of float32 values
+         * @throws IllegalStateException If the values are float64
+         */
+        public FloatBuffer asFloatBuffer() {
+            if (!singlePrecision) {
+                throw new IllegalStateException("Column holds float64 values");
+            }
+            return bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        }
+
+        /**
+         * @param index Index of a value
+         * @return The value, widened to double
+         */
+        public double get(final int index) {
+            return singlePrecision
+                ? bytes.getFloat(index * Float.BYTES) : bytes.getDouble(index * Double.BYTES);
+        }
+
+        /**
+         * @return Copy of the values as doubles
+         */
+        public double[] toArray() {
+            double[] values = new double[size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = get(i);
+            }
+            return values;
+        }
+
+        /**
+         * @return Number of values
+         */
+        public int size() {
+            return bytes.capacity() / (singlePrecision ? Float.BYTES : Double.BYTES);
+        }
+    }
+
+    /**
+     * Independent (x-axis) values in increasing order.
+     */
+    private final Column x;
+
+    /**
+     * Dependent (y-axis) value for each x value.
+     */
+    private final Column y;
+
+    /**
+     * Units of the x values. May be null.
+     */
+    private final String xUnits;
+
+    /**
+     * Quantity of the x values. May be null.
+     */
+    private final String xQuantity;
+
+    /**
+     * Quantity of the y values. May be null.
+     */
+    private final String yQuantity;
+
+    /**
+     * Technique type of the measurement. May be null.
+     */
+    private final String technique;
+
+    /**
+     * Constructor.
+     *
+     * @param newX         Independent values in increasing order
+     * @param newY         Dependent value for each x value
+     * @param newXUnits    Units of the x values. May be null.
+     * @param newXQuantity Quantity of the x values. May be null.
+     * @param newYQuantity Quantity of the y values. May be null.
+     * @param newTechnique Technique type of the measurement. May be null.
+     */
+    StoredSpectrum(
+        final Column newX,
+        final Column newY,
+        final String newXUnits,
+        final String newXQuantity,
+        final String newYQuantity,
+        final String newTechnique
+    ) {
+        this.x = newX;
+        this.y = newY;
+        this.xUnits = newXUnits;
+        this.xQuantity = newXQuantity;
+        this.yQuantity = newYQuantity;
+        this.technique = newTechnique;
+    }
+
+    /**
+     * @return Independent values in increasing order
+     */
+    public Column getXColumn() {
+        return x;
+    }
+
+    /**
+     * @return Dependent value for each x value
+     */
+    public Column getYColumn() {
+        return y;
+    }
+
+    @Override
+    public int size() {
+        return x.size();
+    }
+
+    /**
+     * @return True if the Dataset was stored without a spectrum
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public double getX(final int index) {
+        return x.get(index);
+    }
+
+    @Override
+    public double getY(final int index) {
+        return y.get(index);
+    }
+
+    /**
+     * @return Units of the x values. May be null.
+     */
+    public String getXUnits() {
+        return xUnits;
+    }
+
+    /**
+     * @return Quantity of the x values. May be null.
+     */
+    public String getXQuantity() {
+        return xQuantity;
+    }
+
+    /**
+     * @return Quantity of the y values. May be null.
+     */
+    public String getYQuantity() {
+        return yQuantity;
+    }
+
+    /**
+     * @return Technique type of the measurement. May be null.
+     */
+    public String getTechnique() {
+        return technique;
+    }
+
+    /**
+     * @return Copy of the spectrum in arrays
+     */
+    public Spectrum toSpectrum() {
+        return new Spectrum(x.toArray(), y.toArray(), xUnits, xQuantity, yQuantity, technique);
+    }
+}
@@ -0,0 +1,146 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the k highest scoring entries offered to it, as a binary min-heap on
+ * primitive arrays so offering a score allocates nothing. Not thread safe.
+ */
+public final class TopK {
+
+    /**
+     * Scores of the kept entries, in heap order.
+     */
+    private final float[] heapScores;
+
+    /**
+     * Entries kept, in heap order alongside their scores.
+     */
+    private final int[] heapEntries;
+
+    /**
+     * Number of entries kept.
+     */
+    private int count;
+
+    /**
+     * Constructor.
+     *
+     * @param k Most entries to keep, at least one
+     */
+    public TopK(final int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        this.heapScores = new float[k];
+        this.heapEntries = new int[k];
+    }
+
+    /**
+     * @return Number of entries kept
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return Lowest score that would currently be kept by offer
+     */
+    public float threshold() {
+        return count < heapScores.length ? Float.NEGATIVE_INFINITY : heapScores[0];
+    }
+
+    /**
+     * Offer an entry, keeping it if it is among the k highest scores so far.
+     *
+     * @param entry Entry to offer
+     * @param score Score of the entry
+     */
+    public void offer(final int entry, final float score) {
+        if (count < heapScores.length) {
+            int child = count++;
+            // Sift up
+            while (child > 0) {
+                int parent = (child - 1) >>> 1;
+                if (heapScores[parent] <= score) {
+                    break;
+                }
+                heapScores[child] = heapScores[parent];
+                heapEntries[child] = heapEntries[parent];
+                child = parent;
+            }
+            heapScores[child] = score;
+            heapEntries[child] = entry;
+        } else if (score > heapScores[0]) {
+            replaceLowest(entry, score);
+        }
+    }
+
+    /**
+     * Offer every entry kept by another TopK.
+     *
+     * @param other TopK to merge into this one
+     */
+    public void addAll(final TopK other) {
+        for (int i = 0; i < other.count; i++) {
+            offer(other.heapEntries[i], other.heapScores[i]);
+        }
+    }
+
+    /**
+     * @return Entries kept, highest score first
+     */
+    public int[] entries() {
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(heapScores[b], heapScores[a]));
+        int[] sorted = new int[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = heapEntries[order[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * @return Scores kept, highest first, in the same order as entries()
+     */
+    public float[] scores() {
+        float[] sorted = Arrays.copyOf(heapScores, count);
+        Arrays.sort(sorted);
+        for (int i = 0; i < count / 2; i++) {
+            float swap = sorted[i];
+            sorted[i] = sorted[count - 1 - i];
+            sorted[count - 1 - i] = swap;
+        }
+        return sorted;
+    }
+
+    /**
+     * Replace the lowest scoring entry and restore heap order.
+     *
+     * @param entry Entry to keep
+     * @param score Score of the entry
+     */
+    private void replaceLowest(final int entry, final float score) {
+        int parent = 0;
+        while (true) {
+            int child = 2 * parent + 1;
+            if (child >= count) {
+                break;
+            }
+            if (child + 1 < count && heapScores[child + 1] < heapScores[child]) {
+                child++;
+            }
+            if (score <= heapScores[child]) {
+                break;
+            }
+            heapScores[parent] = heapScores[child];
+            heapEntries[parent] = heapEntries[child];
+            parent = child;
+        }
+        heapScores[parent] = score;
+        heapEntries[parent] = entry;
+    }
+}
@@ -0,0 +1,382 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * File of fixed-length float vectors keyed by Dataset UUID, holding the
+ * spectra resampled onto one grid so they are not resampled again.
+ *
+ * <p>
+ * The file starts with a header, followed by one fixed-size record per slot.
+ * All values are little-endian.
+ * </p>
+ * <pre>
+ *  header: int "SSMV", int version, int dimension, int unused, long fingerprint
+ *  record: int    length of the UTF-8 Dataset UUID, 0 for a free slot
+ *          int    CRC32 of the UUID bytes and the vector
+ *          64 x   byte, the UUID padded with zeros
+ *          dim x  float, the vector
+ * </pre>
+ *
+ * <p>
+ * A record is written vector first, and a record whose CRC32 does not match is
+ * treated as a free slot when the file is opened. The fingerprint identifies
+ * the grids the vectors were resampled for; a file with another fingerprint or
+ * dimension is emptied on open. Safe for concurrent use.
+ * </p>
+ */
+public final class VectorStore implements Closeable {
+
+    /**
+     * "SSMV", the first int of the file.
+     */
+    private static final int MAGIC = 0x53534D56;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Bytes of the file header.
+     */
+    private static final int FILE_HEADER = 24;
+
+    /**
+     * Offset of the dimension in the file header.
+     */
+    private static final int DIMENSION_OFFSET = 8;
+
+    /**
+     * Offset of the fingerprint in the file header.
+     */
+    private static final int FINGERPRINT_OFFSET = 16;
+
+    /**
+     * Longest Dataset UUID in bytes.
+     */
+    private static final int MAX_KEY = 64;
+
+    /**
+     * Bytes of a record before its vector.
+     */
+    private static final int RECORD_HEADER = 8 + MAX_KEY;
+
+    /**
+     * Records read at a time when the file is opened.
+     */
+    private static final int READ_BATCH = 256;
+
+    /**
+     * Length of every vector.
+     */
+    private final int dimension;
+
+    /**
+     * Bytes of each record.
+     */
+    private final int recordSize;
+
+    /**
+     * The open file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * True if the file was created or emptied when opened.
+     */
+    private final boolean fresh;
+
+    /**
+     * Slot of each stored Dataset UUID.
+     */
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Free slots below the high water mark, reused before new ones.
+     */
+    private final Deque<Integer> free = new ArrayDeque<>();
+
+    /**
+     * Number of slots in the file.
+     */
+    private int used;
+
+    /**
+     * Guards the slots: reads share it, writes are exclusive.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Open the store, reading back the UUIDs already in the file.
+     *
+     * @param path         The file, created if missing
+     * @param newDimension Length of every vector
+     * @param fingerprint  Identifies the grids the vectors are resampled for
+     * @throws IOException If the file could not be opened
+     */
+    public VectorStore(final Path path, final int newDimension, final long fingerprint)
+            throws IOException {
+        this.dimension = newDimension;
+        this.recordSize = RECORD_HEADER + newDimension * Float.BYTES;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        boolean matches = channel.size() >= FILE_HEADER
+            && channel.read(header, 0) == FILE_HEADER
+            && header.getInt(0) == MAGIC
+            && header.getInt(Integer.BYTES) == VERSION
+            && header.getInt(DIMENSION_OFFSET) == newDimension
+            && header.getLong(FINGERPRINT_OFFSET) == fingerprint;
+        this.fresh = !matches;
+        if (fresh) {
+            channel.truncate(0);
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putInt(newDimension).putInt(0)
+                .putLong(fingerprint).flip();
+            channel.write(header, 0);
+        } else {
+            recover();
+        }
+    }
+
+    /**
+     * @return Length of every vector
+     */
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * @return True if the file was created or emptied when opened, so its
+     *         vectors need to be computed again
+     */
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    /**
+     * @return Number of vectors stored
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param datasetUUID UUID of a Dataset
+     * @return True if the store holds a vector for the Dataset
+     */
+    public boolean contains(final String datasetUUID) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(datasetUUID);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Read the vector of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return The vector, or null if none is stored
+     * @throws IOException If the file could not be read
+     */
+    public float[] get(final String datasetUUID) throws IOException {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(datasetUUID);
+            if (slot == null) {
+                return null;
+            }
+            ByteBuffer bytes = ByteBuffer.allocate(dimension * Float.BYTES)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            readFully(bytes, offset(slot) + RECORD_HEADER);
+            float[] vector = new float[dimension];
+            bytes.flip();
+            bytes.asFloatBuffer().get(vector);
+            return vector;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store or replace the vector of a Dataset.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @param vector      Vector of the store's dimension
+     * @throws IOException If the file could not be written
+     */
+    public void put(final String datasetUUID, final float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException(
+                "Vector has " + vector.length + " values; store expects " + dimension);
+        }
+        byte[] key = datasetUUID.getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || key.length > MAX_KEY) {
+            throw new IllegalArgumentException("Dataset UUID must be 1 to " + MAX_KEY + " bytes");
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordSize).order(ByteOrder.LITTLE_ENDIAN);
+        record.position(Integer.BYTES * 2);
+        record.put(key);
+        record.position(RECORD_HEADER);
+        record.asFloatBuffer().put(vector);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), Integer.BYTES * 2, recordSize - Integer.BYTES * 2);
+        record.putInt(0, key.length);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(datasetUUID);
+            if (slot == null) {
+                slot = free.isEmpty() ? used++ : free.pop();
+            }
+            long offset = offset(slot);
+            // Vector before the key, so a torn write fails the CRC32 check
+            record.position(Integer.BYTES * 2);
+            writeFully(record, offset + Integer.BYTES * 2);
+            record.clear().limit(Integer.BYTES * 2);
+            writeFully(record, offset);
+            slots.put(datasetUUID, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the vector of a Dataset, if stored.
+     *
+     * @param datasetUUID UUID of the Dataset
+     * @return True if a vector was stored
+     * @throws IOException If the file could not be written
+     */
+    public boolean remove(final String datasetUUID) throws IOException {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(datasetUUID);
+            if (slot == null) {
+                return false;
+            }
+            ByteBuffer freed = ByteBuffer.allocate(Integer.BYTES);
+            writeFully(freed, offset(slot));
+            free.push(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Flush the file to disk and close it.
+     *
+     * @throws IOException If the file could not be flushed
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Read back the slots of the file.
+     *
+     * @throws IOException If the file could not be read
+     */
+    private void recover() throws IOException {
+        used = (int) ((channel.size() - FILE_HEADER) / recordSize);
+        ByteBuffer batch = ByteBuffer.allocate(recordSize * READ_BATCH)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        for (int first = 0; first < used; first += READ_BATCH) {
+            int count = Math.min(READ_BATCH, used - first);
+            batch.clear().limit(count * recordSize);
+            readFully(batch, offset(first));
+            for (int i = 0; i < count; i++) {
+                int start = i * recordSize;
+                int length = batch.getInt(start);
+                crc.reset();
+                crc.update(batch.array(), start + Integer.BYTES * 2,
+                    recordSize - Integer.BYTES * 2);
+                if (length <= 0 || length > MAX_KEY
+                    || batch.getInt(start + Integer.BYTES) != (int) crc.getValue()) {
+                    free.push(first + i);
+                    continue;
+                }
+                String datasetUUID = new String(batch.array(), start + Integer.BYTES * 2, //NOPMD
+                    length, StandardCharsets.UTF_8);
+                Integer previous = slots.put(datasetUUID, first + i);
+                if (previous != null) {
+                    free.push(previous);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param slot A slot
+     * @return Offset of the slot's record in the file
+     */
+    private long offset(final int slot) {
+        return FILE_HEADER + (long) slot * recordSize;
+    }
+
+    /**
+     * Fill a buffer from the file.
+     *
+     * @param buffer   Buffer to fill up to its limit
+     * @param position Offset in the file to read from
+     * @throws IOException If the file ends first or could not be read
+     */
+    private void readFully(final ByteBuffer buffer, final long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, at);
+            if (read < 0) {
+                throw new IOException("Vector store file ends at " + at);
+            }
+            at += read;
+        }
+    }
+
+    /**
+     * Write a buffer to the file.
+     *
+     * @param buffer   Buffer to write up to its limit
+     * @param position Offset in the file to write at
+     * @throws IOException If the file could not be written
+     */
+    private void writeFully(final ByteBuffer buffer, final long position) throws IOException {
+        long at = position;
+        while (buffer.hasRemaining()) {
+            at += channel.write(buffer, at);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+/**
+ * Numeric handling of the spectra in Datasets: extraction from JSON-LD, a
+ * memory-mapped columnar store, resampling onto per-technique grids, stored
+ * vectors, peak detection, downsampled previews, the exact, approximate and
+ * peak indexes searched and the bitmap index of spectrum metadata they are
+ * filtered by.
+ */
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
@@ -0,0 +1,124 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal circuit breaker for calls to a backing service.
+ *
+ * <p>
+ * After a number of consecutive failures the circuit opens and calls are
+ * rejected immediately. Once the open duration passes, a single trial call
+ * is let through; success closes the circuit, failure opens it again.
+ * </p>
+ */
+public class CircuitBreaker {
+
+    /**
+     * Value of openedAt while the circuit is closed.
+     */
+    private static final long CLOSED = -1L;
+
+    /**
+     * Consecutive failures that open the circuit.
+     */
+    private final int failureThreshold;
+
+    /**
+     * Milliseconds the circuit stays open before a trial call is allowed.
+     */
+    private final long openDurationMs;
+
+    /**
+     * Source of the current time in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Count of consecutive failures.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    /**
+     * Time the circuit was opened, or CLOSED.
+     */
+    private final AtomicLong openedAt = new AtomicLong(CLOSED);
+
+    /**
+     * Whether a trial call is in flight while the circuit is half-open.
+     */
+    private final AtomicBoolean trialInFlight = new AtomicBoolean();
+
+    /**
+     * Create a circuit breaker using the system clock.
+     *
+     * @param threshold      Consecutive failures that open the circuit
+     * @param openDuration   Milliseconds to stay open before a trial call
+     */
+    public CircuitBreaker(final int threshold, final long openDuration) {
+        this(threshold, openDuration, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a circuit breaker with a given clock.
+     *
+     * @param threshold      Consecutive failures that open the circuit
+     * @param openDuration   Milliseconds to stay open before a trial call
+     * @param timeSource     Current time in milliseconds
+     */
+    public CircuitBreaker(
+        final int threshold,
+        final long openDuration,
+        final LongSupplier timeSource
+    ) {
+        this.failureThreshold = Math.max(1, threshold);
+        this.openDurationMs = openDuration;
+        this.clock = timeSource;
+    }
+
+    /**
+     * Check if a call may proceed. Callers that get true must report the
+     * outcome with {@link #onSuccess()} or {@link #onFailure()}.
+     *
+     * @return True if the call may proceed, false if it should fail fast
+     */
+    public boolean tryAcquire() {
+        long opened = openedAt.get();
+        if (opened == CLOSED) {
+            return true;
+        }
+        if (clock.getAsLong() - opened < openDurationMs) {
+            return false;
+        }
+        return trialInFlight.compareAndSet(false, true);
+    }
+
+    /**
+     * Record a successful call, closing the circuit.
+     */
+    public void onSuccess() {
+        failures.set(0);
+        openedAt.set(CLOSED);
+        trialInFlight.set(false);
+    }
+
+    /**
+     * Record a failed call, opening the circuit once the threshold is reached.
+     */
+    public void onFailure() {
+        int count = failures.incrementAndGet();
+        if (count >= failureThreshold || openedAt.get() != CLOSED) {
+            openedAt.set(clock.getAsLong());
+            trialInFlight.set(false);
+        }
+    }
+
+    /**
+     * @return True if the circuit is open or half-open
+     */
+    public boolean isOpen() {
+        return openedAt.get() != CLOSED;
+    }
+}
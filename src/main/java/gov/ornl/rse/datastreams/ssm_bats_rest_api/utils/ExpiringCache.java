@@ -0,0 +1,209 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe, size bounded in-memory cache whose entries expire after a time-to-live.
+ * The least recently used entry is evicted once the cache is full.
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class ExpiringCache<K, V> {
+
+    /**
+     * Cached value along with its expiration time.
+     *
+     * @param <V> Value type
+     */
+    private static final class Entry<V> {
+        /**
+         * Cached value.
+         */
+        private final V value;
+
+        /**
+         * Time in milliseconds the value expires.
+         */
+        private final long expiresAt;
+
+        /**
+         * Create a cache entry.
+         *
+         * @param cachedValue Value to cache
+         * @param expiration  Time in milliseconds the value expires
+         */
+        Entry(final V cachedValue, final long expiration) {
+            this.value = cachedValue;
+            this.expiresAt = expiration;
+        }
+    }
+
+    /**
+     * Default time-to-live of entries in milliseconds.
+     */
+    private final long defaultTtlMs;
+
+    /**
+     * Source of the current time in milliseconds.
+     */
+    private final LongSupplier clock;
+
+    /**
+     * Entries in least recently used order; guarded by itself.
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Number of lookups that found a live entry.
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of lookups that found no live entry.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Create a cache using the system clock.
+     *
+     * @param maxSize Maximum number of entries
+     * @param ttlMs   Default time-to-live of entries in milliseconds
+     */
+    public ExpiringCache(final int maxSize, final long ttlMs) {
+        this(maxSize, ttlMs, System::currentTimeMillis);
+    }
+
+    /**
+     * Create a cache with a given clock.
+     *
+     * @param maxSize    Maximum number of entries
+     * @param ttlMs      Default time-to-live of entries in milliseconds
+     * @param timeSource Current time in milliseconds
+     */
+    public ExpiringCache(final int maxSize, final long ttlMs, final LongSupplier timeSource) {
+        this.defaultTtlMs = ttlMs;
+        this.clock = timeSource;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a live value from the cache.
+     *
+     * @param key Key to look up
+     *
+     * @return Cached value, or null if missing or expired
+     */
+    public V get(final K key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt > clock.getAsLong()) {
+                hits.incrementAndGet();
+                return entry.value;
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Put a value in the cache with the default time-to-live.
+     *
+     * @param key   Key to store the value under
+     * @param value Value to cache
+     */
+    public void put(final K key, final V value) {
+        put(key, value, defaultTtlMs);
+    }
+
+    /**
+     * Put a value in the cache with a given time-to-live.
+     *
+     * @param key   Key to store the value under
+     * @param value Value to cache
+     * @param ttlMs Time-to-live in milliseconds
+     */
+    public void put(final K key, final V value, final long ttlMs) {
+        if (ttlMs <= 0) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, clock.getAsLong() + ttlMs);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Remove a key from the cache.
+     *
+     * @param key Key to remove
+     */
+    public void invalidate(final K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Remove every key matching a predicate from the cache.
+     *
+     * @param predicate Test for keys to remove
+     */
+    public void invalidateIf(final Predicate<K> predicate) {
+        synchronized (entries) {
+            Iterator<K> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (predicate.test(keys.next())) {
+                    keys.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return Number of entries, including any not yet evicted after expiring
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return Number of lookups that found a live entry
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Number of lookups that found no live entry
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
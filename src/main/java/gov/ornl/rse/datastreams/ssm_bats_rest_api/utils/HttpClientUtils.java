@@ -0,0 +1,61 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+/**
+ * Utility class for building HTTP clients to backing services.
+ */
+public final class HttpClientUtils {
+
+    /**
+     * Seconds an idle pooled connection is kept before it is evicted.
+     */
+    private static final long IDLE_EVICTION_SECONDS = 30;
+
+    /**
+     * Static methods only.
+     */
+    private HttpClientUtils() {
+
+    }
+
+    /**
+     * Create a keep-alive HTTP client backed by a connection pool.
+     * The client is thread safe and should be shared, then closed on shutdown.
+     *
+     * @param maxConnections   Maximum pooled connections, total and per route
+     * @param connectTimeoutMs Timeout for connecting and for leasing a pooled connection
+     * @param readTimeoutMs    Socket read timeout
+     *
+     * @return Pooled HTTP client
+     */
+    public static CloseableHttpClient createPooledClient(
+        final int maxConnections,
+        final int connectTimeoutMs,
+        final int readTimeoutMs
+    ) {
+        // Closed along with the returned client
+        PoolingHttpClientConnectionManager connectionManager = //NOPMD
+            new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setConnectTimeout(connectTimeoutMs)
+            .setConnectionRequestTimeout(connectTimeoutMs)
+            .setSocketTimeout(readTimeoutMs)
+            .build();
+
+        return HttpClients.custom()
+            .setConnectionManager(connectionManager)
+            .setDefaultRequestConfig(requestConfig)
+            .evictExpiredConnections()
+            .evictIdleConnections(IDLE_EVICTION_SECONDS, TimeUnit.SECONDS)
+            .build();
+    }
+}
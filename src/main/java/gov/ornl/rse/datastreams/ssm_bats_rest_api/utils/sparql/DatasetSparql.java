@@ -2,14 +2,18 @@ package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.sparql;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
 import org.apache.jena.query.ParameterizedSparqlString;
 import org.apache.jena.query.Query;
 import org.apache.jena.query.QueryException;
 import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
 import org.apache.jena.query.QuerySolution;
 import org.apache.jena.query.ResultSet;
 import org.apache.jena.rdf.model.Model;
@@ -58,15 +62,35 @@ public final class DatasetSparql {
         return query;
     }
 
+    /**
+     * SPARQL VALUES clause restricting ?model to the given dataset URIs. Every
+     * URI is sent in the query, so callers restrict it to a page of datasets.
+     *
+     * @param modelUris Dataset URIs to allow; null to allow every dataset
+     * @return String for part of the SPARQL query; empty if unrestricted
+     */
+    private static String valuesForModels(final Collection<String> modelUris) {
+        if (modelUris == null) {
+            return "";
+        }
+        StringBuilder values = new StringBuilder("VALUES ?model { ");
+        for (String uri : modelUris) {
+            values.append('<').append(uri).append("> ");
+        }
+        return values.append("} ").toString();
+    }
+
     /**
      * SPARQL query string for dataset summaries.
      *
+     * @param modelUris Dataset URIs to restrict the summaries to; null for all
      * @return String for part of the SPARQL query
      */
-    private static String queryStringForDatasetSummaries() {
+    private static String queryStringForDatasetSummaries(final Collection<String> modelUris) {
         String query =
         "SELECT ?model ?title ?scidata_url ?modified ?created "
         + "WHERE { "
+        + valuesForModels(modelUris)
         + "  GRAPH ?model { "
         + "    ?node1 dcterms:title ?_title . "
         + "    ?node2 dcterm:modified ?modified . "
@@ -116,17 +140,56 @@ public final class DatasetSparql {
         final String endpointUrl,
         final String datasetUri
      ) throws QueryException {
-
-        // For some reason, uploading fails with http, getting fails with https
-        String queryString = SparqlPrefix.queryPrefixesAll()
-        .replace("https://purl.org", "http://purl.org")
-            + queryStringForDatasetSummary(datasetUri);
-
         QueryExecution execution = prepareSparqlQuery(//NOPMD
         // pmd does not recognize that this is always being closed
-            endpointUrl, queryString
+            endpointUrl, queryStringForDatasetSummaryWithPrefixes(datasetUri)
         );
+        return getDatasetSummary(execution);
+    }
 
+    /**
+     * Get dataset summary for a Model in hand, with the same query as for its
+     * named graph in the graph database but without a call to it.
+     *
+     * @param model      Model of the Dataset
+     * @param datasetUri Dataset URI of the Model's named graph
+     * @return Map with the dataset summary of the Model
+     * @throws QueryException
+     */
+    public static Map<String, Object> getDatasetSummary(
+        final Model model,
+        final String datasetUri
+    ) throws QueryException {
+        Dataset dataset = DatasetFactory.create();
+        dataset.addNamedModel(datasetUri, model);
+        QueryExecution execution = QueryExecutionFactory.create(//NOPMD
+        // pmd does not recognize that this is always being closed
+            queryStringForDatasetSummaryWithPrefixes(datasetUri), dataset
+        );
+        return getDatasetSummary(execution);
+    }
+
+    /**
+     * @param datasetUri Dataset URI for the named graph to get the summary for
+     * @return SPARQL query string for the dataset summary, with its prefixes
+     */
+    private static String queryStringForDatasetSummaryWithPrefixes(final String datasetUri) {
+        // For some reason, uploading fails with http, getting fails with https
+        return SparqlPrefix.queryPrefixesAll()
+            .replace("https://purl.org", "http://purl.org")
+            + queryStringForDatasetSummary(datasetUri);
+    }
+
+    /**
+     * Execute a dataset summary query and close it.
+     *
+     * @param execution Query execution for the dataset summary
+     * @return Map with the dataset summary; empty if there is none
+     * @throws QueryException
+     */
+    private static Map<String, Object> getDatasetSummary(
+        final QueryExecution execution
+    ) throws QueryException {
         Map<String, Object> datasetSummary = new LinkedHashMap<String, Object>();
         ResultSet datasetResults = execution.execSelect();
         try {
@@ -150,20 +213,22 @@ public final class DatasetSparql {
      * @param pageSize    Page size for the returned dataset result set
      * @param pageNumber  Page number to use for the returned dataset result set
      * @param endpointUrl SPARQL endpoint URL to use for issuing the query
+     * @param modelUris   Dataset URIs to paginate over; null for every dataset
      * @return SPARQL query execution for dataset summaries
      * @throws QueryException
      */
     public static QueryExecution queryDatasetSummariesWithPagination(
         final int pageSize,
         final int pageNumber,
-        final String endpointUrl
+        final String endpointUrl,
+        final Collection<String> modelUris
     ) throws QueryException {
 
         // For some reason, uploading fails with http, getting fails with https
         String queryString =
             SparqlPrefix.queryPrefixesAll()
             .replace("https://purl.org", "http://purl.org")
-            + queryStringForDatasetSummaries()
+            + queryStringForDatasetSummaries(modelUris)
             + "ORDER BY DESC(?modified) "
             + "OFFSET " + (pageNumber * pageSize - pageSize) + " "
             + "LIMIT " + pageSize;
@@ -182,20 +247,23 @@ public final class DatasetSparql {
      * @param pageNumber  Page number to use for the returned model result set
      * @param endpointUrl SPARQL endpoint URL to use for issuing the query
      * @param collection     Apache Jena Collection the models belong to
+     * @param modelUris   Dataset URIs to paginate over; null for every dataset
      * @return            List of BatsModel for the full models
     */
     public static List<BatsDataset> getFullModels(
         final int pageSize,
         final int pageNumber,
         final String endpointUrl,
-        final CustomizedBatsCollection collection
+        final CustomizedBatsCollection collection,
+        final Collection<String> modelUris
     ) throws QueryException {
         List<BatsDataset> body = new ArrayList<>();
 
         QueryExecution execution = DatasetSparql.queryDatasetSummariesWithPagination(//NOPMD
             pageSize,
             pageNumber,
-            endpointUrl
+            endpointUrl,
+            modelUris
         );
 
         // immediately return 200 if the query was not valid
@@ -236,19 +304,22 @@ public final class DatasetSparql {
      * @param pageSize    Page size for the returned dataset result set
      * @param pageNumber  Page number to use for the returned dataset result set
      * @param endpointUrl SPARQL endpoint URL to use for issuing the query
+     * @param modelUris   Dataset URIs to paginate over; null for every dataset
      * @return             List of Maps for dataset data
     */
     public static List<Map<String, Object>> getDatasetSummaries(
         final int pageSize,
         final int pageNumber,
-        final String endpointUrl
+        final String endpointUrl,
+        final Collection<String> modelUris
     ) throws QueryException {
         List<Map<String, Object>> body = new ArrayList<>();
 
         QueryExecution execution = DatasetSparql.queryDatasetSummariesWithPagination(//NOPMD
             pageSize,
             pageNumber,
-            endpointUrl
+            endpointUrl,
+            modelUris
         );
 
         // immediately return 200 if the query was not valid
@@ -332,14 +403,18 @@ public final class DatasetSparql {
      * SPARQL query to count total number of models.
      *
      * @param endpointUrl SPARQL endpoint URL to issue query against
+     * @param modelUris   Dataset URIs to count among; null to count every dataset
      * @return Total number of models via SPARQL query
      * @throws QueryException
      */
-    public static int getDatasetCount(final String endpointUrl)
-    throws QueryException {
+    public static int getDatasetCount(
+        final String endpointUrl,
+        final Collection<String> modelUris
+    ) throws QueryException {
         // SPARQL query for getting the dataset count
         String countAllQueryString =
             "SELECT (count(distinct ?model) as ?count) WHERE {"
+            + valuesForModels(modelUris)
             + "GRAPH ?model { ?x ?y ?z }}";
         QueryExecution countAllExecution = // NOPMD
             prepareSparqlQuery(endpointUrl, countAllQueryString);
@@ -0,0 +1,409 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.DatasetListingType;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.BatsCollectionController;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.DatasetController;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.controllers.ZanzibarCollectionController;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.CustomizedBatsCollection;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.CollectionCatalogService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.DocumentService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.GraphService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.MetadataIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.PeakIndexService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectralSearchService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.services.SpectrumStoreService;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
+
+/**
+ * Load test of the dataset listing, collection delete and role change
+ * endpoints, called on their controllers through one AuthorizationHandler
+ * talking to a FakeKeto with injected latency. The document and graph stores
+ * are mocked, so only the authorization work is measured. Reports the Keto
+ * calls made per request and a latency histogram for each scenario.
+ *
+ * Skipped unless run with -Dssm.benchmark=true, for example:
+ * mvn test -Dtest=AuthorizationBenchmark -Dssm.benchmark=true
+ * -Dssm.benchmark.latency=5 -Dssm.benchmark.datasets=500
+ */
+@EnabledIfSystemProperty(named = "ssm.benchmark", matches = "true")
+public class AuthorizationBenchmark {
+
+    /**
+     * Default milliseconds of latency injected into every Keto call.
+     */
+    private static final long DEFAULT_LATENCY = 2;
+
+    /**
+     * Default number of datasets in the listed collection.
+     */
+    private static final int DEFAULT_DATASETS = 200;
+
+    /**
+     * Default number of requests timed per scenario.
+     */
+    private static final int DEFAULT_ITERATIONS = 20;
+
+    /**
+     * Number of datasets in each deleted collection.
+     */
+    private static final int DELETED_DATASETS = 10;
+
+    /**
+     * Datasets per page of the listing.
+     */
+    private static final int PAGE_SIZE = 20;
+
+    /**
+     * Title of the listed collection.
+     */
+    private static final String COLLECTION = "collection";
+
+    /**
+     * Index of the listed dataset UUIDs among the arguments of
+     * DocumentService.getDatasets.
+     */
+    private static final int LISTED_ARGUMENT = 4;
+
+    /**
+     * Tuples per page of Keto query results, the Keto default.
+     */
+    private static final int TUPLES_PER_PAGE = 100;
+
+    /**
+     * Milliseconds of latency injected into every Keto call.
+     */
+    private final long latency = Long.getLong("ssm.benchmark.latency", DEFAULT_LATENCY);
+
+    /**
+     * Number of datasets in the listed collection.
+     */
+    private final int datasets = Integer.getInteger("ssm.benchmark.datasets", DEFAULT_DATASETS);
+
+    /**
+     * Number of requests timed per scenario.
+     */
+    private final int iterations = Integer.getInteger("ssm.benchmark.iterations",
+            DEFAULT_ITERATIONS);
+
+    /**
+     * The Keto stand-in.
+     */
+    private FakeKeto keto;
+
+    /**
+     * The one handler every request goes through.
+     */
+    private AuthorizationHandler authHandler;
+
+    /**
+     * Controller serving queryDatasets.
+     */
+    private DatasetController datasetController;
+
+    /**
+     * Controller serving deleteCollection.
+     */
+    private BatsCollectionController collectionController;
+
+    /**
+     * Controller serving role changes.
+     */
+    private ZanzibarCollectionController roleController;
+
+    /**
+     * Graph store listing the datasets of deleted collections.
+     */
+    private GraphService graphService;
+
+    /**
+     * Collection lookups of deleted collections.
+     */
+    private CollectionUtils collectionUtils;
+
+    /**
+     * A single timed operation.
+     */
+    @FunctionalInterface
+    private interface Operation {
+        /**
+         * Run the operation.
+         *
+         * @param iteration Index of the request being made.
+         * @throws Exception If the operation fails.
+         */
+        void run(int iteration) throws Exception;
+    }
+
+    /**
+     * Latency histogram with power of two millisecond buckets, which also keeps
+     * every sample for exact percentiles.
+     */
+    private static final class LatencyHistogram {
+
+        /**
+         * Number of buckets; the last holds everything slower.
+         */
+        private static final int BUCKETS = 16;
+
+        /**
+         * Percentiles reported.
+         */
+        private static final double[] PERCENTILES = {50, 90, 99};
+
+        /**
+         * Percent in a whole.
+         */
+        private static final double PERCENT = 100;
+
+        /**
+         * Sample counts per bucket. Bucket i holds samples under 2^i ms.
+         */
+        private final long[] counts = new long[BUCKETS];
+
+        /**
+         * Every sample, in nanoseconds.
+         */
+        private final List<Long> samples = new ArrayList<>();
+
+        /**
+         * Record a sample.
+         *
+         * @param nanos The latency in nanoseconds.
+         */
+        void record(final long nanos) {
+            samples.add(nanos);
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+            while (bucket < BUCKETS - 1 && millis >= 1L << bucket) {
+                bucket++;
+            }
+            counts[bucket]++;
+        }
+
+        /**
+         * @param percentile The percentile, from 0 to 100.
+         * @return The sample at the percentile in milliseconds.
+         */
+        double percentile(final double percentile) {
+            List<Long> sorted = new ArrayList<>(samples);
+            sorted.sort(null);
+            int index = (int) Math.ceil(percentile / PERCENT * sorted.size()) - 1;
+            long nanos = sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+
+        /**
+         * @return Summary of the percentiles and the non-empty buckets.
+         */
+        String format() {
+            StringBuilder out = new StringBuilder();
+            for (double percentile : PERCENTILES) {
+                out.append(String.format("  p%.0f=%.1fms", percentile, percentile(percentile)));
+            }
+            out.append(String.format("  max=%.1fms%n", percentile(PERCENT)));
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                if (counts[bucket] > 0) {
+                    String bound = bucket < BUCKETS - 1 ? "< " + (1L << bucket) + "ms"
+                            : ">= " + (1L << (bucket - 1)) + "ms";
+                    out.append(String.format("    %-10s %d%n", bound, counts[bucket]));
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Start the stand-in, one handler pointed at it, and the controllers
+     * under test with the document and graph stores mocked out.
+     *
+     * @throws Exception If the stand-in could not start.
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        keto = new FakeKeto(latency, TUPLES_PER_PAGE);
+        ApplicationConfig config = new ApplicationConfig();
+        config.setZanzibarReadHost(keto.getUrl());
+        config.setZanzibarWriteHost(keto.getUrl());
+        authHandler = new AuthorizationHandler(config);
+
+        // Every controller shares the one handler, as the application bean does
+        ApplicationConfig appConfig = Mockito.mock(ApplicationConfig.class);
+        Mockito.when(appConfig.getAuthorizationHandler()).thenReturn(authHandler);
+        Mockito.when(appConfig.getDatasetListing()).thenReturn(DatasetListingType.DOCUMENT);
+
+        DocumentService documentService = Mockito.mock(DocumentService.class);
+        Mockito.when(documentService.getDatasets(ArgumentMatchers.eq(COLLECTION),
+                ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt(),
+                ArgumentMatchers.anyBoolean(), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> Collections.singletonMap("total",
+                        ((Collection<?>) invocation.getArgument(LISTED_ARGUMENT)).size()));
+        // No metadata filter, so every readable dataset is listed
+        MetadataIndexService metadataService = Mockito.mock(MetadataIndexService.class);
+        Mockito.when(metadataService.select(ArgumentMatchers.any(), ArgumentMatchers.any()))
+                .thenReturn(null);
+        datasetController = new DatasetController();
+        ReflectionTestUtils.setField(datasetController, "appConfig", appConfig);
+        ReflectionTestUtils.setField(datasetController, "documentService", documentService);
+        ReflectionTestUtils.setField(datasetController, "metadataService", metadataService);
+
+        collectionUtils = Mockito.mock(CollectionUtils.class);
+        graphService = Mockito.mock(GraphService.class);
+        collectionController = new BatsCollectionController();
+        ReflectionTestUtils.setField(collectionController, "appConfig", appConfig);
+        ReflectionTestUtils.setField(collectionController, "collectionUtils", collectionUtils);
+        ReflectionTestUtils.setField(collectionController, "graphService", graphService);
+        ReflectionTestUtils.setField(collectionController, "repository",
+                Mockito.mock(DocumentRepository.class));
+        ReflectionTestUtils.setField(collectionController, "catalogService",
+                Mockito.mock(CollectionCatalogService.class));
+        ReflectionTestUtils.setField(collectionController, "searchService",
+                Mockito.mock(SpectralSearchService.class));
+        ReflectionTestUtils.setField(collectionController, "metadataService",
+                Mockito.mock(MetadataIndexService.class));
+        ReflectionTestUtils.setField(collectionController, "peakService",
+                Mockito.mock(PeakIndexService.class));
+        ReflectionTestUtils.setField(collectionController, "spectrumStore",
+                Mockito.mock(SpectrumStoreService.class));
+
+        roleController = new ZanzibarCollectionController();
+        ReflectionTestUtils.setField(roleController, "appConfig", appConfig);
+
+        OidcUser alice = Mockito.mock(OidcUser.class);
+        Mockito.when(alice.getPreferredUsername()).thenReturn("alice");
+        SecurityContextHolder.getContext().setAuthentication(
+                new TestingAuthenticationToken(alice, null));
+    }
+
+    /**
+     * Close the handler and stop the stand-in.
+     *
+     * @throws IOException If the handler's client could not be closed.
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        RequestContextHolder.resetRequestAttributes();
+        SecurityContextHolder.clearContext();
+        authHandler.close();
+        keto.close();
+    }
+
+    /**
+     * Benchmark every scenario and print the results.
+     *
+     * @throws Exception If a scenario fails.
+     */
+    @Test
+    public void benchmark() throws Exception {
+        authHandler.initializeObject(COLLECTION, "alice");
+        for (int i = 0; i < datasets; i++) {
+            String uuid = "dataset-" + i;
+            authHandler.initializeObject(uuid, null);
+            authHandler.addToCollection(null, uuid, COLLECTION);
+        }
+        authHandler.initializeObject("private", "bob");
+
+        System.out.printf("Keto latency %dms, %d datasets, %d requests per scenario%n",
+                latency, datasets, iterations);
+
+        // A membership change clears every cached decision and listing
+        run("queryDatasets (after a membership change)", iteration -> {
+            authHandler.initializeObject("scratch-" + iteration, null);
+            authHandler.addToCollection(null, "scratch-" + iteration, "scratch");
+        }, iteration -> assertListed(datasets + 1));
+        run("queryDatasets (cached)", null, iteration -> assertListed(datasets + 1));
+
+        List<Roles> roles = Arrays.asList(Roles.COLLABORATOR, Roles.MEMBER);
+        run("setRole", null, iteration -> roleController.setRole(COLLECTION, "bob",
+                roles.get(iteration % roles.size()).toString()));
+
+        run("deleteCollection", iteration -> {
+            String collection = "deleted-" + iteration;
+            List<String> deleted = new ArrayList<>();
+            for (int i = 0; i < DELETED_DATASETS; i++) {
+                authHandler.initializeObject(collection + "-" + i, "alice");
+                deleted.add(collection + "-" + i);
+            }
+            CustomizedBatsCollection fuseki = Mockito.mock(CustomizedBatsCollection.class);
+            Mockito.when(fuseki.getName()).thenReturn(collection);
+            Mockito.when(collectionUtils.getCollection(collection)).thenReturn(fuseki);
+            Mockito.when(graphService.listDatasetUUIDs(collection)).thenReturn(deleted);
+        }, iteration -> Assertions.assertEquals(HttpStatus.NO_CONTENT,
+                collectionController.deleteCollection("deleted-" + iteration, false)
+                        .getStatusCode()));
+    }
+
+    /**
+     * List the first page of the collection and check how many datasets were
+     * listed as readable.
+     *
+     * @param expected Number of datasets expected.
+     * @throws Exception If the listing fails.
+     */
+    private void assertListed(final int expected) throws Exception {
+        Map<?, ?> body = (Map<?, ?>) datasetController.queryDatasets(COLLECTION, 1, PAGE_SIZE,
+                false, Collections.emptyMap()).getBody();
+        Assertions.assertEquals(expected, body.get("total"));
+    }
+
+    /**
+     * Time a scenario, each iteration in its own simulated HTTP request, and
+     * print the calls per request and latency histogram.
+     *
+     * @param name      Name of the scenario.
+     * @param prepare   Untimed setup run before each iteration. May be null.
+     * @param operation The operation timed.
+     * @throws Exception If the scenario fails.
+     */
+    private void run(final String name, final Operation prepare, final Operation operation)
+            throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        long check = 0;
+        long query = 0;
+        long write = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (prepare != null) {
+                prepare.run(i);
+            }
+            keto.resetCalls();
+            RequestContextHolder.setRequestAttributes(
+                    new ServletRequestAttributes(new MockHttpServletRequest()));
+            long start = System.nanoTime();
+            operation.run(i);
+            histogram.record(System.nanoTime() - start);
+            RequestContextHolder.resetRequestAttributes();
+            check += keto.getCalls("check");
+            query += keto.getCalls("query");
+            write += keto.getCalls("write");
+        }
+        System.out.printf("%s: %.1f calls/request (check %.1f, query %.1f, write %.1f)%n%s",
+                name, (check + query + write) / (double) iterations, check / (double) iterations,
+                query / (double) iterations, write / (double) iterations, histogram.format());
+    }
+}
@@ -0,0 +1,310 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AuthorizationHandlerTest {
+
+    /**
+     * Small page size so queries and deletes span several pages.
+     */
+    private static final int PAGE_SIZE = 3;
+
+    /**
+     * The Keto stand-in.
+     */
+    private FakeKeto keto;
+
+    /**
+     * Handler under test, talking to the stand-in.
+     */
+    private AuthorizationHandler authHandler;
+
+    /**
+     * Start the stand-in and a handler pointed at it.
+     *
+     * @throws Exception If the stand-in could not start.
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        keto = new FakeKeto(0, PAGE_SIZE);
+        ApplicationConfig config = new ApplicationConfig();
+        config.setZanzibarReadHost(keto.getUrl());
+        config.setZanzibarWriteHost(keto.getUrl());
+        authHandler = new AuthorizationHandler(config);
+    }
+
+    /**
+     * Close the handler and stop the stand-in.
+     *
+     * @throws IOException If the handler's client could not be closed.
+     */
+    @AfterEach
+    public void tearDown() throws IOException {
+        authHandler.close();
+        keto.close();
+    }
+
+    /**
+     * Test each handler's decision cache and latency metrics are registered
+     * on its own registry and count that handler's checks.
+     *
+     * @throws Exception If the handler could not be closed.
+     */
+    @Test
+    public void testMetrics() throws Exception {
+        ApplicationConfig config = new ApplicationConfig();
+        config.setZanzibarReadHost(keto.getUrl());
+        config.setZanzibarWriteHost(keto.getUrl());
+        MeterRegistry registry = new SimpleMeterRegistry();
+        AuthorizationHandler metered = new AuthorizationHandler(config, registry);
+        try {
+            authHandler.checkPermission("bob", Permissions.READ, "collection");
+            metered.checkPermission("bob", Permissions.READ, "collection");
+            metered.checkPermission("bob", Permissions.READ, "collection");
+            Assertions.assertEquals(1,
+                registry.get("ssm.zanzibar.decisions.misses").functionCounter().count());
+            Assertions.assertEquals(1,
+                registry.get("ssm.zanzibar.decisions.hits").functionCounter().count());
+
+            metered.checkPermission("alice", Permissions.READ, "collection");
+            Assertions.assertEquals(2, registry.get("ssm.zanzibar.requests")
+                .tags("endpoint", "check", "outcome", "success").timer().count());
+        } finally {
+            metered.close();
+        }
+    }
+
+    /**
+     * Test a closed handler has released its client and refuses further calls.
+     *
+     * @throws Exception If the handler could not be closed.
+     */
+    @Test
+    public void testClose() throws Exception {
+        authHandler.initializeObject("collection", "alice");
+        authHandler.close();
+        Assertions.assertThrows(Exception.class,
+            () -> authHandler.checkPermission("bob", Permissions.READ, "collection"));
+    }
+
+    /**
+     * Test owners get every permission and that roles can be granted and revoked
+     * by a higher ranked user.
+     *
+     * @throws Exception If a role change is refused.
+     */
+    @Test
+    public void testRoles() throws Exception {
+        authHandler.initializeObject("collection", "alice");
+        Assertions.assertEquals(Roles.OWNER, authHandler.getRole("alice", "collection"));
+        Assertions.assertTrue(authHandler.checkPermission("alice", Permissions.DELETE,
+                "collection"));
+        Assertions.assertFalse(authHandler.checkPermission("bob", Permissions.READ,
+                "collection"));
+
+        authHandler.addRole("alice", "bob", Roles.COLLABORATOR, "collection");
+        Assertions.assertEquals(Roles.COLLABORATOR, authHandler.getRole("bob", "collection"));
+        Assertions.assertTrue(authHandler.checkPermission("bob", Permissions.READ, "collection"));
+        Assertions.assertThrows(Exception.class,
+            () -> authHandler.removeRole("bob", "alice", Roles.OWNER, "collection"));
+
+        authHandler.removeRole("alice", "bob", Roles.COLLABORATOR, "collection");
+        Assertions.assertNull(authHandler.getRole("bob", "collection"));
+    }
+
+    /**
+     * Test owners hold every permission, including DELETE and GRANT_DELETE,
+     * while maintainers hold neither.
+     *
+     * @throws Exception If a role change is refused.
+     */
+    @Test
+    public void testOwnerPermissions() throws Exception {
+        authHandler.initializeObject("collection", "alice");
+        authHandler.addRole("alice", "bob", Roles.MAINTAINER, "collection");
+        for (Permissions permission : Permissions.values()) {
+            Assertions.assertTrue(authHandler.checkPermission("alice", permission, "collection"),
+                    permission.toString());
+        }
+        Assertions.assertTrue(authHandler.checkPermission("bob", Permissions.UPDATE,
+                "collection"));
+        Assertions.assertFalse(authHandler.checkPermission("bob", Permissions.DELETE,
+                "collection"));
+        Assertions.assertFalse(authHandler.checkPermission("bob", Permissions.GRANT_DELETE,
+                "collection"));
+    }
+
+    /**
+     * Test any role outranks having no role, and no role outranks anything.
+     */
+    @Test
+    public void testIsSuperiorRole() {
+        for (Roles role : Roles.values()) {
+            Assertions.assertTrue(authHandler.isSuperiorRole(role, null), role.toString());
+            Assertions.assertFalse(authHandler.isSuperiorRole(null, role), role.toString());
+            Assertions.assertFalse(authHandler.isSuperiorRole(role, role), role.toString());
+        }
+        Assertions.assertFalse(authHandler.isSuperiorRole(null, null));
+        Assertions.assertTrue(authHandler.isSuperiorRole(Roles.OWNER, Roles.MAINTAINER));
+        Assertions.assertTrue(authHandler.isSuperiorRole(Roles.MEMBER, Roles.COLLABORATOR));
+        Assertions.assertFalse(authHandler.isSuperiorRole(Roles.MEMBER, Roles.MAINTAINER));
+    }
+
+    /**
+     * Test removing a role compares the editor's role with the target user's,
+     * so a maintainer cannot remove an owner but an owner can remove a
+     * maintainer.
+     *
+     * @throws Exception If a role removal is refused.
+     */
+    @Test
+    public void testRemoveRole() throws Exception {
+        ZanzibarPermissionsHandler handler = Mockito.mock(ZanzibarPermissionsHandler.class);
+        Mockito.when(handler.queryPermission(ArgumentMatchers.anyString(),
+                ArgumentMatchers.isNull(), ArgumentMatchers.eq("collection"),
+                ArgumentMatchers.isNull(), ArgumentMatchers.isNull()))
+            .thenReturn(Collections.emptyList());
+        Mockito.when(handler.queryPermission("alice", null, "collection", null, null))
+            .thenReturn(Collections.singletonList(tuple("alice", Roles.OWNER)));
+        Mockito.when(handler.queryPermission("bob", null, "collection", null, null))
+            .thenReturn(Collections.singletonList(tuple("bob", Roles.MAINTAINER)));
+        AuthorizationHandler mocked = new AuthorizationHandler(new ApplicationConfig());
+        ReflectionTestUtils.setField(mocked, "handler", handler);
+
+        Assertions.assertThrows(Exception.class,
+            () -> mocked.removeRole("bob", "alice", Roles.OWNER, "collection"));
+        Mockito.verify(handler, Mockito.never()).deletePermission(ArgumentMatchers.any(),
+            ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any(),
+            ArgumentMatchers.any());
+
+        mocked.removeRole("alice", "bob", Roles.MAINTAINER, "collection");
+        Mockito.verify(handler).deletePermission("bob", Roles.MAINTAINER.toString(),
+            "collection", null, null);
+    }
+
+    /**
+     * Test members of a collection inherit its roles and are listed as readable.
+     *
+     * @throws Exception If adding to the collection is refused.
+     */
+    @Test
+    public void testCollectionMembership() throws Exception {
+        authHandler.initializeObject("collection", "alice");
+        for (String dataset : Arrays.asList("one", "two", "three", "four")) {
+            authHandler.initializeObject(dataset, null);
+            authHandler.addToCollection(null, dataset, "collection");
+        }
+        authHandler.initializeObject("other", "bob");
+
+        Assertions.assertEquals(Roles.OWNER, authHandler.getRole("alice", "two"));
+        Set<String> readable = authHandler.listObjects("alice", Permissions.READ);
+        Assertions.assertEquals(Set.of("collection", "one", "two", "three", "four"), readable);
+        Assertions.assertEquals(Set.of("one", "three"), authHandler.checkPermissions("alice",
+                Permissions.READ, Arrays.asList("one", "other", "three")));
+    }
+
+    /**
+     * Test deleting objects and users removes every related tuple across pages.
+     *
+     * @throws Exception If deleting is refused.
+     */
+    @Test
+    public void testDelete() throws Exception {
+        authHandler.createUser("alice");
+        authHandler.initializeObject("collection", "alice");
+        authHandler.initializeObject("dataset", "alice");
+        authHandler.addToCollection("alice", "dataset", "collection");
+
+        authHandler.deleteObject("alice", "dataset");
+        Assertions.assertFalse(authHandler.checkPermission("alice", Permissions.READ, "dataset"));
+        authHandler.deleteObject("alice", "collection");
+        authHandler.deleteUser("alice");
+        Assertions.assertEquals(0, keto.size());
+    }
+
+    /**
+     * Test deleting an object within a request forgets the request's memoized
+     * answers, although the deletes run on other threads.
+     *
+     * @throws Exception If deleting is refused.
+     */
+    @Test
+    public void testDeleteClearsRequestMemo() throws Exception {
+        authHandler.initializeObject("dataset", "alice");
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+        try {
+            Assertions.assertTrue(authHandler.checkPermission("alice", Permissions.READ,
+                    "dataset"));
+            authHandler.deleteObject("alice", "dataset");
+            Assertions.assertFalse(authHandler.checkPermission("alice", Permissions.READ,
+                    "dataset"));
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    /**
+     * Test deleting many objects at once removes their tuples, including those
+     * between them, and is refused if the user cannot delete every object.
+     *
+     * @throws Exception If deleting is refused.
+     */
+    @Test
+    public void testDeleteObjects() throws Exception {
+        authHandler.initializeObject("collection", "alice");
+        List<String> datasets = Arrays.asList("one", "two", "three", "four");
+        for (String dataset : datasets) {
+            authHandler.initializeObject(dataset, null);
+            authHandler.addToCollection(null, dataset, "collection");
+        }
+        authHandler.initializeObject("other", "bob");
+        int remaining = keto.size();
+
+        Assertions.assertThrows(Exception.class, () -> authHandler.deleteObjects("alice",
+                Arrays.asList("one", "other"), count -> { }));
+        Assertions.assertEquals(remaining, keto.size());
+
+        AtomicLong progress = new AtomicLong();
+        authHandler.deleteObjects("alice", datasets, progress::set);
+        Assertions.assertTrue(progress.get() > 0);
+        Assertions.assertFalse(keto.check("alice", Permissions.READ.toString(), "two"));
+        Assertions.assertTrue(keto.check("alice", Permissions.READ.toString(), "collection"));
+        Assertions.assertTrue(keto.check("bob", Permissions.READ.toString(), "other"));
+        Assertions.assertEquals(remaining - progress.get(), keto.size());
+    }
+
+    /**
+     * @param user User granted the role
+     * @param role Role granted on "collection"
+     * @return The tuple granting the role
+     */
+    private static Relationship tuple(final String user, final Roles role) {
+        Relationship tuple = new Relationship();
+        tuple.setSubjectId(user);
+        tuple.setRelation(role.toString());
+        tuple.setObject("collection");
+        return tuple;
+    }
+}
@@ -0,0 +1,313 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the Keto read and write APIs used by
+ * ZanzibarPermissionsHandler: checks, paged relation tuple queries, and tuple
+ * writes by PUT, DELETE and PATCH. Tuples are held in a LocalTupleEvaluator and
+ * every call can be delayed to simulate network and server latency.
+ */
+final class FakeKeto implements AutoCloseable {
+
+    /**
+     * JSON mapper for requests and replies.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Milliseconds between rebuilds of the tuple store, long enough that it is
+     * never rebuilt from its empty source while in use.
+     */
+    private static final long NEVER = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Threads serving requests.
+     */
+    private static final int THREADS = 32;
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * Threads the server handles requests on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The stored tuples.
+     */
+    private final LocalTupleEvaluator tuples;
+
+    /**
+     * Milliseconds each call is delayed by.
+     */
+    private final long latencyMs;
+
+    /**
+     * Tuples returned per query page.
+     */
+    private final int pageSize;
+
+    /**
+     * Number of calls served, by endpoint.
+     */
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+    static {
+        // Without this, replies written as headers then body wait on delayed ACKs,
+        // adding about 40ms to calls that the real Keto answers at once.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * Start a fake Keto on a free loopback port.
+     *
+     * @param latency      Milliseconds each call is delayed by.
+     * @param tuplesPerPage Tuples returned per query page.
+     * @throws IOException If the server could not be started.
+     */
+    FakeKeto(final long latency, final int tuplesPerPage) throws IOException {
+        this.latencyMs = latency;
+        this.pageSize = tuplesPerPage;
+        this.tuples = new LocalTupleEvaluator(consumer -> { }, NEVER);
+        this.tuples.sync();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/relation-tuples/check", exchange -> serve("check", exchange));
+        server.createContext("/relation-tuples", exchange -> serve("query", exchange));
+        server.createContext("/admin/relation-tuples", exchange -> serve("write", exchange));
+        executor = Executors.newFixedThreadPool(THREADS);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return Base URL to use as both the Zanzibar read and write host.
+     */
+    String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":"
+                + server.getAddress().getPort();
+    }
+
+    /**
+     * @param endpoint One of "check", "query" or "write".
+     * @return Number of calls served by the endpoint.
+     */
+    long getCalls(final String endpoint) {
+        return calls.getOrDefault(endpoint, new AtomicLong()).get();
+    }
+
+    /**
+     * @return Number of calls served by all endpoints.
+     */
+    long getTotalCalls() {
+        return calls.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * Forget the call counts.
+     */
+    void resetCalls() {
+        calls.clear();
+    }
+
+    /**
+     * @param subject  The subject.
+     * @param relation The relation.
+     * @param object   The object.
+     * @return True if subject has the relation on object, following subject sets.
+     */
+    boolean check(final String subject, final String relation, final String object) {
+        return tuples.check(subject, relation, object);
+    }
+
+    /**
+     * @return Number of stored tuples.
+     */
+    int size() {
+        return tuples.query(null, null, null, null, null).size();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Count, delay and answer a call.
+     *
+     * @param endpoint Name of the endpoint being called.
+     * @param exchange The call.
+     * @throws IOException If the reply could not be written.
+     */
+    private void serve(final String endpoint, final HttpExchange exchange) throws IOException {
+        calls.computeIfAbsent(endpoint, key -> new AtomicLong()).incrementAndGet();
+        try {
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            // The server drops connections whose request was not read to the end
+            byte[] request;
+            try (InputStream in = exchange.getRequestBody()) {
+                request = in.readAllBytes();
+            }
+            Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+            if ("check".equals(endpoint)) {
+                boolean allowed = tuples.check(params.get("subject_id"), params.get("relation"),
+                        params.get("object"));
+                int status = allowed ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_FORBIDDEN;
+                reply(exchange, status, MAPPER.createObjectNode().put("allowed", allowed));
+            } else if ("query".equals(endpoint)) {
+                query(exchange, params);
+            } else {
+                write(exchange, params, request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_UNAVAILABLE, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answer a relation tuple query with one page of matches.
+     *
+     * @param exchange The call.
+     * @param params   The query parameters.
+     * @throws IOException If the reply could not be written.
+     */
+    private void query(final HttpExchange exchange, final Map<String, String> params)
+            throws IOException {
+        List<Relationship> matches = tuples.query(params.get("subject_id"),
+                params.get("relation"), params.get("object"),
+                params.get("subject_set.object"), params.get("subject_set.relation"));
+        int start = params.containsKey("page_token")
+                ? Integer.parseInt(params.get("page_token")) : 0;
+        int end = Math.min(matches.size(), start + pageSize);
+
+        ObjectNode body = MAPPER.createObjectNode();
+        for (Relationship tuple : matches.subList(Math.min(start, end), end)) {
+            body.withArray("relation_tuples").add(MAPPER.valueToTree(tuple));
+        }
+        body.put("next_page_token", end < matches.size() ? String.valueOf(end) : "");
+        reply(exchange, HttpURLConnection.HTTP_OK, body);
+    }
+
+    /**
+     * Apply a tuple write.
+     *
+     * @param exchange The call.
+     * @param params   The query parameters.
+     * @param request  The request body.
+     * @throws IOException If the request could not be parsed or the reply written.
+     */
+    private void write(final HttpExchange exchange, final Map<String, String> params,
+            final byte[] request) throws IOException {
+        String method = exchange.getRequestMethod();
+        if ("DELETE".equals(method)) {
+            tuples.remove(params.get("subject_id"), params.get("relation"), params.get("object"),
+                    params.get("subject_set.object"), params.get("subject_set.relation"));
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+            return;
+        }
+
+        JsonNode body = MAPPER.readTree(request);
+        if ("PUT".equals(method)) {
+            apply(true, body);
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_CREATED, -1);
+        } else if ("PATCH".equals(method)) {
+            for (JsonNode action : body) {
+                apply("insert".equals(action.path("action").asText()),
+                        action.path("relation_tuple"));
+            }
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+        } else {
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_BAD_METHOD, -1);
+        }
+    }
+
+    /**
+     * Insert or delete a tuple given as JSON.
+     *
+     * @param insert True to insert the tuple, false to delete it.
+     * @param tuple  The tuple.
+     */
+    private void apply(final boolean insert, final JsonNode tuple) {
+        String subject = tuple.hasNonNull("subject_id") ? tuple.get("subject_id").asText() : null;
+        JsonNode set = tuple.path("subject_set");
+        String setObject = set.hasNonNull("object") ? set.get("object").asText() : null;
+        String setRelation = set.hasNonNull("relation") ? set.get("relation").asText() : null;
+        if (insert) {
+            tuples.add(subject, tuple.path("relation").asText(), tuple.path("object").asText(),
+                    setObject, setRelation);
+        } else {
+            tuples.remove(subject, tuple.path("relation").asText(),
+                    tuple.path("object").asText(), setObject, setRelation);
+        }
+    }
+
+    /**
+     * Write a JSON reply.
+     *
+     * @param exchange The call.
+     * @param status   The HTTP status.
+     * @param body     The JSON body.
+     * @throws IOException If the reply could not be written.
+     */
+    private static void reply(final HttpExchange exchange, final int status, final JsonNode body)
+            throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Decode a URL query string.
+     *
+     * @param rawQuery The raw query string. May be null.
+     * @return The parameters by name.
+     */
+    private static Map<String, String> parseQuery(final String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,98 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalTupleEvaluatorTest {
+
+    /**
+     * Sync interval long enough that only explicit syncs run during a test.
+     */
+    private static final long SYNC_INTERVAL = 60000;
+
+    /**
+     * Tuples served by the fake source.
+     */
+    private final List<Relationship> tuples = new ArrayList<>();
+
+    /**
+     * Evaluator under test.
+     */
+    private LocalTupleEvaluator evaluator;
+
+    /**
+     * Create a Zanzibar relationship.
+     *
+     * @param object      Object of the tuple.
+     * @param relation    Relation of the tuple.
+     * @param subject     Subject of the tuple, or null for a subject set.
+     * @param setObject   Subject set object.
+     * @param setRelation Subject set relation.
+     * @return The relationship.
+     */
+    private static Relationship tuple(final String object, final String relation,
+            final String subject, final String setObject, final String setRelation) {
+        Relationship relationship = new Relationship();
+        relationship.setObject(object);
+        relationship.setRelation(relation);
+        if (subject != null) {
+            relationship.setSubjectId(subject);
+        } else {
+            Relationship set = new Relationship();
+            set.setObject(setObject);
+            set.setRelation(setRelation);
+            relationship.setSubjectSet(set);
+        }
+        return relationship;
+    }
+
+    /**
+     * Load a dataset whose permissions come from its owner role, which it
+     * inherits from a collection owned by alice.
+     */
+    @BeforeEach
+    public void setup() {
+        tuples.add(tuple("dataset", "READ", null, "dataset", "OWNER"));
+        tuples.add(tuple("dataset", "OWNER", null, "collection", "OWNER"));
+        tuples.add(tuple("collection", "OWNER", "alice", null, null));
+        evaluator = new LocalTupleEvaluator(source -> tuples.forEach(source), SYNC_INTERVAL);
+        evaluator.sync();
+    }
+
+    /**
+     * Test checks follow subject sets to inherited permissions.
+     */
+    @Test
+    public void testCheckThroughSubjectSets() {
+        Assertions.assertTrue(evaluator.isReady());
+        Assertions.assertTrue(evaluator.check("alice", "READ", "dataset"));
+        Assertions.assertFalse(evaluator.check("bob", "READ", "dataset"));
+        Assertions.assertFalse(evaluator.check("alice", "UPDATE", "dataset"));
+    }
+
+    /**
+     * Test local writes apply immediately, with null delete fields matching anything.
+     */
+    @Test
+    public void testWriteThrough() {
+        evaluator.add("bob", "OWNER", "collection", null, null);
+        Assertions.assertTrue(evaluator.check("bob", "READ", "dataset"));
+
+        evaluator.remove(null, null, "dataset", "collection", null);
+        Assertions.assertFalse(evaluator.check("alice", "READ", "dataset"));
+    }
+
+    /**
+     * Test queries use subject set objects, as for collection contents.
+     */
+    @Test
+    public void testQueryBySubjectSet() {
+        List<Relationship> contents = evaluator.query(null, "OWNER", null, "collection", "OWNER");
+        Assertions.assertEquals(1, contents.size());
+        Assertions.assertEquals("dataset", contents.get(0).getObject());
+    }
+}
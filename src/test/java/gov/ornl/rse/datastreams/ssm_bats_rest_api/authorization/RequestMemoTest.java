@@ -0,0 +1,81 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+public class RequestMemoTest {
+
+    /**
+     * Number of times the supplier under test was called.
+     */
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * Supplier that counts its calls.
+     *
+     * @return Always null, which must be memoized like any other value.
+     */
+    private String compute() {
+        calls.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Start handling a new request on this thread.
+     */
+    private static void startRequest() {
+        RequestContextHolder.setRequestAttributes(
+                new ServletRequestAttributes(new MockHttpServletRequest()));
+    }
+
+    /**
+     * Stop handling the request.
+     */
+    @AfterEach
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    /**
+     * Check that a value is computed once per request, null values included.
+     */
+    @Test
+    public void testMemoizedWithinRequest() {
+        startRequest();
+        Assertions.assertNull(RequestMemo.get("key", this::compute));
+        Assertions.assertNull(RequestMemo.get("key", this::compute));
+        Assertions.assertEquals(1, calls.get());
+
+        startRequest();
+        RequestMemo.get("key", this::compute);
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    /**
+     * Check that clearing forgets memoized values.
+     */
+    @Test
+    public void testClear() {
+        startRequest();
+        RequestMemo.get("key", this::compute);
+        RequestMemo.clear();
+        RequestMemo.get("key", this::compute);
+        Assertions.assertEquals(2, calls.get());
+    }
+
+    /**
+     * Check that nothing is memoized outside of a request.
+     */
+    @Test
+    public void testNoRequest() {
+        RequestMemo.get("key", this::compute);
+        RequestMemo.get("key", this::compute);
+        Assertions.assertEquals(2, calls.get());
+    }
+}
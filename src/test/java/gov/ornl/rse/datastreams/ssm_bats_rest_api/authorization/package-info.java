@@ -0,0 +1,4 @@
+/**
+ * SSM BATS REST API Test authorization package information.
+ */
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.authorization;
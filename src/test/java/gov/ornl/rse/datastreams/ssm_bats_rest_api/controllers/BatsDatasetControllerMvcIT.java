@@ -30,6 +30,7 @@ import org.springframework.web.context.WebApplicationContext;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -51,6 +52,11 @@ public class BatsDatasetControllerMvcIT {
      */
     private static final JsonNodeFactory FACTORY = new JsonNodeFactory(false);
 
+    /**
+     * Most Datasets per batch spectrum download, as in application.properties.
+     */
+    private static final int MAX_BATCH = 1000;
+
     /**
      * The mock agent used to make requests to endpoints.
      */
@@ -561,4 +567,22 @@ public class BatsDatasetControllerMvcIT {
         timestampTestSimpleUpdate(userIncludesTimestamps, jsonld, data);
     }
 
+    /**
+     * Test a batch spectrum download of more Datasets than
+     * app.spectra.max_batch is rejected before any is read.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSpectrumRecordsTooMany() throws Exception {
+        ArrayNode uuids = MAPPER.createArrayNode();
+        for (int i = 0; i <= MAX_BATCH; i++) {
+            uuids.add("dataset-" + i);
+        }
+        mockMvc.perform(post(getDatasetUri("testSpectrumRecordsTooMany") + "spectra")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(uuids.toString()))
+            .andExpect(status().isPayloadTooLarge());
+    }
+
 }
@@ -0,0 +1,300 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicStatusLine;
+import org.bson.Document;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetExportFormats;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DatasetSummary;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.Job;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CircuitBreaker;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.CollectionUtils;
+
+public class DocumentServiceTest {
+
+    /**
+     * Most Dataset UUIDs in the query of one chunk of an export.
+     */
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    /**
+     * JSON-LD of the persisted Dataset.
+     */
+    private static final String JSONLD = "{\"@id\": \"http://localhost/dataset\", "
+        + "\"title\": \"Test dataset\", \"values\": [1.5, 2.5]}";
+
+    /**
+     * Test the JSON-LD of Datasets is read back from the documents they are
+     * persisted as, where it is an embedded document rather than a string,
+     * and documents without JSON-LD are skipped.
+     */
+    @Test
+    public void testForEachJsonld() {
+        MappingMongoConverter converter = new MappingMongoConverter(
+            NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        converter.afterPropertiesSet();
+        DocumentDataset dataset = new DocumentDataset("dataset-uuid", "{}", JSONLD);
+        dataset.setCollectionTitle("collection");
+        Document persisted = new Document();
+        converter.write(dataset, persisted);
+        Assertions.assertTrue(persisted.get("jsonld") instanceof Document);
+
+        List<Document> documents = new ArrayList<>();
+        documents.add(persisted);
+        documents.add(new Document("_id", "without-jsonld"));
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.getCollectionName(DocumentDataset.class))
+            .thenReturn("documentDataset");
+        Mockito.when(mongoTemplate.stream(ArgumentMatchers.any(Query.class),
+            ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("documentDataset")))
+            .thenReturn(iterator(documents.iterator()));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        List<String> read = new ArrayList<>();
+        long count = service.forEachJsonld("collection", (datasetUUID, jsonld) -> {
+            Assertions.assertEquals("dataset-uuid", datasetUUID);
+            read.add(jsonld);
+        });
+        Assertions.assertEquals(1, count);
+        Assertions.assertEquals(Document.parse(JSONLD), Document.parse(read.get(0)));
+    }
+
+    /**
+     * Test documents stored without a Collection title are given the title of
+     * the Collection whose graphs hold them, and their summary.
+     *
+     * @throws Exception If the Collections could not be listed.
+     */
+    @Test
+    public void testBackfill() throws Exception {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        BulkOperations updates = Mockito.mock(BulkOperations.class);
+        Mockito.when(mongoTemplate.getCollectionName(DocumentDataset.class))
+            .thenReturn("documentDataset");
+        Mockito.when(mongoTemplate.find(ArgumentMatchers.any(Query.class),
+            ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("documentDataset")))
+            .thenReturn(Arrays.asList(new Document("_id", "legacy"),
+                new Document("_id", "orphan")));
+        Mockito.when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "documentDataset"))
+            .thenReturn(updates);
+
+        CollectionCatalogService catalogService = Mockito.mock(CollectionCatalogService.class);
+        Mockito.when(catalogService.getCatalog()).thenReturn(
+            new CollectionCatalogService.Catalog(Arrays.asList("empty", "collection")));
+        GraphService graphService = Mockito.mock(GraphService.class);
+        Mockito.when(graphService.listDatasetUUIDs("empty")).thenReturn(Collections.emptyList());
+        Mockito.when(graphService.listDatasetUUIDs("collection"))
+            .thenReturn(Arrays.asList("current", "legacy"));
+        Mockito.when(graphService.getDatasetSummary("collection", "legacy"))
+            .thenReturn(Map.of("title", "Legacy", "url", "http://localhost/legacy",
+                "created", "2020-01-01", "modified", "2020-01-02"));
+
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "catalogService", catalogService);
+        ReflectionTestUtils.setField(service, "graphService", graphService);
+        Job job = new Job("job", "backfill-documents", "DocumentDataset");
+        service.backfill(job);
+
+        Update expected = new Update().set("collectionTitle", "collection")
+            .set("title", "Legacy").set("url", "http://localhost/legacy")
+            .set("created", "2020-01-01").set("modified", "2020-01-02");
+        Mockito.verify(updates).updateOne(
+            new Query(Criteria.where("_id").is("legacy")), expected);
+        Mockito.verify(updates, Mockito.times(1)).execute();
+        Mockito.verify(graphService, Mockito.never()).getDatasetSummary("collection", "current");
+        Assertions.assertEquals(1, job.getProcessed());
+    }
+
+    /**
+     * Test an export of some Datasets only queries their documents, a chunk
+     * of UUIDs per query.
+     *
+     * @throws Exception If the export could not be written.
+     */
+    @Test
+    public void testExportCollectionChunks() throws Exception {
+        MongoTemplate mongoTemplate = Mockito.mock(MongoTemplate.class);
+        Mockito.when(mongoTemplate.getCollectionName(DocumentDataset.class))
+            .thenReturn("documentDataset");
+        Mockito.when(mongoTemplate.stream(ArgumentMatchers.any(Query.class),
+            ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("documentDataset")))
+            .thenAnswer(invocation -> iterator(
+                Collections.singletonList(new Document("_id", "dataset")).iterator()));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+
+        List<String> uuids = new ArrayList<>();
+        for (int i = 0; i < EXPORT_CHUNK_SIZE + 1; i++) {
+            uuids.add("dataset-" + i);
+        }
+        long count = service.exportCollection("collection", DatasetExportFormats.JSON, uuids,
+            new ByteArrayOutputStream());
+        Assertions.assertEquals(2, count);
+
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        Mockito.verify(mongoTemplate, Mockito.times(2)).stream(queries.capture(),
+            ArgumentMatchers.eq(Document.class), ArgumentMatchers.eq("documentDataset"));
+        Assertions.assertEquals(new Query(Criteria.where("collectionTitle").is("collection")
+            .and("_id").in(uuids.subList(EXPORT_CHUNK_SIZE, uuids.size())))
+            .getQueryObject(), queries.getAllValues().get(1).getQueryObject());
+    }
+
+    /**
+     * Test the backfill is only submitted once it is turned on.
+     */
+    @Test
+    public void testScheduleBackfill() {
+        ApplicationConfig appConfig = Mockito.mock(ApplicationConfig.class);
+        JobService jobService = Mockito.mock(JobService.class);
+        Mockito.when(jobService.submit(ArgumentMatchers.eq("backfill-documents"),
+            ArgumentMatchers.eq("DocumentDataset"), ArgumentMatchers.any()))
+            .thenReturn(new Job("job", "backfill-documents", "DocumentDataset"));
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "appConfig", appConfig);
+        ReflectionTestUtils.setField(service, "jobService", jobService);
+
+        service.scheduleBackfill();
+        Mockito.verifyNoInteractions(jobService);
+
+        Mockito.when(appConfig.isDocumentBackfill()).thenReturn(true);
+        service.scheduleBackfill();
+        Mockito.verify(jobService).submit(ArgumentMatchers.eq("backfill-documents"),
+            ArgumentMatchers.eq("DocumentDataset"), ArgumentMatchers.any());
+    }
+
+    /**
+     * Test a restricted listing only queries the summaries of its page, taken
+     * from the Collection's Datasets the user can read, and keeps their order.
+     *
+     * @throws Exception If the Collection could not be found.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testGetDatasetsAmongReadable() throws Exception {
+        Set<String> readable = Set.of("a", "b", "c", "elsewhere");
+        GraphService graphService = Mockito.mock(GraphService.class);
+        Mockito.when(graphService.listedDatasetUUIDs("collection", readable))
+            .thenReturn(Arrays.asList("c", "a", "b"));
+        List<DatasetSummary> summaries = Arrays.asList(summary("a"), summary("c"));
+        DocumentRepository repository = Mockito.mock(DocumentRepository.class);
+        Mockito.when(repository.findByDatasetIdIn(Arrays.asList("c", "a")))
+            .thenReturn(summaries);
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "graphService", graphService);
+        ReflectionTestUtils.setField(service, "repository", repository);
+        ReflectionTestUtils.setField(service, "collectionUtils",
+            Mockito.mock(CollectionUtils.class));
+        ((AtomicBoolean) ReflectionTestUtils.getField(service, "indexesEnsured")).set(true);
+
+        service.getDatasets("collection", 1, 2, false, readable);
+        ArgumentCaptor<Object> datasets = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(graphService).constructDatasetsBody(ArgumentMatchers.eq("collection"),
+            datasets.capture(), ArgumentMatchers.eq(3L), ArgumentMatchers.eq(2),
+            ArgumentMatchers.eq(1), ArgumentMatchers.eq(false));
+        List<String> uuids = new ArrayList<>();
+        for (Object dataset : (List<Object>) datasets.getValue()) {
+            uuids.add((String) ((Map<String, Object>) dataset).get("uuid"));
+        }
+        Assertions.assertEquals(Arrays.asList("c", "a"), uuids);
+    }
+
+    /**
+     * Test a half-open trial call to the file converter service that fails
+     * decoding the response reopens the circuit, instead of leaving the trial
+     * in flight and the circuit open for good.
+     *
+     * @throws Exception If the mocked client could not be set up.
+     */
+    @Test
+    public void testFileConverterTrialResolves() throws Exception {
+        ApplicationConfig appConfig = Mockito.mock(ApplicationConfig.class);
+        ApplicationConfig.FileConverter fileConverter = new ApplicationConfig.FileConverter();
+        Mockito.when(appConfig.getFileConverter()).thenReturn(fileConverter);
+        CloseableHttpResponse response = Mockito.mock(CloseableHttpResponse.class);
+        Mockito.when(response.getStatusLine())
+            .thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, 200, "OK"));
+        Mockito.when(response.getEntity()).thenReturn(new StringEntity("not json"));
+        CloseableHttpClient client = Mockito.mock(CloseableHttpClient.class);
+        Mockito.when(client.execute(ArgumentMatchers.any(HttpUriRequest.class)))
+            .thenReturn(response);
+
+        // Open the circuit, so the next call is a half-open trial
+        CircuitBreaker breaker = new CircuitBreaker(1, 0);
+        breaker.onFailure();
+        DocumentService service = new DocumentService();
+        ReflectionTestUtils.setField(service, "appConfig", appConfig);
+        ReflectionTestUtils.setField(service, "fileConverterClient", client);
+        ReflectionTestUtils.setField(service, "fileConverterBreaker", breaker);
+
+        Assertions.assertThrows(RuntimeException.class, () -> ReflectionTestUtils.invokeMethod(
+            service, "getJsonFromFileConverterService", "{}"));
+        Assertions.assertTrue(breaker.isOpen());
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+
+    /**
+     * @param datasetUUID UUID of the Dataset
+     * @return A summary of the Dataset with only its UUID
+     */
+    private static DatasetSummary summary(final String datasetUUID) {
+        DatasetSummary summary = Mockito.mock(DatasetSummary.class);
+        Mockito.when(summary.getDatasetId()).thenReturn(datasetUUID);
+        return summary;
+    }
+
+    /**
+     * @param documents Documents to iterate over
+     * @return A cursor over the documents
+     */
+    private static CloseableIterator<Document> iterator(final Iterator<Document> documents) {
+        return new CloseableIterator<Document>() {
+            @Override
+            public boolean hasNext() {
+                return documents.hasNext();
+            }
+
+            @Override
+            public Document next() {
+                return documents.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.jena.rdf.model.Model;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.models.DocumentDataset;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.repositories.DocumentRepository;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.utils.sparql.DatasetSparql;
+
+public class GraphServiceTest {
+
+    /**
+     * Test a restricted listing keeps only the allowed Datasets of the
+     * Collection, in the document store's listing order.
+     */
+    @Test
+    public void testListedDatasetUUIDs() {
+        DocumentRepository repository = Mockito.mock(DocumentRepository.class);
+        Mockito.when(repository.findDatasetIdsByCollectionTitleOrderByModified("collection"))
+            .thenReturn(Arrays.asList(document("newest"), document("hidden"),
+                document("older"), document("oldest")));
+        GraphService service = new GraphService();
+        ReflectionTestUtils.setField(service, "repository", repository);
+
+        List<String> listed = ReflectionTestUtils.invokeMethod(service, "listedDatasetUUIDs",
+            "collection", Set.of("oldest", "newest", "older", "elsewhere"));
+        Assertions.assertEquals(Arrays.asList("newest", "older", "oldest"), listed);
+
+        listed = ReflectionTestUtils.invokeMethod(service, "listedDatasetUUIDs",
+            "collection", Arrays.asList("older"));
+        Assertions.assertEquals(Arrays.asList("older"), listed);
+    }
+
+    /**
+     * Test the summary of an uploaded Dataset is read from its Model in hand,
+     * with the created time kept and the modified time added on upload.
+     */
+    @Test
+    public void testUploadedSummary() {
+        String jsonld = "{\"@id\": \"http://localhost/dataset\", "
+            + "\"@type\": \"https://stuchalk.github.io/scidata/ontology/scidata.owl#"
+            + "scidataFramework\", \"http://purl.org/dc/terms/title\": \"Test dataset\"}";
+        Model model = ReflectionTestUtils.invokeMethod(new GraphService(), "jsonldToModel",
+            jsonld, "dataset-uuid", "2020-01-01");
+
+        Map<String, Object> summary = DatasetSparql.getDatasetSummary(
+            model, "http://localhost/collection/dataset-uuid");
+        Assertions.assertEquals("Test dataset", summary.get("title"));
+        Assertions.assertEquals("http://localhost/dataset", summary.get("url"));
+        Assertions.assertEquals("2020-01-01", summary.get("created"));
+        Assertions.assertNotNull(summary.get("modified"));
+    }
+
+    /**
+     * @param datasetId ID of the Dataset
+     * @return A document with only its ID, as the ID projection returns
+     */
+    private static DocumentDataset document(final String datasetId) {
+        DocumentDataset document = new DocumentDataset();
+        document.setDatasetId(datasetId);
+        return document;
+    }
+}
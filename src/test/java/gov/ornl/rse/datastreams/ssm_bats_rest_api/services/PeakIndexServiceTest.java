@@ -0,0 +1,126 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.configs.ApplicationConfig;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.Peak;
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.PeakIndex;
+
+public class PeakIndexServiceTest {
+
+    /**
+     * Title of the searched Collection.
+     */
+    private static final String COLLECTION = "collection";
+
+    /**
+     * The one peak of every indexed Dataset.
+     */
+    private static final List<Peak> PEAKS = Collections.singletonList(new Peak(10, 1, 1));
+
+    /**
+     * Directory of the peak index.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * The index searched.
+     */
+    private PeakIndex index;
+
+    /**
+     * Document store listing the Collection's Datasets.
+     */
+    private DocumentService documentService;
+
+    /**
+     * Service under test.
+     */
+    private PeakIndexService service;
+
+    /**
+     * Index Datasets "a" and "c" and list "a" and the unindexed "b" as the
+     * Collection's Datasets.
+     *
+     * @throws Exception If the index could not be written.
+     */
+    @BeforeEach
+    public void setup() throws Exception {
+        index = new PeakIndex(directory.resolve("peaks.log"), 1, 0);
+        index.put("a", PEAKS);
+        index.put("c", PEAKS);
+        documentService = Mockito.mock(DocumentService.class);
+        Mockito.when(documentService.getDatasetUUIDs(COLLECTION))
+            .thenReturn(Arrays.asList("a", "b"));
+
+        service = new PeakIndexService();
+        ReflectionTestUtils.setField(service, "appConfig", new ApplicationConfig());
+        ReflectionTestUtils.setField(service, "spectrumStore",
+            Mockito.mock(SpectrumStoreService.class));
+        ReflectionTestUtils.setField(service, "documentService", documentService);
+        ReflectionTestUtils.setField(service, "index", index);
+    }
+
+    /**
+     * Close the index.
+     */
+    @AfterEach
+    public void tearDown() {
+        service.closeIndex();
+    }
+
+    /**
+     * Test a Collection's members are read once, only kept once its backfill
+     * succeeds, and then kept up to date without reading them again.
+     */
+    @Test
+    public void testMembers() {
+        Mockito.when(documentService.forEachJsonld(ArgumentMatchers.eq(COLLECTION),
+            ArgumentMatchers.any()))
+            .thenThrow(new IllegalStateException("Document store unavailable"))
+            .thenReturn(0L);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> search());
+        Assertions.assertEquals(Arrays.asList("a"), search());
+        Assertions.assertEquals(Arrays.asList("a"), search());
+        Mockito.verify(documentService, Mockito.times(2)).getDatasetUUIDs(COLLECTION);
+        Mockito.verify(documentService, Mockito.times(2))
+            .forEachJsonld(ArgumentMatchers.eq(COLLECTION), ArgumentMatchers.any());
+
+        service.addMember(COLLECTION, "c");
+        Assertions.assertEquals(Arrays.asList("a", "c"), search());
+        service.removeMember(COLLECTION, "a");
+        Assertions.assertEquals(Arrays.asList("c"), search());
+        Mockito.verify(documentService, Mockito.times(2)).getDatasetUUIDs(COLLECTION);
+
+        service.removeCollection(COLLECTION);
+        Assertions.assertEquals(Arrays.asList("a"), search());
+        Mockito.verify(documentService, Mockito.times(3)).getDatasetUUIDs(COLLECTION);
+    }
+
+    /**
+     * Search the Collection for its Datasets' peak.
+     *
+     * @return UUIDs of the matching Datasets, in order
+     */
+    private List<String> search() {
+        return service.search(COLLECTION, PEAKS, 1, 10, uuid -> true).stream()
+            .map(match -> match.getId())
+            .sorted()
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,75 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.SpectralIndex;
+
+public class SpectralSearchServiceTest {
+
+    /**
+     * Test a slow load of one Collection holds up neither the load nor the
+     * updates of another, while an update of the loading Collection waits and
+     * is applied after its load.
+     *
+     * @throws Exception If the load failed.
+     */
+    @Test
+    public void testLoadPerCollection() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SpectrumVectorService spectrumVectors = Mockito.mock(SpectrumVectorService.class);
+        Mockito.when(spectrumVectors.forEachVector(ArgumentMatchers.eq("slow"),
+            ArgumentMatchers.any())).thenAnswer(invocation -> {
+                loading.countDown();
+                release.await();
+                return accept(invocation.getArgument(1), "a");
+            });
+        Mockito.when(spectrumVectors.forEachVector(ArgumentMatchers.eq("fast"),
+            ArgumentMatchers.any()))
+            .thenAnswer(invocation -> accept(invocation.getArgument(1), "b"));
+        SpectralSearchService service = new SpectralSearchService();
+        ReflectionTestUtils.setField(service, "spectrumVectors", spectrumVectors);
+        ReflectionTestUtils.setField(service, "approximateIndexes",
+            Mockito.mock(ApproximateIndexService.class));
+
+        CompletableFuture<Map<String, SpectralIndex>> slow = CompletableFuture.supplyAsync(
+            () -> ReflectionTestUtils.invokeMethod(service, "getIndexes", "slow"));
+        loading.await();
+        CompletableFuture<Void> removal = CompletableFuture.runAsync(
+            () -> service.remove("slow", "a"));
+        Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Map<String, SpectralIndex> fast = ReflectionTestUtils.invokeMethod(service,
+                "getIndexes", "fast");
+            Assertions.assertTrue(fast.get("grid").contains("b"));
+            service.remove("other", "c");
+        });
+        Assertions.assertFalse(removal.isDone());
+
+        release.countDown();
+        removal.get();
+        Assertions.assertFalse(slow.get().get("grid").contains("a"));
+    }
+
+    /**
+     * @param action      Action given the Collection's vectors
+     * @param datasetUUID UUID of the Collection's one Dataset
+     * @return Number of Datasets of the Collection
+     */
+    private static int accept(
+        final BiConsumer<String, SpectrumVectorService.Vector> action,
+        final String datasetUUID
+    ) {
+        action.accept(datasetUUID, new SpectrumVectorService.Vector("grid", new float[] {1, 0}));
+        return 1;
+    }
+}
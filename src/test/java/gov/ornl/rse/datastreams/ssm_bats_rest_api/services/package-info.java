@@ -0,0 +1,4 @@
+/**
+ * SSM BATS REST API Test services package information.
+ */
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.services;
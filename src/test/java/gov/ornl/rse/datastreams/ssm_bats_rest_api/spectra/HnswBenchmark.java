@@ -0,0 +1,164 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Compares approximate search of an HnswIndex with the exact search of a
+ * SpectralIndex over the same synthetic spectra: recall@k and mean query time
+ * for a range of ef values, and the time to build, save and load the graph.
+ *
+ * Skipped unless run with -Dssm.benchmark=true, for example:
+ * mvn test -Dtest=HnswBenchmark -Dssm.benchmark=true
+ * -Dssm.benchmark.spectra=100000 -Dssm.benchmark.m=16
+ * -Dssm.benchmark.ef_construction=200 -Dssm.benchmark.k=10
+ */
+@EnabledIfSystemProperty(named = "ssm.benchmark", matches = "true")
+public class HnswBenchmark {
+
+    /**
+     * Default number of spectra indexed.
+     */
+    private static final int DEFAULT_SPECTRA = 20000;
+
+    /**
+     * Default most links of a node per layer.
+     */
+    private static final int DEFAULT_M = 16;
+
+    /**
+     * Default candidate list size when inserting.
+     */
+    private static final int DEFAULT_EF_CONSTRUCTION = 200;
+
+    /**
+     * Default matches compared per query.
+     */
+    private static final int DEFAULT_K = 10;
+
+    /**
+     * Queries timed per ef value.
+     */
+    private static final int QUERIES = 200;
+
+    /**
+     * Candidate list sizes of the approximate searches compared.
+     */
+    private static final int[] EFS = {16, 32, 64, 128, 256};
+
+    /**
+     * Nanoseconds per millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * Number of spectra indexed.
+     */
+    private final int spectra = Integer.getInteger("ssm.benchmark.spectra", DEFAULT_SPECTRA);
+
+    /**
+     * Most links of a node per layer.
+     */
+    private final int m = Integer.getInteger("ssm.benchmark.m", DEFAULT_M);
+
+    /**
+     * Candidate list size when inserting.
+     */
+    private final int efConstruction = Integer.getInteger("ssm.benchmark.ef_construction",
+        DEFAULT_EF_CONSTRUCTION);
+
+    /**
+     * Matches compared per query.
+     */
+    private final int k = Integer.getInteger("ssm.benchmark.k", DEFAULT_K);
+
+    /**
+     * Directory of the saved graph.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Report recall@k and query time against the exact search.
+     *
+     * @throws Exception If the graph could not be saved or loaded.
+     */
+    @Test
+    public void benchmarkRecall() throws Exception {
+        Random random = new Random(1);
+        float[][] vectors = new float[spectra][];
+        for (int i = 0; i < spectra; i++) {
+            vectors[i] = HnswIndexTest.spectrum(random);
+        }
+        SpectralIndex exact = new SpectralIndex(vectors[0].length);
+        HnswIndex graph = new HnswIndex(vectors[0].length, m, efConstruction, 1);
+        long start = System.nanoTime();
+        for (int i = 0; i < spectra; i++) {
+            exact.put(Integer.toString(i), vectors[i]);
+        }
+        report("Exact index built", start);
+        start = System.nanoTime();
+        for (int i = 0; i < spectra; i++) {
+            graph.put(Integer.toString(i), vectors[i]);
+        }
+        report("Graph of " + spectra + " spectra, m " + m + ", ef construction "
+            + efConstruction + " built", start);
+
+        Path path = directory.resolve("benchmark.hnsw");
+        start = System.nanoTime();
+        graph.save(path, 0);
+        report("Saved " + Files.size(path) + " bytes", start);
+        start = System.nanoTime();
+        HnswIndex loaded = HnswIndex.load(path, vectors[0].length, 0, 1);
+        report("Loaded", start);
+        Assertions.assertNotNull(loaded);
+
+        float[][] queries = new float[QUERIES][];
+        List<Set<String>> expected = new ArrayList<>();
+        start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = HnswIndexTest.spectrum(random);
+            Set<String> ids = new HashSet<>(); //NOPMD
+            for (SpectralIndex.Match match : exact.search(queries[q], k, id -> true)) {
+                ids.add(match.getId());
+            }
+            expected.add(ids);
+        }
+        System.out.println(String.format("exact      %8.3f ms/query",
+            (System.nanoTime() - start) / NANOS_PER_MILLI / QUERIES));
+
+        for (int ef : EFS) {
+            int found = 0;
+            start = System.nanoTime();
+            for (int q = 0; q < QUERIES; q++) {
+                for (SpectralIndex.Match match : loaded.search(queries[q], k, ef, id -> true)) {
+                    found += expected.get(q).contains(match.getId()) ? 1 : 0;
+                }
+            }
+            System.out.println(String.format("ef %-6d  %8.3f ms/query  recall@%d %.3f",
+                ef, (System.nanoTime() - start) / NANOS_PER_MILLI / QUERIES, k,
+                (double) found / QUERIES / k));
+        }
+    }
+
+    /**
+     * Print how long a step took.
+     *
+     * @param step  Description of the step
+     * @param start System.nanoTime() when the step started
+     */
+    private static void report(final String step, final long start) {
+        System.out.println(String.format("%s in %.1f ms", step,
+            (System.nanoTime() - start) / NANOS_PER_MILLI));
+    }
+}
@@ -0,0 +1,133 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HnswIndexTest {
+
+    /**
+     * Length of the vectors indexed.
+     */
+    private static final int DIMENSION = 64;
+
+    /**
+     * Number of vectors indexed.
+     */
+    private static final int SIZE = 2000;
+
+    /**
+     * Matches compared per query.
+     */
+    private static final int K = 10;
+
+    /**
+     * Candidate list size of the approximate searches.
+     */
+    private static final int EF = 64;
+
+    /**
+     * Fingerprint of the saved graphs.
+     */
+    private static final long FINGERPRINT = 7;
+
+    /**
+     * Directory of the saved graphs.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test approximate matches are nearly those of the exact search, removed
+     * and filtered out vectors are never returned, and a saved graph loads
+     * with the same answers.
+     *
+     * @throws Exception If the graph could not be saved or loaded.
+     */
+    @Test
+    public void testRecallAndReload() throws Exception {
+        Random random = new Random(1);
+        SpectralIndex exact = new SpectralIndex(DIMENSION);
+        HnswIndex graph = new HnswIndex(DIMENSION, 16, 100, 1);
+        for (int i = 0; i < SIZE; i++) {
+            float[] vector = spectrum(random);
+            exact.put("spectrum-" + i, vector);
+            graph.put("spectrum-" + i, vector);
+        }
+        for (int i = 0; i < SIZE; i += 10) {
+            exact.remove("spectrum-" + i);
+            graph.remove("spectrum-" + i);
+        }
+        Assertions.assertEquals(SIZE - SIZE / 10, graph.size());
+        Assertions.assertEquals(SIZE / 10, graph.tombstones());
+
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = spectrum(random);
+            Set<String> expected = new HashSet<>();
+            for (SpectralIndex.Match match : exact.search(query, K, id -> true)) {
+                expected.add(match.getId());
+            }
+            List<SpectralIndex.Match> matches = graph.search(query, K, EF, id -> true);
+            Assertions.assertEquals(K, matches.size());
+            for (SpectralIndex.Match match : matches) {
+                Assertions.assertFalse(match.getId().endsWith("0"));
+                found += expected.contains(match.getId()) ? 1 : 0;
+            }
+        }
+        Assertions.assertTrue(found >= 0.9 * queries * K, "Recall " + found);
+
+        float[] query = spectrum(random);
+        for (SpectralIndex.Match match : graph.search(query, K, EF, id -> id.endsWith("7"))) {
+            Assertions.assertTrue(match.getId().endsWith("7"));
+        }
+
+        Path path = directory.resolve("graph.hnsw");
+        graph.save(path, FINGERPRINT);
+        HnswIndex loaded = HnswIndex.load(path, DIMENSION, FINGERPRINT, 1);
+        Assertions.assertNotNull(loaded);
+        Assertions.assertEquals(graph.size(), loaded.size());
+        Assertions.assertEquals(graph.tombstones(), loaded.tombstones());
+        Assertions.assertEquals(graph.search(query, K, EF, id -> true).get(0).getId(),
+            loaded.search(query, K, EF, id -> true).get(0).getId());
+
+        Assertions.assertNull(HnswIndex.load(path, DIMENSION, FINGERPRINT + 1, 1));
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(path, bytes);
+        Assertions.assertNull(HnswIndex.load(path, DIMENSION, FINGERPRINT, 1));
+    }
+
+    /**
+     * @param random Source of the peak positions and widths
+     * @return Unit length spectrum of three Gaussian peaks
+     */
+    static float[] spectrum(final Random random) {
+        float[] vector = new float[DIMENSION];
+        double norm = 0;
+        for (int peak = 0; peak < 3; peak++) {
+            double center = random.nextDouble() * DIMENSION;
+            double width = 1 + random.nextDouble() * 3;
+            double height = random.nextDouble();
+            for (int i = 0; i < DIMENSION; i++) {
+                double distance = (i - center) / width;
+                vector[i] += (float) (height * Math.exp(-distance * distance / 2));
+            }
+        }
+        for (float value : vector) {
+            norm += value * value;
+        }
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= Math.sqrt(norm);
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,53 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class LttbTest {
+
+    /**
+     * Number of points in the spectrum downsampled.
+     */
+    private static final int SIZE = 1000;
+
+    /**
+     * Index of the narrow peak of the spectrum.
+     */
+    private static final int PEAK = 437;
+
+    /**
+     * Number of points kept.
+     */
+    private static final int POINTS = 50;
+
+    /**
+     * Test downsampling keeps the ends and a narrow peak, in order, and
+     * keeps every point of a spectrum with too few to downsample.
+     */
+    @Test
+    public void testSelect() {
+        double[] x = new double[SIZE];
+        double[] y = new double[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            x[i] = i;
+            y[i] = Math.sin(i / 100.0);
+        }
+        y[PEAK] = 10;
+        Spectrum spectrum = new Spectrum(x, y);
+
+        int[] kept = Lttb.select(spectrum, POINTS);
+        Assertions.assertEquals(POINTS, kept.length);
+        Assertions.assertEquals(0, kept[0]);
+        Assertions.assertEquals(SIZE - 1, kept[POINTS - 1]);
+        boolean peak = false;
+        for (int i = 0; i < kept.length; i++) {
+            Assertions.assertTrue(i == 0 || kept[i - 1] < kept[i]);
+            peak |= kept[i] == PEAK;
+        }
+        Assertions.assertTrue(peak);
+
+        Assertions.assertArrayEquals(new int[] {0, SIZE - 1}, Lttb.select(spectrum, 2));
+        Spectrum small = new Spectrum(new double[] {1, 2, 3}, new double[] {1, 0, 1});
+        Assertions.assertArrayEquals(new int[] {0, 1, 2}, Lttb.select(small, POINTS));
+    }
+}
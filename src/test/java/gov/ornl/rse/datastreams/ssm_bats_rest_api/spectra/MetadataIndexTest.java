@@ -0,0 +1,166 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class MetadataIndexTest {
+
+    /**
+     * Values added to the bitmaps, spanning several chunks.
+     */
+    private static final int RANGE = 200000;
+
+    /**
+     * Number of Datasets indexed.
+     */
+    private static final int SIZE = 3000;
+
+    /**
+     * Techniques of the Datasets indexed.
+     */
+    private static final String[] TECHNIQUES = {"xrd", "raman", "ftir"};
+
+    /**
+     * Test bitmaps hold the same values as a sorted set, in both sparse and
+     * dense chunks, and intersect correctly.
+     */
+    @Test
+    public void testBitmap() {
+        Random random = new Random(1);
+        Bitmap a = new Bitmap();
+        Bitmap b = new Bitmap();
+        TreeSet<Integer> setA = new TreeSet<>();
+        TreeSet<Integer> setB = new TreeSet<>();
+        for (int i = 0; i < RANGE / 2; i++) {
+            // Dense in the first chunk, sparse beyond
+            int value = i % 2 == 0 ? random.nextInt(1 << 16) : random.nextInt(RANGE);
+            a.add(value);
+            setA.add(value);
+            value = random.nextInt(RANGE);
+            b.add(value);
+            setB.add(value);
+        }
+        for (int i = 0; i < RANGE / 4; i++) {
+            int value = random.nextInt(RANGE);
+            a.remove(value);
+            setA.remove(value);
+        }
+        Assertions.assertEquals(setA.size(), a.cardinality());
+        Assertions.assertEquals(setA, values(a));
+        Assertions.assertTrue(a.contains(setA.first()));
+        Assertions.assertFalse(a.contains(RANGE));
+
+        TreeSet<Integer> both = new TreeSet<>(setA);
+        both.retainAll(setB);
+        Bitmap and = Bitmap.and(a, b);
+        Assertions.assertEquals(both, values(and));
+        Assertions.assertEquals(both.size(), and.cardinality());
+
+        Assertions.assertEquals(new TreeSet<>(List.of(1, 5, 7)),
+            values(Bitmap.of(new int[] {7, 1, 5, 1, 9}, 4)));
+    }
+
+    /**
+     * Test filters by attribute values and x range return the same Datasets
+     * as checking every Dataset, after replacements and removals.
+     */
+    @Test
+    public void testFilter() {
+        Random random = new Random(1);
+        MetadataIndex index = new MetadataIndex();
+        Map<String, Map<String, String>> attributes = new HashMap<>();
+        Map<String, double[]> ranges = new HashMap<>();
+        for (int i = 0; i < SIZE * 2; i++) {
+            String id = "dataset-" + random.nextInt(SIZE);
+            Map<String, String> values = new HashMap<>();
+            values.put(MetadataIndex.TECHNIQUE, TECHNIQUES[random.nextInt(TECHNIQUES.length)]);
+            values.put(MetadataIndex.X_UNITS, random.nextBoolean() ? "degrees" : "1/cm");
+            if (random.nextBoolean()) {
+                values.put(MetadataIndex.Y_QUANTITY, "intensity");
+            }
+            double low = random.nextInt(100);
+            double[] range = random.nextInt(10) == 0
+                ? new double[] {Double.NaN, Double.NaN}
+                : new double[] {low, low + random.nextInt(100)};
+            index.put(id, values, range[0], range[1]);
+            attributes.put(id, values);
+            ranges.put(id, range);
+        }
+        for (int i = 0; i < SIZE / 10; i++) {
+            String id = "dataset-" + random.nextInt(SIZE);
+            index.remove(id);
+            attributes.remove(id);
+            ranges.remove(id);
+        }
+        Assertions.assertEquals(attributes.size(), index.size());
+
+        Map<String, String> criteria = new HashMap<>();
+        criteria.put(MetadataIndex.TECHNIQUE, "raman");
+        assertFilter(index, attributes, ranges, criteria, Double.NaN, Double.NaN);
+        assertFilter(index, attributes, ranges, criteria, 20, 80);
+        criteria.put(MetadataIndex.Y_QUANTITY, "intensity");
+        assertFilter(index, attributes, ranges, criteria, 50, Double.NaN);
+        assertFilter(index, attributes, ranges, new HashMap<>(), Double.NaN, 150);
+        assertFilter(index, attributes, ranges, new HashMap<>(), 10, 20);
+        criteria.put(MetadataIndex.X_UNITS, "furlongs");
+        Assertions.assertTrue(index.filter(criteria, Double.NaN, Double.NaN).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> index.filter(new HashMap<>(), 2, 1));
+    }
+
+    /**
+     * Assert a filter returns the Datasets with the criteria whose range
+     * covers from and to.
+     *
+     * @param index      The index
+     * @param attributes Attributes of each indexed Dataset
+     * @param ranges     Lowest and highest x of each indexed Dataset
+     * @param criteria   Value each attribute must have
+     * @param from       Lowest x value to cover, or NaN
+     * @param to         Highest x value to cover, or NaN
+     */
+    private static void assertFilter(
+        final MetadataIndex index,
+        final Map<String, Map<String, String>> attributes,
+        final Map<String, double[]> ranges,
+        final Map<String, String> criteria,
+        final double from,
+        final double to
+    ) {
+        double low = Double.isNaN(from) ? to : from;
+        double high = Double.isNaN(to) ? from : to;
+        Set<String> expected = new HashSet<>();
+        for (Map.Entry<String, Map<String, String>> entry : attributes.entrySet()) {
+            double[] range = ranges.get(entry.getKey());
+            if (entry.getValue().entrySet().containsAll(criteria.entrySet())
+                && (Double.isNaN(low) || range[0] <= low && range[1] >= high)) {
+                expected.add(entry.getKey());
+            }
+        }
+        List<String> found = index.filter(criteria, from, to);
+        Assertions.assertFalse(expected.isEmpty());
+        Assertions.assertEquals(expected.size(), found.size());
+        Assertions.assertEquals(expected, new HashSet<>(found));
+    }
+
+    /**
+     * @param bitmap A bitmap
+     * @return Its values, checking they are passed in increasing order
+     */
+    private static TreeSet<Integer> values(final Bitmap bitmap) {
+        List<Integer> values = new ArrayList<>();
+        bitmap.forEach(values::add);
+        TreeSet<Integer> sorted = new TreeSet<>(values);
+        Assertions.assertEquals(new ArrayList<>(sorted), values);
+        return sorted;
+    }
+}
@@ -0,0 +1,115 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PeakIndexTest {
+
+    /**
+     * Width in x of the bins of the index under test.
+     */
+    private static final double BIN_WIDTH = 5;
+
+    /**
+     * Fingerprint of the index under test.
+     */
+    private static final long FINGERPRINT = 7;
+
+    /**
+     * Directory of the index under test.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test prominent peaks are found with their position, height and width,
+     * and small ones are not.
+     */
+    @Test
+    public void testDetect() {
+        double[] x = new double[401];
+        double[] y = new double[x.length];
+        double sigma = 4;
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+            y[i] = 10 + gaussian(i, 100, 1, sigma) + gaussian(i, 200, 0.5, sigma)
+                + gaussian(i, 300, 0.02, sigma);
+        }
+
+        List<Peak> peaks = new PeakDetector(0.05, 32).detect(new Spectrum(x, y));
+        Assertions.assertEquals(2, peaks.size());
+        Assertions.assertEquals(100, peaks.get(0).getPosition());
+        Assertions.assertEquals(200, peaks.get(1).getPosition());
+        Assertions.assertEquals(0.5, peaks.get(1).getHeight(), 0.01);
+        // Full width at half maximum of a Gaussian
+        double fwhm = 2 * Math.sqrt(2 * Math.log(2)) * sigma;
+        Assertions.assertEquals(fwhm, peaks.get(0).getWidth(), 0.1);
+
+        Assertions.assertEquals(1, new PeakDetector(0.05, 1).detect(new Spectrum(x, y)).size());
+    }
+
+    /**
+     * Test the best matching peak lists are found, within the filter, and
+     * updates and removals survive reopening the index.
+     *
+     * @throws Exception If the index could not be written.
+     */
+    @Test
+    public void testSearchAndReopen() throws Exception {
+        Path path = directory.resolve("peaks.log");
+        List<Peak> query = Arrays.asList(new Peak(100, 1, 2), new Peak(250, 0.5f, 2));
+        try (PeakIndex index = new PeakIndex(path, BIN_WIDTH, FINGERPRINT)) {
+            Assertions.assertTrue(index.isFresh());
+            index.put("same", Arrays.asList(new Peak(101, 2, 2), new Peak(249, 1, 2)));
+            index.put("partial", Arrays.asList(new Peak(100, 1, 2), new Peak(400, 1, 2)));
+            index.put("other", Arrays.asList(new Peak(600, 1, 2)));
+            index.put("removed", Arrays.asList(new Peak(100, 1, 2), new Peak(250, 0.5f, 2)));
+            index.remove("removed");
+
+            List<SpectralIndex.Match> matches = index.search(query, BIN_WIDTH, 10, 100, id -> true);
+            Assertions.assertEquals(2, matches.size());
+            Assertions.assertEquals("same", matches.get(0).getId());
+            Assertions.assertTrue(matches.get(0).getScore() > 0.9);
+            Assertions.assertEquals("partial", matches.get(1).getId());
+
+            matches = index.search(query, BIN_WIDTH, 10, 100, id -> !"same".equals(id));
+            Assertions.assertEquals("partial", matches.get(0).getId());
+        }
+
+        try (PeakIndex index = new PeakIndex(path, BIN_WIDTH, FINGERPRINT)) {
+            Assertions.assertFalse(index.isFresh());
+            Assertions.assertEquals(3, index.size());
+            Assertions.assertNull(index.get("removed"));
+            Assertions.assertEquals(249, index.get("same").get(1).getPosition());
+            Assertions.assertEquals("same",
+                index.search(query, BIN_WIDTH, 1, 100, id -> true).get(0).getId());
+        }
+
+        try (PeakIndex index = new PeakIndex(path, BIN_WIDTH, FINGERPRINT + 1)) {
+            Assertions.assertTrue(index.isFresh());
+            Assertions.assertEquals(0, index.size());
+        }
+    }
+
+    /**
+     * @param x      Where to evaluate the Gaussian
+     * @param center Center of the Gaussian
+     * @param height Height of the Gaussian
+     * @param sigma  Standard deviation of the Gaussian
+     * @return Value of the Gaussian at x
+     */
+    private static double gaussian(
+        final double x,
+        final double center,
+        final double height,
+        final double sigma
+    ) {
+        double distance = (x - center) / sigma;
+        return height * Math.exp(-distance * distance / 2);
+    }
+}
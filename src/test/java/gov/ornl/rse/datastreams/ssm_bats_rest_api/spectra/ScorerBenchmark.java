@@ -0,0 +1,134 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmark of each built-in Scorer and of a composite of all of them,
+ * scoring a query against synthetic spectra in blocks the size an exact search
+ * scans. Each operation scores every spectrum once, so the reported time
+ * divided by the number of spectra is the time per score.
+ *
+ * Not run by the test suite. Run it from the test classpath, for example:
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra.ScorerBenchmark
+ * or pass JMH options, such as -p spectra=100000, to org.openjdk.jmh.Main.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScorerBenchmark {
+
+    /**
+     * Vectors scored per call, as in a search of a SpectralIndex.
+     */
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * Name of the scorer benchmarked; "composite" weighs the others equally.
+     */
+    @Param({"cosine", "pearson", "contrast_angle", "euclidean", "composite"})
+    private String scorerName;
+
+    /**
+     * Number of spectra scored per operation.
+     */
+    @Param("20000")
+    private int spectra;
+
+    /**
+     * The scorer benchmarked.
+     */
+    private Scorer scorer;
+
+    /**
+     * The query.
+     */
+    private float[] query;
+
+    /**
+     * Vectors of the spectra, stored back to back.
+     */
+    private float[] vectors;
+
+    /**
+     * Buffer of a block's scores.
+     */
+    private final float[] scores = new float[BLOCK_SIZE];
+
+    /**
+     * Create the scorer, query and spectra.
+     */
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        query = HnswIndexTest.spectrum(random);
+        int dimension = query.length;
+        vectors = new float[spectra * dimension];
+        for (int i = 0; i < spectra; i++) {
+            System.arraycopy(HnswIndexTest.spectrum(random), 0, vectors, i * dimension,
+                dimension);
+        }
+
+        if ("composite".equals(scorerName)) {
+            Map<Scorer, Double> weights = new LinkedHashMap<>();
+            for (String name : new String[] {"cosine", "pearson", "contrast_angle",
+                "euclidean"}) {
+                weights.put(Scorers.get(name), 1.0);
+            }
+            scorer = Scorers.composite(weights);
+        } else {
+            scorer = Scorers.get(scorerName);
+        }
+    }
+
+    /**
+     * Score the query against all the spectra, a block at a time.
+     *
+     * @return Sum of the first score of each block, consumed by JMH so the
+     *         scoring is not eliminated
+     */
+    @Benchmark
+    public double scoreAll() {
+        int dimension = query.length;
+        double checksum = 0;
+        for (int from = 0; from < spectra; from += BLOCK_SIZE) {
+            int block = Math.min(BLOCK_SIZE, spectra - from);
+            scorer.score(query, vectors, from * dimension, block, dimension, scores);
+            checksum += scores[0];
+        }
+        return checksum;
+    }
+
+    /**
+     * Run the benchmark with its default options.
+     *
+     * @param args Unused
+     * @throws RunnerException If the benchmark could not be run
+     */
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(ScorerBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,161 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ScorersTest {
+
+    /**
+     * Number of vectors scored, more than one parallel block of an index.
+     */
+    private static final int VECTORS = 5000;
+
+    /**
+     * Tolerance of scores compared with a direct computation.
+     */
+    private static final double DELTA = 1e-4;
+
+    /**
+     * Test each block kernel scores every vector of a block, from an offset,
+     * as computed directly, and a composite scores their weighted mean.
+     */
+    @Test
+    public void testScore() {
+        Random random = new Random(1);
+        float[] query = HnswIndexTest.spectrum(random);
+        int dimension = query.length;
+        float[] vectors = new float[VECTORS * dimension];
+        for (int i = 0; i < VECTORS; i++) {
+            System.arraycopy(HnswIndexTest.spectrum(random), 0, vectors, i * dimension,
+                dimension);
+        }
+        int count = VECTORS - 1;
+        float[] cosine = score(Scorers.COSINE, query, vectors, dimension, count);
+        float[] pearson = score(Scorers.PEARSON, query, vectors, dimension, count);
+        float[] angle = score(Scorers.CONTRAST_ANGLE, query, vectors, dimension, count);
+        float[] euclidean = score(Scorers.EUCLIDEAN, query, vectors, dimension, count);
+        for (int c = 0; c < count; c++) {
+            int offset = (c + 1) * dimension;
+            double dot = 0;
+            double querySum = 0;
+            double sum = 0;
+            double distance = 0;
+            for (int i = 0; i < dimension; i++) {
+                double q = query[i];
+                double v = vectors[offset + i];
+                dot += q * v;
+                querySum += q;
+                sum += v;
+                distance += (q - v) * (q - v);
+            }
+            double covariance = 0;
+            double queryVariance = 0;
+            double variance = 0;
+            for (int i = 0; i < dimension; i++) {
+                double q = query[i] - querySum / dimension;
+                double v = vectors[offset + i] - sum / dimension;
+                covariance += q * v;
+                queryVariance += q * q;
+                variance += v * v;
+            }
+            Assertions.assertEquals(dot, cosine[c], DELTA);
+            Assertions.assertEquals(covariance / Math.sqrt(queryVariance * variance),
+                pearson[c], DELTA);
+            Assertions.assertEquals(1 - 2 * Math.acos(Math.min(1, dot)) / Math.PI,
+                angle[c], DELTA);
+            Assertions.assertEquals(1 / (1 + Math.sqrt(distance)), euclidean[c], DELTA);
+        }
+        Assertions.assertEquals(1, score(Scorers.CONTRAST_ANGLE, query, query, 0, 1)[0], DELTA);
+
+        Map<Scorer, Double> weights = new LinkedHashMap<>();
+        weights.put(Scorers.COSINE, 3.0);
+        weights.put(Scorers.EUCLIDEAN, 1.0);
+        float[] composite = score(Scorers.composite(weights), query, vectors, dimension,
+            count);
+        for (int c = 0; c < count; c++) {
+            Assertions.assertEquals((3 * cosine[c] + euclidean[c]) / 4, composite[c], DELTA);
+        }
+        weights.put(Scorers.PEARSON, 0.0);
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> Scorers.composite(weights));
+        Assertions.assertSame(Scorers.COSINE, Scorers.get("dot"));
+        Assertions.assertNull(Scorers.get("unknown"));
+    }
+
+    /**
+     * Test Pearson correlation stays exact for nearly constant vectors on a
+     * large baseline, where uncentered sums of squares cancel.
+     */
+    @Test
+    public void testPearsonOnBaseline() {
+        int dimension = 512;
+        float[] query = new float[dimension];
+        float[] vectors = new float[2 * dimension];
+        for (int i = 0; i < dimension; i++) {
+            double wave = Math.sin(i / 10.0);
+            query[i] = (float) (1000 + 0.1 * wave);
+            vectors[i] = (float) (1000 + 0.2 * wave);
+            vectors[dimension + i] = (float) (1000 - 0.2 * wave);
+        }
+        float[] pearson = score(Scorers.PEARSON, query, vectors, 0, 2);
+        Assertions.assertEquals(1, pearson[0], 1e-3);
+        Assertions.assertEquals(-1, pearson[1], 1e-3);
+
+        float[] constant = new float[dimension];
+        Arrays.fill(constant, 1000);
+        Assertions.assertEquals(0, score(Scorers.PEARSON, query, constant, 0, 1)[0]);
+    }
+
+    /**
+     * Test an index searched with a scorer ranks by its scores.
+     */
+    @Test
+    public void testSearch() {
+        Random random = new Random(2);
+        SpectralIndex index = new SpectralIndex(HnswIndexTest.spectrum(random).length);
+        for (int i = 0; i < VECTORS; i++) {
+            index.put("id-" + i, HnswIndexTest.spectrum(random));
+        }
+        index.remove("id-0");
+        float[] query = HnswIndexTest.spectrum(random);
+        index.put("query", query);
+
+        List<SpectralIndex.Match> matches = index.search(query, VECTORS, Scorers.EUCLIDEAN,
+            id -> true);
+        Assertions.assertEquals(VECTORS, matches.size());
+        Assertions.assertEquals("query", matches.get(0).getId());
+        Assertions.assertEquals(1, matches.get(0).getScore(), DELTA);
+        for (int i = 1; i < matches.size(); i++) {
+            Assertions.assertTrue(matches.get(i - 1).getScore() >= matches.get(i).getScore());
+            Assertions.assertNotEquals("id-0", matches.get(i).getId());
+        }
+    }
+
+    /**
+     * Score a block of vectors.
+     *
+     * @param scorer  The scorer
+     * @param query   The query
+     * @param vectors Vectors stored back to back
+     * @param offset  Index in vectors of the first value scored
+     * @param count   Number of vectors scored
+     * @return Score of each vector scored
+     */
+    private static float[] score(
+        final Scorer scorer,
+        final float[] query,
+        final float[] vectors,
+        final int offset,
+        final int count
+    ) {
+        float[] scores = new float[count];
+        scorer.score(query, vectors, offset, count, query.length, scores);
+        return scores;
+    }
+}
@@ -0,0 +1,118 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SpectralIndexTest {
+
+    /**
+     * Length of the test vectors.
+     */
+    private static final int DIMENSION = 16;
+
+    /**
+     * Number of vectors indexed, enough for several parallel blocks.
+     */
+    private static final int VECTORS = 10000;
+
+    /**
+     * Number of matches asked for.
+     */
+    private static final int K = 5;
+
+    /**
+     * Test the top k matches of a search are the same as a brute force ranking,
+     * highest first, and respect the filter.
+     */
+    @Test
+    public void testSearch() {
+        Random random = new Random(1);
+        SpectralIndex index = new SpectralIndex(DIMENSION);
+        float[][] vectors = new float[VECTORS][];
+        for (int i = 0; i < VECTORS; i++) {
+            vectors[i] = randomUnitVector(random);
+            index.put("id-" + i, vectors[i]);
+        }
+        float[] query = randomUnitVector(random);
+
+        // Brute force: find the best vector with an even index
+        int best = -1;
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < VECTORS; i += 2) {
+            float score = dot(query, vectors[i]);
+            if (score > bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+
+        List<SpectralIndex.Match> matches = index.search(query, K,
+            id -> Integer.parseInt(id.substring("id-".length())) % 2 == 0);
+        Assertions.assertEquals(K, matches.size());
+        Assertions.assertEquals("id-" + best, matches.get(0).getId());
+        Assertions.assertEquals(bestScore, matches.get(0).getScore(), 1e-6);
+        for (int i = 1; i < K; i++) {
+            Assertions.assertTrue(matches.get(i - 1).getScore() >= matches.get(i).getScore());
+        }
+
+        // Every block's best are merged, not just the overall best
+        int[] order = IntStream.range(0, VECTORS / 2).map(i -> 2 * i).boxed()
+            .sorted((a, b) -> Float.compare(dot(query, vectors[b]), dot(query, vectors[a])))
+            .mapToInt(Integer::intValue).limit(K).toArray();
+        for (int i = 0; i < K; i++) {
+            Assertions.assertEquals("id-" + order[i], matches.get(i).getId());
+        }
+    }
+
+    /**
+     * Test removed vectors are not returned and their slots are reused.
+     */
+    @Test
+    public void testRemove() {
+        SpectralIndex index = new SpectralIndex(2);
+        index.put("a", new float[] {1, 0});
+        index.put("b", new float[] {0, 1});
+        index.remove("a");
+        Assertions.assertFalse(index.contains("a"));
+        Assertions.assertEquals("b", index.search(new float[] {1, 0}, K, id -> true)
+            .get(0).getId());
+
+        index.put("c", new float[] {1, 0});
+        index.put("b", new float[] {1, 0});
+        Assertions.assertEquals(2, index.size());
+        Assertions.assertEquals(2, index.search(new float[] {1, 0}, K, id -> true).size());
+    }
+
+    /**
+     * @param random Source of random values.
+     * @return A random vector of unit length.
+     */
+    private static float[] randomUnitVector(final Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        float norm = (float) Math.sqrt(dot(vector, vector));
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+
+    /**
+     * @param a A vector.
+     * @param b A vector of the same length.
+     * @return The dot product of the vectors.
+     */
+    private static float dot(final float[] a, final float[] b) {
+        float sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,75 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SpectrumExtractorTest {
+
+    /**
+     * Number of points in the studtite spectrum.
+     */
+    private static final int STUDTITE_POINTS = 1015;
+
+    /**
+     * Allowed error in resampled values.
+     */
+    private static final double DELTA = 1e-6;
+
+    /**
+     * Test the spectrum and its metadata are read from SciData JSON-LD and
+     * sorted by increasing x.
+     *
+     * @throws Exception If the test resource could not be read.
+     */
+    @Test
+    public void testFromJsonld() throws Exception {
+        String jsonld = new String(
+            Files.readAllBytes(Paths.get("src", "test", "resources", "studtite.jsonld")),
+            StandardCharsets.UTF_8
+        );
+        Spectrum spectrum = SpectrumExtractor.fromJsonld(jsonld);
+
+        Assertions.assertEquals(STUDTITE_POINTS, spectrum.size());
+        Assertions.assertEquals("obo:CHMO_0000228", spectrum.getTechnique());
+        Assertions.assertEquals("wavenumbers", spectrum.getXQuantity());
+        Assertions.assertEquals("intensity", spectrum.getYQuantity());
+        double[] x = spectrum.getX();
+        for (int i = 1; i < x.length; i++) {
+            Assertions.assertTrue(x[i - 1] <= x[i]);
+        }
+    }
+
+    /**
+     * Test JSON-LD without dataseries has no spectrum.
+     *
+     * @throws Exception If the JSON-LD could not be parsed.
+     */
+    @Test
+    public void testNoSpectrum() throws Exception {
+        Assertions.assertNull(SpectrumExtractor.fromJsonld("{\"@graph\": {\"title\": \"x\"}}"));
+    }
+
+    /**
+     * Test resampling interpolates between points, is zero outside the
+     * spectrum and normalizes to unit length.
+     */
+    @Test
+    public void testResample() {
+        SpectralGrid grid = new SpectralGrid(0, 4, 5);
+        Spectrum spectrum = SpectrumExtractor.fromArrays(
+            new double[] {3, 1, Double.NaN}, new double[] {6, 2, 1});
+        float[] values = grid.resample(spectrum);
+
+        // Grid points 1, 2 and 3 have values 2, 4 and 6 before normalizing
+        double norm = Math.sqrt(2 * 2 + 4 * 4 + 6 * 6);
+        Assertions.assertArrayEquals(
+            new float[] {0, (float) (2 / norm), (float) (4 / norm), (float) (6 / norm), 0},
+            values, (float) DELTA);
+        Assertions.assertNull(grid.resample(SpectrumExtractor.fromArrays(
+            new double[] {5, 6}, new double[] {1, 1})));
+    }
+}
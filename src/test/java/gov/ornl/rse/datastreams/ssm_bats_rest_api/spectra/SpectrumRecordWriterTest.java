@@ -0,0 +1,117 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpectrumRecordWriterTest {
+
+    /**
+     * Segment size of the store the spectra are read from.
+     */
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    /**
+     * Points of the float64 spectrum, spanning several write buffers.
+     */
+    private static final int POINTS = 20000;
+
+    /**
+     * "SSMR", the first four bytes of a record.
+     */
+    private static final byte[] MAGIC = "SSMR".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Version of the record format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Directory of the store the spectra are read from.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test concatenated records of float32, float64 and missing spectra read
+     * back with their metadata and values.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testWrite() throws Exception {
+        Spectrum small = new Spectrum(new double[] {1, 2, 3}, new double[] {0.5, 0.25, 2},
+            "qudt:PER-CentiM", "wavenumbers", "intensity", "obo:CHMO_0000228");
+        double[] x = new double[POINTS];
+        double[] y = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            x[i] = i * 0.1;
+            y[i] = Math.sqrt(i);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            SpectrumRecordWriter writer = new SpectrumRecordWriter(bytes);
+            writer.write("small", store.put("small", small));
+            writer.write("large", store.put("large", new Spectrum(x, y)));
+            writer.write("missing", null);
+            writer.flush();
+        }
+
+        ByteBuffer records = ByteBuffer.wrap(bytes.toByteArray()).order(ByteOrder.LITTLE_ENDIAN);
+        String[] strings = new String[5];
+        double[][] values = read(records, strings);
+        Assertions.assertArrayEquals(new String[] {"small", "obo:CHMO_0000228",
+            "qudt:PER-CentiM", "wavenumbers", "intensity"}, strings);
+        Assertions.assertArrayEquals(small.getX(), values[0]);
+        Assertions.assertArrayEquals(small.getY(), values[1]);
+
+        values = read(records, strings);
+        Assertions.assertEquals("large", strings[0]);
+        Assertions.assertNull(strings[1]);
+        Assertions.assertArrayEquals(x, values[0]);
+        Assertions.assertArrayEquals(y, values[1]);
+
+        values = read(records, strings);
+        Assertions.assertEquals("missing", strings[0]);
+        Assertions.assertEquals(0, values[0].length);
+        Assertions.assertFalse(records.hasRemaining());
+    }
+
+    /**
+     * Read a record.
+     *
+     * @param records Records, positioned at the start of one
+     * @param strings Set to the strings of the record
+     * @return The x and y values of the record
+     */
+    private static double[][] read(final ByteBuffer records, final String[] strings) {
+        int start = records.position();
+        byte[] magic = new byte[MAGIC.length];
+        records.get(magic);
+        Assertions.assertArrayEquals(MAGIC, magic);
+        Assertions.assertEquals(VERSION, records.getInt());
+        int points = records.getInt();
+        int headerLength = records.getInt();
+        Assertions.assertEquals(0, headerLength % Double.BYTES);
+        for (int i = 0; i < strings.length; i++) {
+            int length = records.getInt();
+            strings[i] = null;
+            if (length >= 0) {
+                byte[] string = new byte[length];
+                records.get(string);
+                strings[i] = new String(string, StandardCharsets.UTF_8);
+            }
+        }
+        records.position(start + headerLength);
+        double[][] values = new double[2][points];
+        records.asDoubleBuffer().get(values[0]).get(values[1]);
+        records.position(start + headerLength + 2 * points * Double.BYTES);
+        return values;
+    }
+}
@@ -0,0 +1,143 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpectrumStoreTest {
+
+    /**
+     * Small segments so tests span several of them.
+     */
+    private static final int SEGMENT_SIZE = 4096;
+
+    /**
+     * Bytes before the first record of a segment file.
+     */
+    private static final long FILE_HEADER = 8;
+
+    /**
+     * Directory of the store under test.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test spectra are read back through zero-copy views, in float32 when every
+     * value fits and float64 otherwise, and survive reopening the store.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testPutAndReopen() throws Exception {
+        Spectrum exact = new Spectrum(new double[] {1, 2, 3}, new double[] {0.5, 0.25, 2},
+            "qudt:PER-CentiM", "wavenumbers", "intensity", "obo:CHMO_0000228");
+        Spectrum precise = new Spectrum(new double[] {0.1, 0.2}, new double[] {1, 2});
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            StoredSpectrum stored = store.put("exact", exact);
+            Assertions.assertTrue(stored.getXColumn().isSinglePrecision());
+            Assertions.assertEquals(2f, stored.getXColumn().asFloatBuffer().get(1));
+            store.put("precise", precise);
+            store.put("none", null);
+        }
+
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            Assertions.assertEquals(3, store.size());
+            StoredSpectrum stored = store.get("exact");
+            Assertions.assertArrayEquals(exact.getY(), stored.getYColumn().toArray());
+            Assertions.assertEquals("obo:CHMO_0000228", stored.getTechnique());
+            Assertions.assertEquals("qudt:PER-CentiM", stored.getXUnits());
+            Assertions.assertEquals("intensity", stored.getYQuantity());
+
+            StoredSpectrum doubles = store.get("precise");
+            Assertions.assertFalse(doubles.getXColumn().isSinglePrecision());
+            Assertions.assertEquals(0.1, doubles.getXColumn().asDoubleBuffer().get(0));
+            Assertions.assertTrue(store.get("none").isEmpty());
+            Assertions.assertNull(store.get("missing"));
+        }
+    }
+
+    /**
+     * Test removed and replaced spectra stay that way after compaction and
+     * reopening, and compaction deletes the superseded segments.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        double[] x = new double[100];
+        double[] y = new double[100];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = i;
+        }
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < x.length; i++) {
+                    y[i] = round;
+                }
+                store.put("replaced", new Spectrum(x, y.clone()));
+                store.put("removed-" + round, new Spectrum(x, y.clone()));
+                store.remove("removed-" + round);
+            }
+            int segments = store.getSegmentCount();
+            Assertions.assertTrue(segments > 2);
+            Assertions.assertTrue(store.compact() > 0);
+            Assertions.assertTrue(store.getSegmentCount() < segments);
+            Assertions.assertEquals(9, store.get("replaced").getY(0));
+        }
+
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            Assertions.assertEquals(1, store.size());
+            Assertions.assertEquals(9, store.get("replaced").getY(0));
+        }
+    }
+
+    /**
+     * Test a damaged record and everything after it in its segment are ignored
+     * when the store is reopened.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testDamagedRecord() throws Exception {
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            store.put("first", new Spectrum(new double[] {1, 2}, new double[] {1, 2}));
+            store.put("second", new Spectrum(new double[] {1, 2}, new double[] {3, 4}));
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.findFirst().get();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Flip the last byte of the second record's y column
+            long second = FILE_HEADER + Integer.reverseBytes(readInt(file, FILE_HEADER));
+            long last = second + Integer.reverseBytes(readInt(file, second)) - 1;
+            file.seek(last);
+            int value = file.read();
+            file.seek(last);
+            file.write(~value);
+        }
+
+        try (SpectrumStore store = new SpectrumStore(directory, SEGMENT_SIZE)) {
+            Assertions.assertNotNull(store.get("first"));
+            Assertions.assertNull(store.get("second"));
+        }
+    }
+
+    /**
+     * @param file   File to read.
+     * @param offset Offset to read at.
+     * @return The big-endian int at the offset.
+     * @throws Exception If the file could not be read.
+     */
+    private static int readInt(final RandomAccessFile file, final long offset) throws Exception {
+        file.seek(offset);
+        return file.readInt();
+    }
+}
@@ -0,0 +1,105 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.spectra;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class VectorStoreTest {
+
+    /**
+     * Length of the test vectors.
+     */
+    private static final int DIMENSION = 4;
+
+    /**
+     * Fingerprint of the test grids.
+     */
+    private static final long FINGERPRINT = 42;
+
+    /**
+     * Directory of the store under test.
+     */
+    @TempDir
+    private Path directory;
+
+    /**
+     * Test vectors are replaced, removed and read back after reopening, and a
+     * store opened for other grids starts empty.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testPutAndReopen() throws Exception {
+        Path path = directory.resolve("vectors.dat");
+        try (VectorStore store = new VectorStore(path, DIMENSION, FINGERPRINT)) {
+            Assertions.assertTrue(store.isFresh());
+            store.put("a", new float[] {1, 0, 0, 0});
+            store.put("b", new float[] {0, 1, 0, 0});
+            store.put("c", new float[] {0, 0, 1, 0});
+            store.put("a", new float[] {0, 0, 0, 1});
+            Assertions.assertTrue(store.remove("b"));
+            Assertions.assertFalse(store.remove("b"));
+            store.put("d", new float[] {0.5f, 0.5f, 0.5f, 0.5f});
+        }
+
+        try (VectorStore store = new VectorStore(path, DIMENSION, FINGERPRINT)) {
+            Assertions.assertFalse(store.isFresh());
+            Assertions.assertEquals(3, store.size());
+            Assertions.assertArrayEquals(new float[] {0, 0, 0, 1}, store.get("a"));
+            Assertions.assertNull(store.get("b"));
+            Assertions.assertArrayEquals(new float[] {0.5f, 0.5f, 0.5f, 0.5f}, store.get("d"));
+        }
+
+        try (VectorStore store = new VectorStore(path, DIMENSION, FINGERPRINT + 1)) {
+            Assertions.assertTrue(store.isFresh());
+            Assertions.assertEquals(0, store.size());
+        }
+    }
+
+    /**
+     * Test a record that fails its checksum is dropped on open.
+     *
+     * @throws Exception If the store could not be written.
+     */
+    @Test
+    public void testDamagedRecord() throws Exception {
+        Path path = directory.resolve("vectors.dat");
+        try (VectorStore store = new VectorStore(path, DIMENSION, FINGERPRINT)) {
+            store.put("a", new float[] {1, 0, 0, 0});
+            store.put("b", new float[] {0, 1, 0, 0});
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);
+        }
+        try (VectorStore store = new VectorStore(path, DIMENSION, FINGERPRINT)) {
+            Assertions.assertTrue(store.contains("a"));
+            Assertions.assertFalse(store.contains("b"));
+        }
+    }
+
+    /**
+     * Test spectra go to the first grid claiming their technique and units,
+     * and to the default grid otherwise.
+     */
+    @Test
+    public void testSelectGrid() {
+        SpectralGrids grids = new SpectralGrids(new SpectralGrid(0, 4000, 512));
+        long defaultFingerprint = grids.fingerprint();
+        grids.add("raman", new SpectralGrid(50, 3500, 1024),
+            Collections.emptyList(), Collections.singletonList("qudt:PER-CentiM"));
+        grids.add("xrd", new SpectralGrid(5, 90, 2048),
+            Collections.singletonList("obo:CHMO_0000156"), Collections.emptyList());
+
+        Assertions.assertEquals("raman", grids.select("obo:CHMO_0000228", "qudt:PER-CentiM"));
+        Assertions.assertEquals("xrd", grids.select("obo:CHMO_0000156", "qudt:DEG"));
+        Assertions.assertEquals(SpectralGrids.DEFAULT, grids.select(null, null));
+        Assertions.assertNotEquals(defaultFingerprint, grids.fingerprint());
+    }
+}
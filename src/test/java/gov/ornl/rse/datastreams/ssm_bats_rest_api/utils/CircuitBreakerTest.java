@@ -0,0 +1,75 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    /**
+     * Failures needed to open the circuit in tests.
+     */
+    private static final int THRESHOLD = 2;
+
+    /**
+     * Open duration in milliseconds for tests.
+     */
+    private static final long OPEN_DURATION = 1000;
+
+    /**
+     * Test the circuit opens after the threshold and fails fast while open.
+     */
+    @Test
+    public void testOpensAfterConsecutiveFailures() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(THRESHOLD, OPEN_DURATION, now::get);
+
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+        Assertions.assertFalse(breaker.isOpen());
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        Assertions.assertTrue(breaker.isOpen());
+        Assertions.assertFalse(breaker.tryAcquire());
+    }
+
+    /**
+     * Test a single trial call is allowed after the open duration,
+     * and its success closes the circuit.
+     */
+    @Test
+    public void testHalfOpenTrialClosesOnSuccess() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(1, OPEN_DURATION, now::get);
+        breaker.onFailure();
+
+        now.set(OPEN_DURATION);
+        Assertions.assertTrue(breaker.tryAcquire());
+        Assertions.assertFalse(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        Assertions.assertFalse(breaker.isOpen());
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+
+    /**
+     * Test a failed trial call opens the circuit again.
+     */
+    @Test
+    public void testHalfOpenTrialReopensOnFailure() {
+        AtomicLong now = new AtomicLong(0);
+        CircuitBreaker breaker = new CircuitBreaker(THRESHOLD, OPEN_DURATION, now::get);
+        breaker.onFailure();
+        breaker.onFailure();
+
+        now.set(OPEN_DURATION);
+        Assertions.assertTrue(breaker.tryAcquire());
+        breaker.onFailure();
+
+        Assertions.assertFalse(breaker.tryAcquire());
+        now.set(2 * OPEN_DURATION);
+        Assertions.assertTrue(breaker.tryAcquire());
+    }
+}
@@ -0,0 +1,67 @@
+package gov.ornl.rse.datastreams.ssm_bats_rest_api.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ExpiringCacheTest {
+
+    /**
+     * Default time-to-live in milliseconds for tests.
+     */
+    private static final long TTL = 1000;
+
+    /**
+     * Test entries expire after their time-to-live and are counted as misses.
+     */
+    @Test
+    public void testExpiry() {
+        AtomicLong now = new AtomicLong(0);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, TTL, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2", TTL * 2);
+
+        Assertions.assertEquals("1", cache.get("a"));
+        now.set(TTL);
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals("2", cache.get("b"));
+
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * Test the least recently used entry is evicted when full.
+     */
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        AtomicLong now = new AtomicLong(0);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(2, TTL, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+
+        Assertions.assertEquals("1", cache.get("a"));
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals("3", cache.get("c"));
+    }
+
+    /**
+     * Test invalidating single keys and keys matching a predicate.
+     */
+    @Test
+    public void testInvalidate() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, TTL);
+        cache.put("user1:a", "1");
+        cache.put("user1:b", "2");
+        cache.put("user2:a", "3");
+
+        cache.invalidate("user2:a");
+        Assertions.assertNull(cache.get("user2:a"));
+
+        cache.invalidateIf(key -> key.startsWith("user1:"));
+        Assertions.assertEquals(0, cache.size());
+    }
+}